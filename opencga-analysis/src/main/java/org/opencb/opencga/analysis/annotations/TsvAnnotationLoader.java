@@ -38,12 +38,12 @@ import org.opencb.opencga.core.response.OpenCGAResult;
 import java.io.BufferedReader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 public abstract class TsvAnnotationLoader extends OpenCgaTool  {
+    // Number of rows sent to catalog at once
+    private static final int BATCH_SIZE = 5000;
+
     // Variables that need to be passed
     protected String path;
     protected String variableSetId;
@@ -139,6 +139,7 @@ public abstract class TsvAnnotationLoader extends OpenCgaTool  {
         try (BufferedReader bufferedReader = FileUtils.newBufferedReader(filePath)) {
             List<String> columns = getFields(bufferedReader.readLine());
 
+            Map<String, AnnotationSet> annotationSetMap = new LinkedHashMap<>();
             boolean eof = false;
             while (!eof) {
                 List<String> values = getFields(bufferedReader.readLine());
@@ -152,15 +153,28 @@ public abstract class TsvAnnotationLoader extends OpenCgaTool  {
                     for (int i = 1; i < values.size(); i++) {
                         annotations.put(columns.get(i), values.get(i), true, true);
                     }
+                    if (annotationSetMap.size() == BATCH_SIZE || annotationSetMap.containsKey(sampleId)) {
+                        addAnnotationSets(annotationSetMap);
+                        annotationSetMap.clear();
+                    }
                     // Add annotationset
                     AnnotationSet annotationSet = new AnnotationSet(variableSetId, variableSetId, annotations);
-                    addAnnotationSet(sampleId, annotationSet, QueryOptions.empty());
+                    annotationSetMap.put(sampleId, annotationSet);
                 }
             }
+            if (!annotationSetMap.isEmpty()) {
+                addAnnotationSets(annotationSetMap);
+            }
         }
     }
 
     public abstract int count(Query query) throws CatalogException;
 
-    public abstract void addAnnotationSet(String entryId, AnnotationSet annotationSet, QueryOptions options) throws CatalogException;
+    /**
+     * Add one annotation set to each of the entries.
+     *
+     * @param annotationSetMap Map of entry id - annotation set to be added.
+     * @throws CatalogException if any of the annotation sets could not be added.
+     */
+    public abstract void addAnnotationSets(Map<String, AnnotationSet> annotationSetMap) throws CatalogException;
 }
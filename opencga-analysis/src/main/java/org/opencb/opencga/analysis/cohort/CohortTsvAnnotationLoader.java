@@ -17,13 +17,14 @@
 package org.opencb.opencga.analysis.cohort;
 
 import org.opencb.commons.datastore.core.Query;
-import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.analysis.annotations.TsvAnnotationLoader;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.core.models.common.AnnotationSet;
 import org.opencb.opencga.core.models.common.Enums;
 import org.opencb.opencga.core.tools.annotations.Tool;
 
+import java.util.Map;
+
 @Tool(id = CohortTsvAnnotationLoader.ID, resource = Enums.Resource.COHORT, type = Tool.Type.OPERATION,
         description = "Load annotations from TSV file.")
 public class CohortTsvAnnotationLoader extends TsvAnnotationLoader {
@@ -35,7 +36,7 @@ public class CohortTsvAnnotationLoader extends TsvAnnotationLoader {
     }
 
     @Override
-    public void addAnnotationSet(String entryId, AnnotationSet annotationSet, QueryOptions options) throws CatalogException {
-        catalogManager.getCohortManager().addAnnotationSet(study, entryId, annotationSet, options, token);
+    public void addAnnotationSets(Map<String, AnnotationSet> annotationSetMap) throws CatalogException {
+        catalogManager.getCohortManager().addAnnotationSets(study, annotationSetMap, false, token);
     }
 }
@@ -82,8 +82,8 @@ public class FamilyQcAnalysis extends OpenCgaTool {
         }
 
         // As relatedness is the only QC to compute, it is mandatory
-        if (StringUtils.isEmpty(relatednessMethod)) {
-            relatednessMethod = "PLINK/IBD";
+        if (StringUtils.isEmpty(relatednessMethod) || relatednessMethod.equals(IBDComputation.PLINK_METHOD)) {
+            relatednessMethod = IBDComputation.METHOD;
         }
         if (StringUtils.isEmpty(relatednessMaf)) {
             relatednessMaf = "cohort:ALL>0.05";
@@ -111,8 +111,8 @@ public class FamilyQcLocalAnalysisExecutor extends FamilyQcAnalysisExecutor impl
             return;
         }
 
-        // Run IBD/IBS computation using PLINK in docker
-        RelatednessReport report = IBDComputation.compute(getStudyId(), sampleIds, relatednessMaf, getOutDir(), getVariantStorageManager(),
+        // Run IBD/IBS computation
+        RelatednessReport report = IBDComputation.compute(getStudyId(), sampleIds, relatednessMaf, getVariantStorageManager(),
                 getToken());
 
         // Sanity check
@@ -17,102 +17,93 @@
 package org.opencb.opencga.analysis.family.qc;
 
 import org.opencb.biodata.models.clinical.qc.RelatednessReport;
-import org.opencb.commons.utils.DockerUtils;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.analysis.individual.qc.IndividualQcUtils;
 import org.opencb.opencga.analysis.variant.manager.VariantStorageManager;
-import org.opencb.opencga.analysis.wrappers.PlinkWrapperAnalysis;
 import org.opencb.opencga.core.exceptions.ToolException;
-
-import java.io.*;
-import java.nio.file.Path;
-import java.util.*;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class IBDComputation {
 
-    private static final String BASENAME = "variants";
-
-    public static RelatednessReport compute(String study, List<String> samples, String maf, Path outDir,
-                                            VariantStorageManager storageManager, String token) throws ToolException {
-        // Select markers
-        IndividualQcUtils.selectMarkers(BASENAME, study, samples, maf, outDir, storageManager, token);
-
-        // run IBD and return the result file (now autosome-file comprises X chromosome too)
-        File outFile = runIBD(BASENAME, outDir);
-
-        if (!outFile.exists()) {
-            throw new ToolException("Something wrong happened executing relatedness analysis");
-        }
-
-        RelatednessReport relatedness = new RelatednessReport()
-                .setMethod("PLINK/IBD")
-                .setMaf(maf)
-                .setScores(parseRelatednessScores(outFile));
-
-        return relatedness;
-    }
-
-    private static File runIBD(String basename, Path outDir) throws ToolException {
-        AbstractMap.SimpleEntry<String, String> outputBinding = new AbstractMap.SimpleEntry<>(outDir.toAbsolutePath().toString(),
-                "/data/output");
-
-        // Calculate allele frequencies to pass to PLINK: --read-freq <.freq filename>
-        String readFreq = "";
-        String readFreqFilename = basename + ".maf.freq";
-        createReadFreqFile(outputBinding.getKey() + "/" + basename + ".tped", outputBinding.getKey() + "/" + readFreqFilename);
-        if (new File(outputBinding.getKey() + "/" + readFreqFilename).exists()) {
-            readFreq = " --read-freq /data/output/" + readFreqFilename;
-        }
-
-        // Run IBD using PLINK in docker
-        String exclude = "";
-        File pruneOutFile = new File(outputBinding.getKey() + "/" + basename + ".prune.out");
-        if (pruneOutFile.exists() && pruneOutFile.length() > 0) {
-            exclude = " --exclude /data/output/" + basename + ".prune.out";
-        }
-        String plinkParams = "plink --tfile /data/output/" + basename + " --genome rel-check " + readFreq + exclude + " --out /data/output/"
-                + basename;
-        try {
-            DockerUtils.run(PlinkWrapperAnalysis.PLINK_DOCKER_IMAGE, null, outputBinding, plinkParams, null);
-        } catch (IOException e) {
-            throw new ToolException(e);
+    /**
+     * Relatedness method computed by the {@link IBDEstimator}.
+     */
+    public static final String METHOD = "IBD";
+    /**
+     * Former name of the relatedness method, when it was computed by PLINK.
+     */
+    public static final String PLINK_METHOD = "PLINK/IBD";
+
+    private static Logger logger = LoggerFactory.getLogger(IBDComputation.class);
+
+    /**
+     * Compute the relatedness of every pair of samples.
+     *
+     * Markers are streamed from the variant storage and pruned by LD on the fly. IBD and kinship are computed in memory
+     * by the {@link IBDEstimator}, reporting the same values as PLINK --genome plus the KING-robust kinship.
+     *
+     * @param study          Study
+     * @param samples        Samples
+     * @param maf            Minor allele frequency filter to select the markers
+     * @param storageManager Variant storage manager
+     * @param token          User token
+     * @return Relatedness report
+     * @throws ToolException if no markers were found, or there is an error reading the variants
+     */
+    public static RelatednessReport compute(String study, List<String> samples, String maf, VariantStorageManager storageManager,
+                                            String token) throws ToolException {
+        Query query = IndividualQcUtils.buildMarkersQuery(study, samples, maf)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), samples)
+                .append(VariantQueryParam.INCLUDE_SAMPLE_DATA.key(), "GT")
+                .append(VariantQueryParam.INCLUDE_FILE.key(), VariantQueryUtils.NONE);
+        // LD pruning requires the markers sorted by chromosome and position
+        QueryOptions queryOptions = new QueryOptions(QueryOptions.EXCLUDE, VariantField.ANNOTATION)
+                .append(QueryOptions.SORT, true);
+
+        IBDEstimator estimator = new IBDEstimator(samples);
+        int numVariants = 0;
+        try (VariantDBIterator iterator = storageManager.iterator(query, queryOptions, token)) {
+            List<String> genotypes = new ArrayList<>(samples.size());
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                StudyEntry studyEntry = variant.getStudies().get(0);
+                genotypes.clear();
+                for (String sample : samples) {
+                    genotypes.add(studyEntry.getSampleData(sample, "GT"));
+                }
+                estimator.add(variant.getChromosome(), genotypes);
+                numVariants++;
+            }
+        } catch (Exception e) {
+            throw new ToolException("Error reading variants for relatedness analysis", e);
         }
+        logger.info("Relatedness markers: {} after LD pruning, from {} variants", estimator.getNumMarkers(), numVariants);
 
-        // Check output file
-        File outFile = new File(outputBinding.getKey() + "/" + basename + ".genome");
-        if (!outFile.exists()) {
-            throw new ToolException("Something wrong executing relatedness analysis (i.e., IBD/IBS computation) in PLINK docker.");
+        if (estimator.getNumMarkers() == 0) {
+            throw new ToolException("No variants found to compute relatedness analysis");
         }
 
-        return outFile;
-    }
-
-    private static void createReadFreqFile(String tpedFilename, String mafFilename) throws ToolException {
-        try (FileWriter f = new FileWriter(mafFilename, true);
-             PrintWriter p = new PrintWriter(new BufferedWriter(f))) {
-
-            p.println("CHR\tSNP\tA1\tA2\tMAF\tNCHROBS");
-
-            FileInputStream fis = new FileInputStream(tpedFilename);
-            Scanner sc = new Scanner(fis);
-            while(sc.hasNextLine()) {
-                String[] splits = sc.nextLine().split("\t");
-                String[] varSplits = splits[1].split(":");
-
-                int a1 = 0;
-                int a2 = 0;
-                for (int i = 4; i < splits.length; i++) {
-                    if (splits[i].equals(varSplits[2])) {
-                        a1++;
-                    } else if (splits[i].equals(varSplits[3])) {
-                        a2++;
-                    }
-                }
-                p.println(splits[0] + "\t" + splits[1] + "\t" + varSplits[2] + "\t" + varSplits[3] + "\t" + (1.0d * a2 / (a1 + a2)) + "\t"
-                        + (a1 + a2));
-            }
-        } catch (IOException e) {
-            throw new ToolException(e);
-        }
+        return new RelatednessReport()
+                .setMethod(METHOD)
+                .setMaf(maf)
+                .setScores(estimator.compute());
     }
 
     public static List<RelatednessReport.RelatednessScore> parseRelatednessScores(File file) throws ToolException {
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.analysis.family.qc;
+
+import org.opencb.biodata.models.clinical.qc.RelatednessReport;
+import org.opencb.biodata.models.variant.Genotype;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Pairwise IBS, IBD (PLINK method of moments) and kinship (KING-robust) estimation.
+ *
+ * Markers are added one at a time, sorted by position. Markers in LD with any of the last accepted markers
+ * of the same chromosome are discarded, so the pruning is done while streaming the variants.
+ * Genotypes of the accepted markers are stored as three bit planes per sample (hom-ref, het, hom-alt),
+ * so the IBS counts of a pair of samples are computed with a few bitwise operations and popcounts per 64 markers.
+ */
+public class IBDEstimator {
+
+    public static final int DEFAULT_LD_WINDOW = 50;
+    public static final double DEFAULT_LD_R2 = 0.5;
+
+    // KING kinship thresholds for duplicates, 1st, 2nd and 3rd degree relationships
+    private static final double DUPLICATE_KINSHIP = 0.354;
+    private static final double FIRST_DEGREE_KINSHIP = 0.177;
+    private static final double SECOND_DEGREE_KINSHIP = 0.0884;
+    private static final double THIRD_DEGREE_KINSHIP = 0.0442;
+    // Max fraction of IBS0 markers to consider a 1st degree pair as parent-offspring instead of full siblings
+    private static final double PARENT_OFFSPRING_IBS0 = 0.005;
+
+    private final List<String> samples;
+    private final int ldWindow;
+    private final double ldR2;
+
+    private long[][] homRef;
+    private long[][] het;
+    private long[][] homAlt;
+    private int numMarkers;
+
+    // Expected IBS counts given IBD, summed over all the markers
+    private double e00;
+    private double e10;
+    private double e20;
+    private double e11;
+    private double e21;
+
+    // Dosages of the last accepted markers, used for the LD pruning
+    private final byte[][] window;
+    private int windowSize;
+    private int windowNext;
+    private String windowChromosome;
+
+    public IBDEstimator(List<String> samples) {
+        this(samples, DEFAULT_LD_WINDOW, DEFAULT_LD_R2);
+    }
+
+    public IBDEstimator(List<String> samples, int ldWindow, double ldR2) {
+        this.samples = new ArrayList<>(samples);
+        this.ldWindow = ldWindow;
+        this.ldR2 = ldR2;
+        homRef = new long[samples.size()][16];
+        het = new long[samples.size()][16];
+        homAlt = new long[samples.size()][16];
+        window = new byte[Math.max(ldWindow, 1)][];
+    }
+
+    /**
+     * Add a marker.
+     *
+     * @param chromosome Chromosome of the marker. Markers must be added sorted by chromosome and position.
+     * @param genotypes  Genotype of each sample, in the same order as the list of samples. Null for missing values.
+     * @return true if the marker was accepted. Markers are discarded if monomorphic or in LD with a previous marker.
+     */
+    public boolean add(String chromosome, List<String> genotypes) {
+        byte[] dosages = new byte[samples.size()];
+        for (int i = 0; i < dosages.length; i++) {
+            dosages[i] = dosage(genotypes.get(i));
+        }
+        return add(chromosome, dosages);
+    }
+
+    /**
+     * Add a marker.
+     *
+     * @param chromosome Chromosome of the marker. Markers must be added sorted by chromosome and position.
+     * @param dosages    Number of alternate alleles of each sample, or -1 if missing.
+     * @return true if the marker was accepted. Markers are discarded if monomorphic, called in less than two samples,
+     *         or in LD with a previous marker.
+     */
+    public boolean add(String chromosome, byte[] dosages) {
+        int alleles = 0;
+        int altAlleles = 0;
+        for (byte dosage : dosages) {
+            if (dosage >= 0) {
+                alleles += 2;
+                altAlleles += dosage;
+            }
+        }
+        if (altAlleles == 0 || altAlleles == alleles || alleles < 4) {
+            return false;
+        }
+
+        if (!chromosome.equals(windowChromosome)) {
+            windowChromosome = chromosome;
+            windowSize = 0;
+            windowNext = 0;
+        }
+        for (int i = 0; i < windowSize; i++) {
+            if (r2(window[i], dosages) > ldR2) {
+                return false;
+            }
+        }
+        if (ldWindow > 0) {
+            window[windowNext] = dosages;
+            windowNext = (windowNext + 1) % window.length;
+            windowSize = Math.min(windowSize + 1, window.length);
+        }
+
+        // Allele frequencies are estimated from the same samples. Use unbiased estimators of the allele frequency products,
+        // drawing alleles without replacement, as PLINK does. Otherwise the expectations are biased for small sets of samples
+        double a = altAlleles;
+        double b = alleles - altAlleles;
+        double n = alleles;
+        double n2 = n * (n - 1);
+        double n4 = n2 * (n - 2) * (n - 3);
+        double pq = a * b / n2;
+        double p2q2 = a * (a - 1) * b * (b - 1) / n4;
+        double p3q = a * (a - 1) * (a - 2) * b / n4;
+        double pq3 = a * b * (b - 1) * (b - 2) / n4;
+        double p4 = a * (a - 1) * (a - 2) * (a - 3) / n4;
+        double q4 = b * (b - 1) * (b - 2) * (b - 3) / n4;
+        e00 += 2 * p2q2;
+        e10 += 4 * p3q + 4 * pq3;
+        e20 += p4 + q4 + 4 * p2q2;
+        e11 += 2 * pq;
+        e21 += 1 - 2 * pq;
+
+        int word = numMarkers >>> 6;
+        long bit = 1L << (numMarkers & 63);
+        if (word == homRef[0].length) {
+            for (int i = 0; i < dosages.length; i++) {
+                homRef[i] = Arrays.copyOf(homRef[i], word * 2);
+                het[i] = Arrays.copyOf(het[i], word * 2);
+                homAlt[i] = Arrays.copyOf(homAlt[i], word * 2);
+            }
+        }
+        for (int i = 0; i < dosages.length; i++) {
+            switch (dosages[i]) {
+                case 0:
+                    homRef[i][word] |= bit;
+                    break;
+                case 1:
+                    het[i][word] |= bit;
+                    break;
+                case 2:
+                    homAlt[i][word] |= bit;
+                    break;
+                default:
+                    // Missing
+                    break;
+            }
+        }
+        numMarkers++;
+        return true;
+    }
+
+    public int getNumMarkers() {
+        return numMarkers;
+    }
+
+    /**
+     * Compute the relatedness scores of every pair of samples. Pairs are computed in parallel.
+     *
+     * @return List of scores, sorted by sample order.
+     */
+    public List<RelatednessReport.RelatednessScore> compute() {
+        int numSamples = samples.size();
+        return IntStream.range(0, numSamples)
+                .parallel()
+                .mapToObj(i -> IntStream.range(i + 1, numSamples).mapToObj(j -> compute(i, j)))
+                .flatMap(s -> s)
+                .collect(Collectors.toList());
+    }
+
+    RelatednessReport.RelatednessScore compute(int i, int j) {
+        long[] ri = homRef[i];
+        long[] hi = het[i];
+        long[] ai = homAlt[i];
+        long[] rj = homRef[j];
+        long[] hj = het[j];
+        long[] aj = homAlt[j];
+
+        int called = 0;
+        int ibs0 = 0;
+        int ibs2 = 0;
+        int hetHet = 0;
+        int hetI = 0;
+        int hetJ = 0;
+        int words = (numMarkers + 63) >>> 6;
+        for (int w = 0; w < words; w++) {
+            long calledI = ri[w] | hi[w] | ai[w];
+            long calledJ = rj[w] | hj[w] | aj[w];
+            called += Long.bitCount(calledI & calledJ);
+            ibs0 += Long.bitCount((ri[w] & aj[w]) | (ai[w] & rj[w]));
+            ibs2 += Long.bitCount((ri[w] & rj[w]) | (hi[w] & hj[w]) | (ai[w] & aj[w]));
+            hetHet += Long.bitCount(hi[w] & hj[w]);
+            hetI += Long.bitCount(hi[w] & calledJ);
+            hetJ += Long.bitCount(hj[w] & calledI);
+        }
+        int ibs1 = called - ibs0 - ibs2;
+
+        // Method of moments. Expected counts are scaled by the fraction of markers called in both samples.
+        double z0 = 0;
+        double z1 = 0;
+        double z2 = 0;
+        if (called > 0) {
+            double scale = ((double) called) / numMarkers;
+            z0 = ibs0 / (e00 * scale);
+            z1 = (ibs1 - z0 * e10 * scale) / (e11 * scale);
+            z2 = (ibs2 - z0 * e20 * scale - z1 * e21 * scale) / called;
+            z0 = bound(z0);
+            z1 = bound(z1);
+            z2 = bound(z2);
+            double sum = z0 + z1 + z2;
+            if (sum > 0) {
+                z0 /= sum;
+                z1 /= sum;
+                z2 /= sum;
+            } else {
+                z0 = 1;
+            }
+        }
+        double piHat = z1 / 2 + z2;
+        double kinship = hetI + hetJ == 0 ? 0 : (hetHet - 2.0 * ibs0) / (hetI + hetJ);
+
+        String relationship = inferRelationship(kinship, called == 0 ? 0 : ((double) ibs0) / called);
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("ez", format(expectedPiHat(relationship)));
+        values.put("z0", format(z0));
+        values.put("z1", format(z1));
+        values.put("z2", format(z2));
+        values.put("PiHat", format(piHat));
+        values.put("kinship", format(kinship));
+        values.put("ibs0", String.valueOf(ibs0));
+        values.put("ibs1", String.valueOf(ibs1));
+        values.put("ibs2", String.valueOf(ibs2));
+
+        return new RelatednessReport.RelatednessScore()
+                .setSampleId1(samples.get(i))
+                .setSampleId2(samples.get(j))
+                .setInferredRelationship(relationship)
+                .setValues(values);
+    }
+
+    static String inferRelationship(double kinship, double ibs0Fraction) {
+        if (kinship > DUPLICATE_KINSHIP) {
+            return "DUP";
+        } else if (kinship > FIRST_DEGREE_KINSHIP) {
+            return ibs0Fraction < PARENT_OFFSPRING_IBS0 ? "PO" : "FS";
+        } else if (kinship > SECOND_DEGREE_KINSHIP) {
+            return "2ND";
+        } else if (kinship > THIRD_DEGREE_KINSHIP) {
+            return "3RD";
+        } else {
+            return "UN";
+        }
+    }
+
+    private static double expectedPiHat(String relationship) {
+        switch (relationship) {
+            case "DUP":
+                return 1;
+            case "PO":
+            case "FS":
+                return 0.5;
+            case "2ND":
+                return 0.25;
+            case "3RD":
+                return 0.125;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Squared correlation of the dosages of two markers, using the samples called in both.
+     */
+    private static double r2(byte[] a, byte[] b) {
+        int n = 0;
+        double sumA = 0;
+        double sumB = 0;
+        double sumAA = 0;
+        double sumBB = 0;
+        double sumAB = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] >= 0 && b[i] >= 0) {
+                n++;
+                sumA += a[i];
+                sumB += b[i];
+                sumAA += a[i] * a[i];
+                sumBB += b[i] * b[i];
+                sumAB += a[i] * b[i];
+            }
+        }
+        double varA = n * sumAA - sumA * sumA;
+        double varB = n * sumBB - sumB * sumB;
+        if (n < 2 || varA <= 0 || varB <= 0) {
+            return 0;
+        }
+        double cov = n * sumAB - sumA * sumB;
+        return (cov * cov) / (varA * varB);
+    }
+
+    static byte dosage(String gt) {
+        if (gt == null) {
+            return -1;
+        }
+        switch (gt) {
+            case "0/0":
+            case "0|0":
+                return 0;
+            case "0/1":
+            case "0|1":
+            case "1|0":
+                return 1;
+            case "1/1":
+            case "1|1":
+                return 2;
+            default:
+                try {
+                    Genotype genotype = new Genotype(gt);
+                    byte dosage = 0;
+                    for (int allele : genotype.getAllelesIdx()) {
+                        if (allele < 0) {
+                            return -1;
+                        } else if (allele > 0) {
+                            dosage++;
+                        }
+                    }
+                    return genotype.getPloidy() == 2 ? dosage : -1;
+                } catch (RuntimeException e) {
+                    return -1;
+                }
+        }
+    }
+
+    private static double bound(double value) {
+        return Double.isNaN(value) ? 0 : Math.min(1, Math.max(0, value));
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
@@ -38,9 +38,9 @@ public class IBDRelatednessLocalAnalysisExecutor extends IBDRelatednessAnalysisE
         VariantStorageManager variantStorageManager = getVariantStorageManager();
         CatalogManager catalogManager = variantStorageManager.getCatalogManager();
 
-        // Run IBD/IBS computation using PLINK in docker
-        RelatednessReport report = IBDComputation.compute(getStudyId(), getSampleIds(), getMinorAlleleFreq(), getOutDir(),
-                variantStorageManager, getToken());
+        // Run IBD/IBS computation
+        RelatednessReport report = IBDComputation.compute(getStudyId(), getSampleIds(), getMinorAlleleFreq(), variantStorageManager,
+                getToken());
 
         // Sanity check
         if (report == null) {
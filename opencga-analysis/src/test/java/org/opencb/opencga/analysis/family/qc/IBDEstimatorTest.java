@@ -0,0 +1,97 @@
+package org.opencb.opencga.analysis.family.qc;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.clinical.qc.RelatednessReport;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IBDEstimatorTest {
+
+    private static final List<String> FAMILY = Arrays.asList("father", "mother", "child", "sibling", "father_dup");
+    // Unrelated samples, to get a better estimation of the allele frequencies
+    private static final int NUM_UNRELATED = 50;
+    private List<String> samples;
+    private Map<String, RelatednessReport.RelatednessScore> scores;
+
+    @Before
+    public void setUp() throws Exception {
+        Random random = new Random(1);
+        samples = new ArrayList<>(FAMILY);
+        for (int i = 0; i < NUM_UNRELATED; i++) {
+            samples.add("unrelated_" + i);
+        }
+        IBDEstimator estimator = new IBDEstimator(samples, 0, 1);
+        byte[] dosages = new byte[samples.size()];
+        for (int i = 0; i < 20000; i++) {
+            double p = 0.1 + random.nextDouble() * 0.8;
+            byte[] father = {allele(random, p), allele(random, p)};
+            byte[] mother = {allele(random, p), allele(random, p)};
+            dosages[0] = (byte) (father[0] + father[1]);
+            dosages[1] = (byte) (mother[0] + mother[1]);
+            dosages[2] = (byte) (father[random.nextInt(2)] + mother[random.nextInt(2)]);
+            dosages[3] = (byte) (father[random.nextInt(2)] + mother[random.nextInt(2)]);
+            dosages[4] = dosages[0];
+            for (int s = FAMILY.size(); s < dosages.length; s++) {
+                dosages[s] = (byte) (allele(random, p) + allele(random, p));
+            }
+            estimator.add("1", dosages.clone());
+        }
+        scores = new HashMap<>();
+        for (RelatednessReport.RelatednessScore score : estimator.compute()) {
+            scores.put(score.getSampleId1() + "-" + score.getSampleId2(), score);
+        }
+    }
+
+    private static byte allele(Random random, double p) {
+        return (byte) (random.nextDouble() < p ? 1 : 0);
+    }
+
+    @Test
+    public void testCompute() {
+        assertEquals(samples.size() * (samples.size() - 1) / 2, scores.size());
+
+        checkScore("father-mother", "UN", 0, 0);
+        checkScore("father-child", "PO", 0.5, 0.25);
+        checkScore("mother-child", "PO", 0.5, 0.25);
+        checkScore("child-sibling", "FS", 0.5, 0.25);
+        checkScore("father-father_dup", "DUP", 1, 0.5);
+        checkScore("unrelated_0-unrelated_1", "UN", 0, 0);
+    }
+
+    private void checkScore(String pair, String relationship, double piHat, double kinship) {
+        RelatednessReport.RelatednessScore score = scores.get(pair);
+        assertEquals(pair, relationship, score.getInferredRelationship());
+        assertEquals(pair, piHat, Double.parseDouble(score.getValues().get("PiHat").toString()), 0.05);
+        assertEquals(pair, kinship, Double.parseDouble(score.getValues().get("kinship").toString()), 0.03);
+    }
+
+    @Test
+    public void testLdPruning() {
+        IBDEstimator estimator = new IBDEstimator(Arrays.asList("s1", "s2", "s3", "s4"));
+        assertTrue(estimator.add("1", new byte[]{0, 1, 2, 1}));
+        // Same genotypes. In LD with the previous marker
+        assertFalse(estimator.add("1", new byte[]{0, 1, 2, 1}));
+        // Monomorphic
+        assertFalse(estimator.add("1", new byte[]{0, 0, 0, -1}));
+        assertTrue(estimator.add("1", new byte[]{1, 1, 0, 2}));
+        // Different chromosome
+        assertTrue(estimator.add("2", new byte[]{0, 1, 2, 1}));
+        assertEquals(3, estimator.getNumMarkers());
+    }
+
+    @Test
+    public void testDosage() {
+        assertEquals(0, IBDEstimator.dosage("0/0"));
+        assertEquals(1, IBDEstimator.dosage("1|0"));
+        assertEquals(2, IBDEstimator.dosage("1/1"));
+        assertEquals(1, IBDEstimator.dosage("0/2"));
+        assertEquals(-1, IBDEstimator.dosage("./."));
+        assertEquals(-1, IBDEstimator.dosage("0/."));
+        assertEquals(-1, IBDEstimator.dosage(null));
+    }
+}
@@ -30,6 +30,7 @@ import org.opencb.opencga.catalog.managers.CatalogManager;
 import org.opencb.opencga.catalog.utils.UuidUtils;
 import org.opencb.opencga.core.common.GitRepositoryState;
 import org.opencb.opencga.core.common.TimeUtils;
+import org.opencb.opencga.core.config.Audit;
 import org.opencb.opencga.core.config.Configuration;
 import org.opencb.opencga.core.models.common.Enums;
 import org.opencb.opencga.core.response.OpenCGAResult;
@@ -37,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created on 18/08/15.
@@ -50,6 +52,7 @@ public class AuditManager {
     private final CatalogManager catalogManager;
     private final AuthorizationManager authorizationManager;
     private final AuditDBAdaptor auditDBAdaptor;
+    private final AuditWriter auditWriter;
 
     private final Map<String, List<AuditRecord>> auditRecordMap;
     private static final int MAX_BATCH_SIZE = 100;
@@ -59,21 +62,21 @@ public class AuditManager {
         this.catalogManager = catalogManager;
         this.authorizationManager = authorizationManager;
         this.auditDBAdaptor = catalogDBAdaptorFactory.getCatalogAuditDbAdaptor();
-        this.auditRecordMap = new HashMap<>();
+        Audit audit = configuration.getAudit() == null ? new Audit() : configuration.getAudit();
+        this.auditWriter = new AuditWriter(auditDBAdaptor, audit);
+        this.auditRecordMap = new ConcurrentHashMap<>();
     }
 
     public void audit(AuditRecord auditRecord) throws CatalogException {
-        auditDBAdaptor.insertAuditRecord(auditRecord);
+        auditWriter.write(auditRecord);
     }
 
     public void audit(List<AuditRecord> auditRecordList) throws CatalogException {
-        for (AuditRecord auditRecord : auditRecordList) {
-            auditDBAdaptor.insertAuditRecord(auditRecord);
-        }
+        auditWriter.write(auditRecordList);
     }
 
     public void initAuditBatch(String operationId) {
-        this.auditRecordMap.put(operationId, new LinkedList<>());
+        this.auditRecordMap.put(operationId, new ArrayList<>());
     }
 
     public void finishAuditBatch(String operationId) throws CatalogException {
@@ -81,9 +84,7 @@ public class AuditManager {
             throw new CatalogException("Cannot audit. Operation id '" + operationId + "' not found.");
         }
         try {
-            if (!this.auditRecordMap.get(operationId).isEmpty()) {
-                auditDBAdaptor.insertAuditRecords(this.auditRecordMap.get(operationId));
-            }
+            auditWriter.write(this.auditRecordMap.get(operationId));
         } catch (CatalogDBException e) {
             logger.error("Could not audit operation '{}' -> Error: {}", operationId, e.getMessage(), e);
         } finally {
@@ -180,27 +181,44 @@ public class AuditManager {
         AuditRecord auditRecord = new AuditRecord(auditId, operationId, userId, apiVersion, action, resource, resourceId, resourceUuid,
                 studyId, studyUuid, params, status, date, attributes);
 
-        if (this.auditRecordMap.containsKey(operationId)) {
-            this.auditRecordMap.get(operationId).add(auditRecord);
+        List<AuditRecord> auditRecordBatch = this.auditRecordMap.get(operationId);
+        if (auditRecordBatch != null) {
+            auditRecordBatch.add(auditRecord);
 
-            if (this.auditRecordMap.size() == MAX_BATCH_SIZE) {
+            if (auditRecordBatch.size() == MAX_BATCH_SIZE) {
                 try {
-                    auditDBAdaptor.insertAuditRecords(this.auditRecordMap.get(operationId));
+                    auditWriter.write(auditRecordBatch);
                 } catch (CatalogDBException e) {
                     logger.error("Could not audit operation '{}' -> Error: {}", operationId, e.getMessage(), e);
                 } finally {
-                    this.auditRecordMap.get(operationId).clear();
+                    auditRecordBatch.clear();
                 }
             }
         } else {
             try {
-                auditDBAdaptor.insertAuditRecord(auditRecord);
+                auditWriter.write(auditRecord);
             } catch (CatalogDBException e) {
                 logger.error("Could not audit '{}' -> Error: {}", auditRecord, e.getMessage(), e);
             }
         }
     }
 
+    /**
+     * Backpressure metrics of the audit writer.
+     *
+     * @return ObjectMap with the metrics
+     */
+    public ObjectMap getWriterStats() {
+        return auditWriter.getStats();
+    }
+
+    /**
+     * Write all the pending audit records.
+     */
+    public void close() {
+        auditWriter.close();
+    }
+
     /**
      * Groups the matching entries by some fields.
      *
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.audit;
+
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.catalog.db.api.AuditDBAdaptor;
+import org.opencb.opencga.catalog.exceptions.CatalogDBException;
+import org.opencb.opencga.core.config.Audit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes audit records into the {@link AuditDBAdaptor}.
+ *
+ * Unless the durability is {@link Audit.Durability#SYNC}, records are added to a bounded buffer and written in batches
+ * by a background thread, so the callers don't wait for the database. A batch is written when it reaches the batch size,
+ * or when the flush interval expires. If the buffer is full, callers either wait ({@link Audit.Durability#ASYNC})
+ * or the records are discarded ({@link Audit.Durability#BEST_EFFORT}).
+ *
+ * The background thread is only started when there are records to write, and stops after {@link #IDLE_TIMEOUT_MILLIS}
+ * without records, so writers that are never closed do not keep a thread alive.
+ */
+public class AuditWriter implements AutoCloseable {
+
+    private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static Logger logger = LoggerFactory.getLogger(AuditWriter.class);
+
+    private final AuditDBAdaptor auditDBAdaptor;
+    private final Audit.Durability durability;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long idleTimeoutMillis;
+    private final BlockingQueue<AuditRecord> buffer;
+    private volatile Thread thread;
+    private volatile boolean closed;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong blockedTimeNanos = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile int maxBufferSize;
+
+    public AuditWriter(AuditDBAdaptor auditDBAdaptor, Audit configuration) {
+        this(auditDBAdaptor, configuration, IDLE_TIMEOUT_MILLIS);
+    }
+
+    AuditWriter(AuditDBAdaptor auditDBAdaptor, Audit configuration, long idleTimeoutMillis) {
+        this.auditDBAdaptor = auditDBAdaptor;
+        this.durability = configuration.getDurability() == null ? Audit.Durability.SYNC : configuration.getDurability();
+        this.batchSize = Math.max(1, configuration.getBatchSize());
+        this.flushIntervalMillis = Math.max(1, configuration.getFlushInterval());
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        if (durability == Audit.Durability.SYNC) {
+            buffer = null;
+        } else {
+            buffer = new ArrayBlockingQueue<>(Math.max(batchSize, configuration.getBufferSize()));
+        }
+    }
+
+    /**
+     * Write an audit record.
+     *
+     * @param auditRecord Audit record
+     * @throws CatalogDBException if the durability is SYNC and the record could not be written
+     */
+    public void write(AuditRecord auditRecord) throws CatalogDBException {
+        if (buffer == null) {
+            auditDBAdaptor.insertAuditRecord(auditRecord);
+            written.incrementAndGet();
+        } else {
+            enqueue(auditRecord);
+        }
+    }
+
+    /**
+     * Write a list of audit records.
+     *
+     * @param auditRecords Audit records
+     * @throws CatalogDBException if the durability is SYNC and the records could not be written
+     */
+    public void write(List<AuditRecord> auditRecords) throws CatalogDBException {
+        if (auditRecords.isEmpty()) {
+            return;
+        }
+        if (buffer == null) {
+            auditDBAdaptor.insertAuditRecords(auditRecords);
+            written.addAndGet(auditRecords.size());
+        } else {
+            for (AuditRecord auditRecord : auditRecords) {
+                enqueue(auditRecord);
+            }
+        }
+    }
+
+    private void enqueue(AuditRecord auditRecord) throws CatalogDBException {
+        if (closed) {
+            // Late records, after closing. Write synchronously
+            auditDBAdaptor.insertAuditRecord(auditRecord);
+            written.incrementAndGet();
+            return;
+        }
+        if (buffer.offer(auditRecord)) {
+            startThread();
+        } else {
+            if (durability == Audit.Durability.BEST_EFFORT) {
+                long count = discarded.incrementAndGet();
+                if (count == 1 || count % 10000 == 0) {
+                    logger.warn("Audit buffer full. Discarded {} audit records so far", count);
+                }
+                return;
+            }
+            blocked.incrementAndGet();
+            startThread();
+            long start = System.nanoTime();
+            try {
+                buffer.put(auditRecord);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CatalogDBException("Interrupted while waiting to audit " + auditRecord.getId(), e);
+            } finally {
+                blockedTimeNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+        enqueued.incrementAndGet();
+        int size = buffer.size();
+        if (size > maxBufferSize) {
+            maxBufferSize = size;
+        }
+    }
+
+    /**
+     * Start the background thread, if not running.
+     * Must be called after adding records to the buffer. Together with {@link #stopThreadIfIdle}, either the running thread
+     * sees the new records, or this method sees no thread and starts a new one.
+     */
+    private void startThread() {
+        if (thread == null) {
+            synchronized (this) {
+                if (thread == null && !closed) {
+                    thread = new Thread(this::run, "audit-writer");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the background thread if there are no more records to write.
+     *
+     * The thread is unregistered before checking the buffer. A producer that added a record after the check
+     * will see no thread running and start a new one. A producer that added a record before the check
+     * may have seen this thread still registered, so in that case this thread keeps running.
+     *
+     * @return true if the thread has to stop
+     */
+    private synchronized boolean stopThreadIfIdle() {
+        thread = null;
+        if (buffer.isEmpty()) {
+            return true;
+        } else {
+            thread = Thread.currentThread();
+            return false;
+        }
+    }
+
+    private void run() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        long idleSince = System.currentTimeMillis();
+        while (!closed || !buffer.isEmpty()) {
+            try {
+                AuditRecord first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (System.currentTimeMillis() - idleSince > idleTimeoutMillis && stopThreadIfIdle()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                if (batch.size() < batchSize && !closed) {
+                    // Group commit. Give some time to other requests to fill the batch
+                    long deadline = System.currentTimeMillis() + flushIntervalMillis;
+                    while (batch.size() < batchSize && !closed) {
+                        long wait = deadline - System.currentTimeMillis();
+                        AuditRecord next = wait > 0 ? buffer.poll(wait, TimeUnit.MILLISECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        buffer.drainTo(batch, batchSize - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Interrupted on close. Flush the current batch and exit. Pending records are written by the closing thread
+                flush(batch);
+                return;
+            }
+            flush(batch);
+            idleSince = System.currentTimeMillis();
+        }
+    }
+
+    private void flush(List<AuditRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            auditDBAdaptor.insertAuditRecords(batch);
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (CatalogDBException | RuntimeException e) {
+            failed.addAndGet(batch.size());
+            logger.error("Could not write {} audit records -> Error: {}", batch.size(), e.getMessage(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Backpressure metrics of the writer.
+     *
+     * @return ObjectMap with the metrics
+     */
+    public ObjectMap getStats() {
+        return new ObjectMap()
+                .append("durability", durability)
+                .append("bufferSize", buffer == null ? 0 : buffer.size())
+                .append("maxBufferSize", maxBufferSize)
+                .append("bufferCapacity", buffer == null ? 0 : buffer.size() + buffer.remainingCapacity())
+                .append("enqueued", enqueued.get())
+                .append("written", written.get())
+                .append("batches", batches.get())
+                .append("failed", failed.get())
+                .append("discarded", discarded.get())
+                .append("blocked", blocked.get())
+                .append("blockedTimeMillis", TimeUnit.NANOSECONDS.toMillis(blockedTimeNanos.get()));
+    }
+
+    boolean isThreadRunning() {
+        Thread thread = this.thread;
+        return thread != null && thread.isAlive();
+    }
+
+    /**
+     * Write all the pending records and stop the background thread.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (buffer == null || closed) {
+                return;
+            }
+            closed = true;
+            thread = this.thread;
+        }
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                thread.interrupt();
+            }
+        }
+        List<AuditRecord> pending = new ArrayList<>();
+        buffer.drainTo(pending);
+        if (!pending.isEmpty()) {
+            logger.warn("Writing {} pending audit records", pending.size());
+            flush(pending);
+        }
+        logger.info("Audit writer closed: {}", getStats().toJson());
+    }
+}
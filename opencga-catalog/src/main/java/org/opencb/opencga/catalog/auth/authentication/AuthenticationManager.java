@@ -16,6 +16,7 @@
 
 package org.opencb.opencga.catalog.auth.authentication;
 
+import com.google.common.cache.CacheStats;
 import org.apache.commons.lang3.StringUtils;
 import org.opencb.opencga.catalog.exceptions.CatalogAuthenticationException;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
@@ -84,6 +85,19 @@ public abstract class AuthenticationManager {
         return jwtManager.getUser(token);
     }
 
+    /**
+     * Forget the already verified tokens of a user, so they are verified again the next time they are used.
+     *
+     * @param userId user whose tokens have to be verified again.
+     */
+    public void invalidateTokens(String userId) {
+        jwtManager.invalidateTokens(claims -> userId.equals(claims.getSubject()));
+    }
+
+    public CacheStats getTokenCacheStats() {
+        return jwtManager.getTokenCacheStats();
+    }
+
     public abstract List<User> getUsersFromRemoteGroup(String group) throws CatalogException;
 
     public abstract List<User> getRemoteUserInformation(List<String> userStringList) throws CatalogException;
@@ -391,6 +391,11 @@ public class AzureADAuthenticationManager extends AuthenticationManager {
         return (String) jwtManager.getClaim(token, "oid", getPublicKey(token));
     }
 
+    @Override
+    public void invalidateTokens(String userId) {
+        jwtManager.invalidateTokens(claims -> userId.equals(claims.get("oid")));
+    }
+
     @Override
     public void changePassword(String userId, String oldPassword, String newPassword) throws CatalogException {
         throw new UnsupportedOperationException();
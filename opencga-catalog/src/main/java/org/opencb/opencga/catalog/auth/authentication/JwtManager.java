@@ -16,25 +16,38 @@
 
 package org.opencb.opencga.catalog.auth.authentication;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import io.jsonwebtoken.*;
 import org.opencb.opencga.catalog.exceptions.CatalogAuthenticationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 public class JwtManager {
 
+    public static final long TOKEN_CACHE_MAX_SIZE = 10000;
+    // Upper bound of the time a token is trusted without verifying its signature again. Tokens are never
+    // trusted after their own expiration date.
+    public static final long TOKEN_CACHE_EXPIRE_SECONDS = 300;
+
     private SignatureAlgorithm algorithm;
 
     private Key privateKey;
     private Key publicKey;
 
+    // Already verified tokens, indexed by the hash of the token
+    private final Cache<HashCode, VerifiedToken> verifiedTokens;
+
     private Logger logger;
 
     JwtManager(String algorithm) {
@@ -49,6 +62,11 @@ public class JwtManager {
         this.algorithm = SignatureAlgorithm.forName(algorithm);
         this.privateKey = privateKey;
         this.publicKey = publicKey;
+        this.verifiedTokens = CacheBuilder.newBuilder()
+                .maximumSize(TOKEN_CACHE_MAX_SIZE)
+                .expireAfterWrite(TOKEN_CACHE_EXPIRE_SECONDS, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
 
         logger = LoggerFactory.getLogger(JwtManager.class);
     }
@@ -77,6 +95,7 @@ public class JwtManager {
 
     public JwtManager setPublicKey(Key publicKey) {
         this.publicKey = publicKey;
+        verifiedTokens.invalidateAll();
         return this;
     }
 
@@ -162,7 +181,41 @@ public class JwtManager {
         return parseClaims(token, publicKey).getBody().get(claimId);
     }
 
+    /**
+     * Remove from the cache of verified tokens all the tokens matching the given condition, e.g. the tokens of a user
+     * that has been deleted. These tokens will be verified again the next time they are used.
+     *
+     * @param filter Condition over the claims of the token
+     */
+    public void invalidateTokens(Predicate<Claims> filter) {
+        verifiedTokens.asMap().values().removeIf(verifiedToken -> filter.test(verifiedToken.claims.getBody()));
+    }
+
+    public void invalidateTokens() {
+        verifiedTokens.invalidateAll();
+    }
+
+    public CacheStats getTokenCacheStats() {
+        return verifiedTokens.stats();
+    }
+
     private Jws<Claims> parseClaims(String token, Key publicKey) throws CatalogAuthenticationException {
+        HashCode tokenHash = Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+        VerifiedToken verifiedToken = verifiedTokens.getIfPresent(tokenHash);
+        if (verifiedToken != null) {
+            if (verifiedToken.isExpired()) {
+                // Parse it again to raise the proper exception
+                verifiedTokens.invalidate(tokenHash);
+            } else if (Objects.equals(verifiedToken.key, publicKey)) {
+                return verifiedToken.claims;
+            }
+        }
+        Jws<Claims> claims = parseClaimsNoCache(token, publicKey);
+        verifiedTokens.put(tokenHash, new VerifiedToken(claims, publicKey));
+        return claims;
+    }
+
+    private Jws<Claims> parseClaimsNoCache(String token, Key publicKey) throws CatalogAuthenticationException {
         try {
             return Jwts.parser().setSigningKey(publicKey).parseClaimsJws(token);
         } catch (ExpiredJwtException e) {
@@ -197,4 +250,21 @@ public class JwtManager {
         return true;
     }
 
+    private static final class VerifiedToken {
+        private final Jws<Claims> claims;
+        private final Key key;
+        // Expiration date in millis, or Long.MAX_VALUE if the token does not expire
+        private final long expiration;
+
+        private VerifiedToken(Jws<Claims> claims, Key key) {
+            this.claims = claims;
+            this.key = key;
+            Date expiration = claims.getBody().getExpiration();
+            this.expiration = expiration == null ? Long.MAX_VALUE : expiration.getTime();
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() >= expiration;
+        }
+    }
 }
@@ -450,6 +450,19 @@ public interface AuthorizationManager {
 
     void removePermissionRule(long studyId, String permissionRuleId, Enums.Entity entry) throws CatalogException;
 
+    /**
+     * Discard any cached group membership or permission of the study.
+     * Must be called after modifying the groups of a study without using this manager.
+     *
+     * @param studyId study id.
+     */
+    void invalidatePermissionCache(long studyId);
+
+    /**
+     * Discard any cached group membership or permission of all the studies.
+     */
+    void invalidatePermissionCache();
+
     class CatalogAclParams {
         private List<Long> ids;
         private List<String> permissions;
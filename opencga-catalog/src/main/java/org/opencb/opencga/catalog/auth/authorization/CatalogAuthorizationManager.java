@@ -76,6 +76,8 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
     private final AuthorizationDBAdaptor aclDBAdaptor;
 
+    private final StudyPermissionCache permissionCache;
+
     public CatalogAuthorizationManager(DBAdaptorFactory dbFactory, Configuration configuration)
             throws CatalogDBException {
         this.logger = LoggerFactory.getLogger(CatalogAuthorizationManager.class);
@@ -94,6 +96,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         panelDBAdaptor = dbFactory.getCatalogPanelDBAdaptor();
         familyDBAdaptor = dbFactory.getCatalogFamilyDBAdaptor();
         clinicalAnalysisDBAdaptor = dbFactory.getClinicalAnalysisDBAdaptor();
+        permissionCache = new StudyPermissionCache();
     }
 
     @Override
@@ -141,7 +144,8 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         if (OPENCGA.equals(userId)) {
             return;
         } else {
-            if (studyDBAdaptor.hasStudyPermission(studyId, userId, permission)) {
+            if (permissionCache.hasStudyPermission(studyId, userId, permission.name(),
+                    () -> studyDBAdaptor.hasStudyPermission(studyId, userId, permission))) {
                 return;
             }
         }
@@ -150,7 +154,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
     @Override
     public void checkCanEditStudy(long studyId, String userId) throws CatalogException {
-        String ownerId = studyDBAdaptor.getOwnerId(studyId);
+        String ownerId = getStudyOwner(studyId);
 
         if (!ownerId.equals(userId) && !isAdministrativeUser(studyId, userId)) {
             throw new CatalogAuthorizationException("Only owners or administrative users are allowed to modify a study");
@@ -163,7 +167,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
             return;
         }
 
-        String ownerId = studyDBAdaptor.getOwnerId(studyId);
+        String ownerId = getStudyOwner(studyId);
 
         if (ownerId.equals(userId)) {
             return;
@@ -177,7 +181,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
     @Override
     public void checkCanUpdatePermissionRules(long studyId, String userId) throws CatalogException {
-        String ownerId = studyDBAdaptor.getOwnerId(studyId);
+        String ownerId = getStudyOwner(studyId);
 
         if (!ownerId.equals(userId) && !isAdministrativeUser(studyId, userId)) {
             throw new CatalogAuthorizationException("Only owners or administrative users are allowed to modify a update permission rules");
@@ -190,7 +194,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
             throw new CatalogAuthorizationException(group + " is a protected group that cannot be created or deleted.");
         }
 
-        String ownerId = studyDBAdaptor.getOwnerId(studyId);
+        String ownerId = getStudyOwner(studyId);
         if (!userId.equals(OPENCGA) && !userId.equals(ownerId) && !isAdministrativeUser(studyId, userId)) {
             throw new CatalogAuthorizationException("Only administrative users are allowed to create/remove groups.");
         }
@@ -204,7 +208,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
     @Override
     public void checkUpdateGroupPermissions(long studyId, String userId, String group, ParamUtils.UpdateAction action)
             throws CatalogException {
-        String ownerId = studyDBAdaptor.getOwnerId(studyId);
+        String ownerId = getStudyOwner(studyId);
 
         if (userId.equals(ownerId)) {
             // Granted permission but check it is a valid action
@@ -239,7 +243,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
     @Override
     public void checkCanAssignOrSeePermissions(long studyId, String userId) throws CatalogException {
-        String ownerId = studyDBAdaptor.getOwnerId(studyId);
+        String ownerId = getStudyOwner(studyId);
 
         if (!OPENCGA.equals(userId) && !ownerId.equals(userId) && !isAdministrativeUser(studyId, userId)) {
             throw new CatalogAuthorizationException("Only owners or administrative users are allowed to assign or see all permissions");
@@ -248,7 +252,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
     @Override
     public void checkCanCreateUpdateDeleteVariableSets(long studyId, String userId) throws CatalogException {
-        String ownerId = studyDBAdaptor.getOwnerId(studyId);
+        String ownerId = getStudyOwner(studyId);
 
         if (!ownerId.equals(userId) && !isAdministrativeUser(studyId, userId)) {
             throw new CatalogAuthorizationException("Only owners or administrative users are allowed to create/update/delete variable "
@@ -270,7 +274,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
     @Override
     public Boolean isOwnerOrAdmin(long studyId, String userId) throws CatalogException {
-        String ownerId = studyDBAdaptor.getOwnerId(studyId);
+        String ownerId = getStudyOwner(studyId);
 
         if (!ownerId.equals(userId) && !isAdministrativeUser(studyId, userId)) {
             return false;
@@ -470,6 +474,17 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
     @Override
     public void resetPermissionsFromAllEntities(long studyId, List<String> members) throws CatalogException {
         aclDBAdaptor.resetMembersFromAllEntries(studyId, members);
+        permissionCache.invalidate(studyId);
+    }
+
+    @Override
+    public void invalidatePermissionCache(long studyId) {
+        permissionCache.invalidate(studyId);
+    }
+
+    @Override
+    public void invalidatePermissionCache() {
+        permissionCache.invalidateAll();
     }
 
     @Override
@@ -690,6 +705,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
     public OpenCGAResult<Map<String, List<String>>> setStudyAcls(List<Long> studyIds, List<String> members, List<String> permissions)
             throws CatalogException {
         aclDBAdaptor.setToMembers(studyIds, members, getImplicitPermissions(permissions, Enums.Resource.STUDY));
+        studyIds.forEach(permissionCache::invalidate);
         return aclDBAdaptor.get(studyIds, members, Enums.Resource.STUDY);
     }
 
@@ -697,6 +713,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
     public OpenCGAResult<Map<String, List<String>>> addStudyAcls(List<Long> studyIds, List<String> members, List<String> permissions)
             throws CatalogException {
         aclDBAdaptor.addToMembers(studyIds, members, getImplicitPermissions(permissions, Enums.Resource.STUDY));
+        studyIds.forEach(permissionCache::invalidate);
         return aclDBAdaptor.get(studyIds, members, Enums.Resource.STUDY);
     }
 
@@ -717,6 +734,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         long startTime = System.currentTimeMillis();
         setImplicitPermissions(aclParams);
         aclDBAdaptor.setToMembers(studyUid, members, aclParams);
+        permissionCache.invalidate(studyUid);
         return getAclResult(aclParams.get(0).getIds(), members, aclParams.get(0).getResource(), startTime);
     }
 
@@ -726,6 +744,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         long startTime = System.currentTimeMillis();
         setImplicitPermissions(aclParams);
         aclDBAdaptor.addToMembers(studyId, members, aclParams);
+        permissionCache.invalidate(studyId);
         return getAclResult(aclParams.get(0).getIds(), members, aclParams.get(0).getResource(), startTime);
     }
 
@@ -735,6 +754,8 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         long startTime = System.currentTimeMillis();
         setDependentPermissions(aclParams);
         aclDBAdaptor.removeFromMembers(members, aclParams);
+        // The study is unknown at this point
+        permissionCache.invalidateAll();
         return getAclResult(aclParams.get(0).getIds(), members, aclParams.get(0).getResource(), startTime);
     }
 
@@ -1096,6 +1117,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
         long startTime = System.currentTimeMillis();
         aclDBAdaptor.setAcls(ids, aclEntries, resource);
+        permissionCache.invalidate(studyId);
         int dbTime = (int) (System.currentTimeMillis() - startTime);
 
         OpenCGAResult result = getAcls(ids, null, resource);
@@ -1117,6 +1139,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
 
         // 2. We can apply the permission rules
         aclDBAdaptor.applyPermissionRules(studyId, permissionRule, entry);
+        permissionCache.invalidate(studyId);
     }
 
     @Override
@@ -1126,6 +1149,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         ParamUtils.checkObj(entry, "Entity");
 
         aclDBAdaptor.removePermissionRuleAndRemovePermissions(study, permissionRuleId, entry);
+        permissionCache.invalidate(study.getUid());
     }
 
     @Override
@@ -1135,6 +1159,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         ParamUtils.checkObj(entry, "Entity");
 
         aclDBAdaptor.removePermissionRuleAndRestorePermissions(study, permissionRuleId, entry);
+        permissionCache.invalidate(study.getUid());
     }
 
     @Override
@@ -1143,6 +1168,7 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
         ParamUtils.checkObj(entry, "Entity");
 
         aclDBAdaptor.removePermissionRule(studyId, permissionRuleId, entry);
+        permissionCache.invalidate(studyId);
     }
 
     /*
@@ -1163,7 +1189,16 @@ public class CatalogAuthorizationManager implements AuthorizationManager {
     }
 
     OpenCGAResult<Group> getGroupBelonging(long studyId, String members) throws CatalogException {
-        return getGroupBelonging(studyId, Arrays.asList(members.split(",")));
+        if (members.contains(",")) {
+            return getGroupBelonging(studyId, Arrays.asList(members.split(",")));
+        }
+        List<Group> groups = permissionCache.getGroups(studyId, members,
+                () -> getGroupBelonging(studyId, Collections.singletonList(members)).getResults());
+        return new OpenCGAResult<>(0, Collections.emptyList(), groups.size(), groups, groups.size());
+    }
+
+    private String getStudyOwner(long studyId) throws CatalogException {
+        return permissionCache.getOwnerId(studyId, () -> studyDBAdaptor.getOwnerId(studyId));
     }
 
     public static void checkPermissions(List<String> permissions, Function<String, Enum> getValue) throws CatalogException {
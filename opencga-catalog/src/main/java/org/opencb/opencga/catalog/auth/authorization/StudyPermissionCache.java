@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.auth.authorization;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.opencb.opencga.catalog.exceptions.CatalogException;
+import org.opencb.opencga.core.models.study.Group;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the study level authorization data: the owner of each study, and for each pair (study, user)
+ * the groups the user belongs to and the resolved study permissions.
+ *
+ * Entries expire after a short time, so changes made by other processes (e.g. the master daemon) are eventually seen.
+ * Any change made by this process over the groups or the permissions of a study must call {@link #invalidate(long)}.
+ */
+public class StudyPermissionCache {
+
+    public static final long DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_EXPIRE_SECONDS = 60;
+
+    private final Cache<Long, String> owners;
+    private final Cache<StudyUser, UserEntry> users;
+    // Incremented on every invalidation. Values loaded while invalidating are not cached.
+    private final AtomicLong generation = new AtomicLong();
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws CatalogException;
+    }
+
+    public StudyPermissionCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_EXPIRE_SECONDS);
+    }
+
+    public StudyPermissionCache(long maxSize, long expireSeconds) {
+        owners = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+        users = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public String getOwnerId(long studyId, Loader<String> loader) throws CatalogException {
+        String ownerId = owners.getIfPresent(studyId);
+        if (ownerId == null) {
+            long currentGeneration = generation.get();
+            ownerId = loader.load();
+            if (ownerId != null && currentGeneration == generation.get()) {
+                owners.put(studyId, ownerId);
+            }
+        }
+        return ownerId;
+    }
+
+    public List<Group> getGroups(long studyId, String userId, Loader<List<Group>> loader) throws CatalogException {
+        UserEntry entry = getUserEntry(studyId, userId);
+        List<Group> groups = entry.groups;
+        if (groups == null) {
+            long currentGeneration = generation.get();
+            groups = loader.load();
+            if (currentGeneration == generation.get()) {
+                entry.groups = groups;
+            }
+        }
+        return groups;
+    }
+
+    public boolean hasStudyPermission(long studyId, String userId, String permission, Loader<Boolean> loader)
+            throws CatalogException {
+        UserEntry entry = getUserEntry(studyId, userId);
+        Boolean hasPermission = entry.permissions.get(permission);
+        if (hasPermission == null) {
+            long currentGeneration = generation.get();
+            hasPermission = loader.load();
+            if (currentGeneration == generation.get()) {
+                entry.permissions.put(permission, hasPermission);
+            }
+        }
+        return hasPermission;
+    }
+
+    public void invalidate(long studyId) {
+        generation.incrementAndGet();
+        owners.invalidate(studyId);
+        users.asMap().keySet().removeIf(key -> key.studyId == studyId);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        owners.invalidateAll();
+        users.invalidateAll();
+    }
+
+    public long size() {
+        return owners.size() + users.size();
+    }
+
+    private UserEntry getUserEntry(long studyId, String userId) {
+        return users.asMap().computeIfAbsent(new StudyUser(studyId, userId), key -> new UserEntry());
+    }
+
+    private static final class StudyUser {
+        private final long studyId;
+        private final String userId;
+
+        private StudyUser(long studyId, String userId) {
+            this.studyId = studyId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            StudyUser that = (StudyUser) o;
+            return studyId == that.studyId && Objects.equals(userId, that.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(studyId, userId);
+        }
+    }
+
+    private static final class UserEntry {
+        private volatile List<Group> groups;
+        private final Map<String, Boolean> permissions = new ConcurrentHashMap<>();
+    }
+}
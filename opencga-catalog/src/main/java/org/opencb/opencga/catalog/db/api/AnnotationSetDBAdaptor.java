@@ -30,6 +30,7 @@ import org.opencb.opencga.core.response.OpenCGAResult;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by pfurio on 06/07/16.
@@ -55,6 +56,22 @@ public interface AnnotationSetDBAdaptor<T> extends DBAdaptor<T> {
     OpenCGAResult update(Query query, ObjectMap parameters, List<VariableSet> variableSetList, QueryOptions queryOptions)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException;
 
+    /**
+     * Add one new annotation set to each of the entries with a single bulk update. The annotation sets must be already validated.
+     * Entries that already contain an annotation set with the same id, or an annotation set of the same unique variable set, will not
+     * be annotated.
+     *
+     * @param studyUid study uid of the entries.
+     * @param annotationSetMap map of entry uid - annotation set to be added.
+     * @param variableSetList list of variable sets of the study.
+     * @return a OpenCGAResult object containing one ERROR event, with the uid of the entry as id, per entry that could not be annotated.
+     * @throws CatalogDBException when there is an error in the database.
+     * @throws CatalogParameterException if there is any formatting error.
+     * @throws CatalogAuthorizationException if the user is not authorised to perform the query.
+     */
+    OpenCGAResult addAnnotationSets(long studyUid, Map<Long, AnnotationSet> annotationSetMap, List<VariableSet> variableSetList)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException;
+
     /**
      * Add the variable to all the possible annotations from the variableSetId using the default value.
      *
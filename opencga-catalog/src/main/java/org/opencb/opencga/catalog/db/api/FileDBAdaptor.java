@@ -229,6 +229,22 @@ public interface FileDBAdaptor extends AnnotationSetDBAdaptor<File> {
                          List<VariableSet> variableSetList, QueryOptions options)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException;
 
+    /***
+     * Inserts the passed list of files in the database within one single transaction.
+     * The files can not be associated to any sample. If any of the files can not be inserted, none of them will be inserted.
+     *
+     * @param studyId Id of the study where the files belong to.
+     * @param fileList List of files to be inserted in the database.
+     * @param variableSetList Variable set list.
+     * @param options Options to filter the output that will be returned after the insertion of the files.
+     * @return A OpenCGAResult object containing the time spent.
+     * @throws CatalogDBException when the files could not be inserted due to different reasons.
+     * @throws CatalogParameterException if there is any formatting error.
+     * @throws CatalogAuthorizationException if the user is not authorised to perform the query.
+     */
+    OpenCGAResult insert(long studyId, List<File> fileList, List<VariableSet> variableSetList, QueryOptions options)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException;
+
     /***
      * Retrieves the file from the database containing the fileId given.
      *
@@ -38,6 +38,11 @@ import static org.opencb.commons.datastore.core.QueryParam.Type.*;
  */
 public interface JobDBAdaptor extends DBAdaptor<Job> {
 
+    /**
+     * Do not fetch the jobs listed in "dependsOn". Only their uid and studyUid are returned.
+     */
+    String SKIP_DEPENDS_ON_LOOKUP = "skipDependsOnLookup";
+
     default boolean exists(long jobId) throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
         return count(new Query(QueryParams.UID.key(), jobId)).getNumMatches() > 0;
     }
@@ -384,6 +384,108 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
         return endWrite(startTime, 1, 1, new ArrayList<>());
     }
 
+    /**
+     * Add one new annotation set to each of the entries with a single bulk update.
+     *
+     * @param annotationSetMap Map of entry uid - annotation set to be added.
+     * @param variableSetList  List of variable sets of the study.
+     * @param lockedEntries    Map of entry uid - error message of the entries that can not be modified.
+     * @param isVersioned      Whether the entries are versioned, so only the last version is annotated.
+     * @return a OpenCGAResult object containing one ERROR event per entry that could not be annotated.
+     * @throws CatalogDBException when there is an error in the database.
+     */
+    OpenCGAResult addAnnotationSets(Map<Long, AnnotationSet> annotationSetMap, List<VariableSet> variableSetList,
+                                    Map<Long, String> lockedEntries, boolean isVersioned) throws CatalogDBException {
+        long startTime = startQuery();
+
+        Map<String, VariableSet> variableSetMap = new HashMap<>();
+        for (VariableSet variableSet : variableSetList) {
+            variableSetMap.put(variableSet.getId(), variableSet);
+        }
+
+        List<Event> events = new ArrayList<>();
+        Map<Long, AnnotationSet> annotationSetsToAdd = new HashMap<>();
+        List<Bson> queries = new ArrayList<>(annotationSetMap.size());
+        List<Bson> updates = new ArrayList<>(annotationSetMap.size());
+        for (Map.Entry<Long, AnnotationSet> entry : annotationSetMap.entrySet()) {
+            if (lockedEntries.containsKey(entry.getKey())) {
+                events.add(new Event(Event.Type.ERROR, String.valueOf(entry.getKey()), lockedEntries.get(entry.getKey())));
+                continue;
+            }
+            AnnotationSet annotationSet = entry.getValue();
+            VariableSet variableSet = variableSetMap.get(annotationSet.getVariableSetId());
+            if (variableSet == null) {
+                throw new CatalogDBException("VariableSet " + annotationSet.getVariableSetId() + " not found in variable set list");
+            }
+
+            // The query will not match if the entry already contains an annotation set with the same id or from the same unique
+            // variable set, so the validation done by the managers can not be broken by concurrent updates
+            Document query = new Document(PRIVATE_UID, entry.getKey())
+                    .append(AnnotationSetParams.ANNOTATION_SETS_ANNOTATION_SET_NAME.key(), new Document("$ne", annotationSet.getId()));
+            if (variableSet.isUnique()) {
+                query.append(AnnotationSetParams.ANNOTATION_SETS_VARIABLE_SET_ID.key(), new Document("$ne", variableSet.getUid()));
+            }
+            if (isVersioned) {
+                query.append(LAST_OF_VERSION, true);
+            }
+
+            queries.add(query);
+            updates.add(Updates.combine(
+                    Updates.addEachToSet(AnnotationSetParams.ANNOTATION_SETS.key(),
+                            annotationConverter.annotationToDB(variableSet, annotationSet)),
+                    Updates.set(AnnotationSetParams.PRIVATE_VARIABLE_SET_MAP.key() + "." + variableSet.getUid(), variableSet.getId())
+            ));
+            annotationSetsToAdd.put(entry.getKey(), annotationSet);
+        }
+
+        long numUpdated = 0;
+        if (!queries.isEmpty()) {
+            // Every update only modifies its own entry, so all of them can be sent in one single bulk write
+            DataResult result = getCollection().update(queries, updates, new QueryOptions());
+            numUpdated = result.getNumUpdated();
+            if (result.getNumMatches() < queries.size()) {
+                events.addAll(getNotAnnotatedEntries(annotationSetsToAdd, isVersioned));
+            }
+        }
+
+        return endWrite(startTime, annotationSetMap.size(), numUpdated, events);
+    }
+
+    // Find out which of the entries do not contain the annotation set that should have been added
+    private List<Event> getNotAnnotatedEntries(Map<Long, AnnotationSet> annotationSetMap, boolean isVersioned) {
+        Document query = new Document(PRIVATE_UID, new Document("$in", new ArrayList<>(annotationSetMap.keySet())));
+        if (isVersioned) {
+            query.append(LAST_OF_VERSION, true);
+        }
+        Document projection = new Document(PRIVATE_UID, 1)
+                .append(AnnotationSetParams.ANNOTATION_SETS_ANNOTATION_SET_NAME.key(), 1);
+
+        Set<Long> annotatedEntries = new HashSet<>();
+        for (Document document : getCollection().find(query, projection, null).getResults()) {
+            long uid = document.getLong(PRIVATE_UID);
+            List<Document> annotationList = (List<Document>) document.get(AnnotationSetParams.ANNOTATION_SETS.key());
+            if (annotationList != null) {
+                String annotationSetId = annotationSetMap.get(uid).getId();
+                for (Document annotation : annotationList) {
+                    if (annotationSetId.equals(annotation.getString(AnnotationSetParams.ANNOTATION_SET_NAME.key()))) {
+                        annotatedEntries.add(uid);
+                        break;
+                    }
+                }
+            }
+        }
+
+        List<Event> events = new ArrayList<>();
+        for (Map.Entry<Long, AnnotationSet> entry : annotationSetMap.entrySet()) {
+            if (!annotatedEntries.contains(entry.getKey())) {
+                events.add(new Event(Event.Type.ERROR, String.valueOf(entry.getKey()), "Cannot add AnnotationSet "
+                        + entry.getValue().getId() + ". An AnnotationSet with the same id or from the same unique VariableSet was already "
+                        + "found."));
+            }
+        }
+        return events;
+    }
+
     private void removePrivateVariableMap(ClientSession clientSession, long entryId, Map<String, String> privateVariableMapToSet,
                                           boolean isVersioned) throws CatalogDBException {
         Document queryDocument = new Document(PRIVATE_UID, entryId);
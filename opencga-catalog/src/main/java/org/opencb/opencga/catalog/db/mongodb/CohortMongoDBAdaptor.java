@@ -282,6 +282,12 @@ public class CohortMongoDBAdaptor extends AnnotationMongoDBAdaptor<Cohort> imple
         return result;
     }
 
+    @Override
+    public OpenCGAResult addAnnotationSets(long studyUid, Map<Long, AnnotationSet> annotationSetMap, List<VariableSet> variableSetList)
+            throws CatalogDBException {
+        return addAnnotationSets(annotationSetMap, variableSetList, Collections.emptyMap(), false);
+    }
+
     private OpenCGAResult<Object> privateUpdate(ClientSession clientSession, Cohort cohort, ObjectMap parameters,
                                                 List<VariableSet> variableSetList, QueryOptions queryOptions)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
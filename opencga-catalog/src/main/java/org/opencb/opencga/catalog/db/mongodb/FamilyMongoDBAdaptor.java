@@ -333,6 +333,13 @@ public class FamilyMongoDBAdaptor extends AnnotationMongoDBAdaptor<Family> imple
         return result;
     }
 
+    @Override
+    public OpenCGAResult addAnnotationSets(long studyUid, Map<Long, AnnotationSet> annotationSetMap, List<VariableSet> variableSetList)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
+        Map<Long, String> lockedFamilies = getInUseInLockedClinicalAnalysis(studyUid, annotationSetMap.keySet());
+        return addAnnotationSets(annotationSetMap, variableSetList, lockedFamilies, true);
+    }
+
     OpenCGAResult<Object> privateUpdate(ClientSession clientSession, Family family, ObjectMap parameters, List<VariableSet> variableSetList,
                                         QueryOptions queryOptions)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
@@ -464,6 +471,57 @@ public class FamilyMongoDBAdaptor extends AnnotationMongoDBAdaptor<Family> imple
 
     }
 
+    /**
+     * Obtains the families from the list that are in use in any locked Clinical Analysis.
+     *
+     * @param studyUid Study uid.
+     * @param familyUids Family uids.
+     * @return a map of family uid - error message for every family in use in any locked Clinical Analysis.
+     * @throws CatalogDBException CatalogDBException if there is any error in the database.
+     */
+    private Map<Long, String> getInUseInLockedClinicalAnalysis(long studyUid, Collection<Long> familyUids)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
+        // We only need to focus on locked clinical analyses
+        Query query = new Query()
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.FAMILY_UID.key(), new ArrayList<>(familyUids))
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.LOCKED.key(), true);
+
+        OpenCGAResult<ClinicalAnalysis> result = dbAdaptorFactory.getClinicalAnalysisDBAdaptor().get(query,
+                ClinicalAnalysisManager.INCLUDE_CATALOG_DATA);
+
+        if (result.getNumResults() == 0) {
+            // No Clinical Analyses are using the families...
+            return Collections.emptyMap();
+        }
+
+        // We need to check if the current version of the families is being used in any of the clinical analyses
+        Query familyQuery = new Query()
+                .append(QueryParams.STUDY_UID.key(), studyUid)
+                .append(QueryParams.UID.key(), new ArrayList<>(familyUids));
+        OpenCGAResult<Family> familyResult = get(familyQuery, new QueryOptions(QueryOptions.INCLUDE,
+                Arrays.asList(QueryParams.ID.key(), QueryParams.UID.key(), QueryParams.VERSION.key())));
+        Map<Long, Family> familyMap = new HashMap<>();
+        for (Family family : familyResult.getResults()) {
+            familyMap.put(family.getUid(), family);
+        }
+
+        Map<Long, Set<String>> clinicalAnalysisIds = new HashMap<>();
+        for (ClinicalAnalysis clinicalAnalysis : result.getResults()) {
+            Family family = familyMap.get(clinicalAnalysis.getFamily().getUid());
+            if (family != null && family.getVersion() == clinicalAnalysis.getFamily().getVersion()) {
+                clinicalAnalysisIds.computeIfAbsent(family.getUid(), k -> new LinkedHashSet<>()).add(clinicalAnalysis.getId());
+            }
+        }
+
+        Map<Long, String> lockedFamilies = new HashMap<>();
+        for (Map.Entry<Long, Set<String>> entry : clinicalAnalysisIds.entrySet()) {
+            lockedFamilies.put(entry.getKey(), "Family '" + familyMap.get(entry.getKey()).getId() + "' is being used in the following "
+                    + "clinical analyses: '" + String.join("', '", entry.getValue()) + "'.");
+        }
+        return lockedFamilies;
+    }
+
     private void getLastVersionOfMembers(ClientSession clientSession, Query query, ObjectMap parameters)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
         if (parameters.containsKey(QueryParams.MEMBERS.key())) {
@@ -128,6 +128,26 @@ public class FileMongoDBAdaptor extends AnnotationMongoDBAdaptor<File> implement
                 (e) -> logger.error("Could not create file {}: {}", file.getId(), e.getMessage()));
     }
 
+    @Override
+    public OpenCGAResult insert(long studyId, List<File> fileList, List<VariableSet> variableSetList, QueryOptions options)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
+        if (fileList == null || fileList.isEmpty()) {
+            throw new CatalogDBException("Missing file list");
+        }
+        return runTransaction(
+                (clientSession) -> {
+                    long tmpStartTime = startQuery();
+                    logger.debug("Starting insert transaction of {} files", fileList.size());
+
+                    dbAdaptorFactory.getCatalogStudyDBAdaptor().checkId(clientSession, studyId);
+                    for (File file : fileList) {
+                        insert(clientSession, studyId, file, Collections.emptyList(), Collections.emptyList(), variableSetList);
+                    }
+                    return endWrite(tmpStartTime, fileList.size(), fileList.size(), 0, 0, null);
+                },
+                (e) -> logger.error("Could not insert {} files: {}", fileList.size(), e.getMessage()));
+    }
+
     long insert(ClientSession clientSession, long studyId, File file, List<Sample> existingSamples, List<Sample> nonExistingSamples,
                 List<VariableSet> variableSetList) throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
         if (filePathExists(clientSession, studyId, file.getPath())) {
@@ -315,6 +335,12 @@ public class FileMongoDBAdaptor extends AnnotationMongoDBAdaptor<File> implement
         return result;
     }
 
+    @Override
+    public OpenCGAResult addAnnotationSets(long studyUid, Map<Long, AnnotationSet> annotationSetMap, List<VariableSet> variableSetList)
+            throws CatalogDBException {
+        return addAnnotationSets(annotationSetMap, variableSetList, Collections.emptyMap(), false);
+    }
+
     OpenCGAResult<Object> privateUpdate(ClientSession clientSession, File file, ObjectMap parameters, List<VariableSet> variableSetList,
                                         QueryOptions queryOptions)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
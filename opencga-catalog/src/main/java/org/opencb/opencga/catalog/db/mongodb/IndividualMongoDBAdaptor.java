@@ -368,6 +368,13 @@ public class IndividualMongoDBAdaptor extends AnnotationMongoDBAdaptor<Individua
         return result;
     }
 
+    @Override
+    public OpenCGAResult addAnnotationSets(long studyUid, Map<Long, AnnotationSet> annotationSetMap, List<VariableSet> variableSetList)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
+        Map<Long, String> lockedIndividuals = getInUseInLockedClinicalAnalysis(studyUid, annotationSetMap.keySet());
+        return addAnnotationSets(annotationSetMap, variableSetList, lockedIndividuals, true);
+    }
+
     OpenCGAResult<Object> privateUpdate(ClientSession clientSession, Individual individual, ObjectMap parameters,
                                         List<VariableSet> variableSetList, QueryOptions queryOptions)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
@@ -659,6 +666,66 @@ public class IndividualMongoDBAdaptor extends AnnotationMongoDBAdaptor<Individua
         }
     }
 
+    /**
+     * Obtains the individuals from the list that are in use in any locked Clinical Analysis.
+     *
+     * @param studyUid Study uid.
+     * @param individualUids Individual uids.
+     * @return a map of individual uid - error message for every individual in use in any locked Clinical Analysis.
+     * @throws CatalogDBException CatalogDBException if there is any error in the database.
+     */
+    private Map<Long, String> getInUseInLockedClinicalAnalysis(long studyUid, Collection<Long> individualUids)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
+        // We only need to focus on locked clinical analyses
+        Query query = new Query()
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.MEMBER.key(), new ArrayList<>(individualUids))
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.LOCKED.key(), true);
+
+        OpenCGAResult<ClinicalAnalysis> result = dbAdaptorFactory.getClinicalAnalysisDBAdaptor().get(query,
+                ClinicalAnalysisManager.INCLUDE_CATALOG_DATA);
+
+        if (result.getNumResults() == 0) {
+            // No Clinical Analyses are using the members...
+            return Collections.emptyMap();
+        }
+
+        // We need to check if the current version of the members is being used in any of the clinical analyses
+        Query individualQuery = new Query()
+                .append(QueryParams.STUDY_UID.key(), studyUid)
+                .append(QueryParams.UID.key(), new ArrayList<>(individualUids));
+        OpenCGAResult<Individual> individualResult = get(individualQuery, new QueryOptions(QueryOptions.INCLUDE,
+                Arrays.asList(QueryParams.ID.key(), QueryParams.UID.key(), QueryParams.VERSION.key())));
+        Map<Long, Individual> individualMap = new HashMap<>();
+        for (Individual individual : individualResult.getResults()) {
+            individualMap.put(individual.getUid(), individual);
+        }
+
+        Map<Long, Set<String>> clinicalAnalysisIds = new HashMap<>();
+        for (ClinicalAnalysis clinicalAnalysis : result.getResults()) {
+            List<Individual> members = new ArrayList<>();
+            if (clinicalAnalysis.getProband() != null) {
+                members.add(clinicalAnalysis.getProband());
+            }
+            if (clinicalAnalysis.getFamily() != null && clinicalAnalysis.getFamily().getMembers() != null) {
+                members.addAll(clinicalAnalysis.getFamily().getMembers());
+            }
+            for (Individual member : members) {
+                Individual individual = individualMap.get(member.getUid());
+                if (individual != null && individual.getVersion() == member.getVersion()) {
+                    clinicalAnalysisIds.computeIfAbsent(member.getUid(), k -> new LinkedHashSet<>()).add(clinicalAnalysis.getId());
+                }
+            }
+        }
+
+        Map<Long, String> lockedIndividuals = new HashMap<>();
+        for (Map.Entry<Long, Set<String>> entry : clinicalAnalysisIds.entrySet()) {
+            lockedIndividuals.put(entry.getKey(), "Individual '" + individualMap.get(entry.getKey()).getId() + "' is being used in the "
+                    + "following clinical analyses: '" + String.join("', '", entry.getValue()) + "'.");
+        }
+        return lockedIndividuals;
+    }
+
     private void createNewVersion(ClientSession clientSession, long studyUid, long individualUid)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
         Query query = new Query()
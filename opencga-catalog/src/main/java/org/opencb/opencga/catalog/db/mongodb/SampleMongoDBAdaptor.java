@@ -298,6 +298,13 @@ public class SampleMongoDBAdaptor extends AnnotationMongoDBAdaptor<Sample> imple
         return result;
     }
 
+    @Override
+    public OpenCGAResult addAnnotationSets(long studyUid, Map<Long, AnnotationSet> annotationSetMap, List<VariableSet> variableSetList)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
+        Map<Long, String> lockedSamples = getInUseInLockedClinicalAnalysis(studyUid, annotationSetMap.keySet());
+        return addAnnotationSets(annotationSetMap, variableSetList, lockedSamples, true);
+    }
+
     OpenCGAResult<Object> privateUpdate(ClientSession clientSession, Document sampleDocument, ObjectMap parameters,
                                         List<VariableSet> variableSetList, QueryOptions queryOptions)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
@@ -488,6 +495,72 @@ public class SampleMongoDBAdaptor extends AnnotationMongoDBAdaptor<Sample> imple
 
     }
 
+    /**
+     * Obtains the samples from the list that are in use in any locked Clinical Analysis.
+     *
+     * @param studyUid Study uid.
+     * @param sampleUids Sample uids.
+     * @return a map of sample uid - error message for every sample in use in any locked Clinical Analysis.
+     * @throws CatalogDBException CatalogDBException if there is any error in the database.
+     */
+    private Map<Long, String> getInUseInLockedClinicalAnalysis(long studyUid, Collection<Long> sampleUids)
+            throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
+        // We only need to focus on locked clinical analyses
+        Query query = new Query()
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.STUDY_UID.key(), studyUid)
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.SAMPLE.key(), new ArrayList<>(sampleUids))
+                .append(ClinicalAnalysisDBAdaptor.QueryParams.LOCKED.key(), true);
+
+        OpenCGAResult<ClinicalAnalysis> result = dbAdaptorFactory.getClinicalAnalysisDBAdaptor().get(query,
+                ClinicalAnalysisManager.INCLUDE_CATALOG_DATA);
+
+        if (result.getNumResults() == 0) {
+            // No Clinical Analyses are using the samples...
+            return Collections.emptyMap();
+        }
+
+        // We need to check if the current version of the samples is being used in any of the clinical analyses
+        Map<Long, Integer> versionMap = new HashMap<>();
+        Query sampleQuery = new Query()
+                .append(QueryParams.STUDY_UID.key(), studyUid)
+                .append(QueryParams.UID.key(), new ArrayList<>(sampleUids));
+        OpenCGAResult<Document> sampleResult = nativeGet(sampleQuery, new QueryOptions(QueryOptions.INCLUDE,
+                Arrays.asList(QueryParams.ID.key(), QueryParams.UID.key(), QueryParams.VERSION.key())));
+        Map<Long, String> sampleIdMap = new HashMap<>();
+        for (Document sample : sampleResult.getResults()) {
+            versionMap.put(sample.getLong(QueryParams.UID.key()), sample.getInteger(QueryParams.VERSION.key()));
+            sampleIdMap.put(sample.getLong(QueryParams.UID.key()), sample.getString(QueryParams.ID.key()));
+        }
+
+        Map<Long, Set<String>> clinicalAnalysisIds = new HashMap<>();
+        for (ClinicalAnalysis clinicalAnalysis : result.getResults()) {
+            List<Sample> samples = new ArrayList<>();
+            if (clinicalAnalysis.getProband() != null && clinicalAnalysis.getProband().getSamples() != null) {
+                samples.addAll(clinicalAnalysis.getProband().getSamples());
+            }
+            if (clinicalAnalysis.getFamily() != null && clinicalAnalysis.getFamily().getMembers() != null) {
+                for (Individual member : clinicalAnalysis.getFamily().getMembers()) {
+                    if (member.getSamples() != null) {
+                        samples.addAll(member.getSamples());
+                    }
+                }
+            }
+            for (Sample auxSample : samples) {
+                Integer version = versionMap.get(auxSample.getUid());
+                if (version != null && version == auxSample.getVersion()) {
+                    clinicalAnalysisIds.computeIfAbsent(auxSample.getUid(), k -> new LinkedHashSet<>()).add(clinicalAnalysis.getId());
+                }
+            }
+        }
+
+        Map<Long, String> lockedSamples = new HashMap<>();
+        for (Map.Entry<Long, Set<String>> entry : clinicalAnalysisIds.entrySet()) {
+            lockedSamples.put(entry.getKey(), "Sample '" + sampleIdMap.get(entry.getKey()) + "' is being used in the following "
+                    + "clinical analyses: '" + String.join("', '", entry.getValue()) + "'.");
+        }
+        return lockedSamples;
+    }
+
     private void updateSampleFromIndividualCollection(ClientSession clientSession, Sample sample, long individualUid,
                                                       ParamUtils.UpdateAction updateAction)
             throws CatalogDBException, CatalogParameterException, CatalogAuthorizationException {
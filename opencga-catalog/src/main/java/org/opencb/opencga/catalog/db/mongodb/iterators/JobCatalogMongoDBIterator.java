@@ -84,7 +84,9 @@ public class JobCatalogMongoDBIterator extends BatchedCatalogMongoDBIterator<Job
                 getFile(fileUids, job, JobDBAdaptor.QueryParams.OUT_DIR);
                 getFile(fileUids, job, JobDBAdaptor.QueryParams.STDOUT);
                 getFile(fileUids, job, JobDBAdaptor.QueryParams.STDERR);
-                getStudyUidUidMap(studyUidJobUidMap, job, JobDBAdaptor.QueryParams.DEPENDS_ON);
+                if (!options.getBoolean(JobDBAdaptor.SKIP_DEPENDS_ON_LOOKUP)) {
+                    getStudyUidUidMap(studyUidJobUidMap, job, JobDBAdaptor.QueryParams.DEPENDS_ON);
+                }
             }
         }
 
@@ -21,6 +21,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.opencb.commons.exec.Command;
 import org.opencb.commons.utils.FileUtils;
 import org.opencb.opencga.catalog.exceptions.CatalogIOException;
+import org.opencb.opencga.catalog.utils.ChecksumUtils;
 import org.opencb.opencga.core.common.IOUtils;
 import org.opencb.opencga.core.models.file.FileContent;
 import org.slf4j.Logger;
@@ -467,26 +468,11 @@ public class PosixIOManager extends IOManager {
 
     @Override
     public String calculateChecksum(URI file) throws CatalogIOException {
-        String checksum;
         try {
-            String[] command = {"md5sum", file.getPath()};
-            logger.debug("command = {} {}", command[0], command[1]);
-            Process p = Runtime.getRuntime().exec(command);
-            BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            checksum = br.readLine();
-
-            if (p.waitFor() != 0) {
-                //TODO: Handle error in checksum
-                logger.info("checksum = " + checksum);
-                br = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-                throw new CatalogIOException("md5sum failed with exit value : " + p.exitValue() + ". ERROR: " + br.readLine());
-            }
-        } catch (IOException | InterruptedException e) {
-            //TODO: Handle error in checksum
+            return ChecksumUtils.checksum(Paths.get(file));
+        } catch (IOException e) {
             throw new CatalogIOException("Checksum error in file " + file, e);
         }
-
-        return checksum.split(" ")[0];
     }
 
     @Override
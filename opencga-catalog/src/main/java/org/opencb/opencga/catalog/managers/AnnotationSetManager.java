@@ -17,12 +17,15 @@
 package org.opencb.opencga.catalog.managers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.StringUtils;
+import org.opencb.commons.datastore.core.Event;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.utils.ListUtils;
 import org.opencb.opencga.catalog.audit.AuditManager;
+import org.opencb.opencga.catalog.audit.AuditRecord;
 import org.opencb.opencga.catalog.auth.authorization.AuthorizationManager;
 import org.opencb.opencga.catalog.db.DBAdaptorFactory;
 import org.opencb.opencga.catalog.db.api.AnnotationSetDBAdaptor;
@@ -33,6 +36,7 @@ import org.opencb.opencga.catalog.exceptions.CatalogParameterException;
 import org.opencb.opencga.catalog.utils.AnnotationUtils;
 import org.opencb.opencga.catalog.utils.Constants;
 import org.opencb.opencga.catalog.utils.ParamUtils;
+import org.opencb.opencga.catalog.utils.UuidUtils;
 import org.opencb.opencga.core.config.Configuration;
 import org.opencb.opencga.core.models.PrivateStudyUid;
 import org.opencb.opencga.core.models.common.Annotable;
@@ -49,6 +53,10 @@ import org.opencb.opencga.core.response.OpenCGAResult;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.opencb.opencga.core.common.JacksonUtils.getDefaultObjectMapper;
 
@@ -66,6 +74,11 @@ public abstract class AnnotationSetManager<R extends PrivateStudyUid> extends Re
     public static final String ANNOTATION_SETS_ID = "annotationSets.id";
     public static final String ANNOTATION_SETS_VARIABLE_SET_ID = "annotationSets.variableSetId";
 
+    // Entries resolved and annotated together when adding annotation sets to many entries
+    private static final int ANNOTATION_SETS_BATCH_SIZE = 1000;
+    // Threads used to validate the annotation sets when adding annotation sets to many entries
+    private static final int ANNOTATION_SETS_PARALLELISM = Math.min(8, Runtime.getRuntime().availableProcessors());
+
     public enum Action {
         CREATE,
         UPDATE,
@@ -73,6 +86,11 @@ public abstract class AnnotationSetManager<R extends PrivateStudyUid> extends Re
         DELETE_ANNOTATION_SET
     }
 
+    @FunctionalInterface
+    protected interface AnnotationPermissionChecker {
+        void checkPermission(long studyUid, long entryUid, String userId) throws CatalogException;
+    }
+
     AnnotationSetManager(AuthorizationManager authorizationManager, AuditManager auditManager, CatalogManager catalogManager,
                          DBAdaptorFactory catalogDBAdaptorFactory, Configuration configuration) {
         super(authorizationManager, auditManager, catalogManager, catalogDBAdaptorFactory, configuration);
@@ -171,6 +189,216 @@ public abstract class AnnotationSetManager<R extends PrivateStudyUid> extends Re
         return catalogManager.getJobManager().submit(study.getFqn(), toolId, Enums.Priority.MEDIUM, jobParams, token);
     }
 
+    /**
+     * Add one new annotation set to each of the entries.
+     *
+     * The entries are resolved in batches, the annotation sets of each batch are validated concurrently and added with a single bulk
+     * update. All the entries are audited within the same audit batch.
+     *
+     * @param studyStr          Study id in string format. Could be one of
+     *                          [id|user@aliasProject:aliasStudy|aliasProject:aliasStudy|aliasStudy].
+     * @param annotationSetMap  Map of entry id or uuid - annotation set to be added. The annotation sets are completed with the default
+     *                          values of the variable set, so the same instance must not be used for different entries.
+     * @param ignoreException   Boolean indicating whether to skip the entries that could not be annotated or fail.
+     * @param annotableEntity   Annotable data model of the entries.
+     * @param dbAdaptor         DB adaptor of the entries.
+     * @param includeIds        QueryOptions including the ids of the entries.
+     * @param permissionChecker Checks the user is allowed to write annotations in an entry.
+     * @param token             Session id of the user logged in.
+     * @return A OpenCGAResult with the number of entries annotated, and one ERROR event per entry that could not be annotated.
+     * @throws CatalogException if the variable sets can not be used, or any entry could not be annotated and ignoreException is false.
+     */
+    protected OpenCGAResult<R> addAnnotationSets(String studyStr, Map<String, AnnotationSet> annotationSetMap, boolean ignoreException,
+                                                 VariableSet.AnnotableDataModels annotableEntity, AnnotationSetDBAdaptor<R> dbAdaptor,
+                                                 QueryOptions includeIds, AnnotationPermissionChecker permissionChecker, String token)
+            throws CatalogException {
+        String userId = catalogManager.getUserManager().getUserId(token);
+        Study study = catalogManager.getStudyManager().resolveId(studyStr, userId, StudyManager.INCLUDE_VARIABLE_SET);
+
+        String operationId = UuidUtils.generateOpenCgaUuid(UuidUtils.Entity.AUDIT);
+
+        ParamUtils.checkObj(annotationSetMap, "annotationSetMap");
+        Set<String> annotationSetIds = new HashSet<>();
+        for (AnnotationSet annotationSet : annotationSetMap.values()) {
+            annotationSetIds.add(annotationSet.getId());
+        }
+        ObjectMap auditParams = new ObjectMap()
+                .append("study", studyStr)
+                .append("annotationSetIds", annotationSetIds)
+                .append("numEntries", annotationSetMap.size())
+                .append("ignoreException", ignoreException)
+                .append("token", token);
+
+        Map<String, VariableSet> variableSetMap = new HashMap<>();
+        try {
+            // Validate the variable sets only once
+            for (VariableSet variableSet : study.getVariableSets()) {
+                variableSetMap.put(variableSet.getId(), variableSet);
+            }
+            Set<String> variableSetIds = new HashSet<>();
+            for (AnnotationSet annotationSet : annotationSetMap.values()) {
+                ParamUtils.checkAlias(annotationSet.getId(), "annotationSetName");
+                variableSetIds.add(annotationSet.getVariableSetId());
+            }
+            boolean confidentialPermissionsChecked = false;
+            for (String variableSetId : variableSetIds) {
+                VariableSet variableSet = variableSetMap.get(variableSetId);
+                if (variableSet == null) {
+                    throw new CatalogException("VariableSetId " + variableSetId + " not found in variable set list");
+                }
+                if (ListUtils.isNotEmpty(variableSet.getEntities()) && !variableSet.getEntities().contains(annotableEntity)) {
+                    throw new CatalogException("Cannot annotate " + annotableEntity + " using VariableSet '" + variableSet.getId()
+                            + "'. VariableSet is intended only for '" + StringUtils.join(variableSet.getEntities(), ",") + "' entities.");
+                }
+                if (variableSet.isConfidential() && !confidentialPermissionsChecked) {
+                    authorizationManager.checkStudyPermission(study.getUid(), userId,
+                            StudyAclEntry.StudyPermissions.CONFIDENTIAL_VARIABLE_SET_ACCESS, "");
+                    confidentialPermissionsChecked = true;
+                }
+            }
+        } catch (CatalogException e) {
+            auditManager.auditUpdate(operationId, userId, getEntity(), "", "", study.getId(), study.getUuid(), auditParams,
+                    new AuditRecord.Status(AuditRecord.Status.Result.ERROR, e.getError()));
+            throw e;
+        }
+
+        auditManager.initAuditBatch(operationId);
+        OpenCGAResult<R> result = OpenCGAResult.empty();
+        ForkJoinPool pool = new ForkJoinPool(ANNOTATION_SETS_PARALLELISM);
+        try {
+            for (List<String> batch : Lists.partition(new ArrayList<>(annotationSetMap.keySet()), ANNOTATION_SETS_BATCH_SIZE)) {
+                addAnnotationSetsBatch(study, batch, annotationSetMap, variableSetMap, dbAdaptor, includeIds, permissionChecker, pool,
+                        result, operationId, auditParams, userId);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        auditManager.finishAuditBatch(operationId);
+
+        return endResult(result, ignoreException);
+    }
+
+    // Resolve, validate and add the annotation sets of one batch of entries
+    private void addAnnotationSetsBatch(Study study, List<String> batch, Map<String, AnnotationSet> annotationSetMap,
+                                        Map<String, VariableSet> variableSetMap, AnnotationSetDBAdaptor<R> dbAdaptor,
+                                        QueryOptions includeIds, AnnotationPermissionChecker permissionChecker, ForkJoinPool pool,
+                                        OpenCGAResult<R> result, String operationId, ObjectMap auditParams, String userId)
+            throws CatalogException {
+        long startTime = System.currentTimeMillis();
+
+        // 1. Resolve all the entries of the batch with one single query
+        InternalGetDataResult<R> entryResult = internalGet(study.getUid(), batch, keepFieldInQueryOptions(includeIds, ANNOTATION_SETS),
+                userId, true);
+        List<R> entries = new ArrayList<>(entryResult.getNumResults());
+        List<AnnotationSet> annotationSets = new ArrayList<>(entryResult.getNumResults());
+        int resultIdx = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (entryResult.getGroups().get(i) == 0) {
+                addAnnotationSetsError(study, batch.get(i), "", new CatalogException("Not found or user does not have permissions."),
+                        result, operationId, auditParams, userId);
+            } else {
+                entries.add(entryResult.getResults().get(resultIdx++));
+                annotationSets.add(annotationSetMap.get(batch.get(i)));
+            }
+        }
+        result.setNumMatches(result.getNumMatches() + entries.size());
+
+        // 2. Validate the annotation sets concurrently
+        List<CatalogException> errors;
+        try {
+            errors = pool.submit(() -> IntStream.range(0, entries.size())
+                    .parallel()
+                    .mapToObj(i -> validateNewAnnotationSet(study, entries.get(i), annotationSets.get(i), variableSetMap, permissionChecker,
+                            userId))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CatalogException("Interrupted while validating annotation sets", e);
+        } catch (ExecutionException e) {
+            throw new CatalogException("Error validating annotation sets: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        Map<Long, AnnotationSet> validAnnotationSets = new HashMap<>();
+        Map<Long, R> validEntries = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            R entry = entries.get(i);
+            if (errors.get(i) != null) {
+                addAnnotationSetsError(study, entry.getId(), entry.getUuid(), errors.get(i), result, operationId, auditParams,
+                        userId);
+            } else {
+                validAnnotationSets.put(entry.getUid(), annotationSets.get(i));
+                validEntries.put(entry.getUid(), entry);
+            }
+        }
+        if (validEntries.isEmpty()) {
+            return;
+        }
+
+        // 3. Add all the valid annotation sets with a single bulk update
+        Map<String, CatalogException> notAnnotated = new HashMap<>();
+        try {
+            OpenCGAResult writeResult = dbAdaptor.addAnnotationSets(study.getUid(), validAnnotationSets, study.getVariableSets());
+            for (Event event : writeResult.getEvents()) {
+                if (event.getType() == Event.Type.ERROR) {
+                    notAnnotated.put(event.getId(), new CatalogException(event.getMessage()));
+                }
+            }
+        } catch (CatalogException e) {
+            logger.error("Could not add annotation sets: {}", e.getMessage(), e);
+            for (R entry : validEntries.values()) {
+                notAnnotated.put(String.valueOf(entry.getUid()), e);
+            }
+        }
+
+        int numUpdated = 0;
+        for (R entry : validEntries.values()) {
+            CatalogException error = notAnnotated.get(String.valueOf(entry.getUid()));
+            if (error != null) {
+                addAnnotationSetsError(study, entry.getId(), entry.getUuid(), error, result, operationId, auditParams, userId);
+            } else {
+                numUpdated++;
+                auditManager.auditUpdate(operationId, userId, getEntity(), entry.getId(), entry.getUuid(), study.getId(),
+                        study.getUuid(), auditParams, new AuditRecord.Status(AuditRecord.Status.Result.SUCCESS));
+            }
+        }
+        result.setNumUpdated(result.getNumUpdated() + numUpdated);
+        result.setTime(result.getTime() + (int) (System.currentTimeMillis() - startTime));
+    }
+
+    // Validate the annotation set to be added to the entry. Might be executed concurrently.
+    private CatalogException validateNewAnnotationSet(Study study, R entry, AnnotationSet annotationSet,
+                                                      Map<String, VariableSet> variableSetMap,
+                                                      AnnotationPermissionChecker permissionChecker, String userId) {
+        try {
+            permissionChecker.checkPermission(study.getUid(), entry.getUid(), userId);
+
+            List<AnnotationSet> existingAnnotationSets = ((Annotable) entry).getAnnotationSets();
+            if (existingAnnotationSets != null) {
+                for (AnnotationSet existingAnnotationSet : existingAnnotationSets) {
+                    if (existingAnnotationSet.getId().equals(annotationSet.getId())) {
+                        throw new CatalogException("Cannot add AnnotationSet " + annotationSet.getId() + ". An AnnotationSet with "
+                                + "the same id was already found.");
+                    }
+                }
+            }
+            AnnotationUtils.checkAnnotationSet(variableSetMap.get(annotationSet.getVariableSetId()), annotationSet,
+                    existingAnnotationSets, true);
+            return null;
+        } catch (CatalogException e) {
+            return e;
+        } catch (RuntimeException e) {
+            return new CatalogException(e.getMessage(), e);
+        }
+    }
+
+    private void addAnnotationSetsError(Study study, String entryId, String entryUuid, CatalogException e, OpenCGAResult<R> result,
+                                        String operationId, ObjectMap auditParams, String userId) {
+        logger.error("Could not add annotation set to {} {}: {}", getEntity(), entryId, e.getMessage());
+        result.getEvents().add(new Event(Event.Type.ERROR, entryId, e.getMessage()));
+        auditManager.auditUpdate(operationId, userId, getEntity(), entryId, entryUuid, study.getId(), study.getUuid(), auditParams,
+                new AuditRecord.Status(AuditRecord.Status.Result.ERROR, e.getError()));
+    }
+
     protected  <T extends Annotable> void checkUpdateAnnotations(Study study, T entry, ObjectMap parameters, QueryOptions options,
                                                               VariableSet.AnnotableDataModels annotableEntity,
                                                               AnnotationSetDBAdaptor dbAdaptor, String user) throws CatalogException {
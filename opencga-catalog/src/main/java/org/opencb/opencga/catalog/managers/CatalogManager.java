@@ -259,7 +259,14 @@ public class CatalogManager implements AutoCloseable {
 
     @Override
     public void close() throws CatalogException {
-        catalogDBAdaptorFactory.close();
+        try {
+            if (auditManager != null) {
+                // Write the pending audit records and stop the audit writer before closing the database
+                auditManager.close();
+            }
+        } finally {
+            catalogDBAdaptorFactory.close();
+        }
     }
 
     public UserManager getUserManager() {
@@ -552,6 +552,13 @@ public class CohortManager extends AnnotationSetManager<Cohort> {
         return updateAnnotationSet(studyStr, cohortStr, annotationSetList, ParamUtils.UpdateAction.ADD, options, token);
     }
 
+    public OpenCGAResult<Cohort> addAnnotationSets(String studyStr, Map<String, AnnotationSet> annotationSetMap, boolean ignoreException,
+                                                   String token) throws CatalogException {
+        return addAnnotationSets(studyStr, annotationSetMap, ignoreException, VariableSet.AnnotableDataModels.COHORT, cohortDBAdaptor,
+                INCLUDE_COHORT_IDS, (studyUid, cohortUid, userId) -> authorizationManager.checkCohortPermission(studyUid, cohortUid, userId,
+                        CohortAclEntry.CohortPermissions.WRITE_ANNOTATIONS), token);
+    }
+
     public OpenCGAResult<Cohort> setAnnotationSet(String studyStr, String cohortStr, AnnotationSet annotationSet, QueryOptions options,
                                                String token) throws CatalogException {
         return setAnnotationSets(studyStr, cohortStr, Collections.singletonList(annotationSet), options, token);
@@ -601,6 +601,13 @@ public class FamilyManager extends AnnotationSetManager<Family> {
         return updateAnnotationSet(studyStr, familyStr, annotationSetList, ParamUtils.UpdateAction.ADD, options, token);
     }
 
+    public OpenCGAResult<Family> addAnnotationSets(String studyStr, Map<String, AnnotationSet> annotationSetMap, boolean ignoreException,
+                                                   String token) throws CatalogException {
+        return addAnnotationSets(studyStr, annotationSetMap, ignoreException, VariableSet.AnnotableDataModels.FAMILY, familyDBAdaptor,
+                INCLUDE_FAMILY_IDS, (studyUid, familyUid, userId) -> authorizationManager.checkFamilyPermission(studyUid, familyUid, userId,
+                        FamilyAclEntry.FamilyPermissions.WRITE_ANNOTATIONS), token);
+    }
+
     public OpenCGAResult<Family> setAnnotationSet(String studyStr, String familyStr, AnnotationSet annotationSet, QueryOptions options,
                                                   String token) throws CatalogException {
         return setAnnotationSets(studyStr, familyStr, Collections.singletonList(annotationSet), options, token);
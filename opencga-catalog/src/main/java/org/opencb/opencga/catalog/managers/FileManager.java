@@ -16,6 +16,7 @@
 package org.opencb.opencga.catalog.managers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
@@ -68,7 +69,10 @@ import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -91,6 +95,10 @@ public class FileManager extends AnnotationSetManager<File> {
     public  static final QueryOptions EXCLUDE_FILE_ATTRIBUTES;
     private static final Comparator<File> ROOT_FIRST_COMPARATOR;
     private static final Comparator<File> ROOT_LAST_COMPARATOR;
+    // Files registered within the same transaction when syncing or linking folders
+    private static final int REGISTER_FILES_BATCH_SIZE = 100;
+    // Threads used to read the metadata of the files when syncing or linking folders
+    private static final int REGISTER_FILES_PARALLELISM = Math.min(8, Runtime.getRuntime().availableProcessors());
 
     protected static Logger logger;
     private FileMetadataReader fileMetadataReader;
@@ -902,6 +910,8 @@ public class FileManager extends AnnotationSetManager<File> {
             logger.info("Uploading file... Temporal file path: {}", tempFilePath.toString());
 
             // Create the temporal directory and upload the file
+            String checksum = null;
+            long size;
             try {
                 if (!ioManager.exists(tempFilePath.getParent().toUri())) {
                     logger.debug("Creating temporal folder: {}", tempFilePath.getParent());
@@ -910,7 +920,14 @@ public class FileManager extends AnnotationSetManager<File> {
 
                 // Start uploading the file to the temporal directory
                 // Upload the file to a temporary folder
-                ioManager.copy(fileInputStream, tempFilePath.toUri());
+                if (calculateChecksum) {
+                    // Digest the content while it is written, instead of reading the file again
+                    DigestInputStream digestInputStream = ChecksumUtils.digestInputStream(fileInputStream);
+                    size = ioManager.copy(digestInputStream, tempFilePath.toUri());
+                    checksum = ChecksumUtils.checksum(digestInputStream);
+                } else {
+                    size = ioManager.copy(fileInputStream, tempFilePath.toUri());
+                }
             } catch (Exception e) {
                 logger.error("Error uploading file {}", file.getName(), e);
 
@@ -929,16 +946,12 @@ public class FileManager extends AnnotationSetManager<File> {
                 // Create the directories where the file will be placed (if they weren't created before)
                 ioManager.createDirectory(Paths.get(file.getUri()).getParent().toUri(), true);
 
-                String checksum = null;
-                if (calculateChecksum) {
-                    checksum = ioManager.calculateChecksum(sourceUri);
-                }
                 if (overwrite) {
                     ioManager.move(sourceUri, file.getUri(), StandardCopyOption.REPLACE_EXISTING);
                 } else {
                     ioManager.move(sourceUri, file.getUri());
                 }
-                if (calculateChecksum && !checksum.equals(ioManager.calculateChecksum(file.getUri()))) {
+                if (size != ioManager.getFileSize(file.getUri())) {
                     throw new CatalogIOException("Error moving file from " + sourceUri + " to " + file.getUri());
                 }
 
@@ -1600,10 +1613,25 @@ public class FileManager extends AnnotationSetManager<File> {
             filter = uri -> true;
         }
 
+        // Load all the registered paths under the folder at once, instead of looking for each file
+        Map<String, File> registeredFiles = new HashMap<>();
+        Query query = new Query(FileDBAdaptor.QueryParams.STUDY_UID.key(), study.getUid());
+        if (StringUtils.isNotEmpty(folder.getPath())) {
+            query.append(FileDBAdaptor.QueryParams.PATH.key(), "~^" + folder.getPath());
+        }
+        try (DBIterator<File> fileIterator = fileDBAdaptor.iterator(query, INCLUDE_FILE_URI_PATH)) {
+            while (fileIterator.hasNext()) {
+                File file = fileIterator.next();
+                registeredFiles.put(file.getPath(), file);
+            }
+        }
+        registeredFiles.put(folder.getPath(), folder);
+
         long numMatches = 0;
 
         OpenCGAResult<File> result = OpenCGAResult.empty();
         List<File> fileList = new ArrayList<>();
+        List<File> newFiles = new ArrayList<>();
         List<Event> eventList = new ArrayList<>();
         while (iterator.hasNext()) {
             URI fileUri = iterator.next().normalize();
@@ -1620,21 +1648,33 @@ public class FileManager extends AnnotationSetManager<File> {
                 finalCatalogPath += "/";
             }
 
-            try {
-                File registeredFile = internalGet(study.getUid(), finalCatalogPath, INCLUDE_FILE_URI_PATH, userId).first();
+            File registeredFile = registeredFiles.get(finalCatalogPath);
+            if (registeredFile != null) {
                 if (!registeredFile.getUri().equals(fileUri)) {
                     eventList.add(new Event(Event.Type.WARNING, registeredFile.getPath(), "The uri registered in Catalog '"
                             + registeredFile.getUri().getPath() + "' for the path does not match the uri that would have been synced '"
                             + fileUri.getPath() + "'"));
                 }
                 fileList.add(registeredFile);
-            } catch (CatalogException e) {
-                File file = registerFile(study, finalCatalogPath, fileUri, jobId, token).first();
+            } else {
+                newFiles.add(newUntrackedFile(study, finalCatalogPath, fileUri, jobId, ioManager));
+            }
+        }
 
-                result.setNumInserted(result.getNumInserted() + 1);
-                fileList.add(file);
+        List<File> insertedFiles = registerFiles(study, newFiles, registeredFiles, false, userId, token);
+        result.setNumInserted(insertedFiles.size());
+        fileList.addAll(insertedFiles);
+
+        // If there is any transformed file, we will try to link it with the correspondent original file
+        List<File> transformedFiles = insertedFiles.stream().filter(f -> isTransformedFile(f.getName())).collect(Collectors.toList());
+        try {
+            if (!transformedFiles.isEmpty()) {
+                matchUpVariantFiles(study.getFqn(), transformedFiles, token);
             }
+        } catch (CatalogException e) {
+            logger.warn("Matching avro to variant file: {}", e.getMessage());
         }
+
         result.setNumMatches(numMatches);
         result.setEvents(eventList);
         result.setResults(fileList);
@@ -1985,6 +2025,13 @@ public class FileManager extends AnnotationSetManager<File> {
         return endResult(result, ignoreException);
     }
 
+    public OpenCGAResult<File> addAnnotationSets(String studyStr, Map<String, AnnotationSet> annotationSetMap, boolean ignoreException,
+                                                 String token) throws CatalogException {
+        return addAnnotationSets(studyStr, annotationSetMap, ignoreException, VariableSet.AnnotableDataModels.FILE, fileDBAdaptor,
+                INCLUDE_FILE_IDS, (studyUid, fileUid, userId) -> authorizationManager.checkFilePermission(studyUid, fileUid, userId,
+                        FileAclEntry.FilePermissions.WRITE_ANNOTATIONS), token);
+    }
+
     private OpenCGAResult<File> update(Study study, File file, FileUpdateParams updateParams, QueryOptions options, String userId,
                                        String token) throws CatalogException {
         ObjectMap parameters = new ObjectMap();
@@ -3254,70 +3301,56 @@ public class FileManager extends AnnotationSetManager<File> {
             }
         }
 
-        // This list will contain the list of transformed files detected during the link
-        List<File> transformedFiles = new ArrayList<>();
-
         // We remove the / at the end for replacement purposes in the walkFileTree
         if (externalPathDestinyStr.endsWith("/")) {
             externalPathDestinyStr = externalPathDestinyStr.substring(0, externalPathDestinyStr.length() - 1);
         }
         String finalExternalPathDestinyStr = externalPathDestinyStr;
 
-        // Link all the files and folders present in the uri
+        // Load all the registered paths under the destiny path at once, instead of looking for each file
+        Map<String, File> registeredFiles = new HashMap<>();
+        query = new Query()
+                .append(FileDBAdaptor.QueryParams.STUDY_UID.key(), study.getUid())
+                .append(FileDBAdaptor.QueryParams.PATH.key(), "~^" + finalExternalPathDestinyStr);
+        try (DBIterator<File> fileIterator = fileDBAdaptor.iterator(query, INCLUDE_FILE_URI_PATH)) {
+            while (fileIterator.hasNext()) {
+                File file = fileIterator.next();
+                registeredFiles.put(file.getPath(), file);
+            }
+        }
+        query = new Query()
+                .append(FileDBAdaptor.QueryParams.STUDY_UID.key(), study.getUid())
+                .append(FileDBAdaptor.QueryParams.PATH.key(), params.getPath());
+        for (File parentFolder : fileDBAdaptor.get(query, INCLUDE_FILE_URI_PATH).getResults()) {
+            registeredFiles.put(parentFolder.getPath(), parentFolder);
+        }
+
+        // Walk the uri collecting all the files and folders to be linked
+        List<File> newFiles = new ArrayList<>();
         ioManager.walkFileTree(normalizedUri, new SimpleFileVisitor<URI>() {
             @Override
             public FileVisitResult preVisitDirectory(URI dir, BasicFileAttributes attrs) throws IOException {
-                try {
-                    String destinyPath = Paths.get(dir).toString().replace(Paths.get(normalizedUri).toString(),
-                            finalExternalPathDestinyStr);
+                String destinyPath = Paths.get(dir).toString().replace(Paths.get(normalizedUri).toString(),
+                        finalExternalPathDestinyStr);
 
-                    if (!destinyPath.isEmpty() && !destinyPath.endsWith("/")) {
-                        destinyPath += "/";
-                    }
-
-                    if (destinyPath.startsWith("/")) {
-                        destinyPath = destinyPath.substring(1);
-                    }
-
-                    Query query = new Query()
-                            .append(FileDBAdaptor.QueryParams.STUDY_UID.key(), study.getUid())
-                            .append(FileDBAdaptor.QueryParams.PATH.key(), destinyPath);
-
-                    if (fileDBAdaptor.count(query).getNumMatches() == 0) {
-                        // If the folder does not exist, we create it
-
-                        String parentPath = getParentPath(destinyPath);
-                        long parentFileId = fileDBAdaptor.getId(study.getUid(), parentPath);
-                        // We obtain the permissions set in the parent folder and set them to the file or folder being created
-                        OpenCGAResult<Map<String, List<String>>> allFileAcls;
-                        try {
-                            allFileAcls = authorizationManager.getAllFileAcls(study.getUid(), parentFileId, userId, true);
-                        } catch (CatalogException e) {
-                            throw new RuntimeException(e);
-                        }
+                if (!destinyPath.isEmpty() && !destinyPath.endsWith("/")) {
+                    destinyPath += "/";
+                }
 
-                        File folder = new File(Paths.get(dir).getFileName().toString(), File.Type.DIRECTORY, File.Format.PLAIN,
-                                File.Bioformat.NONE, dir, destinyPath, null, TimeUtils.getTime(),
-                                TimeUtils.getTime(), params.getDescription(), true, 0, new Software(), new FileExperiment(),
-                                Collections.emptyList(), relatedFiles, "", studyManager.getCurrentRelease(study), Collections.emptyList(),
-                                Collections.emptyMap(),
-                                params.getStatus() != null ? params.getStatus().toCustomStatus() : new CustomStatus(),
-                                FileInternal.initialize(), Collections.emptyMap());
-                        folder.setUuid(UuidUtils.generateOpenCgaUuid(UuidUtils.Entity.FILE));
-                        checkHooks(folder, study.getFqn(), HookConfiguration.Stage.CREATE);
-                        fileDBAdaptor.insert(study.getUid(), folder, Collections.emptyList(), Collections.emptyList(),
-                                Collections.emptyList(), new QueryOptions());
-                        OpenCGAResult<File> queryResult = getFile(study.getUid(), folder.getUuid(), QueryOptions.empty());
-
-                        // Propagate ACLs
-                        if (allFileAcls != null && allFileAcls.getNumResults() > 0) {
-                            authorizationManager.replicateAcls(study.getUid(), Arrays.asList(queryResult.first().getUid()),
-                                    allFileAcls.getResults().get(0), Enums.Resource.FILE);
-                        }
-                    }
+                if (destinyPath.startsWith("/")) {
+                    destinyPath = destinyPath.substring(1);
+                }
 
-                } catch (CatalogException e) {
-                    logger.error("An error occurred when trying to create folder {}", dir.toString());
+                if (!registeredFiles.containsKey(destinyPath)) {
+                    // If the folder does not exist, we create it
+                    File folder = new File(Paths.get(dir).getFileName().toString(), File.Type.DIRECTORY, File.Format.PLAIN,
+                            File.Bioformat.NONE, dir, destinyPath, null, TimeUtils.getTime(),
+                            TimeUtils.getTime(), params.getDescription(), true, 0, new Software(), new FileExperiment(),
+                            Collections.emptyList(), relatedFiles, "", studyManager.getCurrentRelease(study), Collections.emptyList(),
+                            Collections.emptyMap(),
+                            params.getStatus() != null ? params.getStatus().toCustomStatus() : new CustomStatus(),
+                            FileInternal.initialize(), Collections.emptyMap());
+                    newFiles.add(folder);
                 }
 
                 return FileVisitResult.CONTINUE;
@@ -3333,23 +3366,9 @@ public class FileManager extends AnnotationSetManager<File> {
                         destinyPath = destinyPath.substring(1);
                     }
 
-                    Query query = new Query()
-                            .append(FileDBAdaptor.QueryParams.STUDY_UID.key(), study.getUid())
-                            .append(FileDBAdaptor.QueryParams.PATH.key(), destinyPath);
-
-                    if (fileDBAdaptor.count(query).getNumMatches() == 0) {
+                    if (!registeredFiles.containsKey(destinyPath)) {
                         long size = ioManager.getFileSize(fileUri);
                         // If the file does not exist, we create it
-                        String parentPath = getParentPath(destinyPath);
-                        long parentFileId = fileDBAdaptor.getId(study.getUid(), parentPath);
-                        // We obtain the permissions set in the parent folder and set them to the file or folder being created
-                        OpenCGAResult<Map<String, List<String>>> allFileAcls;
-                        try {
-                            allFileAcls = authorizationManager.getAllFileAcls(study.getUid(), parentFileId, userId, true);
-                        } catch (CatalogException e) {
-                            throw new RuntimeException(e);
-                        }
-
                         FileInternal internal = FileInternal.initialize();
                         if (params.getInternal() != null) {
                             internal.setSampleMap(params.getInternal().getSampleMap());
@@ -3362,30 +3381,7 @@ public class FileManager extends AnnotationSetManager<File> {
                                 Collections.emptyMap(),
                                 params.getStatus() != null ? params.getStatus().toCustomStatus() : new CustomStatus(), internal,
                                 new HashMap<>());
-                        subfile.setUuid(UuidUtils.generateOpenCgaUuid(UuidUtils.Entity.FILE));
-                        checkHooks(subfile, study.getFqn(), HookConfiguration.Stage.CREATE);
-
-                        // Improve metadata information and extract samples if any
-                        new FileMetadataReader(catalogManager).addMetadataInformation(study.getFqn(), subfile);
-
-                        List<Sample> existingSamples = new LinkedList<>();
-                        List<Sample> nonExistingSamples = new LinkedList<>();
-                        validateNewSamples(study, subfile, existingSamples, nonExistingSamples, token);
-
-                        fileDBAdaptor.insert(study.getUid(), subfile, existingSamples, nonExistingSamples, Collections.emptyList(),
-                                new QueryOptions());
-                        subfile = getFile(study.getUid(), subfile.getUuid(), QueryOptions.empty()).first();
-
-                        // Propagate ACLs
-                        if (allFileAcls != null && allFileAcls.getNumResults() > 0) {
-                            authorizationManager.replicateAcls(study.getUid(), Arrays.asList(subfile.getUid()),
-                                    allFileAcls.getResults().get(0), Enums.Resource.FILE);
-                        }
-
-                        if (isTransformedFile(subfile.getName())) {
-                            logger.info("Detected transformed file {}", subfile.getPath());
-                            transformedFiles.add(subfile);
-                        }
+                        newFiles.add(subfile);
                     } else {
                         throw new CatalogException("Cannot link the file " + Paths.get(fileUri).getFileName().toString()
                                 + ". There is already a file in the path " + destinyPath + " with the same name.");
@@ -3409,6 +3405,17 @@ public class FileManager extends AnnotationSetManager<File> {
             }
         });
 
+        List<File> linkedFiles = registerFiles(study, newFiles, registeredFiles, true, userId, token);
+
+        // This list will contain the list of transformed files detected during the link
+        List<File> transformedFiles = new ArrayList<>();
+        for (File linkedFile : linkedFiles) {
+            if (linkedFile.getType() == File.Type.FILE && isTransformedFile(linkedFile.getName())) {
+                logger.info("Detected transformed file {}", linkedFile.getPath());
+                transformedFiles.add(linkedFile);
+            }
+        }
+
         // Try to link transformed files with their corresponding original files if any
         try {
             if (transformedFiles.size() > 0) {
@@ -3430,58 +3437,212 @@ public class FileManager extends AnnotationSetManager<File> {
         return fileDBAdaptor.get(query, queryOptions);
     }
 
-    OpenCGAResult<File> registerFile(Study study, String filePath, URI fileUri, String jobId, String token) throws CatalogException {
-        String userId = userManager.getUserId(token);
-        IOManager ioManager;
-        try {
-            ioManager = ioManagerFactory.get(fileUri);
-        } catch (IOException e) {
-            throw CatalogIOException.ioManagerException(fileUri, e);
-        }
-
+    private File newUntrackedFile(Study study, String filePath, URI fileUri, String jobId, IOManager ioManager) throws CatalogException {
         // The file is not registered in Catalog, so we will register it
         long size = ioManager.getFileSize(fileUri);
 
-        String parentPath = getParentPath(filePath);
-        File parentFile = internalGet(study.getUid(), parentPath, INCLUDE_FILE_URI_PATH, userId).first();
-        // We obtain the permissions set in the parent folder and set them to the file or folder being created
-        OpenCGAResult<Map<String, List<String>>> allFileAcls = authorizationManager.getAllFileAcls(study.getUid(),
-                parentFile.getUid(), userId, true);
-
-        File subfile = new File(Paths.get(filePath).getFileName().toString(), File.Type.FILE, File.Format.UNKNOWN,
+        return new File(Paths.get(filePath).getFileName().toString(), File.Type.FILE, File.Format.UNKNOWN,
                 File.Bioformat.NONE, fileUri, filePath, "", TimeUtils.getTime(), TimeUtils.getTime(),
                 "", isExternal(study, filePath, fileUri), size, new Software(), new FileExperiment(), Collections.emptyList(),
                 Collections.emptyList(), jobId, studyManager.getCurrentRelease(study), Collections.emptyList(), Collections.emptyMap(),
                 new CustomStatus(), FileInternal.initialize(), Collections.emptyMap());
-        subfile.setUuid(UuidUtils.generateOpenCgaUuid(UuidUtils.Entity.FILE));
-        checkHooks(subfile, study.getFqn(), HookConfiguration.Stage.CREATE);
+    }
 
-        // Improve metadata information and extract samples if any
-        new FileMetadataReader(catalogManager).addMetadataInformation(study.getFqn(), subfile);
-        List<Sample> existingSamples = new LinkedList<>();
-        List<Sample> nonExistingSamples = new LinkedList<>();
-        validateNewSamples(study, subfile, existingSamples, nonExistingSamples, token);
+    /**
+     * Register in catalog a list of new files and folders.
+     *
+     * The files are registered level by level, so the parent folders are always registered before their content. Within each level,
+     * the metadata of the files is read concurrently, and the files are inserted in batches. Parent folders are resolved from the
+     * given map of registered files, which is updated with the new files.
+     *
+     * @param study           Study
+     * @param newFiles        Files and folders to register
+     * @param registeredFiles Files already registered in catalog, by path. Must contain the parent folders of the new files.
+     * @param skipErrors      Log and skip the files that could not be registered, instead of failing.
+     * @param userId          User registering the files
+     * @param token           Token of the user
+     * @return List of registered files
+     * @throws CatalogException if any file could not be registered and skipErrors is false
+     */
+    private List<File> registerFiles(Study study, List<File> newFiles, Map<String, File> registeredFiles, boolean skipErrors,
+                                     String userId, String token) throws CatalogException {
+        if (newFiles.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SortedMap<Integer, List<File>> filesByDepth = new TreeMap<>();
+        for (File file : newFiles) {
+            int depth = StringUtils.countMatches(StringUtils.removeEnd(file.getPath(), "/"), "/");
+            filesByDepth.computeIfAbsent(depth, k -> new ArrayList<>()).add(file);
+        }
 
-        fileDBAdaptor.insert(study.getUid(), subfile, existingSamples, nonExistingSamples, Collections.emptyList(), new QueryOptions());
-        OpenCGAResult<File> result = getFile(study.getUid(), subfile.getUuid(), QueryOptions.empty());
-        subfile = result.first();
+        StopWatch stopWatch = StopWatch.createStarted();
+        Map<Long, Map<String, List<String>>> parentAclsMap = new HashMap<>();
+        List<File> registered = new ArrayList<>(newFiles.size());
+        ForkJoinPool pool = new ForkJoinPool(REGISTER_FILES_PARALLELISM);
+        try {
+            for (List<File> files : filesByDepth.values()) {
+                List<NewFile> preparedFiles;
+                try {
+                    preparedFiles = pool.submit(() -> files.parallelStream()
+                            .map(file -> prepareNewFile(study, file, token))
+                            .collect(Collectors.toList())).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CatalogException("Interrupted while registering files", e);
+                } catch (ExecutionException e) {
+                    throw new CatalogException("Error reading metadata of files: " + e.getCause().getMessage(), e.getCause());
+                }
 
-        // Propagate ACLs
-        if (allFileAcls != null && allFileAcls.getNumResults() > 0) {
-            authorizationManager.replicateAcls(study.getUid(), Arrays.asList(subfile.getUid()), allFileAcls.getResults().get(0),
-                    Enums.Resource.FILE);
+                List<NewFile> batch = new ArrayList<>(REGISTER_FILES_BATCH_SIZE);
+                List<NewFile> insertedFiles = new ArrayList<>(preparedFiles.size());
+                for (NewFile newFile : preparedFiles) {
+                    File parent = registeredFiles.get(getParentPath(newFile.file.getPath()));
+                    if (newFile.error == null && parent == null) {
+                        newFile.error = new CatalogException("Parent folder of file '" + newFile.file.getPath() + "' not found");
+                    }
+                    if (newFile.error != null) {
+                        onRegisterError(newFile, skipErrors);
+                        continue;
+                    }
+                    newFile.parentUid = parent.getUid();
+                    if (newFile.existingSamples.isEmpty() && newFile.nonExistingSamples.isEmpty()) {
+                        batch.add(newFile);
+                        if (batch.size() == REGISTER_FILES_BATCH_SIZE) {
+                            insertBatch(study, batch, insertedFiles, skipErrors);
+                            batch.clear();
+                        }
+                    } else {
+                        // Files with samples are inserted one by one, as they could create the same samples
+                        insertFile(study, newFile, insertedFiles, skipErrors, token);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    insertBatch(study, batch, insertedFiles, skipErrors);
+                }
+
+                registered.addAll(fetchRegisteredFiles(study, insertedFiles, registeredFiles, parentAclsMap, userId));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.info("Registered {} files in {}", registered.size(), TimeUtils.durationToString(stopWatch));
+        return registered;
+    }
+
+    // Reads the metadata and validates the samples of a new file. Might be executed concurrently.
+    private NewFile prepareNewFile(Study study, File file, String token) {
+        NewFile newFile = new NewFile(file);
+        try {
+            file.setUuid(UuidUtils.generateOpenCgaUuid(UuidUtils.Entity.FILE));
+            checkHooks(file, study.getFqn(), HookConfiguration.Stage.CREATE);
+            if (file.getType() == File.Type.FILE) {
+                // Improve metadata information and extract samples if any
+                new FileMetadataReader(catalogManager).addMetadataInformation(study.getFqn(), file);
+                validateNewSamples(study, file, newFile.existingSamples, newFile.nonExistingSamples, token);
+            }
+        } catch (CatalogException | RuntimeException e) {
+            newFile.error = e;
         }
+        return newFile;
+    }
 
-        // If it is a transformed file, we will try to link it with the correspondent original file
+    private void insertBatch(Study study, List<NewFile> batch, List<NewFile> insertedFiles, boolean skipErrors) throws CatalogException {
+        List<File> fileList = batch.stream().map(newFile -> newFile.file).collect(Collectors.toList());
         try {
-            if (isTransformedFile(subfile.getName())) {
-                matchUpVariantFiles(study.getFqn(), Arrays.asList(subfile), token);
+            fileDBAdaptor.insert(study.getUid(), fileList, Collections.emptyList(), new QueryOptions());
+            insertedFiles.addAll(batch);
+        } catch (CatalogException e) {
+            if (!skipErrors) {
+                throw e;
+            }
+            // Insert the files one by one to skip only the failing ones
+            for (NewFile newFile : batch) {
+                try {
+                    fileDBAdaptor.insert(study.getUid(), newFile.file, Collections.emptyList(), Collections.emptyList(),
+                            Collections.emptyList(), new QueryOptions());
+                    insertedFiles.add(newFile);
+                } catch (CatalogException e1) {
+                    newFile.error = e1;
+                    onRegisterError(newFile, true);
+                }
             }
-        } catch (CatalogException e1) {
-            logger.warn("Matching avro to variant file: {}", e1.getMessage());
         }
+    }
 
-        return result;
+    private void insertFile(Study study, NewFile newFile, List<NewFile> insertedFiles, boolean skipErrors, String token)
+            throws CatalogException {
+        try {
+            // Validate the samples again, as they might have been created by previous files
+            newFile.existingSamples.clear();
+            newFile.nonExistingSamples.clear();
+            validateNewSamples(study, newFile.file, newFile.existingSamples, newFile.nonExistingSamples, token);
+            fileDBAdaptor.insert(study.getUid(), newFile.file, newFile.existingSamples, newFile.nonExistingSamples,
+                    Collections.emptyList(), new QueryOptions());
+            insertedFiles.add(newFile);
+        } catch (CatalogException e) {
+            newFile.error = e;
+            onRegisterError(newFile, skipErrors);
+        }
+    }
+
+    // Reads the inserted files and propagates the ACLs from their parent folders
+    private List<File> fetchRegisteredFiles(Study study, List<NewFile> insertedFiles, Map<String, File> registeredFiles,
+                                            Map<Long, Map<String, List<String>>> parentAclsMap, String userId)
+            throws CatalogException {
+        List<File> files = new ArrayList<>(insertedFiles.size());
+        for (List<NewFile> batch : Lists.partition(insertedFiles, REGISTER_FILES_BATCH_SIZE)) {
+            Map<String, Long> parentUids = new HashMap<>();
+            for (NewFile newFile : batch) {
+                parentUids.put(newFile.file.getUuid(), newFile.parentUid);
+            }
+            Query query = new Query()
+                    .append(FileDBAdaptor.QueryParams.STUDY_UID.key(), study.getUid())
+                    .append(FileDBAdaptor.QueryParams.UUID.key(), new ArrayList<>(parentUids.keySet()));
+            Map<Long, List<Long>> filesByParent = new HashMap<>();
+            for (File file : fileDBAdaptor.get(query, QueryOptions.empty()).getResults()) {
+                registeredFiles.put(file.getPath(), file);
+                files.add(file);
+                filesByParent.computeIfAbsent(parentUids.get(file.getUuid()), k -> new ArrayList<>()).add(file.getUid());
+            }
+
+            // We obtain the permissions set in the parent folder and set them to the files or folders being created
+            for (Map.Entry<Long, List<Long>> entry : filesByParent.entrySet()) {
+                Long parentUid = entry.getKey();
+                if (!parentAclsMap.containsKey(parentUid)) {
+                    OpenCGAResult<Map<String, List<String>>> allFileAcls = authorizationManager.getAllFileAcls(study.getUid(),
+                            parentUid, userId, true);
+                    parentAclsMap.put(parentUid, allFileAcls.getNumResults() > 0 ? allFileAcls.getResults().get(0) : null);
+                }
+                Map<String, List<String>> parentAcls = parentAclsMap.get(parentUid);
+                // Propagate ACLs
+                if (parentAcls != null) {
+                    authorizationManager.replicateAcls(study.getUid(), entry.getValue(), parentAcls, Enums.Resource.FILE);
+                }
+            }
+        }
+        return files;
+    }
+
+    private void onRegisterError(NewFile newFile, boolean skipErrors) throws CatalogException {
+        if (skipErrors) {
+            logger.error("Could not register file '{}': {}", newFile.file.getPath(), newFile.error.getMessage());
+        } else if (newFile.error instanceof CatalogException) {
+            throw (CatalogException) newFile.error;
+        } else {
+            throw new CatalogException("Could not register file '" + newFile.file.getPath() + "'", newFile.error);
+        }
+    }
+
+    private static final class NewFile {
+        private final File file;
+        private final List<Sample> existingSamples = new ArrayList<>();
+        private final List<Sample> nonExistingSamples = new ArrayList<>();
+        private long parentUid;
+        private Exception error;
+
+        private NewFile(File file) {
+            this.file = file;
+        }
     }
 
     private void checkHooks(File file, String fqn, HookConfiguration.Stage stage) throws CatalogException {
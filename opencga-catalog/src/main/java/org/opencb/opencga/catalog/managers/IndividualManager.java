@@ -986,6 +986,14 @@ public class IndividualManager extends AnnotationSetManager<Individual> {
         return updateAnnotationSet(studyStr, individualStr, annotationSetList, ParamUtils.UpdateAction.ADD, options, token);
     }
 
+    public OpenCGAResult<Individual> addAnnotationSets(String studyStr, Map<String, AnnotationSet> annotationSetMap,
+                                                       boolean ignoreException, String token) throws CatalogException {
+        return addAnnotationSets(studyStr, annotationSetMap, ignoreException, VariableSet.AnnotableDataModels.INDIVIDUAL,
+                individualDBAdaptor, INCLUDE_INDIVIDUAL_IDS, (studyUid, individualUid, userId) ->
+                        authorizationManager.checkIndividualPermission(studyUid, individualUid, userId,
+                                IndividualAclEntry.IndividualPermissions.WRITE_ANNOTATIONS), token);
+    }
+
     public OpenCGAResult<Individual> setAnnotationSet(String studyStr, String individualStr, AnnotationSet annotationSet,
                                                       QueryOptions options, String token) throws CatalogException {
         return setAnnotationSets(studyStr, individualStr, Collections.singletonList(annotationSet), options, token);
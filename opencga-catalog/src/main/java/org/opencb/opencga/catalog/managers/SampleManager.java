@@ -545,6 +545,13 @@ public class SampleManager extends AnnotationSetManager<Sample> {
         return updateAnnotationSet(studyStr, sampleStr, annotationSetList, ParamUtils.UpdateAction.ADD, options, token);
     }
 
+    public OpenCGAResult<Sample> addAnnotationSets(String studyStr, Map<String, AnnotationSet> annotationSetMap, boolean ignoreException,
+                                                   String token) throws CatalogException {
+        return addAnnotationSets(studyStr, annotationSetMap, ignoreException, VariableSet.AnnotableDataModels.SAMPLE, sampleDBAdaptor,
+                INCLUDE_SAMPLE_IDS, (studyUid, sampleUid, userId) -> authorizationManager.checkSamplePermission(studyUid, sampleUid, userId,
+                        SampleAclEntry.SamplePermissions.WRITE_ANNOTATIONS), token);
+    }
+
     public OpenCGAResult<Sample> setAnnotationSet(String studyStr, String sampleStr, AnnotationSet annotationSet, QueryOptions options,
                                                String token) throws CatalogException {
         return setAnnotationSets(studyStr, sampleStr, Collections.singletonList(annotationSet), options, token);
@@ -16,6 +16,7 @@
 
 package org.opencb.opencga.catalog.managers;
 
+import com.google.common.cache.CacheStats;
 import org.apache.commons.lang3.StringUtils;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
@@ -585,6 +586,7 @@ public class UserManager extends AbstractManager {
             if (OPENCGA.equals(tokenUser) || userId.equals(tokenUser)) {
                 try {
                     OpenCGAResult result = userDBAdaptor.delete(userId, options);
+                    invalidateTokens(userId);
 
                     auditManager.auditDelete(operationUuid, tokenUser, Enums.Resource.USER, userId, "", "", "", auditParams,
                             new AuditRecord.Status(AuditRecord.Status.Result.SUCCESS));
@@ -694,6 +696,7 @@ public class UserManager extends AbstractManager {
 
                 // Resync synced groups of user in OpenCGA
                 studyDBAdaptor.resyncUserWithSyncedGroups(userId, remoteGroups, authId);
+                authorizationManager.invalidatePermissionCache();
             } catch (CatalogException e) {
                 logger.error("Could not update synced groups for user '" + userId + "'\n" + e.getMessage(), e);
             }
@@ -1193,6 +1196,26 @@ public class UserManager extends AbstractManager {
         }
     }
 
+    /**
+     * Get the statistics of the cache of verified tokens of each authentication origin.
+     *
+     * @return Map from authentication origin to the cache statistics.
+     */
+    public Map<String, CacheStats> getTokenCacheStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, AuthenticationManager> entry : authenticationManagerMap.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().getTokenCacheStats());
+        }
+        return stats;
+    }
+
+    // Tokens of the user already verified must not be accepted again without checking the user
+    private void invalidateTokens(String userId) {
+        for (AuthenticationManager authenticationManager : authenticationManagerMap.values()) {
+            authenticationManager.invalidateTokens(userId);
+        }
+    }
+
     /**
      * Get the userId from the sessionId.
      *
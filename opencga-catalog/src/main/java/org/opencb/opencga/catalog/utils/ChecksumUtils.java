@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the checksum of the files in-process. The checksum is the MD5 of the content as a lowercase hexadecimal string,
+ * same as the output of "md5sum".
+ */
+public final class ChecksumUtils {
+
+    public static final String ALGORITHM = "MD5";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ChecksumUtils() {
+    }
+
+    /**
+     * Calculate the checksum of a local file, reading it with a direct buffer.
+     *
+     * @param path File path
+     * @return Checksum of the file
+     * @throws IOException if the file can not be read
+     */
+    public static String checksum(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Wrap an input stream to digest the bytes as they are read, so the checksum is obtained without reading the content twice.
+     * Use {@link #checksum(DigestInputStream)} once the stream has been fully consumed.
+     *
+     * @param inputStream Input stream
+     * @return Digesting input stream
+     */
+    public static DigestInputStream digestInputStream(InputStream inputStream) {
+        return new DigestInputStream(inputStream, newDigest());
+    }
+
+    public static String checksum(DigestInputStream inputStream) {
+        return toHex(inputStream.getMessageDigest().digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM must support MD5
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
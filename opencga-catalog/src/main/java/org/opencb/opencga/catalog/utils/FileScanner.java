@@ -42,7 +42,10 @@ import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -51,6 +54,8 @@ import java.util.stream.Stream;
 public class FileScanner {
 
     private static Logger logger = LoggerFactory.getLogger(FileScanner.class);
+    private static final int CHECK_FILES_BATCH_SIZE = 1000;
+    private static final int CHECK_FILES_PARALLELISM = Math.min(8, Runtime.getRuntime().availableProcessors());
 
     protected final CatalogManager catalogManager;
 
@@ -85,20 +90,61 @@ public class FileScanner {
         query.put(FileDBAdaptor.QueryParams.INTERNAL_STATUS_NAME.key(), Arrays.asList(
                 FileStatus.READY, FileStatus.MISSING, FileStatus.TRASHED));
 
-        DBIterator<File> iterator = catalogManager.getFileManager().iterator(study.getFqn(), query, new QueryOptions(), sessionId);
-
         List<File> modifiedFiles = new LinkedList<>();
-        while (iterator.hasNext()) {
-            File file = iterator.next();
-            File checkedFile = catalogFileUtils.checkFile(study.getFqn(), file, calculateChecksum, sessionId);
-            if (checkedFile != file) {
-                modifiedFiles.add(checkedFile);
+        ForkJoinPool pool = new ForkJoinPool(CHECK_FILES_PARALLELISM);
+        try (DBIterator<File> iterator = catalogManager.getFileManager().iterator(study.getFqn(), query, new QueryOptions(), sessionId)) {
+            List<File> batch = new ArrayList<>(CHECK_FILES_BATCH_SIZE);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == CHECK_FILES_BATCH_SIZE || !iterator.hasNext()) {
+                    modifiedFiles.addAll(checkFiles(pool, study, batch, calculateChecksum, sessionId));
+                    batch.clear();
+                }
             }
+        } finally {
+            pool.shutdownNow();
         }
 
         return modifiedFiles;
     }
 
+    // Check a batch of files concurrently, as it might require reading each file to calculate the checksum
+    private List<File> checkFiles(ForkJoinPool pool, Study study, List<File> files, boolean calculateChecksum, String sessionId)
+            throws CatalogException {
+        try {
+            return pool.submit(() -> files.parallelStream()
+                    .map(file -> {
+                        try {
+                            File checkedFile = catalogFileUtils.checkFile(study.getFqn(), file, calculateChecksum, sessionId);
+                            return checkedFile != file ? checkedFile : null;
+                        } catch (CatalogException e) {
+                            throw new UncheckedCatalogException(e);
+                        }
+                    })
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CatalogException("Interrupted while checking files", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedCatalogException) {
+                throw ((UncheckedCatalogException) e.getCause()).getCause();
+            }
+            throw new CatalogException("Error checking files: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static final class UncheckedCatalogException extends RuntimeException {
+        private UncheckedCatalogException(CatalogException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized CatalogException getCause() {
+            return (CatalogException) super.getCause();
+        }
+    }
+
     /**
      * Scan the study folder, add all untracked files and check tracking.
      *
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.audit;
+
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.catalog.db.api.AuditDBAdaptor;
+import org.opencb.opencga.catalog.exceptions.CatalogDBException;
+import org.opencb.opencga.core.config.Audit;
+import org.opencb.opencga.core.models.common.Enums;
+import org.opencb.opencga.core.response.OpenCGAResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AuditWriterTest {
+
+    private static class DummyAuditDBAdaptor implements AuditDBAdaptor {
+        private final List<AuditRecord> records = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> inserts = Collections.synchronizedList(new ArrayList<>());
+        private CountDownLatch latch = new CountDownLatch(0);
+
+        @Override
+        public OpenCGAResult<AuditRecord> insertAuditRecord(AuditRecord auditRecord) {
+            return insertAuditRecords(Collections.singletonList(auditRecord));
+        }
+
+        @Override
+        public OpenCGAResult<AuditRecord> insertAuditRecords(List<AuditRecord> auditRecords) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            inserts.add(auditRecords.size());
+            records.addAll(auditRecords);
+            return new OpenCGAResult<>();
+        }
+
+        @Override
+        public OpenCGAResult<AuditRecord> get(Query query, QueryOptions queryOptions) {
+            return new OpenCGAResult<>();
+        }
+
+        @Override
+        public OpenCGAResult groupBy(Query query, List<String> fields, QueryOptions options) {
+            return new OpenCGAResult<>();
+        }
+    }
+
+    private static AuditRecord record(int i) {
+        return new AuditRecord("audit_" + i, "op", "user", "v1", Enums.Action.INFO, Enums.Resource.SAMPLE, "s" + i, "", "", "",
+                new ObjectMap(), new AuditRecord.Status(AuditRecord.Status.Result.SUCCESS), new Date(), new ObjectMap());
+    }
+
+    @Test
+    public void testSync() throws CatalogDBException {
+        DummyAuditDBAdaptor dbAdaptor = new DummyAuditDBAdaptor();
+        AuditWriter writer = new AuditWriter(dbAdaptor, new Audit().setDurability(Audit.Durability.SYNC));
+        writer.write(record(0));
+        writer.write(record(1));
+        assertEquals(2, dbAdaptor.records.size());
+        writer.close();
+    }
+
+    @Test
+    public void testAsyncGroupCommit() throws CatalogDBException {
+        DummyAuditDBAdaptor dbAdaptor = new DummyAuditDBAdaptor();
+        AuditWriter writer = new AuditWriter(dbAdaptor, new Audit()
+                .setDurability(Audit.Durability.ASYNC).setBatchSize(10).setFlushInterval(100000));
+        for (int i = 0; i < 95; i++) {
+            writer.write(record(i));
+        }
+        writer.close();
+
+        assertEquals(95, dbAdaptor.records.size());
+        for (int i = 0; i < 95; i++) {
+            assertEquals("audit_" + i, dbAdaptor.records.get(i).getId());
+        }
+        // Records are written in batches
+        assertTrue(dbAdaptor.inserts.size() < 95);
+        assertEquals(95L, writer.getStats().getLong("written"));
+    }
+
+    @Test
+    public void testFlushInterval() throws Exception {
+        DummyAuditDBAdaptor dbAdaptor = new DummyAuditDBAdaptor();
+        AuditWriter writer = new AuditWriter(dbAdaptor, new Audit()
+                .setDurability(Audit.Durability.ASYNC).setBatchSize(10).setFlushInterval(50));
+        // No thread until there is something to write
+        assertFalse(writer.isThreadRunning());
+        writer.write(record(0));
+        long start = System.currentTimeMillis();
+        while (dbAdaptor.records.isEmpty() && System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10)) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, dbAdaptor.records.size());
+        writer.close();
+    }
+
+    @Test
+    public void testEnqueueAfterIdle() throws Exception {
+        DummyAuditDBAdaptor dbAdaptor = new DummyAuditDBAdaptor();
+        long idleTimeout = 20;
+        AuditWriter writer = new AuditWriter(dbAdaptor, new Audit()
+                .setDurability(Audit.Durability.ASYNC).setBatchSize(10).setFlushInterval(5), idleTimeout);
+
+        writer.write(record(0));
+        waitForRecords(dbAdaptor, 1);
+        // Let the writer thread stop
+        long start = System.currentTimeMillis();
+        while (writer.isThreadRunning() && System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10)) {
+            Thread.sleep(5);
+        }
+        assertFalse(writer.isThreadRunning());
+
+        // A new record after stopping starts a new thread
+        writer.write(record(1));
+        waitForRecords(dbAdaptor, 2);
+
+        // Records added while the writer thread is about to stop are written without closing the writer
+        int numRecords = 2;
+        for (int i = 0; i < 50; i++) {
+            Thread.sleep(idleTimeout + (i % 10));
+            writer.write(record(numRecords++));
+            waitForRecords(dbAdaptor, numRecords);
+        }
+        assertEquals(numRecords, dbAdaptor.records.size());
+        writer.close();
+    }
+
+    private static void waitForRecords(DummyAuditDBAdaptor dbAdaptor, int numRecords) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (dbAdaptor.records.size() < numRecords && System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(10)) {
+            Thread.sleep(5);
+        }
+        assertEquals(numRecords, dbAdaptor.records.size());
+    }
+
+    @Test
+    public void testDefaultIsSync() throws CatalogDBException {
+        DummyAuditDBAdaptor dbAdaptor = new DummyAuditDBAdaptor();
+        AuditWriter writer = new AuditWriter(dbAdaptor, new Audit());
+        writer.write(record(0));
+        assertEquals(1, dbAdaptor.records.size());
+        assertFalse(writer.isThreadRunning());
+        writer.close();
+    }
+
+    @Test
+    public void testBestEffortDiscards() throws CatalogDBException {
+        DummyAuditDBAdaptor dbAdaptor = new DummyAuditDBAdaptor();
+        dbAdaptor.latch = new CountDownLatch(1);
+        AuditWriter writer = new AuditWriter(dbAdaptor, new Audit()
+                .setDurability(Audit.Durability.BEST_EFFORT).setBufferSize(10).setBatchSize(5).setFlushInterval(10));
+        // The writer is blocked. At most: one batch in the writer thread + a full buffer
+        for (int i = 0; i < 100; i++) {
+            writer.write(record(i));
+        }
+        ObjectMap stats = writer.getStats();
+        assertTrue(stats.getLong("discarded") >= 100 - 15);
+        dbAdaptor.latch.countDown();
+        writer.close();
+        assertEquals(100, writer.getStats().getLong("written") + writer.getStats().getLong("discarded"));
+    }
+}
@@ -74,6 +74,29 @@ public class JwtSessionManagerTest extends GenericTest {
         jwtSessionManager.validateToken(jwtToken);
     }
 
+    @Test
+    public void testTokenCache() throws CatalogException {
+        String token = jwtSessionManager.createJWTToken("cachedUser", Collections.emptyMap(), 60L);
+        long misses = jwtSessionManager.getTokenCacheStats().missCount();
+        long hits = jwtSessionManager.getTokenCacheStats().hitCount();
+
+        assertEquals("cachedUser", jwtSessionManager.getUser(token));
+        assertEquals("cachedUser", jwtSessionManager.getUser(token));
+        assertEquals(misses + 1, jwtSessionManager.getTokenCacheStats().missCount());
+        assertEquals(hits + 1, jwtSessionManager.getTokenCacheStats().hitCount());
+
+        jwtSessionManager.invalidateTokens(claims -> "cachedUser".equals(claims.getSubject()));
+        assertEquals("cachedUser", jwtSessionManager.getUser(token));
+        assertEquals(misses + 2, jwtSessionManager.getTokenCacheStats().missCount());
+    }
+
+    @Test(expected = CatalogAuthenticationException.class)
+    public void testTokenCacheInvalidSecretKey() throws CatalogAuthenticationException {
+        jwtSessionManager.validateToken(jwtToken);
+        jwtSessionManager.setPublicKey(new SecretKeySpec(TextCodec.BASE64.decode("wrongKey"), SignatureAlgorithm.HS256.getJcaName()));
+        jwtSessionManager.validateToken(jwtToken);
+    }
+
     @Test
     public void testNonExpiringToken() throws CatalogException {
         String nonExpiringToken = jwtSessionManager.createJWTToken("System", null, -1L);
@@ -516,6 +516,16 @@ public class CatalogAuthorizationManagerTest extends GenericTest {
         catalogManager.getStudyManager().get(studyFqn, null, externalSessionId);
     }
 
+    @Test
+    public void readStudyDenyAfterCachedAccess() throws CatalogException {
+        // Resolve the permissions once, so they are cached
+        catalogManager.getAuthorizationManager().checkCanViewStudy(studyUid, externalUser);
+        catalogManager.getStudyManager().updateGroup(String.valueOf(studyFqn), "@members", ParamUtils.UpdateAction.REMOVE,
+                new GroupUpdateParams(Collections.singletonList(externalUser)), ownerSessionId);
+        thrown.expect(CatalogAuthorizationException.class);
+        catalogManager.getAuthorizationManager().checkCanViewStudy(studyUid, externalUser);
+    }
+
     /*--------------------------*/
     // Read file
     /*--------------------------*/
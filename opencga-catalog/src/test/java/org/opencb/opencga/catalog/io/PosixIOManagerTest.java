@@ -21,16 +21,19 @@ import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.opencb.opencga.catalog.utils.ChecksumUtils;
 import org.opencb.opencga.core.common.IOUtils;
 import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.models.file.FileContent;
 
 import java.io.DataOutputStream;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -112,4 +115,20 @@ public class PosixIOManagerTest {
         System.out.println(grep.getContent());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCalculateChecksum() throws Exception {
+        Path path = tmpOutdir.resolve("20130606_g1k.ped");
+        FileUtils.copyInputStreamToFile(this.getClass().getClassLoader().getResource("20130606_g1k.ped").openStream(), path.toFile());
+
+        String checksum = posixIOManager.calculateChecksum(path.toUri());
+        assertEquals(32, checksum.length());
+
+        Path copy = tmpOutdir.resolve("20130606_g1k.copy.ped");
+        try (DigestInputStream inputStream = ChecksumUtils.digestInputStream(new FileInputStream(path.toFile()))) {
+            posixIOManager.copy(inputStream, copy.toUri());
+            assertEquals(checksum, ChecksumUtils.checksum(inputStream));
+        }
+        assertEquals(checksum, posixIOManager.calculateChecksum(copy.toUri()));
+    }
+
+}
@@ -299,6 +299,31 @@ public class FileManagerTest extends AbstractManagerTest {
         }
     }
 
+    @Test
+    public void testLinkFolderManyFiles() throws CatalogException, IOException {
+        // More files than the size of a register batch, in several levels
+        Path dir = catalogManagerResource.getOpencgaHome().resolve("many_files");
+        for (int i = 0; i < 3; i++) {
+            Path subDir = Files.createDirectories(dir.resolve("sub" + i).resolve("nested"));
+            for (int j = 0; j < 110; j++) {
+                Files.write(subDir.getParent().resolve("file_" + j + ".txt"), ("content " + j).getBytes());
+            }
+            Files.write(subDir.resolve("nested_file.txt"), "content".getBytes());
+        }
+
+        link(dir.toUri(), "linked/", studyFqn, new ObjectMap("parents", true), token);
+
+        Query query = new Query(FileDBAdaptor.QueryParams.PATH.key(), "~^linked/many_files/");
+        // Linked folder + 3 * (sub folder + nested folder + files + nested file)
+        assertEquals(1 + 3 * (2 + 110 + 1), fileManager.count(studyFqn, query, token).getNumMatches());
+        for (int i = 0; i < 3; i++) {
+            query = new Query(FileDBAdaptor.QueryParams.PATH.key(), "linked/many_files/sub" + i + "/nested/nested_file.txt");
+            File file = fileManager.search(studyFqn, query, null, token).first();
+            assertTrue(file.isExternal());
+            assertEquals(7, file.getSize());
+        }
+    }
+
     private Path createExternalDummyData() throws CatalogIOException, IOException {
         Path jUnitDir = Paths.get(catalogManager.getConfiguration().getWorkspace()).getParent();
 
@@ -25,6 +25,7 @@ import org.opencb.biodata.formats.sequence.fastqc.Summary;
 import org.opencb.biodata.models.clinical.Disorder;
 import org.opencb.biodata.models.pedigree.IndividualProperty;
 import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.Event;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
@@ -838,6 +839,40 @@ public class SampleManagerTest extends AbstractManagerTest {
         catalogManager.getSampleManager().removeAnnotationSet(studyFqn, s_1, "non_existing", QueryOptions.empty(), token);
     }
 
+    @Test
+    public void testAddAnnotationSetsInBulk() throws CatalogException {
+        List<Variable> variables = new ArrayList<>();
+        variables.add(new Variable("var_name", "", "", Variable.VariableType.STRING, "", true, false, Collections.emptyList(), null, 0, "", "",
+                null, Collections.emptyMap()));
+        VariableSet vs1 = catalogManager.getStudyManager().createVariableSet(studyFqn, "vs1", "vs1", true, false, "", null, variables,
+                Collections.singletonList(VariableSet.AnnotableDataModels.SAMPLE), token).first();
+
+        Map<String, AnnotationSet> annotationSetMap = new LinkedHashMap<>();
+        annotationSetMap.put(s_1, new AnnotationSet(vs1.getId(), vs1.getId(), new ObjectMap("var_name", "Joe")));
+        annotationSetMap.put(s_2, new AnnotationSet(vs1.getId(), vs1.getId(), new ObjectMap("var_name", "Ann")));
+        DataResult<Sample> result = catalogManager.getSampleManager().addAnnotationSets(studyFqn, annotationSetMap, false, token);
+        assertEquals(2, result.getNumUpdated());
+
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, SampleDBAdaptor.QueryParams.ANNOTATION_SETS.key());
+        for (Map.Entry<String, AnnotationSet> entry : annotationSetMap.entrySet()) {
+            Sample sample = catalogManager.getSampleManager().get(studyFqn, entry.getKey(), options, token).first();
+            AnnotationSet annotationSet = sample.getAnnotationSets().stream()
+                    .filter(as -> as.getId().equals(vs1.getId()))
+                    .findFirst()
+                    .orElse(null);
+            assertNotNull(annotationSet);
+            assertEquals(entry.getValue().getAnnotations().get("var_name"), annotationSet.getAnnotations().get("var_name"));
+        }
+
+        // The variable set is unique, so samples cannot be annotated twice
+        annotationSetMap.clear();
+        annotationSetMap.put(s_1, new AnnotationSet("other", vs1.getId(), new ObjectMap("var_name", "Joe")));
+        annotationSetMap.put(s_3, new AnnotationSet("other", vs1.getId(), new ObjectMap("var_name", "Bob")));
+        result = catalogManager.getSampleManager().addAnnotationSets(studyFqn, annotationSetMap, true, token);
+        assertEquals(1, result.getNumUpdated());
+        assertEquals(1, result.getEvents().stream().filter(event -> event.getType() == Event.Type.ERROR).count());
+    }
+
     @Test
     public void testSearchAnnotation() throws CatalogException, JsonProcessingException {
         List<Variable> variables = new ArrayList<>();
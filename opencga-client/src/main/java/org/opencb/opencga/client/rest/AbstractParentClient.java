@@ -221,18 +221,11 @@ public abstract class AbstractParentClient {
             // Update the batch limit
             int batchLimit = Math.min(batchSize, limit - finalNumResults);
 
-            // Build URL
-            WebTarget path = client
-                    .target(configuration.getRest().getHost())
-                    .path("webservices")
-                    .path("rest")
-                    .path("v2")
-                    .path(category1);
-
             // Select batch. Either by ID or with limit/skip
+            String batchIds = null;
             if (CollectionUtils.isNotEmpty(id1)) {
                 // Select batch of IDs
-                path = path.path(String.join(",", id1.subList(skip, skip + batchLimit)));
+                batchIds = String.join(",", id1.subList(skip, skip + batchLimit));
                 // FIXME: This should not be needed!
                 params.put(QueryOptions.LIMIT, batchLimit);
             } else {
@@ -240,13 +233,9 @@ public abstract class AbstractParentClient {
                 params.put(QueryOptions.SKIP, skip);
                 params.put(QueryOptions.LIMIT, batchLimit);
             }
-            if (StringUtils.isNotEmpty(category2)) {
-                path = path.path(category2);
-            }
-            if (StringUtils.isNotEmpty(id2)) {
-                path = path.path(id2);
-            }
-            path = path.path(action);
+
+            // Build URL
+            WebTarget path = buildPath(category1, batchIds, category2, id2, action);
 
             // Call REST
             RestResponse<T> batchRestResponse = callRest(path, params, clazz, method, action);
@@ -270,6 +259,74 @@ public abstract class AbstractParentClient {
         return finalRestResponse;
     }
 
+    /**
+     * Iterate over all the results of a query without loading them in memory.
+     * Results are fetched in pages of "batchSize" elements, prefetching the next page while the current one is consumed.
+     * Input SKIP and LIMIT params are applied to the whole iteration.
+     *
+     * @param category1 First category of the WS
+     * @param id1       ID of the first category. Not split in batches
+     * @param category2 Second category of the WS
+     * @param id2       ID of the second category
+     * @param action    Action of the WS
+     * @param paramsMap Params to be passed to the WS
+     * @param method    Method by which the query will be done (GET or POST)
+     * @param clazz     Expected return class
+     * @param <T>       Result type
+     * @return Iterator over the results
+     */
+    protected <T> RestResultIterator<T> iterator(String category1, String id1, String category2, String id2, String action,
+                                                 Map<String, Object> paramsMap, String method, Class<T> clazz) {
+        ObjectMap params;
+        if (paramsMap == null) {
+            params = new ObjectMap();
+        } else {
+            params = new ObjectMap(paramsMap);
+        }
+        params.put(QueryOptions.TIMEOUT, timeout);
+        int skip = params.getInt(QueryOptions.SKIP, DEFAULT_SKIP);
+        int limit = params.getInt(QueryOptions.LIMIT, 0);
+        params.remove(QueryOptions.SKIP);
+        params.remove(QueryOptions.LIMIT);
+        // The total count is not reported by the iterator
+        params.remove(QueryOptions.COUNT);
+
+        client.property(ClientProperties.CONNECT_TIMEOUT, 1000);
+        client.property(ClientProperties.READ_TIMEOUT, timeout);
+
+        WebTarget path = buildPath(category1, id1, category2, id2, action);
+        return new RestResultIterator<>((pageSkip, pageLimit) -> {
+            // Pages are fetched from a background thread. Do not modify the shared params
+            ObjectMap pageParams = new ObjectMap(params);
+            pageParams.put(QueryOptions.SKIP, pageSkip);
+            pageParams.put(QueryOptions.LIMIT, pageLimit);
+            RestResponse<T> response = callRest(path, pageParams, clazz, method);
+            if (response.getResponses() == null || response.getResponses().isEmpty()) {
+                return Collections.emptyList();
+            }
+            return response.first().getResults();
+        }, skip, limit, batchSize);
+    }
+
+    private WebTarget buildPath(String category1, String id1, String category2, String id2, String action) {
+        WebTarget path = client
+                .target(configuration.getRest().getHost())
+                .path("webservices")
+                .path("rest")
+                .path("v2")
+                .path(category1);
+        if (StringUtils.isNotEmpty(id1)) {
+            path = path.path(id1);
+        }
+        if (StringUtils.isNotEmpty(category2)) {
+            path = path.path(category2);
+        }
+        if (StringUtils.isNotEmpty(id2)) {
+            path = path.path(id2);
+        }
+        return path.path(action);
+    }
+
     private <T> RestResponse<T> callRest(WebTarget path, ObjectMap params, Class<T> clazz, String method, String action)
             throws ClientException {
         RestResponse<T> batchRestResponse;
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.client.rest;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.opencb.opencga.client.exceptions.ClientException;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Iterate over the results of a REST query, page by page, without materializing the whole result.
+ *
+ * While the results of one page are being consumed, the next page is requested in background,
+ * so the latency of the REST calls is hidden behind the processing of the results.
+ * Only the current page and the prefetched one are kept in memory.
+ *
+ * The iterator must be closed if it is not fully consumed, to cancel the pending request.
+ *
+ * @param <T> Result type
+ */
+public class RestResultIterator<T> implements Iterator<T>, AutoCloseable {
+
+    // Max number of pages being fetched at the same time, shared by all the iterators.
+    private static final int MAX_PREFETCH_THREADS = 4;
+    private static final ExecutorService THREAD_POOL = buildThreadPool();
+
+    @FunctionalInterface
+    public interface PageFetcher<T> {
+        /**
+         * Fetch one page of results.
+         *
+         * @param skip  Number of results to skip
+         * @param limit Max number of results to return
+         * @return List of results. If smaller than the limit, this is the last page.
+         * @throws ClientException on any server error
+         */
+        List<T> fetch(int skip, int limit) throws ClientException;
+    }
+
+    private final PageFetcher<T> fetcher;
+    private final int pageSize;
+    private final int limit;
+    private int skip;
+    private int requested;
+    private Future<List<T>> nextPage;
+    private int nextPageLimit;
+    private Iterator<T> iterator = Collections.emptyIterator();
+
+    /**
+     * Create a new iterator. The first page is requested immediately.
+     *
+     * @param fetcher  Function to fetch each page
+     * @param skip     Number of results to skip
+     * @param limit    Max number of results to return. Zero or negative to return all the results.
+     * @param pageSize Number of results per page
+     */
+    public RestResultIterator(PageFetcher<T> fetcher, int skip, int limit, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Expected positive page size. Found " + pageSize);
+        }
+        this.fetcher = fetcher;
+        this.pageSize = pageSize;
+        this.limit = limit > 0 ? limit : Integer.MAX_VALUE;
+        this.skip = Math.max(skip, 0);
+        this.nextPage = submit();
+    }
+
+    private static ExecutorService buildThreadPool() {
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(MAX_PREFETCH_THREADS, MAX_PREFETCH_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new BasicThreadFactory.Builder()
+                .namingPattern("rest-client-prefetch-%s")
+                .daemon(true)
+                .build());
+        // Release the threads when no iterator is in use
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
+    private Future<List<T>> submit() {
+        int pageLimit = Math.min(pageSize, limit - requested);
+        if (pageLimit <= 0) {
+            return null;
+        }
+        int pageSkip = skip;
+        skip += pageLimit;
+        requested += pageLimit;
+        nextPageLimit = pageLimit;
+        return THREAD_POOL.submit(() -> fetcher.fetch(pageSkip, pageLimit));
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!iterator.hasNext()) {
+            if (nextPage == null) {
+                return false;
+            }
+            List<T> page = get(nextPage);
+            if (page.size() < nextPageLimit) {
+                // Last page
+                nextPage = null;
+            } else {
+                // Prefetch the next page while this one is consumed
+                nextPage = submit();
+            }
+            iterator = page.iterator();
+        }
+        return true;
+    }
+
+    private List<T> get(Future<List<T>> future) {
+        try {
+            List<T> page = future.get();
+            return page == null ? Collections.emptyList() : page;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return iterator.next();
+    }
+
+    @Override
+    public void close() {
+        if (nextPage != null) {
+            nextPage.cancel(true);
+            nextPage = null;
+        }
+        iterator = Collections.emptyIterator();
+    }
+}
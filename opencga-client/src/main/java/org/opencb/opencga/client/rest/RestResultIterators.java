@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.client.rest;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.client.rest.clients.FileClient;
+import org.opencb.opencga.client.rest.clients.IndividualClient;
+import org.opencb.opencga.client.rest.clients.SampleClient;
+import org.opencb.opencga.client.rest.clients.VariantClient;
+import org.opencb.opencga.core.models.file.File;
+import org.opencb.opencga.core.models.individual.Individual;
+import org.opencb.opencga.core.models.sample.Sample;
+
+/**
+ * Build {@link RestResultIterator}s for the search endpoints of the generated clients.
+ *
+ * Iterators fetch the results in batches without loading the whole result in memory.
+ * The next batch is prefetched while the current one is consumed. Iterators must be closed if not fully consumed.
+ * Skip and limit params apply to the whole iteration.
+ */
+public final class RestResultIterators {
+
+    private RestResultIterators() {
+    }
+
+    /**
+     * Iterate over the results of {@link SampleClient#search}.
+     *
+     * @param client SampleClient
+     * @param params Same parameters as {@link SampleClient#search}.
+     * @return an iterator over the results.
+     */
+    public static RestResultIterator<Sample> samples(SampleClient client, ObjectMap params) {
+        return client.iterator("samples", null, null, null, "search", params, AbstractParentClient.GET, Sample.class);
+    }
+
+    /**
+     * Iterate over the results of {@link IndividualClient#search}.
+     *
+     * @param client IndividualClient
+     * @param params Same parameters as {@link IndividualClient#search}.
+     * @return an iterator over the results.
+     */
+    public static RestResultIterator<Individual> individuals(IndividualClient client, ObjectMap params) {
+        return client.iterator("individuals", null, null, null, "search", params, AbstractParentClient.GET, Individual.class);
+    }
+
+    /**
+     * Iterate over the results of {@link FileClient#search}.
+     *
+     * @param client FileClient
+     * @param params Same parameters as {@link FileClient#search}.
+     * @return an iterator over the results.
+     */
+    public static RestResultIterator<File> files(FileClient client, ObjectMap params) {
+        return client.iterator("files", null, null, null, "search", params, AbstractParentClient.GET, File.class);
+    }
+
+    /**
+     * Iterate over the results of {@link VariantClient#query}.
+     *
+     * @param client VariantClient
+     * @param params Same parameters as {@link VariantClient#query}.
+     * @return an iterator over the results.
+     */
+    public static RestResultIterator<Variant> variants(VariantClient client, ObjectMap params) {
+        return client.iterator("analysis", null, "variant", null, "query", params, AbstractParentClient.GET, Variant.class);
+    }
+}
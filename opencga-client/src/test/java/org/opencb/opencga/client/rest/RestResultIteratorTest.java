@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.client.rest;
+
+import org.junit.Test;
+import org.opencb.opencga.client.exceptions.ClientException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RestResultIteratorTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private RestResultIterator.PageFetcher<Integer> fetcher(int numResults) {
+        return (skip, limit) -> {
+            calls.incrementAndGet();
+            List<Integer> page = new ArrayList<>();
+            for (int i = skip; i < Math.min(numResults, skip + limit); i++) {
+                page.add(i);
+            }
+            return page;
+        };
+    }
+
+    private static List<Integer> toList(RestResultIterator<Integer> iterator) {
+        List<Integer> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    @Test
+    public void testIterateAll() {
+        assertEquals(range(0, 95), toList(new RestResultIterator<>(fetcher(95), 0, 0, 10)));
+        assertEquals(10, calls.get());
+    }
+
+    @Test
+    public void testIterateExactPages() {
+        assertEquals(range(0, 100), toList(new RestResultIterator<>(fetcher(100), 0, 0, 10)));
+        // One extra empty page to detect the end
+        assertEquals(11, calls.get());
+    }
+
+    @Test
+    public void testSkipLimit() {
+        assertEquals(range(15, 40), toList(new RestResultIterator<>(fetcher(100), 15, 25, 10)));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testEmpty() {
+        RestResultIterator<Integer> iterator = new RestResultIterator<>((skip, limit) -> Collections.emptyList(), 0, 0, 10);
+        assertFalse(iterator.hasNext());
+        assertFalse(iterator.hasNext());
+        assertEquals(Collections.emptyList(), toList(iterator));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testError() {
+        toList(new RestResultIterator<>((skip, limit) -> {
+            if (skip > 0) {
+                throw new ClientException("Error");
+            }
+            return range(0, limit);
+        }, 0, 0, 10));
+    }
+}
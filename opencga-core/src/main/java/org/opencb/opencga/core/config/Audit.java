@@ -25,6 +25,23 @@ public class Audit {
     private long maxDocuments;
     private long maxSize;
 
+    private Durability durability = Durability.SYNC;
+    private int bufferSize = 10000;
+    private int batchSize = 100;
+    private long flushInterval = 1000;
+
+    /**
+     * How audit records are written to the database.
+     */
+    public enum Durability {
+        /** Written on the caller thread, one insert per operation. */
+        SYNC,
+        /** Buffered and written in batches by a background thread. Callers block while the buffer is full. */
+        ASYNC,
+        /** Buffered and written in batches by a background thread. Records are discarded while the buffer is full. */
+        BEST_EFFORT
+    }
+
     public Audit() {
     }
 
@@ -40,6 +57,10 @@ public class Audit {
         sb.append("manager='").append(manager).append('\'');
         sb.append(", maxDocuments=").append(maxDocuments);
         sb.append(", maxSize=").append(maxSize);
+        sb.append(", durability=").append(durability);
+        sb.append(", bufferSize=").append(bufferSize);
+        sb.append(", batchSize=").append(batchSize);
+        sb.append(", flushInterval=").append(flushInterval);
         sb.append('}');
         return sb.toString();
     }
@@ -70,4 +91,40 @@ public class Audit {
         this.maxSize = maxSize;
         return this;
     }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public Audit setDurability(Durability durability) {
+        this.durability = durability;
+        return this;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public Audit setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Audit setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public Audit setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
 }
@@ -17,9 +17,15 @@
 package org.opencb.opencga.master.monitor.daemons;
 
 import com.google.common.base.CaseFormat;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpStatus;
+import org.bson.Document;
 import org.glassfish.jersey.client.ClientProperties;
 import org.opencb.commons.datastore.core.Event;
 import org.opencb.commons.datastore.core.ObjectMap;
@@ -63,6 +69,7 @@ import org.opencb.opencga.catalog.db.api.DBIterator;
 import org.opencb.opencga.catalog.db.api.FileDBAdaptor;
 import org.opencb.opencga.catalog.db.api.JobDBAdaptor;
 import org.opencb.opencga.catalog.db.api.StudyDBAdaptor;
+import org.opencb.opencga.catalog.db.mongodb.MongoDBAdaptorFactory;
 import org.opencb.opencga.catalog.exceptions.CatalogDBException;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.catalog.exceptions.CatalogIOException;
@@ -112,6 +119,7 @@ import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -131,9 +139,31 @@ public class ExecutionDaemon extends MonitorParentDaemon {
     private String internalCli;
     private JobManager jobManager;
     private FileManager fileManager;
-    private final Map<String, Long> jobsCountByType = new HashMap<>();
     private final Map<String, Long> retainedLogsTime = new HashMap<>();
 
+    // Number of queued or running jobs of each tool. Counted from catalog the first time a tool is required,
+    // and then updated with every job queued or finished by the daemon.
+    // Counts are discarded every ACTIVE_JOBS_RELOAD_INTERVAL to catch up with jobs changed from outside the daemon.
+    private final Map<String, Long> activeJobsByTool = new HashMap<>();
+    private long activeJobsByToolLoadTime = 0;
+    private static final long ACTIVE_JOBS_RELOAD_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    // Jobs known to have finished successfully. Their status is not going to change,
+    // so there is no need to read them again every time a job depending on them is checked.
+    private final Set<Long> doneJobs = Collections.newSetFromMap(new LinkedHashMap<Long, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_DONE_JOBS;
+        }
+    });
+    private static final int MAX_DONE_JOBS = 100000;
+    private static final int PENDING_JOBS_BATCH_SIZE = 100;
+    private static final long WATCHER_RESTART_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    // Permits released to start a new iteration before the interval is over
+    private final Semaphore wakeUp = new Semaphore(0);
+    private volatile MongoCursor<ChangeStreamDocument<Document>> jobSubmissionsCursor;
+
     private Path defaultJobDir;
 
     private static final Map<String, String> TOOL_CLI_MAP;
@@ -148,6 +178,7 @@ public class ExecutionDaemon extends MonitorParentDaemon {
     private final Query queuedJobsQuery;
     private final Query runningJobsQuery;
     private final QueryOptions queryOptions;
+    private final QueryOptions pendingJobsQueryOptions;
 
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
@@ -241,13 +272,23 @@ public class ExecutionDaemon extends MonitorParentDaemon {
                 .append(QueryOptions.SORT, Arrays.asList(JobDBAdaptor.QueryParams.PRIORITY.key(),
                         JobDBAdaptor.QueryParams.CREATION_DATE.key()))
                 .append(QueryOptions.ORDER, QueryOptions.ASCENDING);
+        // Dependencies of pending jobs are resolved by the daemon
+        pendingJobsQueryOptions = new QueryOptions(queryOptions)
+                .append(JobDBAdaptor.SKIP_DEPENDS_ON_LOOKUP, true);
     }
 
     @Override
     public void run() {
+        Thread watcher = new Thread(this::watchJobSubmissions, "job-submissions-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
         while (!exit) {
             try {
-                Thread.sleep(interval);
+                // Wait until the interval is over, or until something happens
+                if (wakeUp.tryAcquire(interval, TimeUnit.MILLISECONDS)) {
+                    wakeUp.drainPermits();
+                }
             } catch (InterruptedException e) {
                 if (!exit) {
                     e.printStackTrace();
@@ -261,6 +302,11 @@ public class ExecutionDaemon extends MonitorParentDaemon {
             }
         }
 
+        MongoCursor<ChangeStreamDocument<Document>> cursor = jobSubmissionsCursor;
+        if (cursor != null) {
+            cursor.close();
+        }
+
         try {
             logger.info("Attempt to shutdown webhook executor");
             executor.shutdown();
@@ -276,18 +322,80 @@ public class ExecutionDaemon extends MonitorParentDaemon {
         }
     }
 
+    @Override
+    public void setExit(boolean exit) {
+        super.setExit(exit);
+        wakeUp();
+    }
+
+    /**
+     * Start a new iteration without waiting for the interval to finish.
+     */
+    public void wakeUp() {
+        wakeUp.release();
+    }
+
+    /**
+     * Wake up the daemon every time a new job is submitted.
+     * Requires MongoDB change streams, only available on replica sets. Otherwise, new jobs are found every "interval" ms.
+     * If the change stream fails, it is opened again after WATCHER_RESTART_INTERVAL.
+     */
+    private void watchJobSubmissions() {
+        if (!(dbAdaptorFactory instanceof MongoDBAdaptorFactory)) {
+            return;
+        }
+        boolean warn = true;
+        while (!exit) {
+            try (MongoCursor<ChangeStreamDocument<Document>> cursor = ((MongoDBAdaptorFactory) dbAdaptorFactory).getMongoDataStore()
+                    .getDb()
+                    .getCollection(MongoDBAdaptorFactory.JOB_COLLECTION)
+                    .watch(Collections.singletonList(Aggregates.match(Filters.eq("operationType", "insert"))))
+                    .iterator()) {
+                jobSubmissionsCursor = cursor;
+                logger.info("Watching job submissions");
+                warn = true;
+                while (!exit && cursor.hasNext()) {
+                    cursor.next();
+                    wakeUp();
+                }
+            } catch (MongoException | IllegalStateException e) {
+                if (exit) {
+                    return;
+                }
+                // Do not flood the logs if the change streams are not supported
+                if (warn) {
+                    logger.warn("Unable to watch job submissions. Looking for new jobs every {}ms. Retry in {}s. {}", interval,
+                            TimeUnit.MILLISECONDS.toSeconds(WATCHER_RESTART_INTERVAL), e.getMessage());
+                    warn = false;
+                } else {
+                    logger.debug("Unable to watch job submissions. {}", e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error watching job submissions", e);
+            }
+            try {
+                Thread.sleep(WATCHER_RESTART_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     protected void checkJobs() {
-        long pendingJobs = -1;
-        long queuedJobs = -1;
-        long runningJobs = -1;
-        try {
-            pendingJobs = jobManager.count(pendingJobsQuery, token).getNumMatches();
-            queuedJobs = jobManager.count(queuedJobsQuery, token).getNumMatches();
-            runningJobs = jobManager.count(runningJobsQuery, token).getNumMatches();
-        } catch (CatalogException e) {
-            logger.error("{}", e.getMessage(), e);
+        long now = System.currentTimeMillis();
+        if (now - activeJobsByToolLoadTime > ACTIVE_JOBS_RELOAD_INTERVAL) {
+            activeJobsByTool.clear();
+            activeJobsByToolLoadTime = now;
+            try {
+                long pendingJobs = jobManager.count(pendingJobsQuery, token).getNumMatches();
+                long queuedJobs = jobManager.count(queuedJobsQuery, token).getNumMatches();
+                long runningJobs = jobManager.count(runningJobsQuery, token).getNumMatches();
+                logger.info("----- EXECUTION DAEMON  ----- pending={}, queued={}, running={}", pendingJobs, queuedJobs, runningJobs);
+            } catch (CatalogException e) {
+                logger.error("{}", e.getMessage(), e);
+            }
         }
-        logger.info("----- EXECUTION DAEMON  ----- pending={}, queued={}, running={}", pendingJobs, queuedJobs, runningJobs);
 
             /*
             PENDING JOBS
@@ -315,6 +423,10 @@ public class ExecutionDaemon extends MonitorParentDaemon {
         } catch (CatalogException e) {
             logger.error("{}", e.getMessage(), e);
         }
+        if (handledRunningJobs >= NUM_JOBS_HANDLED) {
+            // There might be more jobs to handle. Do not wait for the next interval
+            wakeUp();
+        }
     }
 
     protected int checkRunningJob(Job job) {
@@ -368,6 +480,10 @@ public class ExecutionDaemon extends MonitorParentDaemon {
         } catch (CatalogException e) {
             logger.error("{}", e.getMessage(), e);
         }
+        if (handledQueuedJobs >= NUM_JOBS_HANDLED) {
+            // There might be more jobs to handle. Do not wait for the next interval
+            wakeUp();
+        }
     }
 
     /**
@@ -407,18 +523,85 @@ public class ExecutionDaemon extends MonitorParentDaemon {
     }
 
     protected void checkPendingJobs() {
-        // Clear job counts each cycle
-        jobsCountByType.clear();
+        if (!batchExecutor.canBeQueued()) {
+            // No job can be queued. Skip reading pending jobs
+            return;
+        }
 
         int handledPendingJobs = 0;
-        try (DBIterator<Job> iterator = jobManager.iterator(pendingJobsQuery, queryOptions, token)) {
+        try (DBIterator<Job> iterator = jobManager.iterator(pendingJobsQuery, pendingJobsQueryOptions, token)) {
+            List<Job> batch = new ArrayList<>(PENDING_JOBS_BATCH_SIZE);
             while (handledPendingJobs < NUM_JOBS_HANDLED && iterator.hasNext()) {
-                Job job = iterator.next();
-                handledPendingJobs += checkPendingJob(job);
+                batch.clear();
+                while (batch.size() < PENDING_JOBS_BATCH_SIZE && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                resolveDependencies(batch);
+                for (Job job : batch) {
+                    if (handledPendingJobs >= NUM_JOBS_HANDLED) {
+                        break;
+                    }
+                    handledPendingJobs += checkPendingJob(job);
+                }
             }
         } catch (CatalogException e) {
             logger.error("{}", e.getMessage(), e);
         }
+        if (handledPendingJobs >= NUM_JOBS_HANDLED) {
+            // There might be more jobs to handle. Do not wait for the next interval
+            wakeUp();
+        }
+    }
+
+    /**
+     * Fill the status of the jobs the given pending jobs depend on.
+     * Jobs known to be done are not read again. The rest are read from catalog in one single query.
+     *
+     * @param jobs Pending jobs
+     * @throws CatalogException on catalog errors
+     */
+    private void resolveDependencies(List<Job> jobs) throws CatalogException {
+        Set<Long> unknownJobs = new HashSet<>();
+        for (Job job : jobs) {
+            if (CollectionUtils.isNotEmpty(job.getDependsOn())) {
+                for (Job dependency : job.getDependsOn()) {
+                    if (!doneJobs.contains(dependency.getUid())) {
+                        unknownJobs.add(dependency.getUid());
+                    }
+                }
+            }
+        }
+        Map<Long, Job> dependencies = new HashMap<>();
+        if (!unknownJobs.isEmpty()) {
+            Query query = new Query(JobDBAdaptor.QueryParams.UID.key(), new ArrayList<>(unknownJobs));
+            QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, Arrays.asList(JobDBAdaptor.QueryParams.ID.key(),
+                    JobDBAdaptor.QueryParams.UID.key(), JobDBAdaptor.QueryParams.UUID.key(), JobDBAdaptor.QueryParams.STUDY_UID.key(),
+                    JobDBAdaptor.QueryParams.INTERNAL_STATUS.key()))
+                    .append(JobDBAdaptor.SKIP_DEPENDS_ON_LOOKUP, true);
+            try (DBIterator<Job> iterator = jobManager.iterator(query, options, token)) {
+                while (iterator.hasNext()) {
+                    Job dependency = iterator.next();
+                    dependencies.put(dependency.getUid(), dependency);
+                    if (Enums.ExecutionStatus.DONE.equals(dependency.getInternal().getStatus().getName())) {
+                        doneJobs.add(dependency.getUid());
+                    }
+                }
+            }
+        }
+        for (Job job : jobs) {
+            if (CollectionUtils.isNotEmpty(job.getDependsOn())) {
+                List<Job> dependsOn = new ArrayList<>(job.getDependsOn().size());
+                for (Job dependency : job.getDependsOn()) {
+                    Job resolved = dependencies.get(dependency.getUid());
+                    if (resolved == null && doneJobs.contains(dependency.getUid())) {
+                        dependency.setInternal(new JobInternal(new Enums.ExecutionStatus(Enums.ExecutionStatus.DONE)));
+                        resolved = dependency;
+                    }
+                    dependsOn.add(resolved == null ? dependency : resolved);
+                }
+                job.setDependsOn(dependsOn);
+            }
+        }
     }
 
     /**
@@ -562,6 +745,7 @@ public class ExecutionDaemon extends MonitorParentDaemon {
 
         job.getInternal().setStatus(updateParams.getInternal().getStatus());
         notifyStatusChange(job);
+        updateActiveJobs(job.getTool().getId(), 1);
 
         return 1;
     }
@@ -716,6 +900,10 @@ public class ExecutionDaemon extends MonitorParentDaemon {
     private boolean canBeQueued(Job job) {
         if (job.getDependsOn() != null && !job.getDependsOn().isEmpty()) {
             for (Job tmpJob : job.getDependsOn()) {
+                if (tmpJob.getInternal() == null || tmpJob.getInternal().getStatus() == null) {
+                    abortJob(job, "Job '" + tmpJob.getUid() + "' it depended on was not found");
+                    return false;
+                }
                 if (!Enums.ExecutionStatus.DONE.equals(tmpJob.getInternal().getStatus().getName())) {
                     if (Enums.ExecutionStatus.ABORTED.equals(tmpJob.getInternal().getStatus().getName())
                             || Enums.ExecutionStatus.ERROR.equals(tmpJob.getInternal().getStatus().getName())) {
@@ -740,18 +928,7 @@ public class ExecutionDaemon extends MonitorParentDaemon {
     }
 
     private boolean canBeQueued(String toolId, int maxJobs) {
-        Query query = new Query()
-                .append(JobDBAdaptor.QueryParams.INTERNAL_STATUS_NAME.key(), Enums.ExecutionStatus.QUEUED + ","
-                        + Enums.ExecutionStatus.RUNNING)
-                .append(JobDBAdaptor.QueryParams.TOOL_ID.key(), toolId);
-        long currentJobs = jobsCountByType.computeIfAbsent(toolId, k -> {
-            try {
-                return catalogManager.getJobManager().count(query, token).getNumMatches();
-            } catch (CatalogException e) {
-                logger.error("Error counting the current number of running and queued \"" + toolId + "\" jobs", e);
-                return 0L;
-            }
-        });
+        long currentJobs = getActiveJobs(toolId);
         if (currentJobs >= maxJobs) {
             long now = System.currentTimeMillis();
             Long lastTimeLog = retainedLogsTime.getOrDefault(toolId, 0L);
@@ -763,12 +940,42 @@ public class ExecutionDaemon extends MonitorParentDaemon {
             }
             return false;
         } else {
-            jobsCountByType.remove(toolId);
             retainedLogsTime.put(toolId, 0L);
             return true;
         }
     }
 
+    private long getActiveJobs(String toolId) {
+        Long activeJobs = activeJobsByTool.get(toolId);
+        if (activeJobs == null) {
+            Query query = new Query()
+                    .append(JobDBAdaptor.QueryParams.INTERNAL_STATUS_NAME.key(), Enums.ExecutionStatus.QUEUED + ","
+                            + Enums.ExecutionStatus.RUNNING)
+                    .append(JobDBAdaptor.QueryParams.TOOL_ID.key(), toolId);
+            try {
+                activeJobs = catalogManager.getJobManager().count(query, token).getNumMatches();
+            } catch (CatalogException e) {
+                logger.error("Error counting the current number of running and queued \"" + toolId + "\" jobs", e);
+                // Do not cache the value. Try again next time
+                return 0;
+            }
+            activeJobsByTool.put(toolId, activeJobs);
+        }
+        return activeJobs;
+    }
+
+    /**
+     * Update the number of active jobs of a tool. Only tools already counted are updated.
+     *
+     * @param toolId Tool id
+     * @param delta  Number of jobs started (positive) or finished (negative)
+     */
+    private void updateActiveJobs(String toolId, int delta) {
+        if (toolId != null) {
+            activeJobsByTool.computeIfPresent(toolId, (k, activeJobs) -> Math.max(0, activeJobs + delta));
+        }
+    }
+
     private int abortJob(Job job, String description) {
         logger.info("Aborting job: {} - Reason: '{}'", job.getId(), description);
         return setStatus(job, new Enums.ExecutionStatus(Enums.ExecutionStatus.ABORTED, description));
@@ -897,6 +1104,17 @@ public class ExecutionDaemon extends MonitorParentDaemon {
     }
 
     private int processFinishedJob(Job job, Enums.ExecutionStatus status) {
+        try {
+            return registerFinishedJob(job, status);
+        } finally {
+            // The job is no longer running, even if its results could not be registered
+            updateActiveJobs(job.getTool().getId(), -1);
+            // Finished jobs might unblock pending jobs depending on them, or waiting for a free slot
+            wakeUp();
+        }
+    }
+
+    private int registerFinishedJob(Job job, Enums.ExecutionStatus status) {
         logger.info("[{}] - Processing finished job with status {}", job.getId(), status.getName());
 
         Path outDirUri = Paths.get(job.getOutDir().getUri());
@@ -1008,6 +1226,10 @@ public class ExecutionDaemon extends MonitorParentDaemon {
         job.getInternal().setStatus(updateParams.getInternal().getStatus());
         notifyStatusChange(job);
 
+        if (Enums.ExecutionStatus.DONE.equals(job.getInternal().getStatus().getName())) {
+            doneJobs.add(job.getUid());
+        }
+
         return 1;
     }
 
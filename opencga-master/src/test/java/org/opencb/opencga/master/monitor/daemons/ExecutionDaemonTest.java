@@ -281,6 +281,32 @@ public class ExecutionDaemonTest extends AbstractManagerTest {
         assertEquals(Enums.ExecutionStatus.QUEUED, jobOpenCGAResult.first().getInternal().getStatus().getName());
     }
 
+    @Test
+    public void testMaxConcurrentJobs() throws Exception {
+        HashMap<String, Object> params = new HashMap<>();
+        String job1 = catalogManager.getJobManager().submit(studyFqn, "variant-index", Enums.Priority.MEDIUM, params, token).first().getId();
+        String job2 = catalogManager.getJobManager().submit(studyFqn, "variant-index", Enums.Priority.MEDIUM, params, token).first().getId();
+
+        daemon.checkJobs();
+
+        assertEquals(Enums.ExecutionStatus.QUEUED, getJob(job1).getInternal().getStatus().getName());
+        assertEquals(Enums.ExecutionStatus.PENDING, getJob(job2).getInternal().getStatus().getName());
+
+        executor.jobStatus.put(job1, Enums.ExecutionStatus.RUNNING);
+        daemon.checkJobs();
+        assertEquals(Enums.ExecutionStatus.RUNNING, getJob(job1).getInternal().getStatus().getName());
+        assertEquals(Enums.ExecutionStatus.PENDING, getJob(job2).getInternal().getStatus().getName());
+
+        createAnalysisResult(job1, "myTest", ar -> ar.setStatus(new Status(Status.Type.DONE, null, TimeUtils.getDate())));
+        executor.jobStatus.put(job1, Enums.ExecutionStatus.READY);
+        daemon.checkJobs();
+        assertEquals(Enums.ExecutionStatus.DONE, getJob(job1).getInternal().getStatus().getName());
+
+        // The finished job released one slot
+        daemon.checkJobs();
+        assertEquals(Enums.ExecutionStatus.QUEUED, getJob(job2).getInternal().getStatus().getName());
+    }
+
     @Test
     public void testDependsOnMultiStudy() throws Exception {
         HashMap<String, Object> params = new HashMap<>();
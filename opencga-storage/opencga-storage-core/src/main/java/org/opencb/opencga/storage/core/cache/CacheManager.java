@@ -16,182 +16,249 @@
 
 package org.opencb.opencga.storage.core.cache;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.generic.GenericRecord;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.variant.Genotype;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.commons.datastore.core.FacetField;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
-import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.core.models.common.GenericRecordAvroJsonMixin;
 import org.opencb.opencga.storage.core.config.CacheConfiguration;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
-import org.redisson.Config;
-import org.redisson.Redisson;
-import org.redisson.RedissonClient;
-import org.redisson.client.RedisConnectionException;
-import org.redisson.codec.JsonJacksonCodec;
-import org.redisson.codec.KryoCodec;
-import org.redisson.core.RKeys;
-import org.redisson.core.RMap;
-
+import org.opencb.opencga.storage.core.variant.io.json.mixin.FacetFieldJsonMixin;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.GenotypeJsonMixin;
+import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantStatsJsonMixin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Query result cache.
+ *
+ * Values are stored serialized as JSON in a list of {@link CacheStore} tiers, sorted from fastest to slowest.
+ * By default, an in-heap tier is used, followed by a disk tier if {@link CacheConfiguration#getDiskPath()} is defined.
+ * Values found in a slower tier are promoted to the faster ones. Each call to {@link #get} returns a new instance,
+ * so callers are free to modify the returned values.
+ *
+ * Entries are never explicitly invalidated. Instead, the key of each entry should contain a version stamp
+ * that changes whenever the underlying data is modified. Stale entries will be evicted eventually.
+ *
  * Created by wasim on 26/10/16.
  */
-public class CacheManager {
+public class CacheManager implements AutoCloseable {
 
-    private StorageConfiguration storageConfiguration;
+    public static final String VARIANT_TYPE = "var";
+    public static final String ALIGNMENT_TYPE = "aln";
+    /**
+     * Query option to skip the cache. Enabled by default.
+     */
+    public static final String CACHE = "cache";
 
-    private Config redissonConfig;
-    private Set<String> allowedTypesSet;
-    private RedissonClient redissonClient;
-    private boolean redisState;
+    private static final String PREFIX_DATABASE_KEY = "ocga:";
+    private static final Set<String> IGNORED_KEYS = new HashSet<>(Arrays.asList(CACHE, "sId", "token"));
 
+    private final CacheConfiguration configuration;
+    private final Set<String> allowedTypesSet;
+    private final List<CacheStore> stores;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
 
-    private static final String PREFIX_DATABASE_KEY = "ocga:";
+    private final Logger logger = LoggerFactory.getLogger(CacheManager.class);
 
     public CacheManager() {
+        this((CacheConfiguration) null);
     }
 
     public CacheManager(StorageConfiguration configuration) {
+        this(configuration == null ? null : configuration.getCache());
+    }
 
-        CacheConfiguration cache;
-
-        if (configuration != null && configuration.getCache() != null) {
-
-            this.storageConfiguration = configuration;
-
-            cache = configuration.getCache();
-            redissonConfig = new Config();
-
-            String host = (StringUtils.isNotEmpty(cache.getHost()))
-                    ? cache.getHost()
-                    : CacheConfiguration.DEFAULT_HOST;
-            redissonConfig.useSingleServer().setAddress(host);
-
-            String codec = (StringUtils.isNotEmpty(cache.getSerialization()))
-                    ? cache.getSerialization()
-                    : CacheConfiguration.DEFAULT_SERIALIZATION;
-
-            this.allowedTypesSet = new HashSet<>(Arrays.asList(cache.getAllowedTypes().split(",")));
-
-
-            if (StringUtils.isNotEmpty(cache.getPassword())) {
-                redissonConfig.useSingleServer().setPassword(cache.getPassword());
-            }
-
-            if ("KRYO".equalsIgnoreCase(codec)) {
-                redissonConfig.setCodec(new KryoCodec());
-            } else {
-                redissonConfig.setCodec(new JsonJacksonCodec());
-            }
-
-            redisState = true;
+    public CacheManager(CacheConfiguration configuration) {
+        this(configuration, buildStores(configuration));
+    }
 
-//            redissonClient = Redisson.create(redissonConfig);
-            redissonClient = null;
+    public CacheManager(CacheConfiguration configuration, List<CacheStore> stores) {
+        this.configuration = configuration;
+        this.stores = new ArrayList<>(stores);
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .addMixIn(GenericRecord.class, GenericRecordAvroJsonMixin.class)
+                .addMixIn(VariantStats.class, VariantStatsJsonMixin.class)
+                .addMixIn(Genotype.class, GenotypeJsonMixin.class)
+                .addMixIn(FacetField.class, FacetFieldJsonMixin.class)
+                .addMixIn(FacetField.Bucket.class, FacetFieldJsonMixin.BucketJsonMixin.class);
+        if (configuration != null && configuration.getAllowedTypes() != null) {
+            this.allowedTypesSet = new HashSet<>(Arrays.asList(configuration.getAllowedTypes().split(",")));
+        } else {
+            this.allowedTypesSet = Collections.emptySet();
         }
     }
 
-
-    public <T> QueryResult<T> get(String key) {
-
-        QueryResult<T> queryResult = new QueryResult<>();
-        if (isActive()) {
-            long start = System.currentTimeMillis();
-            RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
-
-            try {
-                // We only retrieve the first field of the HASH, which is the only one that exist.
-                Map<Integer, Map<String, Object>> result = map.getAll(new HashSet<>(Collections.singletonList(0)));
-
-                if (result != null && !result.isEmpty()) {
-                    Object resultMap = result.get(0).get("result");
-                    queryResult = (QueryResult<T>) resultMap;
-                    queryResult.setDbTime((int) (System.currentTimeMillis() - start));
-                }
-            } catch (RedisConnectionException e) {
-                redisState = false;
-                queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
-                return queryResult;
-            }
+    private static List<CacheStore> buildStores(CacheConfiguration configuration) {
+        if (configuration == null) {
+            return Collections.emptyList();
         }
-        return queryResult;
+        List<CacheStore> stores = new ArrayList<>(2);
+        stores.add(new HeapCacheStore(configuration.getMaxEntries(), configuration.getExpiration()));
+        if (StringUtils.isNotEmpty(configuration.getDiskPath())) {
+            stores.add(new DiskCacheStore(Paths.get(configuration.getDiskPath()), configuration.getDiskMaxSize()));
+        }
+        return stores;
     }
 
-    public void set(String key, Query query, QueryResult queryResult) {
-
-        if (isActive()) {
-            if (queryResult.getDbTime() >= storageConfiguration.getCache().getSlowThreshold()
-                    && queryResult.getResult().size() >= storageConfiguration.getCache().getMaxResultSize()) {
-                RMap<Integer, Map<String, Object>> map = getRedissonClient().getMap(key);
-                Map<String, Object> record = new HashMap<>();
-                record.put("query", query);
-                record.put("result", queryResult);
+    /**
+     * Get a cached value.
+     *
+     * @param key   Key, as generated by {@link #createKey}
+     * @param type  Value type
+     * @param typeParameters Generic type parameters of the value type, if any. e.g. DataResult&lt;Long&gt;
+     * @param <T>   Value type
+     * @return      New instance of the cached value, or null if missing
+     */
+    public <T> T get(String key, Class<?> type, Class<?>... typeParameters) {
+        if (!isActive()) {
+            return null;
+        }
+        for (int i = 0; i < stores.size(); i++) {
+            byte[] value = stores.get(i).get(key);
+            if (value != null) {
+                // Promote to faster tiers
+                for (int j = 0; j < i; j++) {
+                    stores.get(j).put(key, value);
+                }
+                JavaType javaType = typeParameters.length == 0
+                        ? objectMapper.getTypeFactory().constructType(type)
+                        : objectMapper.getTypeFactory().constructParametricType(type, typeParameters);
                 try {
-                    map.fastPut(0, record);
-                } catch (RedisConnectionException e) {
-                    redisState = false;
-                    queryResult.setWarningMsg("Unable to connect to Redis Cache, Please query WITHOUT Cache (Falling back to Database)");
+                    T t = objectMapper.readValue(value, javaType);
+                    hits.incrementAndGet();
+                    return t;
+                } catch (IOException e) {
+                    logger.warn("Unable to read cached value " + key, e);
+                    break;
                 }
             }
         }
+        misses.incrementAndGet();
+        return null;
     }
 
-    public String createKey(String studyId, String allowedType, Query query, QueryOptions queryOptions) {
-
-        queryOptions.remove("cache");
-        queryOptions.remove("sId");
-
-        StringBuilder key = new StringBuilder(PREFIX_DATABASE_KEY);
-        key.append(studyId).append(":").append(allowedType);
-        SortedMap<String, SortedSet<Object>> map = new TreeMap<>();
-
-        for (String item : query.keySet()) {
-            map.put(item.toLowerCase(), new TreeSet<>(query.getAsStringList(item)));
+    /**
+     * Store a value in the cache.
+     * Values are only stored if they took more than {@link CacheConfiguration#getSlowThreshold()} milliseconds to compute,
+     * and have no more than {@link CacheConfiguration#getMaxResultSize()} results.
+     *
+     * @param key           Key, as generated by {@link #createKey}
+     * @param value         Value to store
+     * @param time          Time in milliseconds to compute the value
+     * @param numResults    Number of results contained in the value
+     */
+    public void set(String key, Object value, long time, int numResults) {
+        if (isActive() && value != null
+                && time >= configuration.getSlowThreshold()
+                && numResults <= configuration.getMaxResultSize()) {
+            byte[] bytes;
+            try {
+                bytes = objectMapper.writeValueAsBytes(value);
+            } catch (IOException e) {
+                logger.warn("Unable to cache value " + key, e);
+                return;
+            }
+            for (CacheStore store : stores) {
+                store.put(key, bytes);
+            }
         }
+    }
 
-        for (String item : queryOptions.keySet()) {
-            map.put(item.toLowerCase(), new TreeSet<>(queryOptions.getAsStringList(item)));
+    /**
+     * Create a cache key.
+     * Query and options are expected to be normalized, so equivalent queries produce the same key.
+     *
+     * @param type          Type of result. See {@link #isTypeAllowed}
+     * @param operation     Operation executed, e.g. get, count, facet
+     * @param version       Version stamp of the data being queried
+     * @param query         Query
+     * @param queryOptions  Query options
+     * @return              Key
+     */
+    public String createKey(String type, String operation, long version, Query query, QueryOptions queryOptions) {
+        SortedMap<String, String> map = new TreeMap<>();
+        if (query != null) {
+            for (String item : query.keySet()) {
+                if (!IGNORED_KEYS.contains(item)) {
+                    map.put("q." + item, query.getString(item));
+                }
+            }
+        }
+        if (queryOptions != null) {
+            for (String item : queryOptions.keySet()) {
+                if (!IGNORED_KEYS.contains(item)) {
+                    map.put("o." + item, queryOptions.getString(item));
+                }
+            }
         }
 
-        String sha1 = DigestUtils.sha1Hex(map.toString());
-        key.append(":").append(sha1);
-
-        queryOptions.add("cache", "true");
-        return key.toString();
+        return PREFIX_DATABASE_KEY + type + ':' + operation + ':' + version + ':' + DigestUtils.sha1Hex(map.toString());
     }
 
     public boolean isActive() {
-        return storageConfiguration.getCache().isActive() && redisState;
+        return configuration != null && configuration.isActive() && !stores.isEmpty();
     }
 
     public boolean isTypeAllowed(String type) {
         return allowedTypesSet.contains(type);
     }
 
-    public void clear() {
-        RKeys redisKeys = getRedissonClient().getKeys();
-        redisKeys.deleteByPattern(PREFIX_DATABASE_KEY + "*");
+    public long getHitCount() {
+        return hits.get();
     }
 
-    public void clear(Pattern pattern) {
-        RKeys redisKeys = getRedissonClient().getKeys();
-        redisKeys.deleteByPattern(pattern.toString());
+    public long getMissCount() {
+        return misses.get();
     }
 
-    public void close() {
-        if (redissonClient != null) {
-            redissonClient.shutdown();
-            redissonClient = null;
+    public double getHitRate() {
+        long hitCount = getHitCount();
+        long total = hitCount + getMissCount();
+        return total == 0 ? 1.0 : ((double) hitCount) / total;
+    }
+
+    public void clear() {
+        for (CacheStore store : stores) {
+            store.clear();
         }
     }
 
-    private synchronized RedissonClient getRedissonClient() {
-        if (redissonClient == null) {
-            redissonClient = Redisson.create(redissonConfig);
+    @Override
+    public void close() {
+        for (CacheStore store : stores) {
+            try {
+                store.close();
+            } catch (RuntimeException e) {
+                logger.warn("Error closing cache store " + store.getClass().getSimpleName(), e);
+            }
         }
-        return redissonClient;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("CacheManager{");
+        sb.append("active=").append(isActive());
+        sb.append(", allowedTypes=").append(allowedTypesSet);
+        sb.append(", hits=").append(hits);
+        sb.append(", misses=").append(misses);
+        sb.append('}');
+        return sb.toString();
     }
 
 }
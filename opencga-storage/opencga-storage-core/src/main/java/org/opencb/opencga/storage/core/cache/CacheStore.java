@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.cache;
+
+/**
+ * Storage tier used by the {@link CacheManager}.
+ *
+ * Values are stored serialized, so callers never share instances with the cache.
+ * Implementations must be thread safe, and are free to drop any entry at any moment.
+ */
+public interface CacheStore extends AutoCloseable {
+
+    /**
+     * Get a cached value.
+     *
+     * @param key Key
+     * @return    Serialized cached value, or null if missing
+     */
+    byte[] get(String key);
+
+    void put(String key, byte[] value);
+
+    void clear();
+
+    long size();
+
+    @Override
+    default void close() {
+    }
+}
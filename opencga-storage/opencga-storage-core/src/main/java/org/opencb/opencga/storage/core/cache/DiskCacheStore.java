@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.cache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Local disk {@link CacheStore}, to keep more results than fit in the heap.
+ *
+ * Each entry is stored in one file. When the total size exceeds the given limit, the least recently used entries are removed.
+ * Entries survive restarts. As keys contain a version stamp, entries from a previous execution are either still valid,
+ * or never read again and eventually evicted.
+ */
+public class DiskCacheStore implements CacheStore {
+
+    private static final String SUFFIX = ".cache";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong currentSize = new AtomicLong();
+
+    private final Logger logger = LoggerFactory.getLogger(DiskCacheStore.class);
+
+    public DiskCacheStore(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(directory);
+            for (Path file : listFiles()) {
+                currentSize.addAndGet(Files.size(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to initialize disk cache at " + directory, e);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) {
+        Path file = getFile(key);
+        try {
+            byte[] value = Files.readAllBytes(file);
+            // Last modified time is used to evict the least recently used entries
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return value;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Unable to read cache entry " + file, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] value) {
+        if (value.length > maxSize) {
+            return;
+        }
+        Path file = getFile(key);
+        Path tmpFile = directory.resolve(file.getFileName() + "." + Thread.currentThread().getId() + TMP_SUFFIX);
+        try {
+            Files.write(tmpFile, value);
+            long previousSize = Files.exists(file) ? Files.size(file) : 0;
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (currentSize.addAndGet(value.length - previousSize) > maxSize) {
+                evict();
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to write cache entry " + file, e);
+            try {
+                Files.deleteIfExists(tmpFile);
+            } catch (IOException ignore) {
+                logger.debug("Unable to delete " + tmpFile, ignore);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        try {
+            for (Path file : listFiles()) {
+                delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long size() {
+        try {
+            return listFiles().size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getCurrentSize() {
+        return currentSize.get();
+    }
+
+    private synchronized void evict() throws IOException {
+        if (currentSize.get() <= maxSize) {
+            // Already evicted by other thread
+            return;
+        }
+        List<Path> files = listFiles();
+        List<FileTime> times = new ArrayList<>(files.size());
+        for (Path file : files) {
+            try {
+                times.add(Files.getLastModifiedTime(file));
+            } catch (NoSuchFileException e) {
+                times.add(FileTime.fromMillis(0));
+            }
+        }
+        List<Integer> sorted = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            sorted.add(i);
+        }
+        sorted.sort(Comparator.comparing(times::get));
+
+        // Free some extra space, to avoid evicting on every put
+        long target = maxSize - maxSize / 10;
+        for (Integer i : sorted) {
+            if (currentSize.get() <= target) {
+                break;
+            }
+            delete(files.get(i));
+        }
+    }
+
+    private void delete(Path file) throws IOException {
+        try {
+            long size = Files.size(file);
+            if (Files.deleteIfExists(file)) {
+                currentSize.addAndGet(-size);
+            }
+        } catch (NoSuchFileException ignore) {
+            // Already deleted
+        }
+    }
+
+    private List<Path> listFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        return files;
+    }
+
+    private Path getFile(String key) {
+        return directory.resolve(DigestUtils.sha1Hex(key) + SUFFIX);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-heap {@link CacheStore} with LRU eviction and time based expiration.
+ */
+public class HeapCacheStore implements CacheStore {
+
+    private final Cache<String, byte[]> cache;
+
+    public HeapCacheStore(long maxEntries, long expirationMillis) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxEntries);
+        if (expirationMillis > 0) {
+            builder.expireAfterWrite(expirationMillis, TimeUnit.MILLISECONDS);
+        }
+        cache = builder.build();
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public void put(String key, byte[] value) {
+        cache.put(key, value);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+}
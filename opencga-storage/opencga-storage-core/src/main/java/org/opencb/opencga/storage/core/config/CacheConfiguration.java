@@ -24,28 +24,54 @@ public class CacheConfiguration {
     /**
      * This field contain the host and port, ie. host[:port].
      */
+    @Deprecated
     private String host;
     private boolean active;
 
     /**
      * Accepted values are: JSON, Kryo.
      */
+    @Deprecated
     private String serialization;
     private int slowThreshold;
     private int maxResultSize;
+    @Deprecated
     private String password;
 
+    /**
+     * Max number of entries in the in-heap cache.
+     */
+    private long maxEntries;
+
+    /**
+     * Expiration time in milliseconds since the entry was created. Use 0 to never expire.
+     */
+    private long expiration;
+
+    /**
+     * Local directory for the disk cache tier. Leave empty to disable it.
+     */
+    private String diskPath;
+
+    /**
+     * Max size in bytes of the disk cache tier.
+     */
+    private long diskMaxSize;
+
     /**
      * Accepted values are: aln(alignment), var(variant).
      */
     private String allowedTypes;
 
-    public static final boolean DEFAULT_ACTVE = true;
+    public static final boolean DEFAULT_ACTVE = false;
     public static final String DEFAULT_SERIALIZATION = "json";
     public static final String DEFAULT_ALLOWED_TYPE = "aln,var";
     public static final String DEFAULT_HOST = "localhost:6379";
     public static final String DEFAULT_PASSWORD = "";
     public static final int DEFAULT_MAX_FILE_SIZE = 500;
+    public static final long DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_EXPIRATION = 3600000;
+    public static final long DEFAULT_DISK_MAX_SIZE = 1024L * 1024 * 1024;
 
     public CacheConfiguration() {
         this(DEFAULT_HOST, DEFAULT_ACTVE, DEFAULT_SERIALIZATION, 50, DEFAULT_MAX_FILE_SIZE, DEFAULT_PASSWORD,
@@ -61,6 +87,9 @@ public class CacheConfiguration {
         this.maxResultSize = maxFileSize;
         this.password = password;
         this.allowedTypes = allowedTypes;
+        this.maxEntries = DEFAULT_MAX_ENTRIES;
+        this.expiration = DEFAULT_EXPIRATION;
+        this.diskMaxSize = DEFAULT_DISK_MAX_SIZE;
     }
 
     @Override
@@ -72,6 +101,10 @@ public class CacheConfiguration {
                 + ", slowThreshold=" + slowThreshold
                 + ", maxResultSize=" + maxResultSize
                 + ", allowedTypes='" + allowedTypes + '\''
+                + ", maxEntries=" + maxEntries
+                + ", expiration=" + expiration
+                + ", diskPath='" + diskPath + '\''
+                + ", diskMaxSize=" + diskMaxSize
                 + '}');
         return sb.toString();
     }
@@ -138,4 +171,40 @@ public class CacheConfiguration {
         this.allowedTypes = allowedTypes;
         return this;
     }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public CacheConfiguration setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    public long getExpiration() {
+        return expiration;
+    }
+
+    public CacheConfiguration setExpiration(long expiration) {
+        this.expiration = expiration;
+        return this;
+    }
+
+    public String getDiskPath() {
+        return diskPath;
+    }
+
+    public CacheConfiguration setDiskPath(String diskPath) {
+        this.diskPath = diskPath;
+        return this;
+    }
+
+    public long getDiskMaxSize() {
+        return diskMaxSize;
+    }
+
+    public CacheConfiguration setDiskMaxSize(long diskMaxSize) {
+        this.diskMaxSize = diskMaxSize;
+        return this;
+    }
 }
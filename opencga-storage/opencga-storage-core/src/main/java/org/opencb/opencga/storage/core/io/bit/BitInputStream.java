@@ -13,26 +13,48 @@ package org.opencb.opencga.storage.core.io.bit;
  *   is.read(4) => 4567
  * </code>
  *
+ * Bytes are loaded into a 64 bits buffer, so most of the reads are resolved with a shift and a mask.
+ * Instances can be reused with {@link #reset}.
+ *
  * @see BitOutputStream
  */
 public class BitInputStream {
 
-    private final byte[] value;
-    private final int numBits;
+    private byte[] value;
+    private int idx;        // Next byte to load into the buffer
+    private int end;        // Last byte (exclusive)
     private int remainingBits;
-    private int idx;
-    private int bitIdx;
+    private long buffer;
+    private int bufferBits; // Number of valid bits in the buffer
+
+    public BitInputStream() {
+        this(new byte[0]);
+    }
 
     public BitInputStream(byte[] value) {
         this(value, 0, value.length);
     }
 
     public BitInputStream(byte[] value, int offset, int length) {
+        reset(value, offset, length);
+    }
+
+    /**
+     * Reuse this instance to read from a new byte array.
+     *
+     * @param value  Byte array
+     * @param offset Offset of the first byte
+     * @param length Number of bytes to read
+     * @return this
+     */
+    public BitInputStream reset(byte[] value, int offset, int length) {
         this.value = value;
-        numBits = length * Byte.SIZE;
-        remainingBits = numBits;
         idx = offset;
-        bitIdx = 0;
+        end = offset + length;
+        remainingBits = length * Byte.SIZE;
+        buffer = 0;
+        bufferBits = 0;
+        return this;
     }
 
     public int remainingBits() {
@@ -53,51 +75,101 @@ public class BitInputStream {
         if (length > Byte.SIZE) {
             throw new IllegalArgumentException();
         }
+        return (byte) readBits(length);
+    }
+
+    /**
+     * Read up to 32 bits.
+     *
+     * @param length Number of bits to read.
+     * @return read value
+     */
+    public int readInt(int length) {
+        if (length > Integer.SIZE) {
+            throw new IllegalArgumentException();
+        }
+        return (int) readBits(length);
+    }
+
+    private long readBits(int length) {
         remainingBits -= length;
         if (remainingBits < 0) {
+            remainingBits += length;
             throw new IllegalArgumentException();
         }
-        int r; // Use int to avoid intermediate castings
-        if (length > (Byte.SIZE - bitIdx)) {
-            r = ((value[idx] >>> bitIdx) & mask(Byte.SIZE - bitIdx));
-            idx++;
-            length -= Byte.SIZE - bitIdx;
-            r |= (value[idx] & mask(length)) << (Byte.SIZE - bitIdx);
-            bitIdx = length;
+        if (bufferBits < length) {
+            fill();
+        }
+        long r = buffer & mask(length);
+        buffer >>>= length;
+        bufferBits -= length;
+        return r;
+    }
+
+    /**
+     * Load as many bytes as possible into the buffer.
+     * Requires less than 32 bits in the buffer, so it can load at least 4 bytes.
+     */
+    private void fill() {
+        if (bufferBits == 0 && end - idx >= Long.BYTES) {
+            // Fast path. Load a full word
+            buffer = (value[idx] & 0xFFL)
+                    | (value[idx + 1] & 0xFFL) << 8
+                    | (value[idx + 2] & 0xFFL) << 16
+                    | (value[idx + 3] & 0xFFL) << 24
+                    | (value[idx + 4] & 0xFFL) << 32
+                    | (value[idx + 5] & 0xFFL) << 40
+                    | (value[idx + 6] & 0xFFL) << 48
+                    | (value[idx + 7] & 0xFFL) << 56;
+            idx += Long.BYTES;
+            bufferBits = Long.SIZE;
         } else {
-            r = ((value[idx] >>> bitIdx) & mask(length));
-            bitIdx += length;
-            if (bitIdx == Byte.SIZE) {
-                bitIdx = 0;
+            while (bufferBits <= Long.SIZE - Byte.SIZE && idx < end) {
+                buffer |= (value[idx] & 0xFFL) << bufferBits;
                 idx++;
+                bufferBits += Byte.SIZE;
             }
         }
-        return (byte) r;
     }
 
     public byte[] readBytes(int numValues, int valueBitLength) {
         byte[] bytes = new byte[numValues];
+        readBytes(bytes, 0, numValues, valueBitLength);
+        return bytes;
+    }
+
+    /**
+     * Read multiple values of up to 8 bits into an existing array.
+     *
+     * @param dest           Destination array
+     * @param offset         Position of the first value in the destination array
+     * @param numValues      Number of values to read
+     * @param valueBitLength Number of bits of each value
+     * @return               Destination array
+     */
+    public byte[] readBytes(byte[] dest, int offset, int numValues, int valueBitLength) {
+        if (valueBitLength > Byte.SIZE) {
+            throw new IllegalArgumentException();
+        }
         for (int i = 0; i < numValues; i++) {
-            bytes[i] = readByte(valueBitLength);
+            dest[offset + i] = (byte) readBits(valueBitLength);
         }
-        return bytes;
+        return dest;
     }
 
     public byte[] read(int length) {
         int bytes = length / Byte.SIZE;
         int bits = length % Byte.SIZE;
         byte[] result = new byte[bytes + (bits > 0 ? 1 : 0)];
-        for (int i = 0; i < bytes; i++) {
-            result[i] = readByte();
-        }
+        readBytes(result, 0, bytes, Byte.SIZE);
         if (bits > 0) {
             result[bytes] = readByte(bits);
         }
         return result;
     }
 
-    private static int mask(int i) {
-        return (1 << i) - 1;
+    private static long mask(int i) {
+        return (1L << i) - 1;
     }
 
 }
@@ -1,6 +1,6 @@
 package org.opencb.opencga.storage.core.io.bit;
 
-import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 
 /**
  * Serialize streams of bits in a byte array.
@@ -15,20 +15,24 @@ import java.io.ByteArrayOutputStream;
  *                        0004567x]
  * </code>
  *
+ * Values are accumulated in a 64 bits buffer, and flushed to the byte array 4 bytes at a time.
+ * Instances can be reused with {@link #reset}.
+ *
  * @see BitInputStream
  */
 public class BitOutputStream {
 
-    private final ByteArrayOutputStream os;
-    private int buffer = 0; // only one byte buffer. Use int to avoid casts.
-    private byte bufferCapacity = Byte.SIZE;
+    private byte[] bytes;
+    private int size;       // Number of bytes written into the array
+    private long buffer;
+    private int bufferBits; // Number of valid bits in the buffer. Always less than 32 between writes.
 
     public BitOutputStream() {
         this(100);
     }
 
     public BitOutputStream(int size) {
-        os = new ByteArrayOutputStream(size);
+        bytes = new byte[Math.max(size, Integer.BYTES)];
     }
 
     /**
@@ -38,35 +42,64 @@ public class BitOutputStream {
      * @param bitsLength Number of bits to write from the integer.
      */
     public void write(int value, int bitsLength) {
-        int offset = 0;
-        while (bufferCapacity <= bitsLength - offset) {
-            // Complete buffer
-            buffer |= (value >>> offset & mask(bufferCapacity)) << (Byte.SIZE - bufferCapacity);
-            os.write(buffer);
-            buffer = 0;
-            offset += bufferCapacity;
-            bufferCapacity = Byte.SIZE;
+        if (bitsLength > Integer.SIZE) {
+            throw new IllegalArgumentException();
         }
-        if (bitsLength > offset) {
-            buffer |= ((value >>> offset) & mask(bitsLength - offset)) << (Byte.SIZE - bufferCapacity);
-            bufferCapacity -= bitsLength - offset;
+        buffer |= (value & mask(bitsLength)) << bufferBits;
+        bufferBits += bitsLength;
+        if (bufferBits >= Integer.SIZE) {
+            flushInt();
         }
     }
 
+    private void flushInt() {
+        ensureCapacity(size + Integer.BYTES);
+        bytes[size] = (byte) buffer;
+        bytes[size + 1] = (byte) (buffer >>> 8);
+        bytes[size + 2] = (byte) (buffer >>> 16);
+        bytes[size + 3] = (byte) (buffer >>> 24);
+        size += Integer.BYTES;
+        buffer >>>= Integer.SIZE;
+        bufferBits -= Integer.SIZE;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, minCapacity));
+        }
+    }
+
+    /**
+     * Number of bytes required to serialize the stream.
+     *
+     * @return number of bytes
+     */
+    public int size() {
+        return size + (bufferBits + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    /**
+     * Copy the content of the stream into a new byte array. The stream is not modified.
+     *
+     * @return new byte array
+     */
     public byte[] toByteArray() {
-        if (bufferCapacity != Byte.SIZE) {
-            os.write(buffer);
+        byte[] result = Arrays.copyOf(bytes, size());
+        long b = buffer;
+        for (int i = size; i < result.length; i++) {
+            result[i] = (byte) b;
+            b >>>= Byte.SIZE;
         }
-        return os.toByteArray();
+        return result;
     }
 
     public void reset() {
-        os.reset();
+        size = 0;
         buffer = 0;
-        bufferCapacity = Byte.SIZE;
+        bufferBits = 0;
     }
 
-    private static int mask(int i) {
-        return (1 << i) - 1;
+    private static long mask(int i) {
+        return (1L << i) - 1;
     }
 }
@@ -1,19 +1,42 @@
 package org.opencb.opencga.storage.core.metadata;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
 
 /**
+ * Bounded cache of metadata values indexed by study and resource id.
+ *
+ * Each study has its own LRU cache, bounded to a max number of elements.
+ * Before every access, the study validator is called. This allows the owner of the cache
+ * to invalidate the entries of a study if its metadata was modified by another process.
+ *
  * Created by jacobo on 27/02/19.
  */
 public class MetadataCache<ID, R> {
 
-    private final ConcurrentHashMap<String, R> cache;
+    public static final long DEFAULT_MAX_SIZE = 100000;
+
+    private final ConcurrentHashMap<Integer, Cache<ID, R>> studyCaches;
     private final BiFunction<Integer, ID, R> function;
+    private final long maxSize;
+    private final IntConsumer studyValidator;
+    // Stats from invalidated studies
+    private CacheStats invalidatedStats = new CacheStats(0, 0, 0, 0, 0, 0);
 
     public MetadataCache(BiFunction<Integer, ID, R> function) {
+        this(function, DEFAULT_MAX_SIZE, studyId -> { });
+    }
+
+    public MetadataCache(BiFunction<Integer, ID, R> function, long maxSize, IntConsumer studyValidator) {
         this.function = function;
-        this.cache = new ConcurrentHashMap<>();
+        this.maxSize = maxSize;
+        this.studyValidator = studyValidator;
+        this.studyCaches = new ConcurrentHashMap<>();
     }
 
     /**
@@ -24,17 +47,17 @@ public class MetadataCache<ID, R> {
      * @return        Value
      */
     public R get(int studyId, ID id) {
-        String key = getKey(studyId, id);
-
-        // Avoid unnecessary synchronize blocks.
-        // ConcurrentHashMap::get does not have any synchronization block
-        R r = cache.get(key);
-        if (r != null) {
-            return r;
-        } else {
-            // Use this method to avoid executing the function twice
-            return cache.computeIfAbsent(key, k -> this.function.apply(studyId, id));
+        Cache<ID, R> cache = getStudyCache(studyId);
+
+        R r = cache.getIfPresent(id);
+        if (r == null) {
+            // Null values are not cached
+            r = this.function.apply(studyId, id);
+            if (r != null) {
+                cache.put(id, r);
+            }
         }
+        return r;
     }
 
     /**
@@ -46,35 +69,78 @@ public class MetadataCache<ID, R> {
      * @return Value
      */
     public R get(int studyId, ID id, R invalidValue) {
-        String key = getKey(studyId, id);
+        Cache<ID, R> cache = getStudyCache(studyId);
 
-        // Avoid unnecessary synchronize blocks.
-        // ConcurrentHashMap::get does not have any synchronization block
-        R r = cache.get(key);
+        R r = cache.getIfPresent(id);
         if (r == null || r.equals(invalidValue)) {
-            // Use this method to avoid executing the function twice
-            return cache.compute(key, (k, v) -> {
-                if (v == null || v.equals(invalidValue)) {
-                    return this.function.apply(studyId, id);
-                } else {
-                    return v;
-                }
-            });
-        } else {
-            return r;
+            r = this.function.apply(studyId, id);
+            if (r != null) {
+                cache.put(id, r);
+            }
         }
+        return r;
     }
 
     public void put(int studyId, ID id, R value) {
-        cache.put(getKey(studyId, id), value);
+        getStudyCache(studyId).put(id, value);
+    }
+
+    /**
+     * Remove all the cached values from one study.
+     *
+     * @param studyId Study id
+     */
+    public void invalidate(int studyId) {
+        Cache<ID, R> cache = studyCaches.remove(studyId);
+        if (cache != null) {
+            addInvalidatedStats(cache.stats());
+        }
     }
 
     public void clear() {
-        cache.clear();
+        for (Integer studyId : studyCaches.keySet()) {
+            invalidate(studyId);
+        }
     }
 
-    private String getKey(int studyId, ID id) {
-        return studyId + "_" + id;
+    public long size() {
+        long size = 0;
+        for (Cache<ID, R> cache : studyCaches.values()) {
+            size += cache.size();
+        }
+        return size;
+    }
+
+    /**
+     * Get the accumulated stats of this cache, including the studies that were invalidated.
+     *
+     * @return Cache stats
+     */
+    public CacheStats stats() {
+        CacheStats stats;
+        synchronized (this) {
+            stats = invalidatedStats;
+        }
+        for (Cache<ID, R> cache : studyCaches.values()) {
+            stats = stats.plus(cache.stats());
+        }
+        return stats;
+    }
+
+    private synchronized void addInvalidatedStats(CacheStats stats) {
+        invalidatedStats = invalidatedStats.plus(stats);
+    }
+
+    private Cache<ID, R> getStudyCache(int studyId) {
+        studyValidator.accept(studyId);
+        Cache<ID, R> cache = studyCaches.get(studyId);
+        if (cache == null) {
+            cache = studyCaches.computeIfAbsent(studyId, k -> CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .recordStats()
+                    .build());
+        }
+        return cache;
     }
 
 }
@@ -17,6 +17,7 @@
 package org.opencb.opencga.storage.core.metadata;
 
 import com.google.common.base.Throwables;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.Iterators;
@@ -45,6 +46,7 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
@@ -88,36 +90,59 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     private final MetadataCache<String, Integer> cohortIdCache;
     private final MetadataCache<Integer, String> cohortNameCache;
 
+    private final Map<String, MetadataCache<?, ?>> caches = new LinkedHashMap<>();
+    private final Map<Integer, CacheVersion> cacheVersions = new ConcurrentHashMap<>();
+    private final long cacheMaxSize;
+    private final long cacheVersionCheckInterval;
+    // Study ids read at the given project cache version. New studies always update the project version.
+    private volatile Pair<Integer, Collection<Integer>> cacheVersionStudies;
+
+    private static final String METADATA_VERSION_COUNTER = "metadataVersion";
+    private static final int PROJECT_CACHE_VERSION = -1;
+
+    private static final class CacheVersion {
+        private volatile int version = -1;
+        private volatile long nextCheck = 0;
+    }
+
     public VariantStorageMetadataManager(VariantStorageMetadataDBAdaptorFactory dbAdaptorFactory) {
+        this(dbAdaptorFactory, new ObjectMap());
+    }
+
+    public VariantStorageMetadataManager(VariantStorageMetadataDBAdaptorFactory dbAdaptorFactory, ObjectMap options) {
         this.projectDBAdaptor = dbAdaptorFactory.buildProjectMetadataDBAdaptor();
         this.studyDBAdaptor = dbAdaptorFactory.buildStudyMetadataDBAdaptor();
         this.fileDBAdaptor = dbAdaptorFactory.buildFileMetadataDBAdaptor();
         this.sampleDBAdaptor = dbAdaptorFactory.buildSampleMetadataDBAdaptor();
         this.cohortDBAdaptor = dbAdaptorFactory.buildCohortMetadataDBAdaptor();
         this.taskDBAdaptor = dbAdaptorFactory.buildTaskDBAdaptor();
-        sampleIdCache = new MetadataCache<>(sampleDBAdaptor::getSampleId);
-        sampleNameCache = new MetadataCache<>((studyId, sampleId) -> {
+        this.cacheMaxSize = options.getLong(VariantStorageOptions.METADATA_CACHE_MAX_SIZE.key(),
+                VariantStorageOptions.METADATA_CACHE_MAX_SIZE.defaultValue());
+        this.cacheVersionCheckInterval = options.getLong(VariantStorageOptions.METADATA_CACHE_VERSION_CHECK_INTERVAL.key(),
+                VariantStorageOptions.METADATA_CACHE_VERSION_CHECK_INTERVAL.<Integer>defaultValue());
+        sampleIdCache = newCache("sampleId", sampleDBAdaptor::getSampleId);
+        sampleNameCache = newCache("sampleName", (studyId, sampleId) -> {
             SampleMetadata sampleMetadata = sampleDBAdaptor.getSampleMetadata(studyId, sampleId, null);
             if (sampleMetadata == null) {
                 throw VariantQueryException.sampleNotFound(sampleId, getStudyName(studyId));
             }
             return sampleMetadata.getName();
         });
-        sampleIdIndexedCache = new MetadataCache<>((studyId, sampleId) -> {
+        sampleIdIndexedCache = newCache("sampleIdIndexed", (studyId, sampleId) -> {
             SampleMetadata sampleMetadata = sampleDBAdaptor.getSampleMetadata(studyId, sampleId, null);
             if (sampleMetadata == null) {
                 throw VariantQueryException.sampleNotFound(sampleId, getStudyName(studyId));
             }
             return sampleMetadata.isIndexed();
         });
-        sampleIdsFromFileIdCache = new MetadataCache<>((studyId, fileId) -> {
+        sampleIdsFromFileIdCache = newCache("sampleIdsFromFileId", (studyId, fileId) -> {
             FileMetadata fileMetadata = fileDBAdaptor.getFileMetadata(studyId, fileId, null);
             if (fileMetadata == null) {
                 throw VariantQueryException.fileNotFound(fileId, getStudyName(studyId));
             }
             return fileMetadata.getSamples();
         });
-        splitDataCache = new MetadataCache<>((studyId, sampleId) -> {
+        splitDataCache = newCache("splitData", (studyId, sampleId) -> {
             SampleMetadata sampleMetadata = sampleDBAdaptor.getSampleMetadata(studyId, sampleId, null);
             if (sampleMetadata == null) {
                 throw VariantQueryException.sampleNotFound(sampleId, getStudyName(studyId));
@@ -125,22 +150,22 @@ public class VariantStorageMetadataManager implements AutoCloseable {
             return sampleMetadata.getSplitData();
         });
 
-        fileIdCache = new MetadataCache<>(fileDBAdaptor::getFileId);
-        fileNameCache = new MetadataCache<>((studyId, fileId) -> {
+        fileIdCache = newCache("fileId", fileDBAdaptor::getFileId);
+        fileNameCache = newCache("fileName", (studyId, fileId) -> {
             FileMetadata fileMetadata = fileDBAdaptor.getFileMetadata(studyId, fileId, null);
             if (fileMetadata == null) {
                 throw VariantQueryException.fileNotFound(fileId, getStudyName(studyId));
             }
             return fileMetadata.getName();
         });
-        fileIdIndexedCache = new MetadataCache<>((studyId, fileId) -> {
+        fileIdIndexedCache = newCache("fileIdIndexed", (studyId, fileId) -> {
             FileMetadata fileMetadata = fileDBAdaptor.getFileMetadata(studyId, fileId, null);
             if (fileMetadata == null) {
                 throw VariantQueryException.fileNotFound(fileId, getStudyName(studyId));
             }
             return fileMetadata.isIndexed();
         });
-        fileIdsFromSampleIdCache = new MetadataCache<>((studyId, sampleId) -> {
+        fileIdsFromSampleIdCache = newCache("fileIdsFromSampleId", (studyId, sampleId) -> {
             SampleMetadata sampleMetadata = getSampleMetadata(studyId, sampleId);
             if (sampleMetadata == null) {
                 throw VariantQueryException.sampleNotFound(sampleId, getStudyName(studyId));
@@ -148,8 +173,8 @@ public class VariantStorageMetadataManager implements AutoCloseable {
             return sampleMetadata.getFiles();
         });
 
-        cohortIdCache = new MetadataCache<>(cohortDBAdaptor::getCohortId);
-        cohortNameCache = new MetadataCache<>((studyId, cohortId) -> {
+        cohortIdCache = newCache("cohortId", cohortDBAdaptor::getCohortId);
+        cohortNameCache = newCache("cohortName", (studyId, cohortId) -> {
             CohortMetadata cohortMetadata = cohortDBAdaptor.getCohortMetadata(studyId, cohortId, null);
             if (cohortMetadata == null) {
                 throw VariantQueryException.cohortNotFound(cohortId, studyId, getAvailableCohorts(studyId));
@@ -158,6 +183,113 @@ public class VariantStorageMetadataManager implements AutoCloseable {
         });
     }
 
+    private <ID, R> MetadataCache<ID, R> newCache(String name, BiFunction<Integer, ID, R> function) {
+        MetadataCache<ID, R> cache = new MetadataCache<>(function, cacheMaxSize, this::refreshCacheVersion);
+        caches.put(name, cache);
+        return cache;
+    }
+
+    /**
+     * Invalidate the cached values of a study if its metadata version stamp changed since the last check.
+     * The version stamp is read from the DB at most once every {@link #cacheVersionCheckInterval} milliseconds.
+     *
+     * @param studyId Study id, or {@link #PROJECT_CACHE_VERSION}
+     * @return Current cache version
+     */
+    private CacheVersion refreshCacheVersion(int studyId) {
+        CacheVersion cacheVersion = cacheVersions.computeIfAbsent(studyId, k -> new CacheVersion());
+        if (cacheVersionCheckInterval < 0) {
+            return cacheVersion;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= cacheVersion.nextCheck) {
+            cacheVersion.nextCheck = now + cacheVersionCheckInterval;
+            int version = projectDBAdaptor.getCounter(toCounterStudyId(studyId), toCounterName(studyId));
+            if (version != cacheVersion.version) {
+                if (cacheVersion.version >= 0 && studyId != PROJECT_CACHE_VERSION) {
+                    logger.debug("Metadata from study {} modified by an external process. Invalidate cache", studyId);
+                    for (MetadataCache<?, ?> cache : caches.values()) {
+                        cache.invalidate(studyId);
+                    }
+                }
+                cacheVersion.version = version;
+            }
+        }
+        return cacheVersion;
+    }
+
+    /**
+     * Invalidate the cached values of a study, and increment its metadata version stamp,
+     * so other processes can invalidate their caches as well.
+     *
+     * @param studyId Study id, or {@link #PROJECT_CACHE_VERSION}
+     */
+    private void updateCacheVersion(int studyId) {
+        int version;
+        try {
+            version = projectDBAdaptor.generateId(toCounterStudyId(studyId), toCounterName(studyId));
+        } catch (StorageEngineException e) {
+            throw Throwables.propagate(e);
+        }
+        if (studyId != PROJECT_CACHE_VERSION) {
+            for (MetadataCache<?, ?> cache : caches.values()) {
+                cache.invalidate(studyId);
+            }
+        }
+        cacheVersions.computeIfAbsent(studyId, k -> new CacheVersion()).version = version;
+    }
+
+    private static Integer toCounterStudyId(int studyId) {
+        return studyId == PROJECT_CACHE_VERSION ? null : studyId;
+    }
+
+    // Some adaptors share the counters between studies, so the study is part of the counter name
+    private static String toCounterName(int studyId) {
+        return studyId == PROJECT_CACHE_VERSION ? METADATA_VERSION_COUNTER : METADATA_VERSION_COUNTER + '_' + studyId;
+    }
+
+    /**
+     * Get a version stamp of the whole project. The stamp changes every time the metadata of the project or any of its studies
+     * is modified, either by this or by other processes, e.g. when loading or removing files, annotating or calculating stats.
+     *
+     * Modifications from other processes may take up to {@link VariantStorageOptions#METADATA_CACHE_VERSION_CHECK_INTERVAL}
+     * milliseconds to be noticed.
+     *
+     * @return Version stamp
+     */
+    public long getMetadataVersion() {
+        int projectVersion = refreshCacheVersion(PROJECT_CACHE_VERSION).version;
+        Pair<Integer, Collection<Integer>> studies = cacheVersionStudies;
+        if (studies == null || studies.getKey() != projectVersion) {
+            studies = Pair.of(projectVersion, new ArrayList<>(getStudies().values()));
+            cacheVersionStudies = studies;
+        }
+        long version = projectVersion;
+        for (Integer studyId : studies.getValue()) {
+            version += refreshCacheVersion(studyId).version;
+        }
+        return version;
+    }
+
+    /**
+     * Increment the project version stamp, to notify that the variants data was modified without modifying any metadata.
+     * See {@link #getMetadataVersion()}
+     */
+    public void updateMetadataVersion() {
+        updateCacheVersion(PROJECT_CACHE_VERSION);
+    }
+
+    /**
+     * Get the accumulated hit/miss stats of every metadata cache.
+     *
+     * @return Map from cache name to stats
+     */
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.stats()));
+        return stats;
+    }
+
     public Lock lockStudy(int studyId) throws StorageEngineException {
         return lockStudy(studyId, DEFAULT_LOCK_DURATION, DEFAULT_TIMEOUT);
     }
@@ -218,6 +350,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
 
     public void unsecureUpdateStudyMetadata(StudyMetadata sm) {
         studyDBAdaptor.updateStudyMetadata(sm);
+        updateCacheVersion(sm.getId());
     }
 
     @Deprecated
@@ -476,6 +609,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
 
             lock.checkLocked();
             projectDBAdaptor.updateProjectMetadata(projectMetadata, updateCounters);
+            updateCacheVersion(PROJECT_CACHE_VERSION);
             return projectMetadata;
         } finally {
             lock.unlock();
@@ -562,6 +696,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     public void unsecureUpdateFileMetadata(int studyId, FileMetadata file) {
         file.setStudyId(studyId);
         fileDBAdaptor.updateFileMetadata(studyId, file, null);
+        updateCacheVersion(studyId);
     }
 
     public <E extends Exception> FileMetadata updateFileMetadata(int studyId, int fileId, UpdateFunction<FileMetadata, E> update)
@@ -686,8 +821,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
             logger.info("Register file " + name + " as INDEXED");
         }
         fileDBAdaptor.addIndexedFiles(studyId, fileIds);
-        fileIdsFromSampleIdCache.clear();
-        fileIdIndexedCache.clear();
+        updateCacheVersion(studyId);
     }
 
     public void removeIndexedFiles(int studyId, Collection<Integer> fileIds) throws StorageEngineException {
@@ -716,6 +850,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
             });
         }
         fileDBAdaptor.removeIndexedFiles(studyId, fileIds);
+        updateCacheVersion(studyId);
     }
 
     public Iterator<FileMetadata> fileMetadataIterator(int studyId) {
@@ -729,6 +864,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     public void unsecureUpdateSampleMetadata(int studyId, SampleMetadata sample) {
         sample.setStudyId(studyId);
         sampleDBAdaptor.updateSampleMetadata(studyId, sample, null);
+        updateCacheVersion(studyId);
     }
 
     public <E extends Exception> SampleMetadata updateSampleMetadata(int studyId, int sampleId, UpdateFunction<SampleMetadata, E> update)
@@ -872,6 +1008,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
     public void unsecureUpdateCohortMetadata(int studyId, CohortMetadata cohort) {
         cohort.setStudyId(studyId);
         cohortDBAdaptor.updateCohortMetadata(studyId, cohort, null);
+        updateCacheVersion(studyId);
     }
 
     public <E extends Exception> CohortMetadata updateCohortMetadata(int studyId, int cohortId, UpdateFunction<CohortMetadata, E> update)
@@ -895,6 +1032,7 @@ public class VariantStorageMetadataManager implements AutoCloseable {
             throw VariantQueryException.cohortNotFound(cohort.toString(), studyId, this);
         }
         cohortDBAdaptor.removeCohort(studyId, cohortId);
+        updateCacheVersion(studyId);
     }
 
     public Integer getCohortId(int studyId, String cohortName) {
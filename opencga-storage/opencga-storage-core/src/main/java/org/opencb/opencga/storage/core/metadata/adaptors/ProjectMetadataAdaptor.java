@@ -35,4 +35,13 @@ public interface ProjectMetadataAdaptor extends AutoCloseable {
     }
 
     int generateId(Integer studyId, String idType) throws StorageEngineException;
+
+    /**
+     * Read the current value of a counter, without incrementing it.
+     *
+     * @param studyId Study id, as used in {@link #generateId(Integer, String)}
+     * @param idType  Counter type
+     * @return        Current value of the counter, or 0 if the counter does not exist
+     */
+    int getCounter(Integer studyId, String idType);
 }
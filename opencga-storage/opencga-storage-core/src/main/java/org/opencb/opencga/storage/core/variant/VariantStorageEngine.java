@@ -16,12 +16,14 @@
 
 package org.opencb.opencga.storage.core.variant;
 
+import com.google.common.collect.Iterators;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.biodata.models.variant.metadata.VariantFileMetadata;
 import org.opencb.biodata.models.variant.metadata.VariantMetadata;
 import org.opencb.cellbase.client.config.ClientConfiguration;
 import org.opencb.cellbase.client.rest.CellBaseClient;
@@ -31,6 +33,7 @@ import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.response.VariantQueryResult;
 import org.opencb.opencga.storage.core.StorageEngine;
 import org.opencb.opencga.storage.core.StoragePipelineResult;
+import org.opencb.opencga.storage.core.cache.CacheManager;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.exceptions.StoragePipelineException;
@@ -74,6 +77,8 @@ import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.opencb.opencga.storage.core.variant.VariantStorageOptions.*;
@@ -87,11 +92,13 @@ import static org.opencb.opencga.storage.core.variant.search.VariantSearchUtils.
 public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdaptor> implements VariantIterable {
 
     private final AtomicReference<VariantSearchManager> variantSearchManager = new AtomicReference<>();
+    private final AtomicReference<CacheManager> cacheManager = new AtomicReference<>();
     private final List<VariantQueryExecutor> lazyVariantQueryExecutorsList = new ArrayList<>();
     private final List<VariantAggregationExecutor> lazyVariantAggregationExecutorsList = new ArrayList<>();
     private CellBaseUtils cellBaseUtils;
 
     public static final String REMOVE_OPERATION_NAME = TaskMetadata.Type.REMOVE.name().toLowerCase();
+    private static final long SEARCH_INDEX_CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toMillis(30);
 
     private Logger logger = LoggerFactory.getLogger(VariantStorageEngine.class);
     private ObjectMap options;
@@ -618,10 +625,43 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
 
         // then, load variants
         queryOptions.put(QueryOptions.EXCLUDE, Arrays.asList(VariantField.STUDIES_SAMPLES, VariantField.STUDIES_FILES));
-        try (VariantDBIterator iterator = getVariantsToIndex(overwrite, query, queryOptions, dbAdaptor)) {
+        // Incremental loads only read the variants not indexed yet, so they can always be resumed.
+        // Full rebuilds store the last loaded variant and the chromosomes already loaded, and resume from that point.
+        String checkpointQuery = query.toJson();
+        ObjectMap resumeCheckpoint = overwrite ? getSecondaryIndexCheckpoint(checkpointQuery) : null;
+        try (VariantDBIterator iterator = resumeCheckpoint == null
+                ? getVariantsToIndex(overwrite, query, queryOptions, dbAdaptor)
+                : getVariantsToResumeIndex(resumeCheckpoint, query, queryOptions, dbAdaptor)) {
             ProgressLogger progressLogger = new ProgressLogger("Variants loaded in Solr:");
+            Consumer<Variant> checkpoint = null;
+            if (overwrite) {
+                Set<String> loadedChromosomes = new LinkedHashSet<>();
+                if (resumeCheckpoint != null) {
+                    loadedChromosomes.addAll(resumeCheckpoint.getAsStringList("loadedChromosomes"));
+                }
+                checkpoint = new Consumer<Variant>() {
+                    private long lastCheckpoint = System.currentTimeMillis();
+                    private String chromosome;
+
+                    @Override
+                    public void accept(Variant variant) {
+                        // Variants are received in the same order as they are read, so the previous chromosome is complete
+                        if (chromosome != null && !chromosome.equals(variant.getChromosome())) {
+                            loadedChromosomes.add(chromosome);
+                        }
+                        chromosome = variant.getChromosome();
+                        if (System.currentTimeMillis() - lastCheckpoint > SEARCH_INDEX_CHECKPOINT_INTERVAL) {
+                            lastCheckpoint = System.currentTimeMillis();
+                            updateSecondaryIndexCheckpoint(checkpointQuery, variant, loadedChromosomes);
+                        }
+                    }
+                };
+            }
             VariantSearchLoadResult load = variantSearchManager.load(dbName, iterator, progressLogger,
-                    newVariantSearchLoadListener(overwrite));
+                    newVariantSearchLoadListener(overwrite), checkpoint);
+            if (overwrite) {
+                updateSecondaryIndexCheckpoint(null, null, null);
+            }
 
             if (isValidParam(query, VariantQueryParam.REGION)) {
                 logger.info("Partial secondary index. Do not update {} timestamp", SEARCH_INDEX_LAST_TIMESTAMP.key());
@@ -641,6 +681,133 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         }
     }
 
+    private ObjectMap getSecondaryIndexCheckpoint(String checkpointQuery) throws StorageEngineException {
+        Map<String, Object> checkpointMap = getMetadataManager().getProjectMetadata().getAttributes()
+                .getMap(SEARCH_INDEX_CHECKPOINT.key());
+        if (checkpointMap == null || !getOptions().getBoolean(RESUME.key(), RESUME.defaultValue())) {
+            return null;
+        }
+        ObjectMap checkpoint = new ObjectMap(checkpointMap);
+        if (!checkpointQuery.equals(checkpoint.getString("query"))) {
+            logger.info("Ignore secondary index checkpoint from a different query");
+            return null;
+        }
+        return checkpoint;
+    }
+
+    private void updateSecondaryIndexCheckpoint(String checkpointQuery, Variant lastVariant, Collection<String> loadedChromosomes) {
+        try {
+            getMetadataManager().updateProjectMetadata(projectMetadata -> {
+                if (lastVariant == null) {
+                    projectMetadata.getAttributes().remove(SEARCH_INDEX_CHECKPOINT.key());
+                } else {
+                    projectMetadata.getAttributes().put(SEARCH_INDEX_CHECKPOINT.key(), new ObjectMap()
+                            .append("query", checkpointQuery)
+                            .append("variant", lastVariant.toString())
+                            .append("chromosome", lastVariant.getChromosome())
+                            .append("start", lastVariant.getStart())
+                            .append("loadedChromosomes", new ArrayList<>(loadedChromosomes)));
+                }
+                return projectMetadata;
+            });
+        } catch (StorageEngineException e) {
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
+    /**
+     * Iterate the variants not loaded by an interrupted secondary index rebuild.
+     *
+     * Reads the chromosome of the checkpoint from the last loaded position, and then the chromosomes not loaded yet.
+     * Variants overlapping the last loaded position are loaded again.
+     * If the chromosomes to load are unknown, or the query can not be restricted by region,
+     * iterates the whole query skipping up to the last loaded variant.
+     *
+     * @param checkpoint    Secondary index checkpoint
+     * @param query         Query
+     * @param queryOptions  Query options
+     * @param dbAdaptor     VariantDBAdaptor
+     * @return              Iterator over the variants to load
+     * @throws StorageEngineException if there is an error reading the metadata
+     */
+    protected VariantDBIterator getVariantsToResumeIndex(ObjectMap checkpoint, Query query, QueryOptions queryOptions,
+                                                         VariantDBAdaptor dbAdaptor)
+            throws StorageEngineException {
+        String chromosome = checkpoint.getString("chromosome");
+        Set<String> chromosomes = null;
+        if (StringUtils.isNotEmpty(chromosome)
+                && !isValidParam(query, VariantQueryParam.REGION)
+                && !isValidParam(query, VariantQueryParam.GENE)
+                && !isValidParam(query, VariantQueryParam.ID)
+                && !isValidParam(query, VariantQueryParam.ANNOT_XREF)) {
+            chromosomes = getLoadedFilesChromosomes();
+        }
+        if (chromosomes == null) {
+            VariantDBIterator iterator = getVariantsToIndex(true, query, queryOptions, dbAdaptor);
+            skipUntilCheckpoint(iterator, checkpoint.getString("variant"));
+            return iterator;
+        }
+
+        chromosomes.remove(Region.normalizeChromosome(chromosome));
+        for (String loadedChromosome : checkpoint.getAsStringList("loadedChromosomes")) {
+            chromosomes.remove(Region.normalizeChromosome(loadedChromosome));
+        }
+        List<Query> queries = new ArrayList<>(2);
+        queries.add(new Query(query)
+                .append(VariantQueryParam.REGION.key(), new Region(chromosome, checkpoint.getInt("start"), Integer.MAX_VALUE).toString()));
+        if (!chromosomes.isEmpty()) {
+            queries.add(new Query(query).append(VariantQueryParam.REGION.key(), String.join(",", chromosomes)));
+        }
+        logger.info("Resume secondary index from {}:{}. Chromosomes pending: {}", chromosome, checkpoint.getInt("start"), chromosomes);
+
+        // Open each iterator once the previous one is exhausted
+        List<VariantDBIterator> iterators = new ArrayList<>(queries.size());
+        Iterator<Variant> variants = Iterators.concat(Iterators.transform(queries.iterator(), q -> {
+            try {
+                VariantDBIterator iterator = getVariantsToIndex(true, q, queryOptions, dbAdaptor);
+                iterators.add(iterator);
+                return iterator;
+            } catch (StorageEngineException e) {
+                throw VariantQueryException.internalException(e);
+            }
+        }));
+        return VariantDBIterator.wrapper(variants).addCloseable(() -> {
+            for (VariantDBIterator iterator : iterators) {
+                iterator.close();
+            }
+        });
+    }
+
+    // Chromosomes from the stats of all the loaded files. Null if any file has no stats.
+    private Set<String> getLoadedFilesChromosomes() throws StorageEngineException {
+        Set<String> chromosomes = new LinkedHashSet<>();
+        for (Integer studyId : getMetadataManager().getStudyIds()) {
+            for (Integer fileId : getMetadataManager().getIndexedFiles(studyId)) {
+                VariantFileMetadata fileMetadata = getMetadataManager().getVariantFileMetadata(studyId, fileId, null).first();
+                if (fileMetadata == null || fileMetadata.getStats() == null || fileMetadata.getStats().getChromosomeCount() == null) {
+                    return null;
+                }
+                for (String chromosome : fileMetadata.getStats().getChromosomeCount().keySet()) {
+                    chromosomes.add(Region.normalizeChromosome(chromosome));
+                }
+            }
+        }
+        return chromosomes;
+    }
+
+    private void skipUntilCheckpoint(VariantDBIterator iterator, String lastVariant) throws StorageEngineException {
+        logger.info("Resume secondary index. Skip variants up to {}", lastVariant);
+        int skipped = 0;
+        while (iterator.hasNext()) {
+            skipped++;
+            if (iterator.next().toString().equals(lastVariant)) {
+                logger.info("Skipped {} variants already loaded", skipped);
+                return;
+            }
+        }
+        throw new StorageEngineException("Unable to resume secondary index. Checkpoint variant " + lastVariant + " not found");
+    }
+
     protected VariantDBIterator getVariantsToIndex(boolean overwrite, Query query, QueryOptions queryOptions, VariantDBAdaptor dbAdaptor)
             throws StorageEngineException {
         if (!overwrite) {
@@ -953,7 +1120,10 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
             synchronized (variantSearchManager) {
                 if (variantSearchManager.get() == null) {
                     // TODO One day we should use reflection here reading from storage-configuration.yml
-                    variantSearchManager.set(new VariantSearchManager(getMetadataManager(), configuration));
+                    variantSearchManager.set(new VariantSearchManager(getMetadataManager(), configuration)
+                            .setInsertThreads(getOptions().getInt(SEARCH_LOAD_THREADS.key(), SEARCH_LOAD_THREADS.defaultValue()))
+                            .setCommitWithin(getOptions().getInt(SEARCH_LOAD_COMMIT_WITHIN.key(),
+                                    SEARCH_LOAD_COMMIT_WITHIN.defaultValue())));
                 }
             }
         }
@@ -991,7 +1161,10 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         addDefaultLimit(options, getOptions());
         addDefaultSampleLimit(query, getOptions());
         query = preProcessQuery(query, options);
-        return getVariantQueryExecutor(query, options).get(query, options);
+        Query finalQuery = query;
+        QueryOptions finalOptions = options;
+        return cached("get", query, options, VariantQueryResult.class, Variant.class,
+                () -> getVariantQueryExecutor(finalQuery, finalOptions).get(finalQuery, finalOptions));
     }
 
     @Override
@@ -1090,9 +1263,10 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     }
 
     public DataResult<Long> count(Query query) throws StorageEngineException {
-        query = preProcessQuery(query, QueryOptions.empty());
-        VariantQueryExecutor variantQueryExecutor = getVariantQueryExecutor(query, new QueryOptions(QueryOptions.COUNT, true));
-        return variantQueryExecutor.count(query);
+        Query finalQuery = preProcessQuery(query, QueryOptions.empty());
+        QueryOptions options = new QueryOptions(QueryOptions.COUNT, true);
+        return cached("count", finalQuery, options, DataResult.class, Long.class,
+                () -> getVariantQueryExecutor(finalQuery, options).count(finalQuery));
     }
 
     /**
@@ -1104,8 +1278,59 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
      */
     public DataResult<FacetField> facet(Query query, QueryOptions options) {
         addDefaultLimit(options, getOptions());
-        query = preProcessQuery(query, options);
-        return getVariantAggregationExecutor(query, options).aggregation(query, options);
+        Query finalQuery = preProcessQuery(query, options);
+        return cached("facet", finalQuery, options, DataResult.class, FacetField.class,
+                () -> getVariantAggregationExecutor(finalQuery, options).aggregation(finalQuery, options));
+    }
+
+    public CacheManager getCacheManager() {
+        if (cacheManager.get() == null) {
+            synchronized (cacheManager) {
+                if (cacheManager.get() == null) {
+                    cacheManager.set(new CacheManager(configuration));
+                }
+            }
+        }
+        return cacheManager.get();
+    }
+
+    /**
+     * Execute a query using the query result cache, if active.
+     *
+     * The cache key is built from the preprocessed query and the metadata version stamp, so any data modification
+     * (load, remove, annotation, stats, ...) makes the previous entries unreachable.
+     * Cached values are stored serialized, so the returned results are never shared with the cache.
+     *
+     * @param operation Operation name
+     * @param query     Preprocessed query
+     * @param options   Query options
+     * @param resultClass   Result class
+     * @param elementClass  Class of the elements contained in the result
+     * @param supplier  Actual query execution
+     * @param <T>       Result type
+     * @return          Query result, from the cache or from the supplier
+     */
+    private <T extends DataResult<?>> T cached(String operation, Query query, QueryOptions options,
+                                              Class<?> resultClass, Class<?> elementClass, Supplier<T> supplier) {
+        CacheManager cacheManager = getCacheManager();
+        if (!cacheManager.isActive() || !cacheManager.isTypeAllowed(CacheManager.VARIANT_TYPE)
+                || !options.getBoolean(CacheManager.CACHE, true)) {
+            return supplier.get();
+        }
+        String key;
+        try {
+            key = cacheManager.createKey(CacheManager.VARIANT_TYPE, operation,
+                    getMetadataManager().getMetadataVersion(), query, options);
+        } catch (StorageEngineException e) {
+            throw VariantQueryException.internalException(e);
+        }
+        T result = cacheManager.get(key, resultClass, elementClass);
+        if (result == null) {
+            StopWatch stopWatch = StopWatch.createStarted();
+            result = supplier.get();
+            cacheManager.set(key, result, stopWatch.getTime(TimeUnit.MILLISECONDS), result.getNumResults());
+        }
+        return result;
     }
 
     protected final List<VariantAggregationExecutor> getVariantAggregationExecutors() {
@@ -1123,8 +1348,10 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         List<VariantAggregationExecutor> executors = new ArrayList<>(3);
 
         try {
+            int numThreads = getOptions().getInt(QUERY_FACET_THREADS.key(), QUERY_FACET_THREADS.defaultValue());
             executors.add(new SearchIndexVariantAggregationExecutor(getVariantSearchManager(), getDBName()));
-            executors.add(new ChromDensityVariantAggregationExecutor(this, getMetadataManager()));
+            executors.add(new ChromDensityVariantAggregationExecutor(this, getMetadataManager(), numThreads));
+            executors.add(new VariantIterableAggregationExecutor(this, numThreads));
         } catch (Exception e) {
             throw VariantQueryException.internalException(e);
         }
@@ -1159,6 +1386,9 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
             }
         }
         lazyVariantQueryExecutorsList.clear();
+        if (cacheManager.get() != null) {
+            cacheManager.getAndSet(null).close();
+        }
     }
 }
 
@@ -3,6 +3,8 @@ package org.opencb.opencga.storage.core.variant;
 import org.opencb.biodata.models.variant.metadata.Aggregation;
 import org.opencb.opencga.core.common.YesNoAuto;
 import org.opencb.opencga.storage.core.config.ConfigurationOption;
+import org.opencb.opencga.storage.core.metadata.MetadataCache;
+import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
 
 public enum VariantStorageOptions implements ConfigurationOption {
 
@@ -73,12 +75,20 @@ public enum VariantStorageOptions implements ConfigurationOption {
 
     INDEX_SEARCH("indexSearch", false), // Build secondary indexes using search engine.
 
+    EXPORT_BGZF("export.bgzf", false),        // Export VCF_GZ files as BGZF, formatting and compressing in parallel. Builds a tabix index
+    EXPORT_BATCH_SIZE("export.batchSize", 200),
+    EXPORT_THREADS("export.numThreads", 4),
+
     QUERY_DEFAULT_TIMEOUT("query.timeout.default", 10000), // Default timeout for DBAdaptor operations. Only used if none is provided.
     QUERY_MAX_TIMEOUT("query.timeout.max", 30000),         // Max allowed timeout for DBAdaptor operations
     QUERY_LIMIT_DEFAULT("query.limit.default", 1000),
     QUERY_LIMIT_MAX("query.limit.max", 5000),
     QUERY_SAMPLE_LIMIT_DEFAULT("query.sample.limit.default", 100),
     QUERY_SAMPLE_LIMIT_MAX("query.sample.limit.max", 1000),
+    QUERY_FACET_THREADS("query.facet.numThreads", 4),   // Threads to aggregate facets without the search engine
+
+    METADATA_CACHE_MAX_SIZE("metadata.cache.maxSize", MetadataCache.DEFAULT_MAX_SIZE), // Max cached elements per study and cache
+    METADATA_CACHE_VERSION_CHECK_INTERVAL("metadata.cache.versionCheckInterval", 5000), // millis. Negative to disable the check
 
     // Search intersect options
     INTERSECT_ACTIVE("search.intersect.active", true),                       // Allow intersect queries with the SearchEngine (Solr)
@@ -104,7 +114,10 @@ public enum VariantStorageOptions implements ConfigurationOption {
     RELEASE("release", 1),
 
     MERGE_MODE("merge.mode", VariantStorageEngine.MergeMode.ADVANCED),
-    SEARCH_INDEX_LAST_TIMESTAMP("search.index.last.timestamp", 0);
+    SEARCH_INDEX_LAST_TIMESTAMP("search.index.last.timestamp", 0),
+    SEARCH_INDEX_CHECKPOINT("search.index.checkpoint", ""),   // Last variant loaded by an interrupted secondary index rebuild
+    SEARCH_LOAD_THREADS("search.load.numThreads", VariantSearchManager.DEFAULT_INSERT_THREADS), // Concurrent update requests
+    SEARCH_LOAD_COMMIT_WITHIN("search.load.commitWithin", VariantSearchManager.DEFAULT_COMMIT_WITHIN); // millis. 0 to disable
 
     private final String key;
     private final Object value;
@@ -468,6 +468,9 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
                 updateCurrentAnnotation(variantAnnotator, projectMetadata, overwrite);
                 return projectMetadata;
             });
+        } else if (doLoad) {
+            // Annotation loaded from file. Notify that the variants were modified.
+            dbAdaptor.getMetadataManager().updateMetadataVersion();
         }
 
         if (doLoad && filesToBeAnnotated != null) {
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compress data into independent BGZF blocks, as described in the SAM specification.
+ *
+ * Each block is a complete gzip member, so blocks compressed by different instances (threads) can be concatenated
+ * in any order to build a valid BGZF file. Positions in the file are addressed with virtual file pointers,
+ * made of the compressed offset of the block and the uncompressed offset within the block.
+ *
+ * This class is not thread safe. Use one instance per thread.
+ */
+public class BgzfCompressor {
+
+    /** Max number of uncompressed bytes in a block. Same value used by samtools and htsjdk. */
+    public static final int MAX_BLOCK_SIZE = 0xff00;
+    private static final int MAX_COMPRESSED_BLOCK_SIZE = 64 * 1024;
+    private static final int BLOCK_HEADER_LENGTH = 18;
+    private static final int BLOCK_FOOTER_LENGTH = 8;
+    private static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+            0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+    };
+
+    private final Deflater deflater;
+    private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+    private final CRC32 crc32 = new CRC32();
+    private final byte[] buffer = new byte[MAX_COMPRESSED_BLOCK_SIZE];
+
+    public BgzfCompressor() {
+        // Same default compression level as htsjdk
+        this(5);
+    }
+
+    public BgzfCompressor(int compressionLevel) {
+        deflater = new Deflater(compressionLevel, true);
+    }
+
+    /**
+     * Compress the data into as many blocks as needed.
+     * All blocks but the last one will contain exactly {@link #MAX_BLOCK_SIZE} uncompressed bytes.
+     *
+     * @param data   Data to compress
+     * @param offset Offset of the first byte to compress
+     * @param length Number of bytes to compress
+     * @return List of compressed blocks
+     */
+    public List<byte[]> compress(byte[] data, int offset, int length) {
+        List<byte[]> blocks = new ArrayList<>(length / MAX_BLOCK_SIZE + 1);
+        int end = offset + length;
+        for (int i = offset; i < end; i += MAX_BLOCK_SIZE) {
+            blocks.add(compressBlock(data, i, Math.min(MAX_BLOCK_SIZE, end - i)));
+        }
+        return blocks;
+    }
+
+    /**
+     * Compress the data into one single block.
+     *
+     * @param data   Data to compress
+     * @param offset Offset of the first byte to compress
+     * @param length Number of bytes to compress. Can not be larger than {@link #MAX_BLOCK_SIZE}
+     * @return Compressed block
+     */
+    public byte[] compressBlock(byte[] data, int offset, int length) {
+        if (length > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Unable to compress " + length + " bytes in one BGZF block. Max " + MAX_BLOCK_SIZE);
+        }
+        int maxCompressedLength = buffer.length - BLOCK_HEADER_LENGTH - BLOCK_FOOTER_LENGTH;
+        int compressedLength = deflate(deflater, data, offset, length, maxCompressedLength);
+        if (compressedLength < 0) {
+            // Data is not compressible. Store it without compression, so it fits in one block
+            compressedLength = deflate(noCompressionDeflater, data, offset, length, maxCompressedLength);
+            if (compressedLength < 0) {
+                throw new IllegalStateException("Unable to write " + length + " bytes in one BGZF block");
+            }
+        }
+        crc32.reset();
+        crc32.update(data, offset, length);
+
+        int blockLength = BLOCK_HEADER_LENGTH + compressedLength + BLOCK_FOOTER_LENGTH;
+        byte[] block = new byte[blockLength];
+        // Gzip header, with the extra subfield "BC" containing the block size minus one
+        block[0] = 0x1f;
+        block[1] = (byte) 0x8b;
+        block[2] = 8;    // CM: deflate
+        block[3] = 4;    // FLG: FEXTRA
+        // MTIME (4 bytes) and XFL are 0
+        block[9] = (byte) 0xff; // OS: unknown
+        writeShort(block, 10, 6); // XLEN
+        block[12] = 'B';
+        block[13] = 'C';
+        writeShort(block, 14, 2); // SLEN
+        writeShort(block, 16, blockLength - 1); // BSIZE
+        System.arraycopy(buffer, BLOCK_HEADER_LENGTH, block, BLOCK_HEADER_LENGTH, compressedLength);
+        writeInt(block, BLOCK_HEADER_LENGTH + compressedLength, (int) crc32.getValue());
+        writeInt(block, BLOCK_HEADER_LENGTH + compressedLength + 4, length);
+        return block;
+    }
+
+    private int deflate(Deflater deflater, byte[] data, int offset, int length, int maxCompressedLength) {
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        int compressedLength = deflater.deflate(buffer, BLOCK_HEADER_LENGTH, maxCompressedLength);
+        return deflater.finished() ? compressedLength : -1;
+    }
+
+    /**
+     * Release the native resources used by the compressor.
+     */
+    public void end() {
+        deflater.end();
+        noCompressionDeflater.end();
+    }
+
+    /**
+     * Empty block to be written at the end of every BGZF file.
+     *
+     * @return EOF block
+     */
+    public static byte[] getEofBlock() {
+        return EOF_BLOCK.clone();
+    }
+
+    /**
+     * Build a virtual file pointer.
+     *
+     * @param blockAddress Compressed offset of the block in the file
+     * @param blockOffset  Uncompressed offset within the block
+     * @return Virtual file pointer
+     */
+    public static long makeVirtualFilePointer(long blockAddress, int blockOffset) {
+        return blockAddress << 16 | blockOffset;
+    }
+
+    private static void writeShort(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+}
@@ -35,6 +35,7 @@ import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.io.managers.IOConnectorProvider;
 import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
 import org.opencb.opencga.storage.core.variant.io.db.VariantDBReader;
 import org.slf4j.Logger;
@@ -45,9 +46,12 @@ import java.io.*;
 import java.net.URI;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.INCLUDE_STUDY;
+
 /**
  * Prints the result of a given query in the selected output format, and the associated metadata.
  *
@@ -61,6 +65,7 @@ public class VariantExporter {
     public static final String METADATA_FILE_EXTENSION = ".meta.json.gz";
     public static final String TPED_FILE_EXTENSION = ".tped";
     public static final String TFAM_FILE_EXTENSION = ".tfam";
+    public static final String TABIX_INDEX_EXTENSION = ".tbi";
     protected final VariantStorageEngine engine;
     protected final VariantWriterFactory variantWriterFactory;
     protected final VariantMetadataFactory metadataFactory;
@@ -99,9 +104,16 @@ public class VariantExporter {
             ioConnectorProvider.checkWritable(outputFile);
         }
 
-        try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat, ioConnectorProvider)) {
-            boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
-            exportData(os, outputFormat, variantsFile, query, queryOptions, logProgress);
+        if (isBgzfExport(outputFile, outputFormat, queryOptions)) {
+            try (OutputStream os = new BufferedOutputStream(ioConnectorProvider.newOutputStreamRaw(outputFile))) {
+                URI indexFile = UriUtils.replacePath(outputFile, outputFile.getPath() + TABIX_INDEX_EXTENSION);
+                exportBgzfVcf(os, indexFile, variantsFile, query, queryOptions);
+            }
+        } else {
+            try (OutputStream os = VariantWriterFactory.getOutputStream(outputFile, outputFormat, ioConnectorProvider)) {
+                boolean logProgress = !VariantWriterFactory.isStandardOutput(outputFile);
+                exportData(os, outputFormat, variantsFile, query, queryOptions, logProgress);
+            }
         }
         if (metadataFactory != null && !VariantWriterFactory.isStandardOutput(outputFile)) {
             VariantMetadata metadata = metadataFactory.makeVariantMetadata(query, queryOptions);
@@ -124,15 +136,103 @@ public class VariantExporter {
         }
 
         // DataReader
-        VariantDBReader variantDBReader;
+        VariantDBReader variantDBReader = newVariantDBReader(variantsFile, query, queryOptions);
+
+        // TaskMetadata<Variant, Variant>
+        Task<Variant, Variant> progressTask = newProgressTask(variantsFile, query, queryOptions, logProgress);
+
+        // DataWriter
+        DataWriter<Variant> variantDataWriter = variantWriterFactory.newDataWriter(outputFormat, outputStream, query, queryOptions);
+
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(1).setBatchSize(10).build();
+
+        ParallelTaskRunner<Variant, Variant> ptr = new ParallelTaskRunner<>(variantDBReader, progressTask, variantDataWriter, config);
+        try {
+            ptr.run();
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Error exporting variants", e);
+        }
+
+        logger.info("Time fetching data: " + variantDBReader.getTimeFetching(TimeUnit.MILLISECONDS) / 1000.0 + 's');
+        logger.info("Time converting data: " + variantDBReader.getTimeConverting(TimeUnit.MILLISECONDS) / 1000.0 + 's');
+
+    }
+
+    /**
+     * Exports the variants as a BGZF compressed VCF, and builds its tabix index.
+     *
+     * VCF records are formatted and compressed into independent BGZF blocks by multiple threads.
+     * Blocks are written in order, so the output is the same as a sequential export.
+     *
+     * @param outputStream  Output stream for the BGZF compressed VCF
+     * @param indexFile     Tabix index file
+     * @param variantsFile  Optional variants file.
+     * @param query         Query with the variants to export
+     * @param queryOptions  Query options
+     * @throws IOException  If there is any IO error
+     * @throws StorageEngineException  If there is any error exporting variants
+     */
+    protected void exportBgzfVcf(OutputStream outputStream, URI indexFile, URI variantsFile, Query query, QueryOptions queryOptions)
+            throws StorageEngineException, IOException {
+        if (query == null) {
+            query = new Query();
+        }
+        if (queryOptions == null) {
+            queryOptions = new QueryOptions();
+        }
+        VariantMetadata variantMetadata = new VariantMetadataFactory(engine.getMetadataManager())
+                .makeVariantMetadata(query, queryOptions);
+        if (variantMetadata.getStudies().isEmpty()) {
+            throw new IllegalArgumentException("No study found named " + query.getAsStringList(INCLUDE_STUDY.key()));
+        }
+        List<String> annotations = queryOptions.getAsStringList("annotations");
+        int numThreads = getOption(queryOptions, VariantStorageOptions.EXPORT_THREADS);
+        int batchSize = getOption(queryOptions, VariantStorageOptions.EXPORT_BATCH_SIZE);
+
+        VariantDBReader variantDBReader = newVariantDBReader(variantsFile, query, queryOptions);
+        Task<Variant, Variant> progressTask = newProgressTask(variantsFile, query, queryOptions, true);
+        VcfBgzfDataWriter writer = new VcfBgzfDataWriter(variantMetadata, annotations, outputStream, indexFile, ioConnectorProvider);
+
+        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
+                .setNumTasks(numThreads)
+                .setBatchSize(batchSize)
+                .setSorted(true)
+                .build();
+        ParallelTaskRunner<Variant, VcfBgzfEncoderTask.Chunk> ptr = new ParallelTaskRunner<>(variantDBReader,
+                () -> progressTask.then(new VcfBgzfEncoderTask(variantMetadata, annotations)), writer, config);
+        try {
+            ptr.run();
+        } catch (ExecutionException e) {
+            throw new StorageEngineException("Error exporting variants", e);
+        }
+
+        logger.info("Time fetching data: " + variantDBReader.getTimeFetching(TimeUnit.MILLISECONDS) / 1000.0 + 's');
+        logger.info("Time converting data: " + variantDBReader.getTimeConverting(TimeUnit.MILLISECONDS) / 1000.0 + 's');
+    }
+
+    protected boolean isBgzfExport(URI outputFile, VariantOutputFormat outputFormat, QueryOptions queryOptions) {
+        return outputFormat == VariantOutputFormat.VCF_GZ
+                && !VariantWriterFactory.isStandardOutput(outputFile)
+                && queryOptions != null
+                && queryOptions.getBoolean(VariantStorageOptions.EXPORT_BGZF.key(),
+                        engine.getOptions().getBoolean(VariantStorageOptions.EXPORT_BGZF.key(),
+                                VariantStorageOptions.EXPORT_BGZF.defaultValue()));
+    }
+
+    private int getOption(QueryOptions queryOptions, VariantStorageOptions option) {
+        return queryOptions.getInt(option.key(), engine.getOptions().getInt(option.key(), option.defaultValue()));
+    }
+
+    protected VariantDBReader newVariantDBReader(URI variantsFile, Query query, QueryOptions queryOptions) {
         if (variantsFile != null) {
             Iterator<Variant> variants = toVariantsIterator(variantsFile);
-            variantDBReader = new VariantDBReader(engine.iterator(variants, query, queryOptions));
+            return new VariantDBReader(engine.iterator(variants, query, queryOptions));
         } else {
-            variantDBReader = new VariantDBReader(engine, query, queryOptions);
+            return new VariantDBReader(engine, query, queryOptions);
         }
+    }
 
-        // TaskMetadata<Variant, Variant>
+    private Task<Variant, Variant> newProgressTask(URI variantsFile, Query query, QueryOptions queryOptions, boolean logProgress) {
         Task<Variant, Variant> progressTask;
         if (logProgress) {
             final Query finalQuery = query;
@@ -154,22 +254,7 @@ public class VariantExporter {
         } else {
             progressTask = batch -> batch;
         }
-
-        // DataWriter
-        DataWriter<Variant> variantDataWriter = variantWriterFactory.newDataWriter(outputFormat, outputStream, query, queryOptions);
-
-        ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder().setNumTasks(1).setBatchSize(10).build();
-
-        ParallelTaskRunner<Variant, Variant> ptr = new ParallelTaskRunner<>(variantDBReader, progressTask, variantDataWriter, config);
-        try {
-            ptr.run();
-        } catch (ExecutionException e) {
-            throw new StorageEngineException("Error exporting variants", e);
-        }
-
-        logger.info("Time fetching data: " + variantDBReader.getTimeFetching(TimeUnit.MILLISECONDS) / 1000.0 + 's');
-        logger.info("Time converting data: " + variantDBReader.getTimeConverting(TimeUnit.MILLISECONDS) / 1000.0 + 's');
-
+        return progressTask;
     }
 
     protected void writeMetadata(VariantMetadata metadata, URI metadataFile) throws IOException {
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io;
+
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import htsjdk.tribble.util.LittleEndianOutputStream;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import org.opencb.biodata.formats.variant.vcf4.VcfUtils;
+import org.opencb.biodata.models.variant.metadata.VariantMetadata;
+import org.opencb.commons.io.DataWriter;
+import org.opencb.opencga.storage.core.io.managers.IOConnectorProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes, in order, the BGZF chunks produced by the {@link VcfBgzfEncoderTask}, and builds the tabix index on the fly.
+ *
+ * The index is only written if the records are sorted. Otherwise, a warning is logged and the index is discarded.
+ */
+public class VcfBgzfDataWriter implements DataWriter<VcfBgzfEncoderTask.Chunk> {
+
+    private final VariantMetadata metadata;
+    private final List<String> annotations;
+    private final OutputStream outputStream;
+    private final URI indexFile;
+    private final IOConnectorProvider ioConnectorProvider;
+    private final BgzfCompressor compressor = new BgzfCompressor();
+    private TabixIndexCreator indexCreator;
+    private long filePosition;
+    private final Set<String> indexedContigs = new HashSet<>();
+    private String currentContig;
+    private int currentStart;
+
+    private final Logger logger = LoggerFactory.getLogger(VcfBgzfDataWriter.class);
+
+    /**
+     * Create a new writer.
+     *
+     * @param metadata            Metadata used to build the VCF header
+     * @param annotations         Annotations to include in the header
+     * @param outputStream        Output stream for the BGZF compressed VCF
+     * @param indexFile           Tabix index file. If null, the index won't be generated
+     * @param ioConnectorProvider IOConnectorProvider to write the index file
+     */
+    public VcfBgzfDataWriter(VariantMetadata metadata, List<String> annotations, OutputStream outputStream,
+                             URI indexFile, IOConnectorProvider ioConnectorProvider) {
+        this.metadata = metadata;
+        this.annotations = annotations;
+        this.outputStream = outputStream;
+        this.indexFile = indexFile;
+        this.ioConnectorProvider = ioConnectorProvider;
+    }
+
+    @Override
+    public boolean pre() {
+        if (indexFile != null) {
+            indexCreator = new TabixIndexCreator(TabixFormat.VCF);
+        }
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        VariantContextWriter writer = VcfUtils.createVariantContextWriter(header, null, Options.ALLOW_MISSING_FIELDS_IN_HEADER);
+        writer.writeHeader(VcfDataWriter.buildVcfHeader(metadata, annotations));
+        writer.close();
+        byte[] bytes = header.toByteArray();
+        for (byte[] block : compressor.compress(bytes, 0, bytes.length)) {
+            write(block);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean write(List<VcfBgzfEncoderTask.Chunk> batch) {
+        for (VcfBgzfEncoderTask.Chunk chunk : batch) {
+            if (indexCreator != null) {
+                index(chunk);
+            }
+            for (byte[] block : chunk.getBlocks()) {
+                write(block);
+            }
+        }
+        return true;
+    }
+
+    private void index(VcfBgzfEncoderTask.Chunk chunk) {
+        List<byte[]> blocks = chunk.getBlocks();
+        // Compressed offset of each block in the output file
+        long[] blockAddresses = new long[blocks.size()];
+        long address = filePosition;
+        for (int i = 0; i < blocks.size(); i++) {
+            blockAddresses[i] = address;
+            address += blocks.get(i).length;
+        }
+        for (VcfBgzfEncoderTask.Record record : chunk.getRecords()) {
+            if (!record.getContig().equals(currentContig)) {
+                if (!indexedContigs.add(record.getContig())) {
+                    discardIndex("Contig " + record.getContig() + " is not contiguous");
+                    return;
+                }
+                currentContig = record.getContig();
+            } else if (record.getStart() + 1 < currentStart) {
+                // Allow one base of difference, from the padding base added to indels
+                discardIndex("Variant at " + record.getContig() + ":" + record.getStart() + " is not sorted");
+                return;
+            }
+            currentStart = record.getStart();
+            int block = record.getOffset() / BgzfCompressor.MAX_BLOCK_SIZE;
+            int blockOffset = record.getOffset() % BgzfCompressor.MAX_BLOCK_SIZE;
+            indexCreator.addFeature(record, BgzfCompressor.makeVirtualFilePointer(blockAddresses[block], blockOffset));
+        }
+    }
+
+    private void discardIndex(String reason) {
+        logger.warn("Unable to build tabix index. {}", reason);
+        indexCreator = null;
+    }
+
+    private void write(byte[] block) {
+        try {
+            outputStream.write(block);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        filePosition += block.length;
+    }
+
+    @Override
+    public boolean post() {
+        try {
+            long endPosition = filePosition;
+            write(BgzfCompressor.getEofBlock());
+            outputStream.flush();
+            if (indexCreator != null) {
+                Index index = indexCreator.finalizeIndex(BgzfCompressor.makeVirtualFilePointer(endPosition, 0));
+                ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+                LittleEndianOutputStream leos = new LittleEndianOutputStream(indexBytes);
+                index.write(leos);
+                leos.flush();
+                byte[] bytes = indexBytes.toByteArray();
+                // Tabix indexes are also BGZF compressed
+                try (OutputStream indexOutputStream = ioConnectorProvider.newOutputStreamRaw(indexFile)) {
+                    for (byte[] block : compressor.compress(bytes, 0, bytes.length)) {
+                        indexOutputStream.write(block);
+                    }
+                    indexOutputStream.write(BgzfCompressor.getEofBlock());
+                }
+                logger.info("Tabix index written at {}", indexFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean close() {
+        compressor.end();
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io;
+
+import htsjdk.tribble.Feature;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFEncoder;
+import htsjdk.variant.vcf.VCFHeader;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.metadata.VariantMetadata;
+import org.opencb.biodata.tools.variant.converters.VariantContextConverter;
+import org.opencb.biodata.tools.variant.converters.avro.VariantAvroToVariantContextConverter;
+import org.opencb.commons.run.Task;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Converts batches of variants into VCF records, compressed as independent BGZF blocks.
+ *
+ * Each instance has its own converter, encoder and compressor, so multiple instances can run in parallel.
+ * The produced chunks are written in order by the {@link VcfBgzfDataWriter}.
+ */
+public class VcfBgzfEncoderTask implements Task<Variant, VcfBgzfEncoderTask.Chunk> {
+
+    private final VariantMetadata metadata;
+    private final List<String> annotations;
+    private VariantContextConverter<Variant> converter;
+    private VCFEncoder encoder;
+    private BgzfCompressor compressor;
+
+    public VcfBgzfEncoderTask(VariantMetadata metadata, List<String> annotations) {
+        this.metadata = metadata;
+        this.annotations = annotations;
+    }
+
+    @Override
+    public void pre() {
+        String study = metadata.getStudies().get(0).getId();
+        VCFHeader vcfHeader = VcfDataWriter.buildVcfHeader(metadata, annotations);
+        converter = new VariantAvroToVariantContextConverter(study, VcfDataWriter.getSamples(metadata), annotations);
+        // Same configuration as the VariantContextWriter used by the VcfDataWriter
+        encoder = new VCFEncoder(vcfHeader, true, false);
+        compressor = new BgzfCompressor();
+    }
+
+    @Override
+    public List<Chunk> apply(List<Variant> batch) {
+        if (batch.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<VariantContext> contexts = converter.apply(batch);
+        ByteArrayOutputStream os = new ByteArrayOutputStream(contexts.size() * 256);
+        List<Record> records = new ArrayList<>(contexts.size());
+        for (VariantContext context : contexts) {
+            records.add(new Record(context.getContig(), context.getStart(), context.getEnd(), os.size()));
+            byte[] line = encoder.encode(context).getBytes(StandardCharsets.UTF_8);
+            os.write(line, 0, line.length);
+            os.write('\n');
+        }
+        byte[] data = os.toByteArray();
+        return Collections.singletonList(new Chunk(compressor.compress(data, 0, data.length), records));
+    }
+
+    @Override
+    public void post() {
+        if (compressor != null) {
+            compressor.end();
+        }
+    }
+
+    /**
+     * Group of consecutive BGZF blocks, with the location of each VCF record.
+     */
+    public static class Chunk {
+        private final List<byte[]> blocks;
+        private final List<Record> records;
+
+        Chunk(List<byte[]> blocks, List<Record> records) {
+            this.blocks = blocks;
+            this.records = records;
+        }
+
+        public List<byte[]> getBlocks() {
+            return blocks;
+        }
+
+        public List<Record> getRecords() {
+            return records;
+        }
+    }
+
+    /**
+     * Genomic location of a VCF record, and its uncompressed offset from the beginning of the chunk.
+     */
+    public static class Record implements Feature {
+        private final String contig;
+        private final int start;
+        private final int end;
+        private final int offset;
+
+        Record(String contig, int start, int end, int offset) {
+            this.contig = contig;
+            this.start = start;
+            this.end = end;
+            this.offset = offset;
+        }
+
+        @Override
+        public String getContig() {
+            return contig;
+        }
+
+        @Override
+        public int getStart() {
+            return start;
+        }
+
+        @Override
+        public int getEnd() {
+            return end;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+}
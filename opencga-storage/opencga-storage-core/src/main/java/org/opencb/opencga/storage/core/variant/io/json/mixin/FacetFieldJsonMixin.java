@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io.json.mixin;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.opencb.commons.datastore.core.FacetField;
+
+import java.util.List;
+
+/**
+ * Allows reading {@link FacetField} and {@link FacetField.Bucket}, which have no default constructor.
+ */
+public abstract class FacetFieldJsonMixin {
+
+    @JsonCreator
+    FacetFieldJsonMixin(@JsonProperty("name") String name, @JsonProperty("count") long count,
+                        @JsonProperty("buckets") List<FacetField.Bucket> buckets) {
+    }
+
+    public abstract static class BucketJsonMixin {
+
+        @JsonCreator
+        BucketJsonMixin(@JsonProperty("value") String value, @JsonProperty("count") long count,
+                        @JsonProperty("facetFields") List<FacetField> facetFields) {
+        }
+    }
+}
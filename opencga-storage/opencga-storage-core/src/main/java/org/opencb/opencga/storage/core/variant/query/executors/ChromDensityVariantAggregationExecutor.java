@@ -16,12 +16,14 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.query.executors.accumulators.FieldVariantAccumulator;
+import org.opencb.opencga.storage.core.variant.query.executors.accumulators.FieldVariantCounter;
 import org.opencb.opencga.storage.core.variant.query.executors.accumulators.VariantChromDensityAccumulator;
 import org.opencb.opencga.storage.core.variant.query.executors.accumulators.VariantTypeAccumulator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 
@@ -33,11 +35,18 @@ public class ChromDensityVariantAggregationExecutor extends VariantAggregationEx
 
     private final VariantIterable iterable;
     private final VariantStorageMetadataManager metadataManager;
+    private final int numThreads;
     private Logger logger = LoggerFactory.getLogger(ChromDensityVariantAggregationExecutor.class);
 
     public ChromDensityVariantAggregationExecutor(VariantIterable iterable, VariantStorageMetadataManager metadataManager) {
+        this(iterable, metadataManager, 1);
+    }
+
+    public ChromDensityVariantAggregationExecutor(VariantIterable iterable, VariantStorageMetadataManager metadataManager,
+                                                  int numThreads) {
         this.iterable = iterable;
         this.metadataManager = metadataManager;
+        this.numThreads = numThreads;
     }
 
     @Override
@@ -69,22 +78,14 @@ public class ChromDensityVariantAggregationExecutor extends VariantAggregationEx
 
         String[] split = facet.split(NESTED_FACET_SEPARATOR);
         String chromDensityFacet = split[0];
-        FieldVariantAccumulator<Variant> nestedFieldAccumulator;
+        String nestedFieldName;
         if (split.length == 2) {
-            String nestedFieldName;
             nestedFieldName = split[1];
             if (!ACCEPTED_CHROM_DENSITY_NESTED.contains(nestedFieldName)) {
                 throw invalidNestedField(nestedFieldName);
             }
-            switch (nestedFieldName) {
-                case "type":
-                    nestedFieldAccumulator = new VariantTypeAccumulator<>(Variant::getType);
-                    break;
-                default:
-                    throw invalidNestedField(nestedFieldName);
-            }
         } else {
-            nestedFieldAccumulator = null;
+            nestedFieldName = null;
         }
 
         int step;
@@ -111,32 +112,15 @@ public class ChromDensityVariantAggregationExecutor extends VariantAggregationEx
             throw new VariantQueryException("Unable to calculate aggregated stats query without a region or gene");
         }
 
-        List<FacetField.Bucket> regionBuckets = new ArrayList<>(regions.size());
-        long numMatches = 0;
+        // Each region is aggregated independently, with its own accumulators
+        List<Callable<FacetField.Bucket>> tasks = new ArrayList<>(regions.size());
         for (Region region : regions) {
-            Query regionQuery = new Query(query).append(VariantQueryParam.REGION.key(), region);
-            VariantDBIterator iterator = iterable.iterator(
-                    regionQuery,
-                    new QueryOptions()
-                            .append(QueryOptions.INCLUDE, VariantField.ID)
-                            .append(QueryOptions.SORT, true));
-
-            VariantChromDensityAccumulator chromDensityAccumulator =
-                    new VariantChromDensityAccumulator(metadataManager, region, nestedFieldAccumulator, step);
-
-            logger.info("Query : " + regionQuery.toJson());
-
-            FacetField regionField = chromDensityAccumulator.createField();
-
-            int count = 0;
-            while (iterator.hasNext()) {
-                count++;
-                chromDensityAccumulator.accumulate(regionField, iterator.next());
-            }
-            numMatches += count;
-
-            chromDensityAccumulator.cleanEmptyBuckets(regionField);
-            regionBuckets.add(new FacetField.Bucket(region.getChromosome(), count, Collections.singletonList(regionField)));
+            tasks.add(() -> aggregateRegion(query, region, nestedFieldName, step));
+        }
+        List<FacetField.Bucket> regionBuckets = runPartialAggregations(tasks, numThreads);
+        long numMatches = 0;
+        for (FacetField.Bucket regionBucket : regionBuckets) {
+            numMatches += regionBucket.getCount();
         }
 
         FacetField field = new FacetField(
@@ -147,6 +131,41 @@ public class ChromDensityVariantAggregationExecutor extends VariantAggregationEx
                 Collections.singletonList(field), null, null);
     }
 
+    private FacetField.Bucket aggregateRegion(Query query, Region region, String nestedFieldName, int step) throws Exception {
+        FieldVariantAccumulator<Variant> nestedFieldAccumulator;
+        if (nestedFieldName == null) {
+            nestedFieldAccumulator = null;
+        } else {
+            switch (nestedFieldName) {
+                case "type":
+                    nestedFieldAccumulator = new VariantTypeAccumulator<>(Variant::getType);
+                    break;
+                default:
+                    throw invalidNestedField(nestedFieldName);
+            }
+        }
+        VariantChromDensityAccumulator chromDensityAccumulator =
+                new VariantChromDensityAccumulator(metadataManager, region, nestedFieldAccumulator, step);
+        FieldVariantCounter<Variant> counter = new FieldVariantCounter<>(chromDensityAccumulator);
+
+        Query regionQuery = new Query(query).append(VariantQueryParam.REGION.key(), region);
+        logger.info("Query : " + regionQuery.toJson());
+        long count = 0;
+        try (VariantDBIterator iterator = iterable.iterator(
+                regionQuery,
+                new QueryOptions()
+                        .append(QueryOptions.INCLUDE, VariantField.ID)
+                        .append(QueryOptions.SORT, true))) {
+            while (iterator.hasNext()) {
+                count++;
+                counter.accumulate(iterator.next());
+            }
+        }
+
+        FacetField regionField = counter.toFacetField();
+        return new FacetField.Bucket(region.getChromosome(), count, Collections.singletonList(regionField));
+    }
+
     private VariantQueryException invalidNestedField(String nestedFieldName) {
         return new VariantQueryException("Unable to calculate " + CHROM_DENSITY + " with nested field " + nestedFieldName);
     }
@@ -8,6 +8,9 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 import java.util.regex.Pattern;
 
 import static org.opencb.opencga.storage.core.variant.search.solr.SolrQueryParser.CHROM_DENSITY;
@@ -69,4 +72,43 @@ public abstract class VariantAggregationExecutor {
 
     protected abstract VariantQueryResult<FacetField> aggregation(Query query, QueryOptions options, String facet) throws Exception;
 
+    /**
+     * Run a list of partial aggregations, using up to numThreads threads.
+     *
+     * @param tasks      Partial aggregations
+     * @param numThreads Max number of threads
+     * @param <R>        Partial aggregation result
+     * @return           Results, in the same order as the tasks
+     * @throws Exception if any of the tasks fails
+     */
+    protected static <R> List<R> runPartialAggregations(List<Callable<R>> tasks, int numThreads) throws Exception {
+        List<R> results = new ArrayList<>(tasks.size());
+        if (numThreads <= 1 || tasks.size() <= 1) {
+            for (Callable<R> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, tasks.size()));
+        try {
+            List<Future<R>> futures = new ArrayList<>(tasks.size());
+            for (Callable<R> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<R> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
 }
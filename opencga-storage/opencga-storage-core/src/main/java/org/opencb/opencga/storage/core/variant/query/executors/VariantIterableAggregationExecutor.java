@@ -0,0 +1,428 @@
+package org.opencb.opencga.storage.core.variant.query.executors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
+import org.opencb.commons.datastore.core.FacetField;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.response.VariantQueryResult;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantIterable;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.query.executors.accumulators.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.isValidParam;
+
+/**
+ * Aggregate variants iterating over the results of the query. Used when the search engine is not available.
+ *
+ * All the facets are computed in a single pass over the variants, using a {@link FieldVariantCounter} per facet.
+ * If the query is restricted to a set of regions, the regions are split into chunks that are aggregated in parallel,
+ * and the partial results are merged at the end.
+ *
+ * Each level of a facet follows the syntax "field[values]:limit". Values in brackets restrict the buckets to return.
+ * A single number in brackets, e.g. "gene[10]", is also accepted as the limit, except for chromosomes.
+ * Buckets are sorted by count, in descending order, once all the partial results are merged.
+ */
+public class VariantIterableAggregationExecutor extends VariantAggregationExecutor {
+
+    public static final Set<String> VALID_FACETS = new HashSet<>(Arrays.asList(
+            "chromosome",
+            "type",
+            "consequenceType",
+            "ct",
+            "bt",
+            "biotype",
+            "gene"
+    ));
+    private static final Set<String> ANNOTATION_FACETS = new HashSet<>(Arrays.asList(
+            "consequenceType",
+            "ct",
+            "bt",
+            "biotype",
+            "gene"
+    ));
+    private static final int MIN_CHUNK_SIZE = 1000000;
+    private static final Pattern FACET_LEVEL_PATTERN = Pattern.compile("^([a-zA-Z]+)(\\[([^\\]]*)])?(:(\\d+))?$");
+
+    private final VariantIterable iterable;
+    private final int numThreads;
+    private Logger logger = LoggerFactory.getLogger(VariantIterableAggregationExecutor.class);
+
+    public VariantIterableAggregationExecutor(VariantIterable iterable, int numThreads) {
+        this.iterable = iterable;
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    protected boolean canUseThisExecutor(Query query, QueryOptions options, String facet) throws Exception {
+        if (VariantStorageEngine.UseSearchIndex.from(options).equals(VariantStorageEngine.UseSearchIndex.YES)) {
+            // Query search index is mandatory. Can not use this executor.
+            return false;
+        }
+        for (String fieldFacedMulti : facet.split(FACET_SEPARATOR)) {
+            for (String fieldFaced : fieldFacedMulti.split(NESTED_FACET_SEPARATOR)) {
+                FacetLevel level = FacetLevel.parse(fieldFaced);
+                // Must contain all keys
+                if (level == null || !VALID_FACETS.contains(level.key)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected VariantQueryResult<FacetField> aggregation(Query query, QueryOptions options, String facet) throws Exception {
+        StopWatch stopWatch = StopWatch.createStarted();
+
+        List<Partition> partitions = getPartitions(query);
+        List<Callable<PartialAggregation>> tasks = new ArrayList<>(partitions.size());
+        for (Partition partition : partitions) {
+            tasks.add(() -> aggregatePartition(query, facet, partition));
+        }
+
+        String[] facets = facet.split(FACET_SEPARATOR);
+        List<FacetField> fields = null;
+        long numMatches = 0;
+        for (PartialAggregation partialAggregation : runPartialAggregations(tasks, numThreads)) {
+            numMatches += partialAggregation.count;
+            if (fields == null) {
+                fields = partialAggregation.fields;
+            } else {
+                for (int i = 0; i < fields.size(); i++) {
+                    FieldVariantCounter.merge(fields.get(i), partialAggregation.fields.get(i));
+                }
+            }
+        }
+        if (fields != null) {
+            for (int i = 0; i < fields.size(); i++) {
+                sortAndLimit(fields.get(i), parseLevels(facets[i]), 0);
+            }
+        }
+
+        return new VariantQueryResult<>((int) stopWatch.getTime(TimeUnit.MILLISECONDS), 1, numMatches, Collections.emptyList(),
+                fields, null, null);
+    }
+
+    private PartialAggregation aggregatePartition(Query query, String facet, Partition partition) throws Exception {
+        List<FieldVariantCounter<Variant>> counters = new ArrayList<>();
+        for (String f : facet.split(FACET_SEPARATOR)) {
+            counters.add(new FieldVariantCounter<>(createAccumulator(f)));
+        }
+
+        Query partitionQuery = new Query(query);
+        if (partition.region != null) {
+            partitionQuery.put(REGION.key(), partition.region);
+        }
+        QueryOptions iteratorOptions = new QueryOptions(QueryOptions.INCLUDE, requiresAnnotation(facet)
+                ? Arrays.asList(VariantField.ID.fieldName(), VariantField.ANNOTATION_CONSEQUENCE_TYPES.fieldName())
+                : VariantField.ID.fieldName());
+
+        long count = 0;
+        try (VariantDBIterator iterator = iterable.iterator(partitionQuery, iteratorOptions)) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                if (!partition.owns(variant)) {
+                    continue;
+                }
+                count++;
+                for (FieldVariantCounter<Variant> counter : counters) {
+                    counter.accumulate(variant);
+                }
+            }
+        }
+
+        List<FacetField> fields = new ArrayList<>(counters.size());
+        for (FieldVariantCounter<Variant> counter : counters) {
+            fields.add(counter.toFacetField());
+        }
+        return new PartialAggregation(count, fields);
+    }
+
+    /**
+     * Split the query in partitions that can be aggregated independently.
+     *
+     * Only queries restricted to a set of regions are split. Each variant is counted only in the first partition it overlaps.
+     *
+     * @param query Query
+     * @return List of partitions
+     */
+    protected List<Partition> getPartitions(Query query) {
+        if (numThreads <= 1 || !isValidParam(query, REGION)
+                || isValidParam(query, ID) || isValidParam(query, GENE) || isValidParam(query, ANNOT_XREF)) {
+            // Other filters would be combined with the regions using an OR
+            return Collections.singletonList(new Partition(null, null, Integer.MAX_VALUE, false));
+        }
+
+        // Merge overlapping regions, by chromosome
+        Map<String, List<Region>> regionsByChromosome = new LinkedHashMap<>();
+        for (Region region : Region.parseRegions(query.getString(REGION.key()), true)) {
+            regionsByChromosome.computeIfAbsent(region.getChromosome(), k -> new ArrayList<>()).add(region);
+        }
+        long totalLength = 0;
+        for (Map.Entry<String, List<Region>> entry : regionsByChromosome.entrySet()) {
+            List<Region> regions = entry.getValue();
+            regions.sort(Comparator.comparingInt(Region::getStart));
+            List<Region> merged = new ArrayList<>(regions.size());
+            for (Region region : regions) {
+                Region last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && region.getStart() <= last.getEnd()) {
+                    last.setEnd(Math.max(last.getEnd(), region.getEnd()));
+                } else {
+                    merged.add(new Region(region.getChromosome(), region.getStart(), region.getEnd()));
+                }
+            }
+            entry.setValue(merged);
+            for (Region region : merged) {
+                if (region.getEnd() != Integer.MAX_VALUE) {
+                    totalLength += region.getEnd() - region.getStart() + 1;
+                }
+            }
+        }
+
+        // Split bounded regions in chunks
+        int chunkSize = (int) Math.max(MIN_CHUNK_SIZE, totalLength / (numThreads * 4L));
+        List<Partition> partitions = new ArrayList<>();
+        for (List<Region> regions : regionsByChromosome.values()) {
+            List<Region> chunks = new ArrayList<>();
+            for (Region region : regions) {
+                if (region.getEnd() == Integer.MAX_VALUE) {
+                    chunks.add(region);
+                    continue;
+                }
+                for (int start = region.getStart(); start <= region.getEnd(); start += chunkSize) {
+                    int end = (int) Math.min((long) start + chunkSize - 1, region.getEnd());
+                    chunks.add(new Region(region.getChromosome(), start, end));
+                }
+            }
+            for (int i = 0; i < chunks.size(); i++) {
+                Region chunk = chunks.get(i);
+                Region previous = i == 0 ? null : chunks.get(i - 1);
+                Region queryRegion = chunk;
+                if (previous != null && previous.getEnd() + 1 == chunk.getStart()) {
+                    // Extend one position to the left, so insertions at the start of the chunk (with end = start - 1) are returned.
+                    queryRegion = new Region(chunk.getChromosome(), chunk.getStart() - 1, chunk.getEnd());
+                }
+                Region next = i == chunks.size() - 1 ? null : chunks.get(i + 1);
+                boolean nextAdjacent = next != null && chunk.getEnd() + 1 == next.getStart();
+                partitions.add(new Partition(queryRegion, previous, chunk.getEnd(), nextAdjacent));
+            }
+        }
+        logger.debug("Aggregate facets in {} partitions", partitions.size());
+        return partitions;
+    }
+
+    private FieldVariantAccumulator<Variant> createAccumulator(String facet) {
+        String[] split = facet.split(NESTED_FACET_SEPARATOR);
+        FieldVariantAccumulator<Variant> accumulator = null;
+        // Reverse traverse
+        for (int i = split.length - 1; i >= 0; i--) {
+            String facetField = split[i];
+            FacetLevel level = FacetLevel.parse(facetField);
+            String fieldKey = level == null ? facetField : level.key;
+
+            final FieldVariantAccumulator<Variant> thisAccumulator;
+            switch (fieldKey) {
+                case "chromosome":
+                    thisAccumulator = new ChromosomeAccumulator();
+                    break;
+                case "type":
+                    thisAccumulator = new VariantTypeAccumulator<>(Variant::getType);
+                    break;
+                case "consequenceType":
+                case "ct":
+                    thisAccumulator = new CategoricalAccumulator<>(v -> fromConsequenceTypes(v, ct -> {
+                        List<String> names = new ArrayList<>(ct.getSequenceOntologyTerms().size());
+                        for (SequenceOntologyTerm term : ct.getSequenceOntologyTerms()) {
+                            names.add(term.getName());
+                        }
+                        return names;
+                    }), fieldKey);
+                    break;
+                case "bt":
+                case "biotype":
+                    thisAccumulator = new CategoricalAccumulator<>(v -> fromConsequenceTypes(v,
+                            ct -> Collections.singletonList(ct.getBiotype())), fieldKey);
+                    break;
+                case "gene":
+                    thisAccumulator = new CategoricalAccumulator<>(v -> fromConsequenceTypes(v,
+                            ct -> Collections.singletonList(ct.getGeneName())), fieldKey);
+                    break;
+                default:
+                    throw new VariantQueryException("Unknown faced field '" + facetField + "'");
+            }
+
+            if (accumulator != null) {
+                thisAccumulator.setNestedFieldAccumulator(accumulator);
+            }
+            accumulator = thisAccumulator;
+        }
+        return accumulator;
+    }
+
+    private static boolean requiresAnnotation(String facet) {
+        for (String fieldFacedMulti : facet.split(FACET_SEPARATOR)) {
+            for (String fieldFaced : fieldFacedMulti.split(NESTED_FACET_SEPARATOR)) {
+                FacetLevel level = FacetLevel.parse(fieldFaced);
+                if (level != null && ANNOTATION_FACETS.contains(level.key)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<FacetLevel> parseLevels(String facet) {
+        List<FacetLevel> levels = new ArrayList<>();
+        for (String fieldFaced : facet.split(NESTED_FACET_SEPARATOR)) {
+            FacetLevel level = FacetLevel.parse(fieldFaced);
+            if (level == null) {
+                throw new VariantQueryException("Unknown faced field '" + fieldFaced + "'");
+            }
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    // Filter by the requested values, sort by count and apply the limit of each level, once all the counts are merged.
+    private static void sortAndLimit(FacetField field, List<FacetLevel> levels, int levelIdx) {
+        if (field.getBuckets() == null) {
+            return;
+        }
+        FacetLevel level = levels.get(levelIdx);
+        List<FacetField.Bucket> buckets = new ArrayList<>(field.getBuckets());
+        if (!level.values.isEmpty()) {
+            buckets.removeIf(bucket -> !level.values.contains(bucket.getValue()));
+        }
+        // Stable sort. Buckets with the same count keep the order of the accumulator.
+        buckets.sort(Comparator.comparingLong(FacetField.Bucket::getCount).reversed());
+        if (buckets.size() > level.limit) {
+            buckets = new ArrayList<>(buckets.subList(0, level.limit));
+        }
+        field.setBuckets(buckets);
+        if (levelIdx + 1 < levels.size()) {
+            for (FacetField.Bucket bucket : buckets) {
+                if (bucket.getFacetFields() != null) {
+                    for (FacetField nestedField : bucket.getFacetFields()) {
+                        sortAndLimit(nestedField, levels, levelIdx + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    // Distinct non empty values from all the consequence types of the variant
+    private static Collection<String> fromConsequenceTypes(Variant variant, Function<ConsequenceType, Collection<String>> getValues) {
+        if (variant.getAnnotation() == null || variant.getAnnotation().getConsequenceTypes() == null) {
+            return Collections.emptyList();
+        }
+        Set<String> values = new LinkedHashSet<>();
+        for (ConsequenceType consequenceType : variant.getAnnotation().getConsequenceTypes()) {
+            for (String value : getValues.apply(consequenceType)) {
+                if (value != null && !value.isEmpty()) {
+                    values.add(value);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Region of the query aggregated by a single task.
+     *
+     * Variants overlapping more than one partition are returned by all of them, but only counted by the first one.
+     */
+    protected static final class Partition {
+        private final Region region;
+        private final Region previous;
+        private final int end;
+        private final boolean nextAdjacent;
+
+        Partition(Region region, Region previous, int end, boolean nextAdjacent) {
+            this.region = region;
+            this.previous = previous;
+            this.end = end;
+            this.nextAdjacent = nextAdjacent;
+        }
+
+        public Region getRegion() {
+            return region;
+        }
+
+        /**
+         * Check if the variant has to be counted by this partition.
+         *
+         * @param variant Variant returned by the query of this partition
+         * @return if the variant is counted by this partition
+         */
+        boolean owns(Variant variant) {
+            int start = variant.getStart();
+            if (previous != null && start <= previous.getEnd()) {
+                // Overlaps with the previous partition
+                return false;
+            }
+            // Insertions right after the end of the partition are also returned by the next partition, if adjacent
+            return !nextAdjacent || start <= end;
+        }
+    }
+
+    /**
+     * One level of a facet: "field[values]:limit".
+     */
+    private static final class FacetLevel {
+        private final String key;
+        private final Set<String> values;
+        private final int limit;
+
+        private FacetLevel(String key, Set<String> values, int limit) {
+            this.key = key;
+            this.values = values;
+            this.limit = limit;
+        }
+
+        static FacetLevel parse(String facet) {
+            Matcher matcher = FACET_LEVEL_PATTERN.matcher(facet.trim());
+            if (!matcher.matches()) {
+                return null;
+            }
+            String key = matcher.group(1);
+            String values = matcher.group(3);
+            int limit = matcher.group(5) == null ? Integer.MAX_VALUE : Integer.parseInt(matcher.group(5));
+            if (StringUtils.isNumeric(values) && !key.equals("chromosome")) {
+                limit = Math.min(limit, Integer.parseInt(values));
+                values = null;
+            }
+            Set<String> valuesSet = StringUtils.isEmpty(values)
+                    ? Collections.emptySet()
+                    : new HashSet<>(Arrays.asList(values.split(",")));
+            return new FacetLevel(key, valuesSet, limit);
+        }
+    }
+
+    private static final class PartialAggregation {
+        private final long count;
+        private final List<FacetField> fields;
+
+        private PartialAggregation(long count, List<FacetField> fields) {
+            this.count = count;
+            this.fields = fields;
+        }
+    }
+}
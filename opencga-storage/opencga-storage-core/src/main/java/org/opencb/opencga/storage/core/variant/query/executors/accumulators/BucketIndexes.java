@@ -0,0 +1,37 @@
+package org.opencb.opencga.storage.core.variant.query.executors.accumulators;
+
+import java.util.Arrays;
+
+/**
+ * Reusable list of bucket indexes, to avoid boxing while accumulating.
+ */
+public final class BucketIndexes {
+
+    private int[] indexes = new int[4];
+    private int size;
+
+    public BucketIndexes add(int index) {
+        if (size == indexes.length) {
+            indexes = Arrays.copyOf(indexes, size * 2);
+        }
+        indexes[size++] = index;
+        return this;
+    }
+
+    public int get(int i) {
+        return indexes[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public BucketIndexes clear() {
+        size = 0;
+        return this;
+    }
+}
@@ -2,15 +2,15 @@ package org.opencb.opencga.storage.core.variant.query.executors.accumulators;
 
 import org.opencb.commons.datastore.core.FacetField;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 import java.util.function.Function;
 
 public class CategoricalAccumulator<T> extends FieldVariantAccumulator<T> {
 
     private final Function<T, Collection<String>> getCategory;
     private final String name;
+    private final Map<String, Integer> valueIndexes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
 
     public CategoricalAccumulator(Function<T, Collection<String>> getCategory, String name) {
         this(getCategory, name, null);
@@ -35,22 +35,25 @@ public class CategoricalAccumulator<T> extends FieldVariantAccumulator<T> {
     }
 
     @Override
-    protected List<FacetField.Bucket> getBuckets(FacetField field, T variant) {
-        Collection<String> values = getCategory.apply(variant);
-        List<FacetField.Bucket> buckets = new ArrayList<>();
-        for (String value : values) {
-            FacetField.Bucket bucket = null;
-            for (FacetField.Bucket thisBucket : field.getBuckets()) {
-                if (thisBucket.getValue().equals(value)) {
-                    buckets.add(thisBucket);
-                    bucket = thisBucket;
-                }
-            }
-            if (bucket == null) {
-                buckets.add(addBucket(field, value));
+    protected void getBucketIndexes(T variant, BucketIndexes indexes) {
+        Collection<String> categories = getCategory.apply(variant);
+        if (categories == null) {
+            return;
+        }
+        for (String category : categories) {
+            Integer index = valueIndexes.get(category);
+            if (index == null) {
+                index = values.size();
+                valueIndexes.put(category, index);
+                values.add(category);
             }
+            indexes.add(index);
         }
-        return buckets;
+    }
+
+    @Override
+    protected String getBucketValue(int index) {
+        return values.get(index);
     }
 
 }
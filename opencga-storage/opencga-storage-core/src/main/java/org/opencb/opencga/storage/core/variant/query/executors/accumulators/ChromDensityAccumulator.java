@@ -9,7 +9,6 @@ import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 
@@ -77,15 +76,18 @@ public class ChromDensityAccumulator<T> extends FieldVariantAccumulator<T> {
     }
 
     @Override
-    protected List<FacetField.Bucket> getBuckets(FacetField field, T variant) {
+    protected void getBucketIndexes(T variant, BucketIndexes indexes) {
         int idx = (getStart(variant) - region.getStart()) / step;
-        if (idx < numSteps) {
-            return Collections.singletonList(field.getBuckets().get(idx));
-        } else {
-            return null;
+        if (idx >= 0 && idx < numSteps) {
+            indexes.add(idx);
         }
     }
 
+    @Override
+    protected String getBucketValue(int index) {
+        return String.valueOf(index * step + region.getStart());
+    }
+
     protected Integer getStart(T variant) {
         return getStart.apply(variant);
     }
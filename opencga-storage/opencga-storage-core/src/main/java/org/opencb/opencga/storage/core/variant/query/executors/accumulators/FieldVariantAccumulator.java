@@ -5,8 +5,18 @@ import org.opencb.commons.datastore.core.FacetField;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Accumulates variants into the buckets of a facet field, with an optional nested field.
+ *
+ * Each variant is mapped to a set of bucket indexes. Indexes are stable for the whole life of the accumulator,
+ * so they can be used to count with primitive arrays. See {@link FieldVariantCounter}.
+ * Accumulators are not thread safe.
+ *
+ * @param <T> Accumulated type
+ */
 public abstract class FieldVariantAccumulator<T> {
     private FieldVariantAccumulator<T> nestedFieldAccumulator;
+    private final BucketIndexes indexes = new BucketIndexes();
 
     protected FieldVariantAccumulator(FieldVariantAccumulator<T> nestedFieldAccumulator) {
         this.nestedFieldAccumulator = nestedFieldAccumulator;
@@ -17,6 +27,10 @@ public abstract class FieldVariantAccumulator<T> {
         return this;
     }
 
+    public FieldVariantAccumulator<T> getNestedFieldAccumulator() {
+        return nestedFieldAccumulator;
+    }
+
     /**
      * Get field name.
      * @return Field name
@@ -72,12 +86,14 @@ public abstract class FieldVariantAccumulator<T> {
      * @param variant Variant
      */
     public final void accumulate(FacetField field, T variant) {
-        List<FacetField.Bucket> buckets = getBuckets(field, variant);
-        if (buckets == null || buckets.isEmpty()) {
+        indexes.clear();
+        getBucketIndexes(variant, indexes);
+        if (indexes.isEmpty()) {
             return;
         }
         field.addCount(1);
-        for (FacetField.Bucket bucket : buckets) {
+        for (int i = 0; i < indexes.size(); i++) {
+            FacetField.Bucket bucket = getBucket(field, indexes.get(i));
             bucket.addCount(1);
             if (nestedFieldAccumulator != null) {
                 nestedFieldAccumulator.accumulate(bucket.getFacetFields().get(0), variant);
@@ -85,5 +101,31 @@ public abstract class FieldVariantAccumulator<T> {
         }
     }
 
-    protected abstract List<FacetField.Bucket> getBuckets(FacetField field, T variant);
+    /**
+     * Get the bucket with the given index, adding the missing buckets if needed.
+     * @param field Field
+     * @param index Bucket index
+     * @return the bucket
+     */
+    protected final FacetField.Bucket getBucket(FacetField field, int index) {
+        while (field.getBuckets().size() <= index) {
+            addBucket(field, getBucketValue(field.getBuckets().size()));
+        }
+        return field.getBuckets().get(index);
+    }
+
+    /**
+     * Add the indexes of the buckets where the variant should be accumulated.
+     * Add nothing if the variant should not be accumulated.
+     * @param variant Variant
+     * @param indexes Bucket indexes
+     */
+    protected abstract void getBucketIndexes(T variant, BucketIndexes indexes);
+
+    /**
+     * Get the value of the bucket with the given index.
+     * @param index Bucket index
+     * @return Bucket value
+     */
+    protected abstract String getBucketValue(int index);
 }
@@ -0,0 +1,159 @@
+package org.opencb.opencga.storage.core.variant.query.executors.accumulators;
+
+import org.opencb.commons.datastore.core.FacetField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts variants over a {@link FieldVariantAccumulator} and all its nested fields in a single pass.
+ *
+ * Counts are kept in primitive arrays indexed by the bucket index, and converted to a {@link FacetField} only at the end.
+ * Not thread safe. To aggregate in parallel, use one counter (and one accumulator) per thread,
+ * and {@link #merge(FacetField, FacetField)} the resulting fields.
+ */
+public class FieldVariantCounter<T> {
+
+    private final FieldVariantAccumulator<T> accumulator;
+    private final List<FieldVariantAccumulator<T>> levels;
+    private final BucketIndexes[] indexes;
+    private final Counts root;
+
+    public FieldVariantCounter(FieldVariantAccumulator<T> accumulator) {
+        this.accumulator = accumulator;
+        levels = new ArrayList<>();
+        for (FieldVariantAccumulator<T> level = accumulator; level != null; level = level.getNestedFieldAccumulator()) {
+            levels.add(level);
+        }
+        indexes = new BucketIndexes[levels.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = new BucketIndexes();
+        }
+        root = new Counts();
+    }
+
+    /**
+     * Accumulate a variant in all the levels of the field.
+     * @param variant Variant
+     * @return if the variant was counted
+     */
+    public boolean accumulate(T variant) {
+        return accumulate(root, 0, variant);
+    }
+
+    private boolean accumulate(Counts counts, int level, T variant) {
+        BucketIndexes bucketIndexes = indexes[level].clear();
+        levels.get(level).getBucketIndexes(variant, bucketIndexes);
+        if (bucketIndexes.isEmpty()) {
+            return false;
+        }
+        counts.count++;
+        boolean nested = level + 1 < levels.size();
+        for (int i = 0; i < bucketIndexes.size(); i++) {
+            int index = bucketIndexes.get(i);
+            counts.ensureCapacity(index, nested);
+            counts.buckets[index]++;
+            if (nested) {
+                Counts nestedCounts = counts.nested[index];
+                if (nestedCounts == null) {
+                    nestedCounts = new Counts();
+                    counts.nested[index] = nestedCounts;
+                }
+                accumulate(nestedCounts, level + 1, variant);
+            }
+        }
+        return true;
+    }
+
+    public long getCount() {
+        return root.count;
+    }
+
+    /**
+     * Build the FacetField with the accumulated counts. Empty buckets are removed.
+     * @return FacetField
+     */
+    public FacetField toFacetField() {
+        FacetField field = accumulator.createField();
+        fill(field, root, 0);
+        accumulator.cleanEmptyBuckets(field);
+        return field;
+    }
+
+    private void fill(FacetField field, Counts counts, int level) {
+        FieldVariantAccumulator<T> levelAccumulator = levels.get(level);
+        field.setCount(counts.count);
+        for (int index = 0; index < counts.buckets.length; index++) {
+            long count = counts.buckets[index];
+            if (count == 0) {
+                continue;
+            }
+            FacetField.Bucket bucket = levelAccumulator.getBucket(field, index);
+            bucket.setCount(count);
+            if (counts.nested != null && counts.nested[index] != null) {
+                fill(bucket.getFacetFields().get(0), counts.nested[index], level + 1);
+            }
+        }
+    }
+
+    /**
+     * Merge the counts of two FacetFields with the same structure, matching buckets by value.
+     * Used to combine partial aggregations.
+     * @param target Field to merge into
+     * @param other  Field to merge from
+     * @return target field
+     */
+    public static FacetField merge(FacetField target, FacetField other) {
+        target.addCount(other.getCount());
+        if (other.getBuckets() == null) {
+            return target;
+        }
+        if (target.getBuckets() == null) {
+            target.setBuckets(new ArrayList<>());
+        }
+        for (FacetField.Bucket otherBucket : other.getBuckets()) {
+            FacetField.Bucket targetBucket = null;
+            for (FacetField.Bucket bucket : target.getBuckets()) {
+                if (bucket.getValue().equals(otherBucket.getValue())) {
+                    targetBucket = bucket;
+                    break;
+                }
+            }
+            if (targetBucket == null) {
+                target.getBuckets().add(otherBucket);
+            } else {
+                targetBucket.addCount(otherBucket.getCount());
+                if (otherBucket.getFacetFields() != null) {
+                    if (targetBucket.getFacetFields() == null) {
+                        targetBucket.setFacetFields(otherBucket.getFacetFields());
+                    } else {
+                        for (int i = 0; i < otherBucket.getFacetFields().size(); i++) {
+                            merge(targetBucket.getFacetFields().get(i), otherBucket.getFacetFields().get(i));
+                        }
+                    }
+                }
+            }
+        }
+        return target;
+    }
+
+    private static final class Counts {
+        private long count;
+        private long[] buckets = new long[8];
+        private Counts[] nested;
+
+        private void ensureCapacity(int index, boolean withNested) {
+            if (index >= buckets.length) {
+                buckets = Arrays.copyOf(buckets, Math.max(buckets.length * 2, index + 1));
+            }
+            if (withNested) {
+                if (nested == null) {
+                    nested = new Counts[buckets.length];
+                } else if (nested.length < buckets.length) {
+                    nested = Arrays.copyOf(nested, buckets.length);
+                }
+            }
+        }
+    }
+}
@@ -3,7 +3,6 @@ package org.opencb.opencga.storage.core.variant.query.executors.accumulators;
 import org.opencb.commons.datastore.core.FacetField;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import java.util.function.ToIntFunction;
@@ -61,11 +60,15 @@ public class RangeAccumulator<T, N extends Number & Comparable<N>> extends Field
     }
 
     @Override
-    protected List<FacetField.Bucket> getBuckets(FacetField field, T variant) {
+    protected void getBucketIndexes(T variant, BucketIndexes indexes) {
         int idx = getRangeIdx.applyAsInt(variant);
         if (idx >= 0) {
-            return Collections.singletonList(field.getBuckets().get(idx));
+            indexes.add(idx);
         }
-        return null;
+    }
+
+    @Override
+    protected String getBucketValue(int index) {
+        return ranges.get(index).toString();
     }
 }
@@ -5,12 +5,12 @@ import org.opencb.commons.datastore.core.FacetField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 
 public class VariantTypeAccumulator<T> extends FieldVariantAccumulator<T> {
 
+    private static final VariantType[] VARIANT_TYPES = VariantType.values();
     private final Function<T, VariantType> getType;
 
     public VariantTypeAccumulator(Function<T, VariantType> getType) {
@@ -38,8 +38,16 @@ public class VariantTypeAccumulator<T> extends FieldVariantAccumulator<T> {
     }
 
     @Override
-    protected List<FacetField.Bucket> getBuckets(FacetField field, T variant) {
-        return Collections.singletonList(field.getBuckets().get(getType(variant).ordinal()));
+    protected void getBucketIndexes(T variant, BucketIndexes indexes) {
+        VariantType type = getType(variant);
+        if (type != null) {
+            indexes.add(type.ordinal());
+        }
+    }
+
+    @Override
+    protected String getBucketValue(int index) {
+        return VARIANT_TYPES[index].name();
     }
 
     protected VariantType getType(T variant) {
@@ -5,15 +5,24 @@ import org.opencb.commons.datastore.core.FacetField;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.core.response.VariantQueryResult;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.query.executors.VariantAggregationExecutor;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 public class SearchIndexVariantAggregationExecutor extends VariantAggregationExecutor {
 
+    // Time to keep the status of the search engine before checking it again
+    private static final long ALIVE_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
     private final VariantSearchManager searchManager;
     private final String dbName;
+    private volatile boolean alive;
+    private volatile long aliveCheckTime;
+    private volatile boolean aliveChecked;
     private Logger logger = LoggerFactory.getLogger(SearchIndexVariantAggregationExecutor.class);
 
 
@@ -24,12 +33,33 @@ public class SearchIndexVariantAggregationExecutor extends VariantAggregationExe
 
     @Override
     protected boolean canUseThisExecutor(Query query, QueryOptions options, String facet) throws Exception {
-        return VariantSearchUtils.isQueryCovered(query);
+        if (VariantStorageEngine.UseSearchIndex.from(options).equals(VariantStorageEngine.UseSearchIndex.NO)) {
+            return false;
+        }
+        // Fall back to other executors if the search engine is not available
+        return VariantSearchUtils.isQueryCovered(query) && isAlive();
+    }
+
+    private boolean isAlive() {
+        long now = System.nanoTime();
+        if (!aliveChecked || now - aliveCheckTime > ALIVE_CHECK_INTERVAL_NANOS) {
+            alive = searchManager.isAlive(dbName);
+            aliveCheckTime = now;
+            aliveChecked = true;
+        }
+        return alive;
     }
 
     @Override
     protected VariantQueryResult<FacetField> aggregation(Query query, QueryOptions options, String facet) throws Exception {
-        DataResult<FacetField> r = searchManager.facetedQuery(dbName, query, options);
+        DataResult<FacetField> r;
+        try {
+            r = searchManager.facetedQuery(dbName, query, options);
+        } catch (Exception e) {
+            // Check again the status of the search engine on the next query
+            aliveChecked = false;
+            throw e;
+        }
         return new VariantQueryResult<>(r)
                 .setSource(VariantSearchManager.SEARCH_ENGINE_ID);
     }
@@ -38,6 +38,7 @@ import org.opencb.commons.datastore.solr.FacetQueryParser;
 import org.opencb.commons.datastore.solr.SolrCollection;
 import org.opencb.commons.datastore.solr.SolrManager;
 import org.opencb.commons.run.ParallelTaskRunner;
+import org.opencb.commons.run.Task;
 import org.opencb.commons.utils.CollectionUtils;
 import org.opencb.commons.utils.ListUtils;
 import org.opencb.opencga.core.common.TimeUtils;
@@ -58,10 +59,13 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 /**
@@ -76,6 +80,8 @@ public class VariantSearchManager {
     private StorageConfiguration storageConfiguration;
     private VariantSearchToVariantConverter variantSearchToVariantConverter;
     private int insertBatchSize;
+    private int insertThreads;
+    private int commitWithin;
 
     private Logger logger;
 
@@ -83,6 +89,8 @@ public class VariantSearchManager {
     public static final String SEARCH_ENGINE_ID = "solr";
     public static final String USE_SEARCH_INDEX = "useSearchIndex";
     public static final int DEFAULT_INSERT_BATCH_SIZE = 10000;
+    public static final int DEFAULT_INSERT_THREADS = 4;
+    public static final int DEFAULT_COMMIT_WITHIN = 60000;
 
     public VariantSearchManager(VariantStorageMetadataManager variantStorageMetadataManager, StorageConfiguration storageConfiguration) {
         this.storageConfiguration = storageConfiguration;
@@ -98,6 +106,8 @@ public class VariantSearchManager {
         insertBatchSize = storageConfiguration.getSearch().getInsertBatchSize() > 0
                 ? storageConfiguration.getSearch().getInsertBatchSize()
                 : DEFAULT_INSERT_BATCH_SIZE;
+        insertThreads = DEFAULT_INSERT_THREADS;
+        commitWithin = DEFAULT_COMMIT_WITHIN;
 
         logger = LoggerFactory.getLogger(VariantSearchManager.class);
     }
@@ -184,6 +194,18 @@ public class VariantSearchManager {
         }
     }
 
+    private void insert(String collection, List<VariantSearchModel> variantSearchModels, int commitWithin)
+            throws IOException, SolrServerException {
+        if (!variantSearchModels.isEmpty()) {
+            if (commitWithin > 0) {
+                solrManager.getSolrClient().addBeans(collection, variantSearchModels, commitWithin);
+            } else {
+                // No commitWithin policy. Variants will be visible after the final commit.
+                solrManager.getSolrClient().addBeans(collection, variantSearchModels);
+            }
+        }
+    }
+
     /**
      * Load a Solr core/collection from a Avro or JSON file.
      *
@@ -227,6 +249,27 @@ public class VariantSearchManager {
      */
     public VariantSearchLoadResult load(String collection, VariantDBIterator variantDBIterator, ProgressLogger progressLogger,
                                         VariantSearchLoadListener loadListener) throws VariantSearchException {
+        return load(collection, variantDBIterator, progressLogger, loadListener, null);
+    }
+
+    /**
+     * Load a Solr core/collection from a variant DB iterator.
+     *
+     * Batches are converted and sent to Solr by {@link #getInsertThreads()} concurrent tasks, using commitWithin instead of
+     * explicit commits. The load listener and the checkpoint are called from a single thread, in the same order as the
+     * batches were read. An explicit commit is executed at the end.
+     *
+     * @param collection        Collection name
+     * @param variantDBIterator Iterator to retrieve the variants to load
+     * @param progressLogger    Progress logger
+     * @param loadListener      Load listener
+     * @param checkpoint        Called with the last variant of each batch, once all the previous batches are loaded. Nullable
+     * @return VariantSearchLoadResult
+     * @throws VariantSearchException VariantSearchException
+     */
+    public VariantSearchLoadResult load(String collection, VariantDBIterator variantDBIterator, ProgressLogger progressLogger,
+                                        VariantSearchLoadListener loadListener, Consumer<Variant> checkpoint)
+            throws VariantSearchException {
         if (variantDBIterator == null) {
             throw new VariantSearchException("Missing variant DB iterator when loading Solr variant collection");
         }
@@ -234,36 +277,53 @@ public class VariantSearchManager {
         AtomicInteger count = new AtomicInteger();
         AtomicInteger numLoadedVariants = new AtomicInteger();
 
-        ParallelTaskRunner<Variant, Variant> ptr = new ParallelTaskRunner<>((n) -> {
+        // The converter is not thread safe. Use one per task
+        Supplier<Task<Variant, LoadedBatch>> taskSupplier = () -> {
+            VariantSearchToVariantConverter converter = new VariantSearchToVariantConverter();
+            return batch -> {
+                // Keep the last read variant for the checkpoint, even if it is discarded by the listener
+                Variant last = batch.get(batch.size() - 1);
+                int size = batch.size();
+                loadListener.preLoad(batch);
+                insert(collection, converter.convertListToStorageType(batch), commitWithin);
+                return Collections.singletonList(new LoadedBatch(batch, last, size));
+            };
+        };
+        ParallelTaskRunner<Variant, LoadedBatch> ptr = new ParallelTaskRunner<>((n) -> {
             List<Variant> batch = new ArrayList<>(n);
             while (batch.size() < n && variantDBIterator.hasNext()) {
                 batch.add(variantDBIterator.next());
             }
             count.addAndGet(batch.size());
             return batch;
-        }, batch -> {
-            progressLogger.increment(batch.size(), () -> "up to position " + batch.get(batch.size() - 1).toString());
-            return batch;
-        }, batch -> {
-            try {
-                loadListener.preLoad(batch);
-                numLoadedVariants.addAndGet(batch.size());
-                insert(collection, batch);
-                loadListener.postLoad(batch);
-            } catch (SolrServerException | IOException e) {
-                throw new RuntimeException(e);
+        }, taskSupplier, loadedBatches -> {
+            for (LoadedBatch loadedBatch : loadedBatches) {
+                try {
+                    numLoadedVariants.addAndGet(loadedBatch.variants.size());
+                    loadListener.postLoad(loadedBatch.variants);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (checkpoint != null) {
+                    checkpoint.accept(loadedBatch.last);
+                }
+                progressLogger.increment(loadedBatch.size, () -> "up to position " + loadedBatch.last.toString());
             }
             return true;
         }, ParallelTaskRunner.Config.builder()
                 .setBatchSize(insertBatchSize)
-                .setCapacity(2)
-                .setNumTasks(1)
+                .setCapacity(insertThreads * 2)
+                .setNumTasks(insertThreads)
+                .setSorted(true)
+                .setAbortOnFail(true)
                 .build());
 
         StopWatch stopWatch = StopWatch.createStarted();
         try {
             ptr.run();
-        } catch (ExecutionException e) {
+            // Make sure all the variants are visible before returning
+            solrManager.getSolrClient().commit(collection);
+        } catch (ExecutionException | SolrServerException | IOException e) {
             throw new VariantSearchException("Error loading secondary index", e);
         }
 
@@ -273,7 +333,6 @@ public class VariantSearchManager {
         return new VariantSearchLoadResult(count.get(), numLoadedVariants.get(), 0);
     }
 
-
     /**
      * Delete variants a Solr core/collection from a variant DB iterator.
      *
@@ -763,6 +822,8 @@ public class VariantSearchManager {
         sb.append(", storageConfiguration=").append(storageConfiguration);
         sb.append(", variantSearchToVariantConverter=").append(variantSearchToVariantConverter);
         sb.append(", insertBatchSize=").append(insertBatchSize);
+        sb.append(", insertThreads=").append(insertThreads);
+        sb.append(", commitWithin=").append(commitWithin);
         sb.append('}');
         return sb.toString();
     }
@@ -820,4 +881,34 @@ public class VariantSearchManager {
         this.insertBatchSize = insertBatchSize;
         return this;
     }
+
+    public int getInsertThreads() {
+        return insertThreads;
+    }
+
+    public VariantSearchManager setInsertThreads(int insertThreads) {
+        this.insertThreads = Math.max(1, insertThreads);
+        return this;
+    }
+
+    public int getCommitWithin() {
+        return commitWithin;
+    }
+
+    public VariantSearchManager setCommitWithin(int commitWithin) {
+        this.commitWithin = commitWithin;
+        return this;
+    }
+
+    private static final class LoadedBatch {
+        private final List<Variant> variants;
+        private final Variant last;
+        private final int size;
+
+        private LoadedBatch(List<Variant> variants, Variant last, int size) {
+            this.variants = variants;
+            this.last = last;
+            this.size = size;
+        }
+    }
 }
@@ -0,0 +1,125 @@
+package org.opencb.opencga.storage.core.cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.FacetField;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.config.CacheConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CacheManagerTest {
+
+    private CacheManager cacheManager;
+    private HeapCacheStore secondTier;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        CacheConfiguration configuration = new CacheConfiguration()
+                .setActive(true)
+                .setSlowThreshold(10)
+                .setMaxResultSize(100)
+                .setAllowedTypes(CacheManager.VARIANT_TYPE);
+        secondTier = new HeapCacheStore(100, 0);
+        cacheManager = new CacheManager(configuration, Arrays.asList(new HeapCacheStore(10, 0), secondTier));
+    }
+
+    @Test
+    public void testCreateKey() {
+        Query query1 = new Query("study", "s1").append("sample", "a,b");
+        Query query2 = new Query("sample", "a,b").append("study", "s1");
+        QueryOptions options = new QueryOptions(QueryOptions.LIMIT, 10);
+
+        String key = cacheManager.createKey(CacheManager.VARIANT_TYPE, "get", 1, query1, options);
+        assertEquals(key, cacheManager.createKey(CacheManager.VARIANT_TYPE, "get", 1, query2, options));
+        assertEquals(key, cacheManager.createKey(CacheManager.VARIANT_TYPE, "get", 1, query1,
+                new QueryOptions(options).append(CacheManager.CACHE, true)));
+        assertNotEquals(key, cacheManager.createKey(CacheManager.VARIANT_TYPE, "get", 2, query1, options));
+        assertNotEquals(key, cacheManager.createKey(CacheManager.VARIANT_TYPE, "count", 1, query1, options));
+        assertNotEquals(key, cacheManager.createKey(CacheManager.VARIANT_TYPE, "get", 1,
+                new Query("study", "s1").append("sample", "b,a"), options));
+    }
+
+    @Test
+    public void testSetAndGet() {
+        cacheManager.set("fast", "value", 1, 1);
+        cacheManager.set("large", "value", 100, 1000);
+        cacheManager.set("slow", "value", 100, 10);
+
+        assertNull(cacheManager.get("fast", String.class));
+        assertNull(cacheManager.get("large", String.class));
+        assertEquals("value", cacheManager.get("slow", String.class));
+        assertEquals(1, cacheManager.getHitCount());
+        assertEquals(2, cacheManager.getMissCount());
+    }
+
+    @Test
+    public void testPromote() {
+        secondTier.put("key", "\"value\"".getBytes(StandardCharsets.UTF_8));
+        assertEquals("value", cacheManager.get("key", String.class));
+
+        secondTier.clear();
+        assertEquals("value", cacheManager.get("key", String.class));
+    }
+
+    @Test
+    public void testValuesNotShared() {
+        FacetField facetField = new FacetField("gene", 10, new ArrayList<>(Collections.singletonList(
+                new FacetField.Bucket("BRCA2", 10, Collections.emptyList()))));
+        DataResult<FacetField> result = new DataResult<>(100, Collections.emptyList(), 1, Collections.singletonList(facetField), 1);
+        cacheManager.set("facet", result, 100, 1);
+
+        // Modify the stored value and the returned value
+        facetField.setCount(0);
+        DataResult<FacetField> cached = cacheManager.get("facet", DataResult.class, FacetField.class);
+        assertEquals(10, cached.first().getCount());
+        cached.first().getBuckets().clear();
+
+        cached = cacheManager.get("facet", DataResult.class, FacetField.class);
+        assertEquals(1, cached.first().getBuckets().size());
+        assertEquals("BRCA2", cached.first().getBuckets().get(0).getValue());
+    }
+
+    @Test
+    public void testDiskStore() throws Exception {
+        DiskCacheStore diskStore = new DiskCacheStore(temporaryFolder.newFolder().toPath(), 100);
+        diskStore.put("k1", new byte[40]);
+        diskStore.put("k2", new byte[40]);
+        assertArrayEquals(new byte[40], diskStore.get("k1"));
+        assertEquals(2, diskStore.size());
+
+        // Exceed the max size. Least recently used entry is evicted
+        Thread.sleep(1100);
+        diskStore.get("k1");
+        diskStore.put("k3", new byte[40]);
+        assertNotNull(diskStore.get("k1"));
+        assertNull(diskStore.get("k2"));
+        assertNotNull(diskStore.get("k3"));
+        assertTrue(diskStore.getCurrentSize() <= 100);
+
+        diskStore.clear();
+        assertEquals(0, diskStore.size());
+        assertEquals(0, diskStore.getCurrentSize());
+    }
+
+    @Test
+    public void testInactive() {
+        cacheManager = new CacheManager(new CacheConfiguration().setActive(false));
+        cacheManager.set("slow", "value", 100, 10);
+        assertNull(cacheManager.get("slow"));
+        assertFalse(cacheManager.isActive());
+    }
+
+}
@@ -108,4 +108,47 @@ public class BitStreamTest {
         thrown.expect(IllegalArgumentException.class);
         inputStream.readByte(10);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReadInt() {
+        BitOutputStream outputStream = new BitOutputStream(1);
+        for (int i = 0; i < LENGTH; i++) {
+            outputStream.write(i, 20);
+            outputStream.write(-i, 32);
+            outputStream.write(i, 3);
+        }
+        assertEquals((LENGTH * 55 + 7) / 8, outputStream.size());
+        BitInputStream inputStream = new BitInputStream(outputStream.toByteArray());
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(i, inputStream.readInt(20));
+            assertEquals(-i, inputStream.readInt(32));
+            assertEquals(i & 0b111, inputStream.readInt(3));
+        }
+        assertEquals(LENGTH * 55 % 8 == 0 ? 0 : 8 - LENGTH * 55 % 8, inputStream.remainingBits());
+    }
+
+    @Test
+    public void testReadBytesReuse() {
+        BitOutputStream outputStream = new BitOutputStream();
+        for (byte aByte : bytes) {
+            outputStream.write(aByte, 4);
+        }
+        byte[] serialized = outputStream.toByteArray();
+        // toByteArray does not modify the stream
+        assertArrayEquals(serialized, outputStream.toByteArray());
+
+        byte[] dest = new byte[LENGTH + 1];
+        BitInputStream inputStream = new BitInputStream();
+        for (int round = 0; round < 2; round++) {
+            inputStream.reset(serialized, 0, serialized.length);
+            inputStream.readBytes(dest, 1, LENGTH, 4);
+            for (int i = 0; i < LENGTH; i++) {
+                assertEquals(bytes[i] & 0b1111, dest[i + 1]);
+            }
+        }
+
+        outputStream.reset();
+        outputStream.write(0b101, 3);
+        assertArrayEquals(new byte[]{0b101}, outputStream.toByteArray());
+    }
+}
@@ -0,0 +1,73 @@
+package org.opencb.opencga.storage.core.metadata;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class MetadataCacheTest {
+
+    private AtomicInteger calls;
+    private Set<Integer> staleStudies;
+    private MetadataCache<Integer, String> cache;
+
+    @Before
+    public void setUp() throws Exception {
+        calls = new AtomicInteger();
+        staleStudies = new HashSet<>();
+        cache = new MetadataCache<>((studyId, id) -> {
+            calls.incrementAndGet();
+            return id < 0 ? null : studyId + ":" + id;
+        }, 10, studyId -> {
+            if (staleStudies.remove(studyId)) {
+                cache.invalidate(studyId);
+            }
+        });
+    }
+
+    @Test
+    public void testGet() {
+        assertEquals("1:1", cache.get(1, 1));
+        assertEquals("1:1", cache.get(1, 1));
+        assertEquals("2:1", cache.get(2, 1));
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    public void testNullValuesNotCached() {
+        assertNull(cache.get(1, -1));
+        assertNull(cache.get(1, -1));
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMaxSize() {
+        for (int i = 0; i < 100; i++) {
+            cache.get(1, i);
+        }
+        assertTrue(cache.size() <= 10);
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.get(1, 1);
+        cache.get(2, 1);
+        staleStudies.add(1);
+
+        cache.get(1, 1);
+        cache.get(2, 1);
+        assertEquals(3, calls.get());
+        assertEquals(2, cache.size());
+        // Stats from invalidated studies are preserved
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(3, cache.stats().missCount());
+    }
+
+}
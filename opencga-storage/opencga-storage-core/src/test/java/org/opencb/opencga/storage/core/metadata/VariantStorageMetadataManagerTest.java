@@ -57,6 +57,19 @@ public abstract class VariantStorageMetadataManagerTest extends VariantStorageBa
         Assert.assertEquals("DONE", Collections.singletonList("MyTask2"), getTasks(study, Collections.singletonList(TaskMetadata.Status.DONE)));
     }
 
+    @Test
+    public void testRemoveCohortUpdatesMetadataVersion() throws StorageEngineException {
+        StudyMetadata study = metadataManager.createStudy("study");
+        metadataManager.registerFile(study.getId(), "file.txt", Arrays.asList("s1", "s2"));
+        metadataManager.registerCohort(study.getName(), "c1", Arrays.asList("s1", "s2"));
+        Assert.assertNotNull(metadataManager.getCohortId(study.getId(), "c1"));
+
+        long version = metadataManager.getMetadataVersion();
+        metadataManager.removeCohort(study.getId(), "c1");
+        Assert.assertNotEquals(version, metadataManager.getMetadataVersion());
+        Assert.assertNull(metadataManager.getCohortId(study.getId(), "c1"));
+    }
+
     public List<String> getTasks(StudyMetadata study, List<TaskMetadata.Status> status) {
         return Arrays.stream(Iterators.toArray(metadataManager.taskIterator(study.getId(), status), TaskMetadata.class))
                 .map(TaskMetadata::getName)
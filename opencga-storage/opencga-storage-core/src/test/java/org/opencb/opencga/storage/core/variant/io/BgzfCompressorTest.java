@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2020 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BgzfCompressorTest {
+
+    @Test
+    public void testCompressText() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 200000; i++) {
+            sb.append("1\t").append(i * 10).append("\t.\tA\tC\t.\tPASS\t.\tGT\t0/1\t1/1\n");
+        }
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        checkCompress(data);
+    }
+
+    @Test
+    public void testCompressRandom() throws IOException {
+        // Not compressible data. Blocks are stored without compression
+        byte[] data = new byte[200000];
+        new Random(1).nextBytes(data);
+        checkCompress(data);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        BgzfCompressor compressor = new BgzfCompressor();
+        assertEquals(0, compressor.compress(new byte[0], 0, 0).size());
+        assertArrayEquals(new byte[0], decompress(BgzfCompressor.getEofBlock()));
+        compressor.end();
+    }
+
+    private void checkCompress(byte[] data) throws IOException {
+        BgzfCompressor compressor = new BgzfCompressor();
+        List<byte[]> blocks = compressor.compress(data, 0, data.length);
+        compressor.end();
+        assertEquals((data.length + BgzfCompressor.MAX_BLOCK_SIZE - 1) / BgzfCompressor.MAX_BLOCK_SIZE, blocks.size());
+
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (byte[] block : blocks) {
+            assertTrue(block.length <= 64 * 1024);
+            // BSIZE: total block size minus 1
+            int bsize = (block[16] & 0xff) | (block[17] & 0xff) << 8;
+            assertEquals(block.length - 1, bsize);
+            os.write(block);
+        }
+        os.write(BgzfCompressor.getEofBlock());
+
+        assertArrayEquals(data, decompress(os.toByteArray()));
+    }
+
+    private byte[] decompress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                os.write(buffer, 0, read);
+            }
+        }
+        return os.toByteArray();
+    }
+}
@@ -90,6 +90,32 @@ public class VariantExporterTest extends VariantStorageBaseTest implements Dummy
         }
     }
 
+    @Test
+    public void exportBgzfVcfTest() throws Exception {
+        URI outputDir = newOutputUri();
+        URI output = outputDir.resolve("variant.vcf.gz");
+        URI outputBgzf = outputDir.resolve("variant.bgzf.vcf.gz");
+        variantStorageEngine.exportData(output, VariantOutputFormat.VCF_GZ, null, new Query(), new QueryOptions());
+        variantStorageEngine.exportData(outputBgzf, VariantOutputFormat.VCF_GZ, null, new Query(), new QueryOptions()
+                .append(VariantStorageOptions.EXPORT_BGZF.key(), true)
+                .append(VariantStorageOptions.EXPORT_THREADS.key(), 4)
+                .append(VariantStorageOptions.EXPORT_BATCH_SIZE.key(), 10));
+
+        assertTrue(Paths.get(outputBgzf.getPath() + VariantExporter.TABIX_INDEX_EXTENSION).toFile().exists());
+        assertEquals(readLines(output), readLines(outputBgzf));
+    }
+
+    private List<String> readLines(URI output) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(output.getPath()))))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
     @Test
     public void exportJsonGivenVariantsFileTest() throws Exception {
         URI outputDir = newOutputUri();
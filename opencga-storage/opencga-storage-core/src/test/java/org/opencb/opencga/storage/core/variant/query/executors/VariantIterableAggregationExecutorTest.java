@@ -0,0 +1,157 @@
+package org.opencb.opencga.storage.core.variant.query.executors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.FacetField;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.response.VariantQueryResult;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantIterable;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.query.executors.accumulators.FieldVariantCounter;
+import org.opencb.opencga.storage.core.variant.query.executors.accumulators.VariantTypeAccumulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VariantIterableAggregationExecutorTest {
+
+    private List<Variant> variants;
+    private VariantIterable iterable;
+
+    @Before
+    public void setUp() throws Exception {
+        variants = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            variants.add(new Variant("1:" + (i * 10000 + 1) + ":A:C"));
+            variants.add(new Variant("2:" + (i * 10000 + 1) + ":A:-"));
+        }
+        // Deletion overlapping two chunks
+        variants.add(new Variant("1:999999:AAAAA:-"));
+        // Insertion right after the end of a chunk
+        variants.add(new Variant("1:1000001:-:TTT"));
+
+        iterable = Mockito.mock(VariantIterable.class);
+        Mockito.doAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            List<Region> regions = Region.parseRegions(query.getString(VariantQueryParam.REGION.key()), true);
+            List<Variant> result = new ArrayList<>();
+            for (Variant variant : variants) {
+                for (Region region : regions) {
+                    if (region.overlaps(variant.getChromosome(), variant.getStart(), variant.getEnd())) {
+                        result.add(variant);
+                        break;
+                    }
+                }
+            }
+            return VariantDBIterator.wrapper(result.iterator());
+        }).when(iterable).iterator(Mockito.any(Query.class), Mockito.any(QueryOptions.class));
+    }
+
+    @Test
+    public void testPartitions() throws Exception {
+        VariantIterableAggregationExecutor executor = new VariantIterableAggregationExecutor(iterable, 4);
+        Query query = new Query(VariantQueryParam.REGION.key(), "1:1-5000000,1:4000000-9000000,2:1-2000000");
+
+        List<VariantIterableAggregationExecutor.Partition> partitions = executor.getPartitions(query);
+        assertEquals(11, partitions.size());
+
+        VariantQueryResult<FacetField> result = executor.aggregation(query, new QueryOptions(), "chromosome>>type");
+        VariantQueryResult<FacetField> serialResult = new VariantIterableAggregationExecutor(iterable, 1)
+                .aggregation(query, new QueryOptions(), "chromosome>>type");
+
+        // 900 SNVs + 1 deletion + 1 insertion in chr1, and 200 deletions in chr2
+        assertEquals(1102, result.getNumMatches());
+        assertEquals(serialResult.getNumMatches(), result.getNumMatches());
+        FacetField field = result.getResults().get(0);
+        FacetField serialField = serialResult.getResults().get(0);
+        assertEquals(serialField.getCount(), field.getCount());
+        assertEquals(serialField.getBuckets().size(), field.getBuckets().size());
+        for (int i = 0; i < field.getBuckets().size(); i++) {
+            assertEquals(serialField.getBuckets().get(i).getValue(), field.getBuckets().get(i).getValue());
+            assertEquals(serialField.getBuckets().get(i).getCount(), field.getBuckets().get(i).getCount());
+        }
+        assertEquals(902, field.getBuckets().get(0).getCount());
+        assertEquals(200, field.getBuckets().get(1).getCount());
+    }
+
+    @Test
+    public void testPartitionsOwnInsertionsBeforeGap() {
+        VariantIterableAggregationExecutor executor = new VariantIterableAggregationExecutor(iterable, 4);
+        Variant insertion = new Variant("1:1000001:-:TTT");
+
+        // Next chunk is adjacent. Counted by the next partition
+        List<VariantIterableAggregationExecutor.Partition> partitions = executor.getPartitions(
+                new Query(VariantQueryParam.REGION.key(), "1:1-2000000"));
+        assertFalse(partitions.get(0).owns(insertion));
+        assertTrue(partitions.get(1).owns(insertion));
+
+        // Next chunk is not adjacent. Counted by the partition that returns it
+        partitions = executor.getPartitions(new Query(VariantQueryParam.REGION.key(), "1:1-1000000,1:3000000-4000000"));
+        assertTrue(partitions.get(0).owns(insertion));
+    }
+
+    @Test
+    public void testSortAndLimit() throws Exception {
+        VariantIterableAggregationExecutor executor = new VariantIterableAggregationExecutor(iterable, 4);
+        Query query = new Query(VariantQueryParam.REGION.key(), "1:1-10000000,2:1-10000000");
+
+        // 1000 SNVs in chr1, 1000 + 2 INDELs in both chromosomes. Sorted by count
+        FacetField field = executor.aggregation(query, new QueryOptions(), "type").getResults().get(0);
+        assertEquals(Arrays.asList("INDEL", "SNV"), bucketValues(field));
+        assertEquals(1002, field.getBuckets().get(0).getCount());
+
+        for (String facet : Arrays.asList("type:1", "type[1]")) {
+            field = executor.aggregation(query, new QueryOptions(), facet).getResults().get(0);
+            assertEquals(facet, Collections.singletonList("INDEL"), bucketValues(field));
+            assertEquals(2002, field.getCount());
+        }
+
+        // Limit nested levels
+        field = executor.aggregation(query, new QueryOptions(), "chromosome>>type:1").getResults().get(0);
+        assertEquals(Arrays.asList("1", "2"), bucketValues(field));
+        assertEquals(Collections.singletonList("SNV"), bucketValues(field.getBuckets().get(0).getFacetFields().get(0)));
+        assertEquals(Collections.singletonList("INDEL"), bucketValues(field.getBuckets().get(1).getFacetFields().get(0)));
+
+        // Numbers in brackets are values for chromosomes
+        field = executor.aggregation(query, new QueryOptions(), "chromosome[1]").getResults().get(0);
+        assertEquals(Collections.singletonList("1"), bucketValues(field));
+        assertEquals(1002, field.getBuckets().get(0).getCount());
+    }
+
+    private static List<String> bucketValues(FacetField field) {
+        return field.getBuckets().stream().map(FacetField.Bucket::getValue).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testMerge() {
+        FieldVariantCounter<Variant> counter1 = new FieldVariantCounter<>(new VariantTypeAccumulator<>(Variant::getType));
+        FieldVariantCounter<Variant> counter2 = new FieldVariantCounter<>(new VariantTypeAccumulator<>(Variant::getType));
+        FieldVariantCounter<Variant> counter = new FieldVariantCounter<>(new VariantTypeAccumulator<>(Variant::getType));
+        for (int i = 0; i < variants.size(); i++) {
+            (i % 3 == 0 ? counter1 : counter2).accumulate(variants.get(i));
+            counter.accumulate(variants.get(i));
+        }
+
+        FacetField merged = FieldVariantCounter.merge(counter1.toFacetField(), counter2.toFacetField());
+        assertEquals(counter.toFacetField().getCount(), merged.getCount());
+        assertEquals(counter.toFacetField().getBuckets().size(), merged.getBuckets().size());
+        for (FacetField.Bucket bucket : counter.toFacetField().getBuckets()) {
+            long count = merged.getBuckets().stream().filter(b -> b.getValue().equals(bucket.getValue())).findFirst()
+                    .map(FacetField.Bucket::getCount).orElse(0L);
+            assertEquals(bucket.getCount(), count);
+        }
+        assertEquals(variants.size(), merged.getCount());
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
@@ -16,7 +17,9 @@ import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchLoadResult;
+import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
 import org.opencb.opencga.storage.core.variant.solr.VariantSolrExternalResource;
 import org.opencb.opencga.storage.core.variant.stats.DefaultVariantStatisticsManager;
 
@@ -26,6 +29,8 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created on 19/04/18.
@@ -145,6 +150,65 @@ public abstract class VariantSearchIndexTest extends VariantStorageBaseTest {
         }
     }
 
+    @Test
+    public void testResumeOverwriteIndex() throws Exception {
+        VariantDBAdaptor dbAdaptor = variantStorageEngine.getDBAdaptor();
+        VariantStorageEngine storageEngine = getVariantStorageEngine();
+
+        StudyMetadata studyMetadata = metadataManager.createStudy("S_1");
+        List<URI> inputFiles = new ArrayList<>();
+        for (int fileId = 12877; fileId <= 12879; fileId++) {
+            inputFiles.add(getResourceUri("platinum/1K.end.platinum-genomes-vcf-NA" + fileId + "_S1.genome.vcf.gz"));
+        }
+        storageEngine.getOptions().put(VariantStorageOptions.STUDY.key(), studyMetadata.getId());
+        storageEngine.index(inputFiles, outputUri, true, true, true);
+
+        List<Variant> variants = new ArrayList<>();
+        try (VariantDBIterator iterator = dbAdaptor.iterator(new Query(), new QueryOptions())) {
+            iterator.forEachRemaining(variants::add);
+        }
+        List<String> chromosomes = variants.stream().map(Variant::getChromosome).distinct().collect(Collectors.toList());
+        assertEquals(2, chromosomes.size());
+
+        // Interrupted in the middle of the second chromosome
+        List<Variant> secondChromosome = variants.stream()
+                .filter(v -> v.getChromosome().equals(chromosomes.get(1)))
+                .collect(Collectors.toList());
+        Variant lastLoaded = secondChromosome.get(secondChromosome.size() / 2);
+        metadataManager.updateProjectMetadata(projectMetadata -> {
+            projectMetadata.getAttributes().put(VariantStorageOptions.SEARCH_INDEX_CHECKPOINT.key(), new ObjectMap()
+                    .append("query", new Query().toJson())
+                    .append("variant", lastLoaded.toString())
+                    .append("chromosome", lastLoaded.getChromosome())
+                    .append("start", lastLoaded.getStart())
+                    .append("loadedChromosomes", Collections.singletonList(chromosomes.get(0))));
+            return projectMetadata;
+        });
+
+        storageEngine.getOptions().put(VariantStorageOptions.RESUME.key(), true);
+        VariantSearchLoadResult loadResult = searchIndex(true);
+        storageEngine.getOptions().remove(VariantStorageOptions.RESUME.key());
+        System.out.println("Load result after resume: = " + loadResult);
+
+        // Only the pending variants are read
+        List<Variant> pending = secondChromosome.subList(secondChromosome.size() / 2 + 1, secondChromosome.size());
+        assertTrue(loadResult.getNumProcessedVariants() >= pending.size());
+        assertTrue(loadResult.getNumProcessedVariants() < secondChromosome.size());
+        VariantSearchManager searchManager = variantStorageEngine.getVariantSearchManager();
+        assertEquals(0, searchManager.count(DB_NAME, new Query(VariantQueryParam.REGION.key(), chromosomes.get(0))));
+        Set<String> loaded = searchManager.query(DB_NAME, new Query(), new QueryOptions(QueryOptions.LIMIT, variants.size()))
+                .getResults().stream().map(Variant::toString).collect(Collectors.toSet());
+        for (Variant variant : pending) {
+            assertTrue(variant.toString(), loaded.contains(variant.toString()));
+        }
+        assertFalse(metadataManager.getProjectMetadata().getAttributes().containsKey(VariantStorageOptions.SEARCH_INDEX_CHECKPOINT.key()));
+
+        // A new rebuild without checkpoint loads everything
+        loadResult = searchIndex(true);
+        checkLoadResult(variants.size(), loadResult);
+        checkVariantSearchIndex(dbAdaptor);
+    }
+
     @Test
     public void testSearchIndexRemoveSearchIndex() throws Exception {
         testRemoveFiles(true);
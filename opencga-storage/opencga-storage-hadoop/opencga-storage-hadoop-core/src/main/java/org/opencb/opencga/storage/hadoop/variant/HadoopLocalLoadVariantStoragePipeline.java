@@ -16,6 +16,7 @@
 
 package org.opencb.opencga.storage.hadoop.variant;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.hadoop.conf.Configuration;
@@ -24,6 +25,7 @@ import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.avro.VariantType;
 import org.opencb.biodata.tools.variant.VariantDeduplicationTask;
+import org.opencb.biodata.tools.variant.converters.proto.VariantToProtoVcfRecord;
 import org.opencb.biodata.tools.variant.converters.proto.VcfSliceToVariantListConverter;
 import org.opencb.commons.ProgressLogger;
 import org.opencb.commons.datastore.core.ObjectMap;
@@ -48,6 +50,8 @@ import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.archive.VariantHBaseArchiveDataWriter;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBLoader;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSummaryBuilder;
 import org.opencb.opencga.storage.hadoop.variant.load.VariantHadoopDBWriter;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantSliceReader;
 import org.opencb.opencga.storage.hadoop.variant.transform.VariantToVcfSliceConverterTask;
@@ -59,7 +63,7 @@ import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.opencb.biodata.models.variant.protobuf.VcfSliceProtos.VcfSlice;
@@ -78,6 +82,9 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
     private static final String OPERATION_NAME = "Load";
     private int taskId;
     private HashSet<String> loadedGenotypes;
+    // Samples loaded for the first time. Their SampleIndex summary is written while loading the file.
+    private Set<Integer> summarySamples = Collections.emptySet();
+    private final List<SampleIndexSummaryBuilder> summaryBuilders = new ArrayList<>();
 
     public HadoopLocalLoadVariantStoragePipeline(StorageConfiguration configuration,
                                                  VariantHadoopDBAdaptor dbAdaptor, IOConnectorProvider ioConnectorProvider,
@@ -110,7 +117,8 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
                         if (sampleMetadata.isAnnotated()
                                 || SampleIndexDBAdaptor.getSampleIndexStatus(sampleMetadata) == TaskMetadata.Status.READY
                                 || sampleMetadata.getFamilyIndexStatus() == TaskMetadata.Status.READY
-                                || sampleMetadata.getMendelianErrorStatus() == TaskMetadata.Status.READY) {
+                                || sampleMetadata.getMendelianErrorStatus() == TaskMetadata.Status.READY
+                                || SampleIndexDBAdaptor.getSampleIndexSummaryStatus(sampleMetadata) == TaskMetadata.Status.READY) {
                             processedSamples.add(sampleMetadata.getId());
                         }
                     }
@@ -129,6 +137,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
                 getMetadataManager().updateSampleMetadata(studyId, annotatedSample, sampleMetadata -> {
                     sampleMetadata.setAnnotationStatus(TaskMetadata.Status.NONE);
                     SampleIndexDBAdaptor.setSampleIndexStatus(sampleMetadata, TaskMetadata.Status.NONE);
+                    SampleIndexDBAdaptor.setSampleIndexSummaryStatus(sampleMetadata, TaskMetadata.Status.NONE);
                     sampleMetadata.setFamilyIndexStatus(TaskMetadata.Status.NONE);
                     sampleMetadata.setMendelianErrorStatus(TaskMetadata.Status.NONE);
                     return sampleMetadata;
@@ -136,6 +145,19 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
             }
         }
 
+        if (SampleIndexSummaryBuilder.isEnabled(getOptions())
+                && YesNoAuto.parse(getOptions(), LOAD_SAMPLE_INDEX.key()) != YesNoAuto.NO
+                && (splitData == null || splitData == VariantStorageEngine.SplitData.CHROMOSOME)) {
+            summarySamples = new LinkedHashSet<>();
+            for (String sample : fileMetadata.getSampleIds()) {
+                if (!alreadyIndexedSamples.contains(sample)) {
+                    summarySamples.add(getMetadataManager().getSampleId(studyId, sample));
+                }
+            }
+            // Will be READY after loading the file
+            SampleIndexSummaryBuilder.invalidate(getMetadataManager(), studyId, summarySamples);
+        }
+
         if (splitData != null) {
             // Register loadSplitData
             for (String sample : fileMetadata.getSampleIds()) {
@@ -191,6 +213,15 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
 //            fileMetadata.setStudyId(Integer.toString(studyId));
 
             ArchiveTableHelper helper = new ArchiveTableHelper(dbAdaptor.getGenomeHelper(), studyId, fileMetadata);
+            if (!summarySamples.isEmpty()) {
+                try {
+                    // Remove any summary from previous attempts
+                    SampleIndexSummaryBuilder.reset(dbAdaptor.getHBaseManager(),
+                            dbAdaptor.getTableNameGenerator().getSampleIndexSummaryTableName(studyId), summarySamples, getOptions());
+                } catch (IOException e) {
+                    throw new StorageEngineException("Error removing SampleIndex summary of samples " + summarySamples, e);
+                }
+            }
             StopWatch stopWatch = StopWatch.createStarted();
             if (VariantReaderUtils.isProto(fileName)) {
                 ProgressLogger progressLogger = new ProgressLogger("Loaded slices:");
@@ -233,7 +264,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         VcfSliceToVariantListConverter converter = new VcfSliceToVariantListConverter(helper.getStudyMetadata());
         VariantHadoopDBWriter variantsWriter = newVariantHadoopDBWriter();
         List<Integer> sampleIds = new ArrayList<>(getMetadataManager().getFileMetadata(getStudyId(), getFileId()).getSamples());
-        SampleIndexDBLoader sampleIndexDBLoader = newSampleIndexDBLoader(helper, sampleIds);
+        SampleIndexDBLoader sampleIndexDBLoader = newSampleIndexDBLoader(helper, sampleIds, 0);
 
 //        ((TaskMetadata<VcfSlice, VcfSlice>) t -> t)
 //                .then(archiveWriter)
@@ -306,7 +337,7 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
 
         // Config
         ParallelTaskRunner.Config config = ParallelTaskRunner.Config.builder()
-                .setNumTasks(1) // Increasing the numTasks may produce wrong results writing the sampleIndex
+                .setNumTasks(1) // Increasing the numTasks may produce wrong results writing the sampleIndex. Use HADOOP_LOAD_THREADS
                 .setBatchSize(1)
                 .setReadQueuePutTimeout(1000).build();
 
@@ -318,19 +349,36 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         VariantSliceReader sliceReader = new VariantSliceReader(
                 helper.getChunkSize(), variantReader.then(dedupTask), studyId, fileId, sliceBufferSize, progressLogger);
 
-        // Archive Writer
-        VariantHBaseArchiveDataWriter archiveWriter = newArchiveDBWriter(table, helper);
-        // Variants Writer
-        VariantHadoopDBWriter hadoopDBWriter = newVariantHadoopDBWriter();
-        // Sample Index Writer
-        List<Integer> sampleIds = new ArrayList<>(getMetadataManager().getFileMetadata(studyId, fileId).getSamples());
-        SampleIndexDBLoader sampleIndexDBLoader = newSampleIndexDBLoader(helper, sampleIds);
-
         // TaskMetadata
         String archiveFields = options.getString(ARCHIVE_FIELDS.key());
         String nonRefFilter = options.getString(ARCHIVE_NON_REF_FILTER.key());
-        GroupedVariantsTask task = new GroupedVariantsTask(archiveWriter, hadoopDBWriter, sampleIndexDBLoader,
-                null, archiveFields, nonRefFilter);
+        List<Integer> sampleIds = new ArrayList<>(getMetadataManager().getFileMetadata(studyId, fileId).getSamples());
+        int numThreads = getLoadThreads(helper);
+        List<VariantHadoopDBWriter> hadoopDBWriters = new ArrayList<>(numThreads);
+        List<SampleIndexDBLoader> sampleIndexDBLoaders = new ArrayList<>(numThreads);
+        List<GroupedVariantsTask> tasks = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            // Archive Writer
+            VariantHBaseArchiveDataWriter archiveWriter = newArchiveDBWriter(table, helper);
+            // Variants Writer
+            VariantHadoopDBWriter hadoopDBWriter = newVariantHadoopDBWriter();
+            // Sample Index Writer
+            SampleIndexDBLoader sampleIndexDBLoader = newSampleIndexDBLoader(helper, sampleIds, i);
+
+            hadoopDBWriters.add(hadoopDBWriter);
+            if (sampleIndexDBLoader != null) {
+                sampleIndexDBLoaders.add(sampleIndexDBLoader);
+            }
+            tasks.add(new GroupedVariantsTask(archiveWriter, hadoopDBWriter, sampleIndexDBLoader, null, archiveFields, nonRefFilter,
+                    numThreads > 1 ? helper.getChunkSize() : 0));
+        }
+        Task<ImmutablePair<Long, List<Variant>>, Object> task;
+        if (numThreads > 1) {
+            logger.info("Loading file using {} threads", numThreads);
+            task = new ShardedGroupedVariantsTask(tasks, helper.getChunkSize());
+        } else {
+            task = tasks.get(0);
+        }
 
         ParallelTaskRunner<ImmutablePair<Long, List<Variant>>, Object> ptr =
                 new ParallelTaskRunner<>(sliceReader, task, null, config);
@@ -340,18 +388,48 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
             throw new StorageEngineException("Error loading file " + input, e);
         }
 
+        int skippedRefBlock = 0;
+        int loadedVariants = 0;
+        int skippedRefVariants = 0;
+        for (VariantHadoopDBWriter hadoopDBWriter : hadoopDBWriters) {
+            skippedRefBlock += hadoopDBWriter.getSkippedRefBlock();
+            loadedVariants += hadoopDBWriter.getLoadedVariants();
+            skippedRefVariants += hadoopDBWriter.getSkippedRefVariants();
+        }
         logLoadResults(variantReader.getVariantFileMetadata(),
                 resolver.getDuplicatedVariants(),
                 resolver.getDuplicatedLocus(),
-                resolver.getDiscardedVariants(), hadoopDBWriter.getSkippedRefBlock() + resolver.getExtraRefBlockDiscardedVariants(),
-                hadoopDBWriter.getLoadedVariants(), hadoopDBWriter.getSkippedRefVariants());
+                resolver.getDiscardedVariants(), skippedRefBlock + resolver.getExtraRefBlockDiscardedVariants(),
+                loadedVariants, skippedRefVariants);
         getLoadStats().put("duplicatedVariants", resolver.getDuplicatedVariants());
         getLoadStats().put("duplicatedLocus", resolver.getDuplicatedLocus());
         getLoadStats().put("discardedVariants", resolver.getDiscardedVariants());
-        if (sampleIndexDBLoader != null) {
+        if (!sampleIndexDBLoaders.isEmpty()) {
             // Update list of loaded genotypes
-            this.loadedGenotypes = sampleIndexDBLoader.getLoadedGenotypes();
+            this.loadedGenotypes = new HashSet<>();
+            for (SampleIndexDBLoader sampleIndexDBLoader : sampleIndexDBLoaders) {
+                this.loadedGenotypes.addAll(sampleIndexDBLoader.getLoadedGenotypes());
+            }
+        }
+    }
+
+    /**
+     * Number of threads to load the file.
+     *
+     * Each thread owns a shard of the file, so the SampleIndexDBLoader state of each sample index batch is only modified
+     * from one thread. This requires that the archive slices do not overlap two sample index batches.
+     *
+     * @param helper ArchiveTableHelper
+     * @return number of threads
+     */
+    private int getLoadThreads(ArchiveTableHelper helper) {
+        int numThreads = getOptions().getInt(HADOOP_LOAD_THREADS.key(), HADOOP_LOAD_THREADS.defaultValue());
+        if (numThreads > 1 && SampleIndexSchema.BATCH_SIZE % helper.getChunkSize() != 0) {
+            logger.warn("Unable to load file using {} threads. Archive chunk size {} is not a divisor of the sample index batch size {}",
+                    numThreads, helper.getChunkSize(), SampleIndexSchema.BATCH_SIZE);
+            numThreads = 1;
         }
+        return Math.max(numThreads, 1);
     }
 
     private void logLoadResults(VariantFileMetadata variantFileMetadata, int duplicatedVariants, int duplicatedLocus, int discardedVariants,
@@ -395,6 +473,14 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         // Mark the load task as READY
         getMetadataManager().setStatus(getStudyId(), taskId, TaskMetadata.Status.READY);
 
+        if (!summaryBuilders.isEmpty()) {
+            Set<Integer> readySamples = new LinkedHashSet<>(summarySamples);
+            for (SampleIndexSummaryBuilder summaryBuilder : summaryBuilders) {
+                readySamples.removeAll(summaryBuilder.getInvalidSamples());
+            }
+            SampleIndexSummaryBuilder.ready(getMetadataManager(), getStudyId(), readySamples);
+        }
+
         return uri;
     }
 
@@ -416,7 +502,8 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         }
     }
 
-    private SampleIndexDBLoader newSampleIndexDBLoader(ArchiveTableHelper helper, List<Integer> sampleIds) throws StorageEngineException {
+    private SampleIndexDBLoader newSampleIndexDBLoader(ArchiveTableHelper helper, List<Integer> sampleIds, int shard)
+            throws StorageEngineException {
         YesNoAuto loadSampleIndex = YesNoAuto.parse(getOptions(), LOAD_SAMPLE_INDEX.key());
         if (loadSampleIndex == YesNoAuto.NO || sampleIds.isEmpty()) {
             return null;
@@ -424,12 +511,19 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         SampleIndexDBLoader sampleIndexDBLoader;
         SampleIndexDBAdaptor sampleIndexDbAdaptor = new SampleIndexDBAdaptor(
                 dbAdaptor.getHBaseManager(), dbAdaptor.getTableNameGenerator(), getMetadataManager());
+        SampleIndexSummaryBuilder summaryBuilder = null;
+        if (!summarySamples.isEmpty()) {
+            // Each shard writes its own counts
+            summaryBuilder = new SampleIndexSummaryBuilder(dbAdaptor.getHBaseManager(),
+                    dbAdaptor.getTableNameGenerator().getSampleIndexSummaryTableName(helper.getStudyId()), shard, summarySamples);
+            summaryBuilders.add(summaryBuilder);
+        }
         sampleIndexDBLoader = new SampleIndexDBLoader(sampleIndexDbAdaptor, dbAdaptor.getHBaseManager(),
                 dbAdaptor.getTableNameGenerator().getSampleIndexTableName(helper.getStudyId()),
                 getMetadataManager(),
                 getStudyId(), getFileId(), sampleIds,
                 VariantStorageEngine.SplitData.from(getOptions()),
-                getOptions());
+                getOptions(), summaryBuilder);
         return sampleIndexDBLoader;
     }
 
@@ -453,6 +547,8 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         private final VariantHBaseArchiveDataWriter archiveWriter;
         private final VariantHadoopDBWriter hadoopDBWriter;
         private final SampleIndexDBLoader sampleIndexDBLoader;
+        // If positive, only write the variants starting in the slice. See ShardedGroupedVariantsTask
+        private final int sliceStartChunkSize;
 
         GroupedVariantsTask(VariantHBaseArchiveDataWriter archiveWriter, VariantHadoopDBWriter hadoopDBWriter,
                             SampleIndexDBLoader sampleIndexDBLoader, ProgressLogger progressLogger) {
@@ -461,10 +557,17 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
 
         GroupedVariantsTask(VariantHBaseArchiveDataWriter archiveWriter, VariantHadoopDBWriter hadoopDBWriter,
                             SampleIndexDBLoader sampleIndexDBLoader, ProgressLogger progressLogger, String fields, String nonRefFilter) {
+            this(archiveWriter, hadoopDBWriter, sampleIndexDBLoader, progressLogger, fields, nonRefFilter, 0);
+        }
+
+        GroupedVariantsTask(VariantHBaseArchiveDataWriter archiveWriter, VariantHadoopDBWriter hadoopDBWriter,
+                            SampleIndexDBLoader sampleIndexDBLoader, ProgressLogger progressLogger, String fields, String nonRefFilter,
+                            int sliceStartChunkSize) {
             this.converterTask = new VariantToVcfSliceConverterTask(progressLogger, fields, nonRefFilter);
             this.archiveWriter = archiveWriter;
             this.hadoopDBWriter = Objects.requireNonNull(hadoopDBWriter);
             this.sampleIndexDBLoader = sampleIndexDBLoader;
+            this.sliceStartChunkSize = sliceStartChunkSize;
         }
 
         @Override
@@ -489,6 +592,12 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         public List<Object> apply(List<ImmutablePair<Long, List<Variant>>> batch) {
             for (ImmutablePair<Long, List<Variant>> pair : batch) {
                 List<Variant> variants = pair.getRight();
+                if (sliceStartChunkSize > 0) {
+                    // Variants are emitted in every slice they overlap. Each slice might be loaded by a different shard,
+                    // so only the shard loading the first slice should write the variant.
+                    variants = new ArrayList<>(variants);
+                    variants.removeIf(v -> VariantToProtoVcfRecord.getSlicePosition(v.getStart(), sliceStartChunkSize) != pair.getLeft());
+                }
                 hadoopDBWriter.write(variants);
 
                 if (sampleIndexDBLoader != null) {
@@ -521,4 +630,98 @@ public class HadoopLocalLoadVariantStoragePipeline extends HadoopVariantStorageP
         }
     }
 
+    /**
+     * Loads the slices using multiple threads.
+     *
+     * Each slice is assigned to a shard given its chromosome and its sample index batch. Sample index batches are assigned
+     * round-robin in order of appearance, so the assignment only depends on the input file.
+     * Each shard has its own writers, and is always processed by the same thread, in order. This way, the
+     * SampleIndexDBLoader, that requires sorted input, receives all the variants from one sample index batch
+     * in the same order as the input file.
+     */
+    protected static class ShardedGroupedVariantsTask implements Task<ImmutablePair<Long, List<Variant>>, Object> {
+        private final List<GroupedVariantsTask> shards;
+        private final int chunkSize;
+        private final List<ExecutorService> executors;
+        private final Semaphore inFlight;
+        private final Queue<Future<?>> futures = new LinkedList<>();
+        // Shard of each "chromosome:sampleIndexBatch"
+        private final Map<String, Integer> shardsByBatch = new HashMap<>();
+        private int nextShard = 0;
+
+        ShardedGroupedVariantsTask(List<GroupedVariantsTask> shards, int chunkSize) {
+            this.shards = shards;
+            this.chunkSize = chunkSize;
+            this.executors = new ArrayList<>(shards.size());
+            // Limit the number of slices in memory waiting to be loaded
+            this.inFlight = new Semaphore(shards.size() * 4);
+        }
+
+        @Override
+        public void pre() throws Exception {
+            for (int i = 0; i < shards.size(); i++) {
+                shards.get(i).pre();
+                executors.add(Executors.newSingleThreadExecutor(new BasicThreadFactory.Builder()
+                        .namingPattern("local-load-shard-" + i)
+                        .daemon(true)
+                        .build()));
+            }
+        }
+
+        @Override
+        public List<Object> apply(List<ImmutablePair<Long, List<Variant>>> batch) throws Exception {
+            for (ImmutablePair<Long, List<Variant>> pair : batch) {
+                int shard = getShard(pair);
+                inFlight.acquire();
+                try {
+                    futures.add(executors.get(shard).submit(() -> {
+                        try {
+                            shards.get(shard).apply(Collections.singletonList(pair));
+                        } finally {
+                            inFlight.release();
+                        }
+                        return null;
+                    }));
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+            // Check for errors in finished slices
+            while (!futures.isEmpty() && futures.peek().isDone()) {
+                futures.poll().get();
+            }
+            return null;
+        }
+
+        protected int getShard(ImmutablePair<Long, List<Variant>> pair) {
+            if (pair.getRight().isEmpty()) {
+                return 0;
+            }
+            String chromosome = pair.getRight().get(0).getChromosome();
+            long sampleIndexBatch = pair.getLeft() * chunkSize / SampleIndexSchema.BATCH_SIZE;
+            return shardsByBatch.computeIfAbsent(chromosome + ':' + sampleIndexBatch, key -> {
+                int shard = nextShard;
+                nextShard = (nextShard + 1) % shards.size();
+                return shard;
+            });
+        }
+
+        @Override
+        public void post() throws Exception {
+            try {
+                while (!futures.isEmpty()) {
+                    futures.poll().get();
+                }
+            } finally {
+                for (ExecutorService executor : executors) {
+                    executor.shutdownNow();
+                }
+            }
+            for (GroupedVariantsTask shard : shards) {
+                shard.post();
+            }
+        }
+    }
+
 }
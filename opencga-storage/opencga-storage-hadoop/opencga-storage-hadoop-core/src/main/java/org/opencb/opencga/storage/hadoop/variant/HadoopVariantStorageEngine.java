@@ -56,6 +56,7 @@ import org.opencb.opencga.storage.core.variant.io.VariantExporter;
 import org.opencb.opencga.storage.core.variant.query.executors.ChromDensityVariantAggregationExecutor;
 import org.opencb.opencga.storage.core.variant.query.executors.DBAdaptorVariantQueryExecutor;
 import org.opencb.opencga.storage.core.variant.query.executors.VariantAggregationExecutor;
+import org.opencb.opencga.storage.core.variant.query.executors.VariantIterableAggregationExecutor;
 import org.opencb.opencga.storage.core.variant.query.executors.VariantQueryExecutor;
 import org.opencb.opencga.storage.core.variant.score.VariantScoreFormatDescriptor;
 import org.opencb.opencga.storage.core.variant.search.SamplesSearchIndexVariantQueryExecutor;
@@ -584,6 +585,8 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine implements
             // Consolidate sample index table
             taskDescription = "Consolidate sample index table";
             getMRExecutor().run(SampleIndexConsolidationDrive.class, args, options, taskDescription);
+            SampleIndexSummaryBuilder.invalidate(metadataManager, studyId,
+                    fillGaps ? sampleIds : metadataManager.getIndexedSamples(studyId));
 
         } catch (RuntimeException e) {
             exception = e;
@@ -736,6 +739,7 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine implements
                     sampleIds.addAll(metadataManager.getFileMetadata(sm.getId(), fileId).getSamples());
                 }
                 if (!sampleIds.isEmpty()) {
+                    SampleIndexSummaryBuilder.invalidate(metadataManager, studyId, sampleIds);
                     for (Integer sampleId : sampleIds) {
                         SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
                         Set<Integer> filesFromSample = new HashSet<>(sampleMetadata.getFiles());
@@ -923,9 +927,12 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine implements
     protected List<VariantAggregationExecutor> initVariantAggregationExecutors() {
         List<VariantAggregationExecutor> executors = new ArrayList<>(3);
         try {
+            int numThreads = getOptions().getInt(VariantStorageOptions.QUERY_FACET_THREADS.key(),
+                    VariantStorageOptions.QUERY_FACET_THREADS.defaultValue());
             executors.add(new SearchIndexVariantAggregationExecutor(getVariantSearchManager(), getDBName()));
             executors.add(new SampleIndexVariantAggregationExecutor(getMetadataManager(), getSampleIndexDBAdaptor()));
-            executors.add(new ChromDensityVariantAggregationExecutor(this, getMetadataManager()));
+            executors.add(new ChromDensityVariantAggregationExecutor(this, getMetadataManager(), numThreads));
+            executors.add(new VariantIterableAggregationExecutor(this, numThreads));
         } catch (Exception e) {
             throw VariantQueryException.internalException(e);
         }
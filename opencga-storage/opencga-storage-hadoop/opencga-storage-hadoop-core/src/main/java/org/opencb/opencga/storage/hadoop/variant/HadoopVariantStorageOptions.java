@@ -7,6 +7,11 @@ public enum HadoopVariantStorageOptions implements ConfigurationOption {
 
 
     HADOOP_LOAD_FILES_IN_PARALLEL("storage.hadoop.load.filesInParallel", 1),
+    /**
+     * Number of threads loading each file. Variants are sharded by chromosome and sample index batch,
+     * and each thread owns the writers of its shards.
+     */
+    HADOOP_LOAD_THREADS("storage.hadoop.load.numThreads", 1),
     HBASE_NAMESPACE("storage.hadoop.hbase.namespace"),
     EXPECTED_FILES_NUMBER("expected_files_number", 5000),
     EXPECTED_SAMPLES_NUMBER("expected_samples_number"),
@@ -87,6 +92,19 @@ public enum HadoopVariantStorageOptions implements ConfigurationOption {
     SAMPLE_INDEX_TABLE_COMPRESSION("storage.hadoop.sampleIndex.table.compression", Compression.Algorithm.SNAPPY.getName()),
     SAMPLE_INDEX_TABLE_PRESPLIT_SIZE("storage.hadoop.sampleIndex.table.preSplit.samplesPerSplit", 15),
     SAMPLE_INDEX_ANNOTATION_MAX_SAMPLES_PER_MR("storage.hadoop.sampleIndex.annotation.maxSamplesPerMR", 5000),
+    // SampleIndexConfiguration, serialized as JSON. Changing the configuration requires increasing its version
+    SAMPLE_INDEX_CONFIGURATION("storage.hadoop.sampleIndex.configuration"),
+    // Restrict multi-sample intersections to the batches where all the samples have the queried genotypes
+    SAMPLE_INDEX_QUERY_BATCH_PRUNING("storage.hadoop.sampleIndex.query.batchPruning", false),
+    // Skip batch pruning if the first two samples share more than this ratio of batches, e.g. WGS samples
+    SAMPLE_INDEX_QUERY_BATCH_PRUNING_MAX_RATIO("storage.hadoop.sampleIndex.query.batchPruning.maxRatio", 0.5),
+    // Number of threads reading the sample index of each sample. Use 1 to read sequentially
+    SAMPLE_INDEX_QUERY_PARALLELISM("storage.hadoop.sampleIndex.query.parallelism", 4),
+    // Number of consecutive batches read by each thread
+    SAMPLE_INDEX_QUERY_PARALLEL_BATCHES_PER_CHUNK("storage.hadoop.sampleIndex.query.parallel.batchesPerChunk", 10),
+    // Maintain per sample and chromosome pre-aggregated counts, used to answer simple count queries without scanning the sample index.
+    // Summaries are maintained by the sample index writers while loading, building and annotating the sample index
+    SAMPLE_INDEX_SUMMARY_ENABLED("storage.hadoop.sampleIndex.summary.enabled", true),
 
     /////////////////////////
     // Annotation index table  configuration
@@ -1,27 +1,41 @@
 package org.opencb.opencga.storage.hadoop.variant.index;
 
 import com.google.common.collect.Iterators;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.core.response.VariantQueryResult;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.*;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.MultiVariantDBIterator;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.UnionMultiVariantKeyIterator;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIteratorWithCounts;
+import org.opencb.opencga.storage.core.variant.query.ParsedVariantQuery;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryParser;
 import org.opencb.opencga.storage.core.variant.query.executors.CompoundHeterozygousQueryExecutor;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleGeneIndexConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexAnnotationLoader;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 
+import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.MISSENSE_VARIANT;
+
 import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.*;
 
 /**
@@ -31,6 +45,7 @@ public class SampleIndexCompoundHeterozygousQueryExecutor extends CompoundHetero
 
     private final SampleIndexDBAdaptor sampleIndexDBAdaptor;
     private final VariantHadoopDBAdaptor dbAdaptor;
+    private final Logger logger = LoggerFactory.getLogger(SampleIndexCompoundHeterozygousQueryExecutor.class);
 
     public SampleIndexCompoundHeterozygousQueryExecutor(
             VariantStorageMetadataManager metadataManager, String storageEngineId, ObjectMap options, VariantIterable iterable,
@@ -83,6 +98,17 @@ public class SampleIndexCompoundHeterozygousQueryExecutor extends CompoundHetero
     @Override
     protected VariantDBIterator getRawIterator(String proband, String father, String mother,
                                                Query query, QueryOptions options, VariantIterable iterable) {
+        List<String> samples;
+        if (father.equals(MISSING_SAMPLE) || mother.equals(MISSING_SAMPLE)) {
+            samples = Collections.singletonList(proband);
+        } else {
+            samples = Arrays.asList(proband, father, mother);
+        }
+        if (!anyGeneWithVariants(query, samples)) {
+            logger.info("No compound heterozygous candidates found in the gene index for samples " + samples);
+            return VariantDBIterator.emptyIterator();
+        }
+
         if (father.equals(MISSING_SAMPLE) || mother.equals(MISSING_SAMPLE)) {
             // Single parent iterator
             String parent = father.equals(MISSING_SAMPLE) ? mother : father;
@@ -128,6 +154,70 @@ public class SampleIndexCompoundHeterozygousQueryExecutor extends CompoundHetero
         }
     }
 
+    /**
+     * Check in the gene index if any of the queried genes has heterozygous variants in all the given samples.
+     * A compound heterozygous needs heterozygous variants in the same gene in the proband and in both parents.
+     * The gene index can only be used when filtering by genes and by LoF or missense consequence types,
+     * and all the samples have the gene index. Otherwise, assume that there could be candidates.
+     *
+     * @param query   Query
+     * @param samples Samples that must have heterozygous variants in the gene
+     * @return false if no gene can contain a compound heterozygous
+     */
+    private boolean anyGeneWithVariants(Query query, List<String> samples) {
+        if (!isValidParam(query, VariantQueryParam.ANNOT_CONSEQUENCE_TYPE)
+                || isValidParam(query, VariantQueryParam.REGION)
+                || isValidParam(query, ANNOT_EXPRESSION_GENES)
+                || isValidParam(query, ANNOT_GO_GENES)) {
+            return true;
+        }
+        ParsedVariantQuery.VariantQueryXref xrefs = VariantQueryParser.parseXrefs(query);
+        if (xrefs.getGenes().isEmpty() || !xrefs.getIds().isEmpty() || !xrefs.getVariants().isEmpty()
+                || !xrefs.getOtherXrefs().isEmpty()) {
+            return true;
+        }
+
+        byte mask = 0;
+        for (String ct : parseConsequenceTypes(query.getAsStringList(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key()))) {
+            if (LOF_SET.contains(ct)) {
+                mask |= SampleGeneIndexConverter.LOF_MASK;
+            } else if (MISSENSE_VARIANT.equals(ct)) {
+                mask |= SampleGeneIndexConverter.MISSENSE_MASK;
+            } else {
+                // Not in the gene index
+                return true;
+            }
+        }
+
+        StudyMetadata studyMetadata = VariantQueryParser.getDefaultStudy(query, metadataManager);
+        if (studyMetadata == null) {
+            return true;
+        }
+        for (String sample : samples) {
+            Integer sampleId = metadataManager.getSampleId(studyMetadata.getId(), sample);
+            if (sampleId == null) {
+                return true;
+            }
+            SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyMetadata.getId(), sampleId);
+            if (!SampleIndexDBAdaptor.getSampleIndexStatus(sampleMetadata).equals(TaskMetadata.Status.READY)
+                    || !SampleIndexAnnotationLoader.hasGeneIndex(sampleMetadata)) {
+                return true;
+            }
+        }
+
+        List<Region> geneRegions = isValidParam(query, ANNOT_GENE_REGIONS)
+                ? Region.parseRegions(query.getString(ANNOT_GENE_REGIONS.key()))
+                : null;
+        Map<String, List<String>> samplesWithGenes = sampleIndexDBAdaptor.samplesWithGenes(studyMetadata.getName(), samples,
+                geneRegions, xrefs.getGenes(), mask, Arrays.asList(HET.split(",")));
+        for (List<String> samplesWithGene : samplesWithGenes.values()) {
+            if (samplesWithGene.size() == samples.size()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private ExposedMultiVariantDBIterator exposedMultiVariantIterator(Query query, QueryOptions options, VariantDBIterator iterator) {
         int samplingSize = options.getInt(VariantStorageOptions.APPROXIMATE_COUNT_SAMPLING_SIZE.key(), DEFAULT_SAMPLING_SIZE);
         return new ExposedMultiVariantDBIterator(
@@ -75,33 +75,26 @@ public class SampleIndexVariantAggregationExecutor extends VariantAggregationExe
         StopWatch stopWatch = StopWatch.createStarted();
 
         List<FieldVariantAccumulator<SampleVariantIndexEntry>> accumulators = createAccumulators(query, facet);
-        List<FacetField> fields = new ArrayList<>();
+        List<FieldVariantCounter<SampleVariantIndexEntry>> counters = new ArrayList<>(accumulators.size());
+        for (FieldVariantAccumulator<SampleVariantIndexEntry> accumulator : accumulators) {
+            counters.add(new FieldVariantCounter<>(accumulator));
+        }
 
         try (CloseableIterator<SampleVariantIndexEntry> sampleVariantIndexEntryIterator = sampleIndexDBAdaptor.rawIterator(query)) {
-            // Init top level fields
-            for (FieldVariantAccumulator<SampleVariantIndexEntry> accumulator : accumulators) {
-                fields.add(accumulator.createField());
-            }
-
             // Loop
             long numMatches = 0;
-            int count = 0;
             while (sampleVariantIndexEntryIterator.hasNext()) {
-                count++;
+                numMatches++;
                 SampleVariantIndexEntry entry = sampleVariantIndexEntryIterator.next();
-                for (int i = 0; i < accumulators.size(); i++) {
-                    FieldVariantAccumulator<SampleVariantIndexEntry> accumulator = accumulators.get(i);
-                    FacetField field = fields.get(i);
-                    accumulator.accumulate(field, entry);
+                for (FieldVariantCounter<SampleVariantIndexEntry> counter : counters) {
+                    counter.accumulate(entry);
                 }
             }
-            numMatches += count;
 
-            // Tear down and clean up results.
-            for (int i = 0; i < accumulators.size(); i++) {
-                FieldVariantAccumulator<SampleVariantIndexEntry> accumulator = accumulators.get(i);
-                FacetField field = fields.get(i);
-                accumulator.cleanEmptyBuckets(field);
+            // Build the result fields, without empty buckets
+            List<FacetField> fields = new ArrayList<>(counters.size());
+            for (FieldVariantCounter<SampleVariantIndexEntry> counter : counters) {
+                fields.add(counter.toFacetField());
             }
 
             return new VariantQueryResult<>((int) stopWatch.getTime(TimeUnit.MILLISECONDS), 1, numMatches, Collections.emptyList(),
@@ -114,7 +114,9 @@ public class AnnotationIndexConverter {
     }
 
     private final Map<String, Integer> populations;
-    private final double[] popFreqRanges;
+    private final Map<String, Integer> functionalScores;
+    private final double[][] rangeThresholds;
+    private final int rangeIndexSize;
 
     @Deprecated
     public AnnotationIndexConverter() {
@@ -122,14 +124,25 @@ public class AnnotationIndexConverter {
     }
 
     public AnnotationIndexConverter(SampleIndexConfiguration configuration) {
+        configuration.validate();
         this.populations = new HashMap<>(configuration.getPopulationRanges().size());
+        this.functionalScores = new HashMap<>(configuration.getFunctionalScoreRanges().size());
+        this.rangeIndexSize = configuration.getRangeIndexSize();
+        this.rangeThresholds = new double[rangeIndexSize][];
         int i = 0;
         for (SampleIndexConfiguration.PopulationFrequencyRange population : configuration.getPopulationRanges()) {
+            rangeThresholds[i] = population.getThresholds();
             if (this.populations.put(population.getStudyAndPopulation(), i++) != null) {
                 throw new IllegalArgumentException("Duplicated population '" + population.getStudyAndPopulation() + "' in " + populations);
             }
         }
-        popFreqRanges = SampleIndexConfiguration.PopulationFrequencyRange.DEFAULT_THRESHOLDS;
+        // Functional scores are stored after the population frequencies
+        for (SampleIndexConfiguration.FunctionalScoreRange functionalScore : configuration.getFunctionalScoreRanges()) {
+            rangeThresholds[i] = functionalScore.getThresholds();
+            if (this.functionalScores.put(functionalScore.getSource(), i++) != null) {
+                throw new IllegalArgumentException("Duplicated functional score '" + functionalScore.getSource() + "'");
+            }
+        }
     }
 
     public static Pair<Variant, AnnotationIndexEntry> getAnnotationIndexEntryPair(Result result) {
@@ -165,12 +178,12 @@ public class AnnotationIndexConverter {
 
     public AnnotationIndexEntry convert(VariantAnnotation variantAnnotation) {
         if (variantAnnotation == null) {
-            return AnnotationIndexEntry.empty(populations.size());
+            return AnnotationIndexEntry.empty(rangeIndexSize);
         }
         byte b = 0;
         short ctIndex = 0;
         byte btIndex = 0;
-        byte[] popFreqIndex = new byte[populations.size()];
+        byte[] popFreqIndex = new byte[rangeIndexSize];
         boolean[][] ctBtcombinations = new boolean[16][8];
 
         boolean intergenic = false;
@@ -244,6 +257,11 @@ public class AnnotationIndexConverter {
             b |= POP_FREQ_ANY_001_MASK;
         }
 
+        if (!functionalScores.isEmpty()) {
+            addFunctionalScoreIndex(popFreqIndex, variantAnnotation.getFunctionalScore());
+            addFunctionalScoreIndex(popFreqIndex, variantAnnotation.getConservation());
+        }
+
         if (CollectionUtils.isNotEmpty(variantAnnotation.getTraitAssociation())) {
             b |= CLINICAL_MASK;
             clinical = true;
@@ -322,7 +340,7 @@ public class AnnotationIndexConverter {
     protected void addPopFreqIndex(byte[] popFreqIndex, PopulationFrequency populationFrequency) {
         Integer idx = populations.get(populationFrequency.getStudy() + ":" + populationFrequency.getPopulation());
         if (idx != null) {
-            byte popFreqInterval = IndexUtils.getRangeCode(populationFrequency.getAltAlleleFreq(), popFreqRanges);
+            byte popFreqInterval = IndexUtils.getRangeCode(populationFrequency.getAltAlleleFreq(), rangeThresholds[idx]);
 //            int byteIdx = (idx * POP_FREQ_SIZE) / Byte.SIZE;
 //            int bitIdx = (idx * POP_FREQ_SIZE) % Byte.SIZE;
 //            popFreqIndex[byteIdx] |= popFreqInterval << bitIdx;
@@ -330,6 +348,18 @@ public class AnnotationIndexConverter {
         }
     }
 
+    protected void addFunctionalScoreIndex(byte[] rangeIndex, List<Score> scores) {
+        if (scores == null) {
+            return;
+        }
+        for (Score score : scores) {
+            Integer idx = functionalScores.get(score.getSource());
+            if (idx != null && score.getScore() != null) {
+                rangeIndex[idx] = IndexUtils.getRangeCode(score.getScore(), rangeThresholds[idx]);
+            }
+        }
+    }
+
     public List<Put> convertToPut(List<VariantAnnotation> variantAnnotations) {
         List<Put> puts = new ArrayList<>(variantAnnotations.size());
         for (VariantAnnotation variantAnnotation : variantAnnotations) {
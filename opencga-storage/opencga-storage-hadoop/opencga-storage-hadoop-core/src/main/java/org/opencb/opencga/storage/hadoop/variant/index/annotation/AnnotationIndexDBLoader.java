@@ -4,6 +4,7 @@ import org.apache.hadoop.hbase.client.Put;
 import org.opencb.biodata.models.variant.avro.VariantAnnotation;
 import org.opencb.opencga.storage.hadoop.utils.AbstractHBaseDataWriter;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -19,7 +20,7 @@ public class AnnotationIndexDBLoader extends AbstractHBaseDataWriter<VariantAnno
 
     public AnnotationIndexDBLoader(HBaseManager hBaseManager, String tableName) {
         super(hBaseManager, tableName);
-        converter = new AnnotationIndexConverter();
+        converter = new AnnotationIndexConverter(SampleIndexConfiguration.fromConfiguration(hBaseManager.getConf()));
     }
 
     @Override
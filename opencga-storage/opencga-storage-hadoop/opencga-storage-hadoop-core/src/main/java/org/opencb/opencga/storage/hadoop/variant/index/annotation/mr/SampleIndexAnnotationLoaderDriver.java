@@ -4,6 +4,7 @@ import htsjdk.variant.vcf.VCFConstants;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.mapreduce.TableInputFormat;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Job;
 import org.opencb.biodata.models.core.Region;
 import org.opencb.commons.datastore.core.ObjectMap;
@@ -19,7 +20,9 @@ import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.PhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantPhoenixHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.HBaseToVariantConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexAnnotationLoader;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSummaryBuilder;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantAlignedInputFormat;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantMapReduceUtil;
 import org.slf4j.Logger;
@@ -41,6 +44,7 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
     public static final String SAMPLE_IDS = "sampleIds";
 
     private List<Integer> sampleIds;
+    private Set<Integer> summarySamples;
     private boolean hasGenotype;
     private String region;
     private String outputTable;
@@ -109,6 +113,18 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
         }
 
         region = getParam(VariantQueryParam.REGION.key(), "");
+
+        // The annotation of all the variants is rewritten, so the summary is rebuilt from scratch
+        summarySamples = new TreeSet<>();
+        if (SampleIndexSummaryBuilder.isEnabled(getConf())
+                && StringUtils.isEmpty(region)
+                && outputTable.equals(getTableNameGenerator().getSampleIndexTableName(getStudyId()))) {
+            for (Integer sampleId : sampleIds) {
+                if (!metadataManager.getSampleMetadata(getStudyId(), sampleId).isMultiFileSample()) {
+                    summarySamples.add(sampleId);
+                }
+            }
+        }
     }
 
     @Override
@@ -138,6 +154,10 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
         SampleIndexAnnotationLoaderMapper.setHasGenotype(job, hasGenotype);
         SampleIndexAnnotationLoaderMapper.setMultiFileSamples(job, multiFileSamples);
         SampleIndexAnnotationLoaderMapper.setSampleIdRange(job, sampleIds);
+        if (!summarySamples.isEmpty()) {
+            SampleIndexSummaryBuilder.setSummarySamples(job.getConfiguration(),
+                    getTableNameGenerator().getSampleIndexSummaryTableName(getStudyId()), summarySamples);
+        }
 
         VariantMapReduceUtil.initTableMapperJob(job, variantTable,
                 scan, getMapperClass(), VariantAlignedInputFormat.class);
@@ -157,10 +177,31 @@ public class SampleIndexAnnotationLoaderDriver extends AbstractVariantsTableDriv
     }
 
     @Override
-    protected void postExecution(boolean succeed) throws IOException, StorageEngineException {
-        super.postExecution(succeed);
-        if (succeed && StringUtils.isEmpty(region)) {
-            SampleIndexAnnotationLoader.postAnnotationLoad(getStudyId(), sampleIds, getMetadataManager());
+    protected void preExecution() throws IOException, StorageEngineException {
+        super.preExecution();
+
+        SampleIndexSummaryBuilder.invalidate(getMetadataManager(), getStudyId(), sampleIds);
+        if (!summarySamples.isEmpty()) {
+            ObjectMap options = new ObjectMap();
+            options.putAll(getParams());
+            SampleIndexSummaryBuilder.reset(getHBaseManager(), getTableNameGenerator().getSampleIndexSummaryTableName(getStudyId()),
+                    summarySamples, options);
+        }
+    }
+
+    @Override
+    protected void postExecution(Job job) throws IOException, StorageEngineException {
+        super.postExecution(job);
+        if (job.isSuccessful() && StringUtils.isEmpty(region)) {
+            Set<Integer> readySummarySamples = summarySamples;
+            Counter invalidSamples = job.getCounters()
+                    .findCounter(COUNTER_GROUP_NAME, SampleIndexSummaryBuilder.INVALID_SAMPLES_COUNTER);
+            if (invalidSamples.getValue() > 0) {
+                LOGGER.warn("Unable to build the SampleIndex summary of " + invalidSamples.getValue() + " samples");
+                readySummarySamples = Collections.emptySet();
+            }
+            SampleIndexAnnotationLoader.postAnnotationLoad(getStudyId(), sampleIds, getMetadataManager(),
+                    SampleIndexConfiguration.fromConfiguration(getConf()), true, readySummarySamples);
         }
     }
 
@@ -1,16 +1,23 @@
 package org.opencb.opencga.storage.hadoop.variant.index.annotation.mr;
 
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
 import org.apache.hadoop.mapreduce.Job;
 import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.VariantRow;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexEntry;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexPutBuilder;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleGeneIndexConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSummaryBuilder;
 import org.opencb.opencga.storage.hadoop.variant.mr.VariantsTableMapReduceHelper;
 
 import java.io.IOException;
@@ -21,7 +28,7 @@ import java.util.*;
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
-public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOrderMapper<ImmutableBytesWritable, Put> {
+public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOrderMapper<ImmutableBytesWritable, Mutation> {
 
     private static final String HAS_GENOTYPE = "SampleIndexAnnotationLoaderMapper.hasGenotype";
     private static final String MULTI_FILE_SAMPLES = "SampleIndexAnnotationLoaderMapper.multiFileSamples";
@@ -29,11 +36,18 @@ public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOr
     private static final String LAST_SAMPLE_ID = "SampleIndexAnnotationLoaderMapper.lastSampleId";
     private byte[] family;
     private Map<String, AnnotationIndexPutBuilder>[] annotationIndices;
+    private Map<String, Map<String, Byte>>[] geneIndices;
 
     private boolean hasGenotype;
     private boolean multiFileSamples;
     private AnnotationIndexConverter converter;
     private int firstSampleId;
+    private HBaseManager hBaseManager;
+    private SampleIndexSummaryBuilder summaryBuilder;
+    private String sampleIndexTable;
+    private String summaryChromosome;
+    // Samples from the current batch with summary
+    private final Set<Integer> summaryBatchSamples = new HashSet<>();
 
     public static void setHasGenotype(Job job, boolean hasGenotype) {
         job.getConfiguration().setBoolean(HAS_GENOTYPE, hasGenotype);
@@ -58,10 +72,28 @@ public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOr
         firstSampleId = context.getConfiguration().getInt(FIRST_SAMPLE_ID, 0);
         int lastSampleId = context.getConfiguration().getInt(LAST_SAMPLE_ID, 0);
         annotationIndices = new Map[lastSampleId - firstSampleId + 1];
+        geneIndices = new Map[lastSampleId - firstSampleId + 1];
         for (int i = 0; i < annotationIndices.length; i++) {
             annotationIndices[i] = new HashMap<>();
+            geneIndices[i] = new HashMap<>();
         }
-        converter = new AnnotationIndexConverter();
+        converter = new AnnotationIndexConverter(SampleIndexConfiguration.fromConfiguration(context.getConfiguration()));
+
+        hBaseManager = new HBaseManager(context.getConfiguration());
+        summaryBuilder = SampleIndexSummaryBuilder.fromConfiguration(hBaseManager, context.getConfiguration(),
+                context.getTaskAttemptID().getTaskID().getId());
+        sampleIndexTable = context.getConfiguration().get(TableOutputFormat.OUTPUT_TABLE);
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        super.cleanup(context);
+        if (summaryBuilder != null) {
+            summaryBuilder.flush();
+            context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, SampleIndexSummaryBuilder.INVALID_SAMPLES_COUNTER)
+                    .increment(summaryBuilder.getInvalidSamples().size());
+        }
+        hBaseManager.close();
     }
 
     @Override
@@ -69,12 +101,17 @@ public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOr
         VariantRow variantRow = new VariantRow(result);
         context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "variants").increment(1);
         AnnotationIndexEntry indexEntry = converter.convert(variantRow.getVariantAnnotation());
+        Map<String, Byte> genes = SampleGeneIndexConverter.convert(variantRow.getVariantAnnotation());
         // TODO Get stats given index values
 
         Set<String> samples = multiFileSamples ? new HashSet<>(result.rawCells().length) : null;
 
         variantRow.walker().onSample(sampleColumn -> {
             int sampleId = sampleColumn.getSampleId();
+            if (summaryBuilder != null && summaryBuilder.contains(sampleId)) {
+                // Any SampleIndex row of this sample in this batch goes to the summary
+                summaryBatchSamples.add(sampleId);
+            }
             String gt;
             boolean validGt;
             if (hasGenotype) {
@@ -94,6 +131,10 @@ public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOr
                 if (validGt) {
                     annotationIndices[sampleId - firstSampleId]
                             .computeIfAbsent(gt, k -> new AnnotationIndexPutBuilder()).add(indexEntry);
+                    if (!genes.isEmpty()) {
+                        SampleGeneIndexConverter.merge(geneIndices[sampleId - firstSampleId]
+                                .computeIfAbsent(gt, k -> new TreeMap<>()), genes);
+                    }
                 }
             }
         }).walk();
@@ -106,24 +147,65 @@ public class SampleIndexAnnotationLoaderMapper extends VariantTableSampleIndexOr
 
     protected void writeIndices(Context context, String chromosome, int position) throws IOException, InterruptedException {
         context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "write_indices").increment(1);
+        if (summaryBuilder != null && summaryChromosome != null && !summaryChromosome.equals(chromosome)) {
+            summaryBuilder.flush(summaryChromosome);
+        }
+        summaryChromosome = chromosome;
+        List<Put> summaryPuts = new ArrayList<>(summaryBatchSamples.size());
+        Put[] puts = new Put[annotationIndices.length];
+        Delete[] deletes = new Delete[annotationIndices.length];
         for (int i = 0; i < annotationIndices.length; i++) {
             Map<String, AnnotationIndexPutBuilder> gtMap = annotationIndices[i];
             int sampleId = i + firstSampleId;
-            Put put = new Put(SampleIndexSchema.toRowKey(sampleId, chromosome, position));
+            byte[] rowKey = SampleIndexSchema.toRowKey(sampleId, chromosome, position);
+            Put put = new Put(rowKey);
+            Delete delete = new Delete(rowKey);
             for (Map.Entry<String, AnnotationIndexPutBuilder> e : gtMap.entrySet()) {
                 String gt = e.getKey();
                 AnnotationIndexPutBuilder value = e.getValue();
                 if (!value.isEmpty()) {
                     value.buildAndReset(put, gt, family);
+                    Map<String, Byte> genes = geneIndices[i].get(gt);
+                    if (genes == null || genes.isEmpty()) {
+                        // Remove genes from any previous annotation
+                        delete.addColumns(family, SampleIndexSchema.toAnnotationGeneIndexColumn(gt));
+                    }
+                }
+            }
+            for (Map.Entry<String, Map<String, Byte>> e : geneIndices[i].entrySet()) {
+                if (!e.getValue().isEmpty()) {
+                    put.addColumn(family, SampleIndexSchema.toAnnotationGeneIndexColumn(e.getKey()),
+                            SampleGeneIndexConverter.toBytes(e.getValue()));
+                    e.getValue().clear();
                 }
             }
 
+            puts[i] = put;
+            deletes[i] = delete;
+            if (summaryBatchSamples.contains(sampleId)) {
+                summaryPuts.add(put);
+            }
+        }
+
+        // Read the SampleIndex before writing the new annotation
+        if (!summaryPuts.isEmpty()) {
+            summaryBuilder.add(sampleIndexTable, summaryPuts);
+        }
+        summaryBatchSamples.clear();
+
+        for (int i = 0; i < annotationIndices.length; i++) {
+            Put put = puts[i];
+            Delete delete = deletes[i];
             if (!put.isEmpty()) {
                 context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "put").increment(1);
                 context.write(new ImmutableBytesWritable(put.getRow()), put);
             } else {
                 context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "put_empty").increment(1);
             }
+            if (!delete.isEmpty()) {
+                context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "delete_gene_index").increment(1);
+                context.write(new ImmutableBytesWritable(delete.getRow()), delete);
+            }
         }
     }
 }
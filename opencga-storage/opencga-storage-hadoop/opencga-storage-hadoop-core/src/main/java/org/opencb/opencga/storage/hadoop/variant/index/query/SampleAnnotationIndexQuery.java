@@ -15,6 +15,7 @@ public class SampleAnnotationIndexQuery {
     private final List<PopulationFrequencyQuery> populationFrequencyQueries;
     private final VariantQueryUtils.QueryOperation populationFrequencyQueryOperator;
     private final boolean populationFrequencyQueryPartial;
+    private final List<FunctionalScoreQuery> functionalScoreQueries;
 
     public static class PopulationFrequencyQuery extends RangeQuery {
         private final int position;
@@ -65,6 +66,38 @@ public class SampleAnnotationIndexQuery {
         }
     }
 
+    /**
+     * Range query over a functional or conservation score. All the functional score queries must match.
+     */
+    public static class FunctionalScoreQuery extends RangeQuery {
+        private final int position;
+        private final String source;
+
+        public FunctionalScoreQuery(RangeQuery rangeQuery, int position, String source) {
+            super(rangeQuery.minValueInclusive, rangeQuery.maxValueExclusive,
+                    rangeQuery.minCodeInclusive, rangeQuery.maxCodeExclusive,
+                    rangeQuery.exactQuery);
+            this.position = position;
+            this.source = source;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public String toString() {
+            return "FunctionalScoreQuery{"
+                    + "[" + position + "] source='" + source + '\''
+                    + ", query [" + minValueInclusive + ", " + maxValueExclusive + ")"
+                    + ", code [" + minCodeInclusive + ", " + maxCodeExclusive + ")"
+                    + '}';
+        }
+    }
 
     public SampleAnnotationIndexQuery() {
         this.annotationIndexMask = new byte[]{0, 0};
@@ -74,12 +107,22 @@ public class SampleAnnotationIndexQuery {
         this.populationFrequencyQueries = Collections.emptyList();
         this.populationFrequencyQueryOperator = VariantQueryUtils.QueryOperation.AND;
         this.populationFrequencyQueryPartial = true;
+        this.functionalScoreQueries = Collections.emptyList();
     }
 
     public SampleAnnotationIndexQuery(byte[] annotationIndexMask, short consequenceTypeMask, byte biotypeMask,
                                       byte clinicalMask, VariantQueryUtils.QueryOperation populationFrequencyQueryOperator,
                                       List<PopulationFrequencyQuery> populationFrequencyQueries,
                                       boolean populationFrequencyQueryPartial) {
+        this(annotationIndexMask, consequenceTypeMask, biotypeMask, clinicalMask, populationFrequencyQueryOperator,
+                populationFrequencyQueries, populationFrequencyQueryPartial, Collections.emptyList());
+    }
+
+    public SampleAnnotationIndexQuery(byte[] annotationIndexMask, short consequenceTypeMask, byte biotypeMask,
+                                      byte clinicalMask, VariantQueryUtils.QueryOperation populationFrequencyQueryOperator,
+                                      List<PopulationFrequencyQuery> populationFrequencyQueries,
+                                      boolean populationFrequencyQueryPartial,
+                                      List<FunctionalScoreQuery> functionalScoreQueries) {
         this.annotationIndexMask = annotationIndexMask;
         this.consequenceTypeMask = consequenceTypeMask;
         this.biotypeMask = biotypeMask;
@@ -87,6 +130,7 @@ public class SampleAnnotationIndexQuery {
         this.populationFrequencyQueries = Collections.unmodifiableList(populationFrequencyQueries);
         this.populationFrequencyQueryOperator = populationFrequencyQueryOperator;
         this.populationFrequencyQueryPartial = populationFrequencyQueryPartial;
+        this.functionalScoreQueries = Collections.unmodifiableList(functionalScoreQueries);
     }
 
     public byte getAnnotationIndexMask() {
@@ -117,6 +161,10 @@ public class SampleAnnotationIndexQuery {
         return populationFrequencyQueryPartial;
     }
 
+    public List<FunctionalScoreQuery> getFunctionalScoreQueries() {
+        return functionalScoreQueries;
+    }
+
     public byte getClinicalMask() {
         return clinicalMask;
     }
@@ -125,6 +173,7 @@ public class SampleAnnotationIndexQuery {
         return getAnnotationIndexMask() == IndexUtils.EMPTY_MASK
                 && biotypeMask == IndexUtils.EMPTY_MASK
                 && consequenceTypeMask == IndexUtils.EMPTY_MASK
-                && CollectionUtils.isEmpty(populationFrequencyQueries);
+                && CollectionUtils.isEmpty(populationFrequencyQueries)
+                && CollectionUtils.isEmpty(functionalScoreQueries);
     }
 }
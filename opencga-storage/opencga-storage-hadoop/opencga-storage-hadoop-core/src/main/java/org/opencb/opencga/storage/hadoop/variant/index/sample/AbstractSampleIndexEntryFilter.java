@@ -9,6 +9,7 @@ import org.opencb.opencga.storage.hadoop.variant.index.IndexUtils;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexEntry;
 import org.opencb.opencga.storage.hadoop.variant.index.family.MendelianErrorSampleIndexEntryIterator;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.FunctionalScoreQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.PopulationFrequencyQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleFileIndexQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
@@ -222,7 +223,8 @@ public abstract class AbstractSampleIndexEntryFilter<T> {
             if (annotationIndexEntry == null
                     || filterClinicalFields(annotationIndexEntry)
                     && filterBtCtFields(annotationIndexEntry)
-                    && filterPopFreq(annotationIndexEntry)) {
+                    && filterPopFreq(annotationIndexEntry)
+                    && filterFunctionalScore(annotationIndexEntry)) {
 
                 // Test file index (if any)
                 if (filterFile(variants)) {
@@ -311,6 +313,20 @@ public abstract class AbstractSampleIndexEntryFilter<T> {
         }
     }
 
+    private boolean filterFunctionalScore(AnnotationIndexEntry annotationIndexEntry) {
+        if (query.getAnnotationIndexQuery().getFunctionalScoreQueries().isEmpty() || annotationIndexEntry.getPopFreqIndex() == null) {
+            return true;
+        }
+        for (FunctionalScoreQuery q : query.getAnnotationIndexQuery().getFunctionalScoreQueries()) {
+            int code = annotationIndexEntry.getPopFreqIndex()[q.getPosition()];
+            if (code < q.getMinCodeInclusive() || q.getMaxCodeExclusive() <= code) {
+                // Require ALL matches
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean filterClinicalFields(AnnotationIndexEntry annotationIndexEntry) {
         if (query.getAnnotationIndexQuery().getClinicalMask() == EMPTY_MASK) {
             // No filter required
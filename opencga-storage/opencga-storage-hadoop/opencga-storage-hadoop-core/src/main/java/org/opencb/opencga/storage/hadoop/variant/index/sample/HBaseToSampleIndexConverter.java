@@ -25,9 +25,21 @@ public class HBaseToSampleIndexConverter implements Converter<Result, SampleInde
 
     private final SampleIndexVariantBiConverter converter;
     private final SampleIndexConfiguration configuration;
+    private final int rangeIndexSize;
 
     public HBaseToSampleIndexConverter(SampleIndexConfiguration configuration) {
+        this(configuration, configuration.getRangeIndexSize());
+    }
+
+    /**
+     * Create a converter for entries whose range index was written with a given number of ranges.
+     *
+     * @param configuration  SampleIndex configuration
+     * @param rangeIndexSize Number of ranges used when the sample was annotated
+     */
+    public HBaseToSampleIndexConverter(SampleIndexConfiguration configuration, int rangeIndexSize) {
         this.configuration = configuration;
+        this.rangeIndexSize = rangeIndexSize;
         converter = new SampleIndexVariantBiConverter();
     }
 
@@ -55,6 +67,7 @@ public class HBaseToSampleIndexConverter implements Converter<Result, SampleInde
         int batchStart = SampleIndexSchema.batchStartFromRowKey(row);
 
         SampleIndexEntry entry = new SampleIndexEntry(sampleId, chromosome, batchStart, configuration);
+        entry.setRangeIndexSize(rangeIndexSize);
 
         for (Cell cell : result.rawCells()) {
             if (columnStartsWith(cell, META_PREFIX_BYTES)) {
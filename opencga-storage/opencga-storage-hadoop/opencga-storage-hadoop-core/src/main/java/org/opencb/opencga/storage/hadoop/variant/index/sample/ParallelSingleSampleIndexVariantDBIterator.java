@@ -0,0 +1,244 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.CollectionUtils;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel version of the {@link SingleSampleIndexVariantDBIterator}.
+ *
+ * The rows of the sample are split in chunks of consecutive batches from the same chromosome.
+ * Chunks are read and filtered in parallel, and consumed in the same order as they are stored,
+ * so the variants are returned in the same order as the sequential iterator.
+ * At most "parallelism" chunks are being read or waiting to be consumed at the same time.
+ * Chunks are defined lazily, reading the row keys only as far as the chunks being read.
+ */
+public class ParallelSingleSampleIndexVariantDBIterator extends VariantDBIterator {
+
+    private static Logger logger = LoggerFactory.getLogger(ParallelSingleSampleIndexVariantDBIterator.class);
+
+    private final HBaseManager hBaseManager;
+    private final String tableName;
+    private final SingleSampleIndexQuery query;
+    private final Map<String, Set<Integer>> batches;
+    private final SampleIndexDBAdaptor dbAdaptor;
+    private final HBaseToSampleIndexConverter converter;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int batchesPerChunk;
+    private final Iterator<Region> chunks;
+    private final Deque<Future<List<Variant>>> pending;
+    private Iterator<Variant> iterator = Collections.emptyIterator();
+    protected int count = 0;
+
+    public ParallelSingleSampleIndexVariantDBIterator(HBaseManager hBaseManager, String tableName, SingleSampleIndexQuery query,
+                                                      Map<String, Set<Integer>> batches, SampleIndexDBAdaptor dbAdaptor,
+                                                      ExecutorService executor, int parallelism, int batchesPerChunk) {
+        this.hBaseManager = hBaseManager;
+        this.tableName = tableName;
+        this.query = query;
+        this.batches = batches;
+        this.dbAdaptor = dbAdaptor;
+        this.converter = dbAdaptor.newConverter(query);
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.batchesPerChunk = batchesPerChunk;
+        this.pending = new ArrayDeque<>(parallelism);
+
+        List<Region> regions;
+        if (CollectionUtils.isEmpty(query.getRegions())) {
+            // If no regions are defined, get a list of one null element to initialize the stream.
+            regions = Collections.singletonList(null);
+        } else {
+            regions = VariantQueryUtils.mergeRegions(query.getRegions());
+        }
+
+        Iterator<Region> regionsIterator = regions.stream()
+                .filter(region -> SampleIndexDBAdaptor.overlapsBatches(region, batches))
+                .iterator();
+        logger.info("Read sample index of sample '" + query.getSample() + "' using " + parallelism + " threads");
+        this.chunks = new ChunksIterator(regionsIterator);
+    }
+
+    /**
+     * Split the regions in chunks of consecutive batches. Only existing batches are taken into account.
+     * Row keys are read from a key only scan, as the chunks are requested.
+     */
+    private class ChunksIterator implements Iterator<Region> {
+        private final Iterator<Region> regions;
+        private Region region;
+        private Iterator<Result> rowKeys = Collections.emptyIterator();
+        // First row of the next chunk
+        private Result nextRow;
+        private Region next;
+
+        ChunksIterator(Iterator<Region> regions) {
+            this.regions = regions;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = nextChunk();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Region next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Region chunk = next;
+            next = null;
+            return chunk;
+        }
+
+        private Region nextChunk() {
+            while (nextRow == null) {
+                if (rowKeys.hasNext()) {
+                    nextRow = rowKeys.next();
+                } else if (regions.hasNext()) {
+                    region = regions.next();
+                    rowKeys = scanRowKeys(region);
+                } else {
+                    return null;
+                }
+            }
+            String chromosome = SampleIndexSchema.chromosomeFromRowKey(nextRow.getRow());
+            int chunkStart = SampleIndexSchema.batchStartFromRowKey(nextRow.getRow());
+            int chunkEnd = chunkStart + SampleIndexSchema.BATCH_SIZE - 1;
+            int chunkBatches = 1;
+            nextRow = null;
+            while (chunkBatches < batchesPerChunk && rowKeys.hasNext()) {
+                Result result = rowKeys.next();
+                if (!chromosome.equals(SampleIndexSchema.chromosomeFromRowKey(result.getRow()))) {
+                    nextRow = result;
+                    break;
+                }
+                chunkEnd = SampleIndexSchema.batchStartFromRowKey(result.getRow()) + SampleIndexSchema.BATCH_SIZE - 1;
+                chunkBatches++;
+            }
+            return toChunk(region, chromosome, chunkStart, chunkEnd);
+        }
+    }
+
+    private Iterator<Result> scanRowKeys(Region region) {
+        // Only read the row keys
+        Scan scan = dbAdaptor.parse(query, region, batches);
+        FilterList filters = new FilterList(FilterList.Operator.MUST_PASS_ALL);
+        if (scan.getFilter() != null) {
+            filters.addFilter(scan.getFilter());
+        }
+        filters.addFilter(new FirstKeyOnlyFilter());
+        filters.addFilter(new KeyOnlyFilter());
+        scan.setFilter(filters);
+        // Do not fetch many more row keys than the chunks being read
+        scan.setCaching(batchesPerChunk * parallelism + 1);
+
+        try {
+            return hBaseManager.act(tableName, table -> {
+                ResultScanner scanner = table.getScanner(scan);
+                addCloseable(scanner);
+                return scanner.iterator();
+            });
+        } catch (IOException e) {
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
+    private static Region toChunk(Region region, String chromosome, int start, int end) {
+        if (region == null) {
+            return new Region(chromosome, start, end);
+        } else {
+            return new Region(chromosome, Math.max(start, region.getStart()), Math.min(end, region.getEnd()));
+        }
+    }
+
+    private List<Variant> readChunk(Region chunk) throws IOException {
+        Scan scan = dbAdaptor.parse(query, chunk, batches);
+        SampleIndexEntryFilter filter = dbAdaptor.buildSampleIndexEntryFilter(query, chunk);
+        return hBaseManager.act(tableName, table -> {
+            List<Variant> variants = new ArrayList<>();
+            try (ResultScanner scanner = table.getScanner(scan)) {
+                for (Result result : scanner) {
+                    variants.addAll(filter.filter(converter.convert(result)));
+                }
+            }
+            return variants;
+        });
+    }
+
+    private void submitChunks() {
+        while (pending.size() < parallelism && chunks.hasNext()) {
+            Region chunk = chunks.next();
+            pending.add(executor.submit(() -> readChunk(chunk)));
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!iterator.hasNext()) {
+            submitChunks();
+            if (pending.isEmpty()) {
+                return false;
+            }
+            Future<List<Variant>> future = pending.poll();
+            iterator = fetch(() -> getChunk(future)).iterator();
+        }
+        return true;
+    }
+
+    private List<Variant> getChunk(Future<List<Variant>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw VariantQueryException.internalException(e);
+        } catch (ExecutionException e) {
+            throw VariantQueryException.internalException(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        }
+    }
+
+    @Override
+    public Variant next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        count++;
+        return iterator.next();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Future<List<Variant>> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        super.close();
+    }
+}
@@ -31,11 +31,11 @@ public class RawSingleSampleIndexVariantDBIterator extends CloseableIterator<Sam
             regions = VariantQueryUtils.mergeRegions(query.getRegions());
         }
 
+        HBaseToSampleIndexConverter converter = dbAdaptor.newConverter(query);
         Iterator<Iterator<SampleVariantIndexEntry>> iterators = regions.stream()
                 .map(region -> {
                     // One scan per region
                     Scan scan = dbAdaptor.parseIncludeAll(query, region);
-                    HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(dbAdaptor.getConfiguration());
                     RawSampleIndexEntryFilter filter = new RawSampleIndexEntryFilter(query, region);
                     try {
                         ResultScanner scanner = table.getScanner(scan);
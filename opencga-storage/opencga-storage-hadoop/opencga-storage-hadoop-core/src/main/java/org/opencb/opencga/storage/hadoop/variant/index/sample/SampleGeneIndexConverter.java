@@ -0,0 +1,122 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.MISSENSE_VARIANT;
+import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.PROTEIN_CODING;
+
+/**
+ * Converts the genes with qualifying variants (LoF or missense) of each SampleIndex batch.
+ *
+ * Each gene is stored with a byte of flags, followed by the gene name and a zero byte as separator.
+ * Genes are sorted by name. Each gene is indexed both by gene name and by Ensembl gene id.
+ */
+public final class SampleGeneIndexConverter {
+
+    public static final byte LOF_MASK =            (byte) (1 << 0);
+    public static final byte MISSENSE_MASK =       (byte) (1 << 1);
+    public static final byte PROTEIN_CODING_MASK = (byte) (1 << 2);
+    private static final byte SEPARATOR = 0;
+
+    private SampleGeneIndexConverter() {
+    }
+
+    /**
+     * Get the genes with qualifying variants from a variant annotation.
+     *
+     * @param variantAnnotation Variant annotation
+     * @return Map from gene name to flags. Empty if no gene is affected.
+     */
+    public static Map<String, Byte> convert(VariantAnnotation variantAnnotation) {
+        if (variantAnnotation == null || variantAnnotation.getConsequenceTypes() == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Byte> genes = null;
+        for (ConsequenceType ct : variantAnnotation.getConsequenceTypes()) {
+            if (ct.getSequenceOntologyTerms() == null
+                    || StringUtils.isEmpty(ct.getGeneName()) && StringUtils.isEmpty(ct.getEnsemblGeneId())) {
+                continue;
+            }
+            byte flags = 0;
+            for (SequenceOntologyTerm term : ct.getSequenceOntologyTerms()) {
+                if (VariantQueryUtils.LOF_SET.contains(term.getName())) {
+                    flags |= LOF_MASK;
+                } else if (MISSENSE_VARIANT.equals(term.getName())) {
+                    flags |= MISSENSE_MASK;
+                }
+            }
+            if (flags != 0) {
+                if (PROTEIN_CODING.equals(ct.getBiotype())) {
+                    flags |= PROTEIN_CODING_MASK;
+                }
+                if (genes == null) {
+                    genes = new TreeMap<>();
+                }
+                if (StringUtils.isNotEmpty(ct.getGeneName())) {
+                    genes.merge(ct.getGeneName(), flags, (a, b) -> (byte) (a | b));
+                }
+                if (StringUtils.isNotEmpty(ct.getEnsemblGeneId())) {
+                    genes.merge(ct.getEnsemblGeneId(), flags, (a, b) -> (byte) (a | b));
+                }
+            }
+        }
+        return genes == null ? Collections.emptyMap() : genes;
+    }
+
+    public static void merge(Map<String, Byte> target, Map<String, Byte> genes) {
+        for (Map.Entry<String, Byte> entry : genes.entrySet()) {
+            target.merge(entry.getKey(), entry.getValue(), (a, b) -> (byte) (a | b));
+        }
+    }
+
+    public static byte[] toBytes(Map<String, Byte> genes) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream(genes.size() * 10);
+        for (Map.Entry<String, Byte> entry : new TreeMap<>(genes).entrySet()) {
+            byte[] gene = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            os.write(entry.getValue());
+            os.write(gene, 0, gene.length);
+            os.write(SEPARATOR);
+        }
+        return os.toByteArray();
+    }
+
+    public static Map<String, Byte> fromBytes(byte[] bytes) {
+        return fromBytes(bytes, 0, bytes.length, new TreeMap<>());
+    }
+
+    /**
+     * Read the genes from a serialized column, and merge them into the given map.
+     *
+     * @param bytes  Serialized genes
+     * @param offset Offset
+     * @param length Length
+     * @param genes  Map where to add the genes
+     * @return The same map
+     */
+    public static Map<String, Byte> fromBytes(byte[] bytes, int offset, int length, Map<String, Byte> genes) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            byte flags = bytes[i++];
+            int geneStart = i;
+            while (i < end && bytes[i] != SEPARATOR) {
+                i++;
+            }
+            String gene = new String(bytes, geneStart, i - geneStart, StandardCharsets.UTF_8);
+            genes.merge(gene, flags, (a, b) -> (byte) (a | b));
+            // Skip separator
+            i++;
+        }
+        return genes;
+    }
+}
@@ -40,6 +40,9 @@ public class SampleIndexAnnotationLoader {
 
     public static final String OVERWRITE = "sampleIndex.overwrite";
     public static final String SAMPLE_INDEX_STATUS = "sampleIndex";
+    public static final String SAMPLE_INDEX_ANNOTATION_VERSION = "sampleIndex.annotation.version";
+    public static final String SAMPLE_INDEX_ANNOTATION_RANGE_INDEX_SIZE = "sampleIndex.annotation.rangeIndexSize";
+    public static final String SAMPLE_INDEX_ANNOTATION_GENE_INDEX = "sampleIndex.annotation.geneIndex";
     private final HBaseManager hBaseManager;
     private final HBaseVariantTableNameGenerator tableNameGenerator;
     private final MRExecutor mrExecutor;
@@ -90,12 +93,20 @@ public class SampleIndexAnnotationLoader {
         List<Integer> finalSamplesList = new ArrayList<>(samples.size());
         List<String> nonAnnotated = new LinkedList<>();
         List<String> alreadyAnnotated = new LinkedList<>();
+        List<String> outdated = new LinkedList<>();
+        int version = sampleDBAdaptor.getConfiguration().getVersion();
         for (Integer sampleId : samples) {
             SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
             if (sampleMetadata.isAnnotated()) {
                 if (sampleMetadata.isReady(SAMPLE_INDEX_STATUS) && !overwrite) {
-                    // SamplesIndex already annotated
-                    alreadyAnnotated.add(sampleMetadata.getName());
+                    if (getAnnotationVersion(sampleMetadata) == version) {
+                        // SamplesIndex already annotated
+                        alreadyAnnotated.add(sampleMetadata.getName());
+                    } else {
+                        // SampleIndex annotated with a different configuration. Rebuild
+                        outdated.add(sampleMetadata.getName());
+                        finalSamplesList.add(sampleId);
+                    }
                 } else {
                     finalSamplesList.add(sampleId);
                 }
@@ -111,6 +122,10 @@ public class SampleIndexAnnotationLoader {
                 logger.warn("Unable to update sample index from " + nonAnnotated.size() + " samples. Samples not fully annotated.");
             }
         }
+        if (!outdated.isEmpty()) {
+            logger.info("Rebuild sample index annotation for " + outdated.size() + " samples annotated with a different"
+                    + " SampleIndexConfiguration version. Current version: " + version);
+        }
         if (!alreadyAnnotated.isEmpty()) {
             logger.info("Skip sample index annotation for " + alreadyAnnotated.size() + " samples."
                     + " Add " + OVERWRITE + "=true to overwrite existing sample index annotation on all samples");
@@ -322,8 +337,7 @@ public class SampleIndexAnnotationLoader {
                             restarted = true;
                         } else {
                             logger.error("Missing variant to annotate " + variantToAnnotate);
-                            builder.add(AnnotationIndexEntry.empty(
-                                    SampleIndexConfiguration.PopulationFrequencyRange.DEFAULT_THRESHOLDS.length));
+                            builder.add(AnnotationIndexEntry.empty(sampleDBAdaptor.getConfiguration().getRangeIndexSize()));
                             missingVariants++;
                             break;
                         }
@@ -343,17 +357,58 @@ public class SampleIndexAnnotationLoader {
     }
 
     private void postAnnotationLoad(int studyId, List<Integer> samples) throws StorageEngineException {
-        postAnnotationLoad(studyId, samples, metadataManager);
+        // Local annotation does not write the gene index
+        postAnnotationLoad(studyId, samples, metadataManager, sampleDBAdaptor.getConfiguration(), false, Collections.emptySet());
     }
 
-    public static void postAnnotationLoad(int studyId, List<Integer> samples, VariantStorageMetadataManager metadataManager)
+    public static void postAnnotationLoad(int studyId, List<Integer> samples, VariantStorageMetadataManager metadataManager,
+                                          SampleIndexConfiguration configuration, boolean geneIndex, Set<Integer> summarySamples)
             throws StorageEngineException {
         for (Integer sampleId : samples) {
             metadataManager.updateSampleMetadata(studyId, sampleId, sampleMetadata -> {
+                sampleMetadata.getAttributes().put(SAMPLE_INDEX_ANNOTATION_VERSION, configuration.getVersion());
+                sampleMetadata.getAttributes().put(SAMPLE_INDEX_ANNOTATION_RANGE_INDEX_SIZE, configuration.getRangeIndexSize());
+                sampleMetadata.getAttributes().put(SAMPLE_INDEX_ANNOTATION_GENE_INDEX, geneIndex);
+                SampleIndexDBAdaptor.setSampleIndexSummaryStatus(sampleMetadata,
+                        summarySamples.contains(sampleId) ? TaskMetadata.Status.READY : TaskMetadata.Status.NONE);
                 return SampleIndexDBAdaptor.setSampleIndexStatus(sampleMetadata, TaskMetadata.Status.READY);
             });
         }
     }
 
+    /**
+     * Version of the SampleIndexConfiguration used to annotate the sample index of this sample.
+     * Samples annotated before tracking the version were annotated with the default configuration.
+     *
+     * @param sampleMetadata Sample metadata
+     * @return Version
+     */
+    public static int getAnnotationVersion(SampleMetadata sampleMetadata) {
+        return sampleMetadata.getAttributes().getInt(SAMPLE_INDEX_ANNOTATION_VERSION, SampleIndexConfiguration.DEFAULT_VERSION);
+    }
+
+    /**
+     * Number of ranges per variant in the range index of this sample, as written when the sample was annotated.
+     * Samples annotated before tracking this value were annotated with the default configuration.
+     *
+     * @param sampleMetadata Sample metadata
+     * @return Number of ranges
+     */
+    public static int getAnnotationRangeIndexSize(SampleMetadata sampleMetadata) {
+        return sampleMetadata.getAttributes().getInt(SAMPLE_INDEX_ANNOTATION_RANGE_INDEX_SIZE,
+                SampleIndexConfiguration.defaultConfiguration().getRangeIndexSize());
+    }
+
+    /**
+     * Whether the sample index of this sample contains the gene index of the last annotation.
+     * Samples annotated before the gene index existed, or annotated locally, do not have it.
+     *
+     * @param sampleMetadata Sample metadata
+     * @return if the gene index can be used
+     */
+    public static boolean hasGeneIndex(SampleMetadata sampleMetadata) {
+        return sampleMetadata.getAttributes().getBoolean(SAMPLE_INDEX_ANNOTATION_GENE_INDEX, false);
+    }
+
 
 }
@@ -1,18 +1,42 @@
 package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
+/**
+ * Configuration of the annotation index stored in the SampleIndex.
+ *
+ * The population frequency ranges and the functional score ranges are stored in the same column, in this order,
+ * using {@link org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter#POP_FREQ_SIZE} bits per range.
+ * Any change in the configuration requires increasing the version, so the annotation of the affected samples is rebuilt.
+ */
 public class SampleIndexConfiguration {
 
     public static final double[] QUAL_THRESHOLDS = new double[]{10, 20, 30};
     public static final double[] DP_THRESHOLDS = new double[]{5, 10, 15, 20, 30, 40, 50};
+    public static final int DEFAULT_VERSION = 1;
+    // Each range is stored with 2 bits. Requires exactly 3 thresholds
+    public static final int RANGE_THRESHOLDS = 3;
 
+    private int version;
     private List<PopulationFrequencyRange> populationRanges;
+    private List<FunctionalScoreRange> functionalScoreRanges;
 
     public SampleIndexConfiguration() {
+        version = DEFAULT_VERSION;
         populationRanges = new ArrayList<>();
+        functionalScoreRanges = new ArrayList<>();
     }
 
     public static SampleIndexConfiguration defaultConfiguration() {
@@ -21,6 +45,80 @@ public class SampleIndexConfiguration {
                 .addPopulationRange(new PopulationFrequencyRange("GNOMAD_GENOMES", "ALL"));
     }
 
+    /**
+     * Read the configuration from {@link HadoopVariantStorageOptions#SAMPLE_INDEX_CONFIGURATION}, if any.
+     *
+     * @param conf Hadoop configuration
+     * @return SampleIndexConfiguration, or the default configuration if missing
+     */
+    public static SampleIndexConfiguration fromConfiguration(Configuration conf) {
+        String json = conf.get(HadoopVariantStorageOptions.SAMPLE_INDEX_CONFIGURATION.key());
+        if (StringUtils.isBlank(json)) {
+            return defaultConfiguration();
+        }
+        return fromJson(json);
+    }
+
+    public static SampleIndexConfiguration fromJson(String json) {
+        try {
+            SampleIndexConfiguration configuration = objectMapper().readValue(json, SampleIndexConfiguration.class);
+            configuration.validate();
+            return configuration;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to parse SampleIndexConfiguration " + json, e);
+        }
+    }
+
+    public String toJson() {
+        try {
+            return objectMapper().writeValueAsString(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ObjectMapper objectMapper() {
+        return new ObjectMapper()
+                .configure(MapperFeature.REQUIRE_SETTERS_FOR_GETTERS, true)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    public void validate() {
+        List<String> ids = new ArrayList<>();
+        for (PopulationFrequencyRange populationRange : populationRanges) {
+            checkThresholds(populationRange.getStudyAndPopulation(), populationRange.getThresholds());
+            ids.add(populationRange.getStudyAndPopulation());
+        }
+        for (FunctionalScoreRange functionalScoreRange : functionalScoreRanges) {
+            checkThresholds(functionalScoreRange.getSource(), functionalScoreRange.getThresholds());
+            ids.add(functionalScoreRange.getSource());
+        }
+        if (ids.size() != ids.stream().distinct().count()) {
+            throw new IllegalArgumentException("Duplicated ranges in SampleIndexConfiguration: " + ids);
+        }
+    }
+
+    private static void checkThresholds(String id, double[] thresholds) {
+        if (thresholds == null || thresholds.length != RANGE_THRESHOLDS) {
+            throw new IllegalArgumentException("Expected " + RANGE_THRESHOLDS + " thresholds for '" + id + "'. "
+                    + "Found " + Arrays.toString(thresholds));
+        }
+        for (int i = 1; i < thresholds.length; i++) {
+            if (thresholds[i - 1] >= thresholds[i]) {
+                throw new IllegalArgumentException("Thresholds for '" + id + "' must be sorted. Found " + Arrays.toString(thresholds));
+            }
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public SampleIndexConfiguration setVersion(int version) {
+        this.version = version;
+        return this;
+    }
+
     public List<PopulationFrequencyRange> getPopulationRanges() {
         return populationRanges;
     }
@@ -34,7 +132,8 @@ public class SampleIndexConfiguration {
         if (populationRanges == null) {
             populationRanges = new ArrayList<>();
         }
-        if (populationRanges.contains(populationRange)) {
+        if (populationRanges.stream()
+                .anyMatch(p -> p.getStudyAndPopulation().equals(populationRange.getStudyAndPopulation()))) {
             throw new IllegalArgumentException("Duplicated population '"
                     + populationRange.getStudyAndPopulation() + "' in SampleIndexConfiguration");
         }
@@ -42,11 +141,60 @@ public class SampleIndexConfiguration {
         return this;
     }
 
+    public List<FunctionalScoreRange> getFunctionalScoreRanges() {
+        return functionalScoreRanges;
+    }
+
+    public SampleIndexConfiguration setFunctionalScoreRanges(List<FunctionalScoreRange> functionalScoreRanges) {
+        this.functionalScoreRanges = functionalScoreRanges;
+        return this;
+    }
+
+    public SampleIndexConfiguration addFunctionalScoreRange(FunctionalScoreRange functionalScoreRange) {
+        if (functionalScoreRanges == null) {
+            functionalScoreRanges = new ArrayList<>();
+        }
+        if (functionalScoreRanges.stream()
+                .anyMatch(f -> f.getSource().equals(functionalScoreRange.getSource()))) {
+            throw new IllegalArgumentException("Duplicated functional score '"
+                    + functionalScoreRange.getSource() + "' in SampleIndexConfiguration");
+        }
+        this.functionalScoreRanges.add(functionalScoreRange);
+        return this;
+    }
+
+    /**
+     * Number of ranges stored in the range index. First the population frequencies, then the functional scores.
+     *
+     * @return Number of ranges
+     */
+    public int getRangeIndexSize() {
+        return populationRanges.size() + functionalScoreRanges.size();
+    }
+
+    /**
+     * Position of a functional score in the range index.
+     *
+     * @param source Functional score source
+     * @return Position, or -1 if not in the index
+     */
+    public int getFunctionalScorePosition(String source) {
+        for (int i = 0; i < functionalScoreRanges.size(); i++) {
+            if (functionalScoreRanges.get(i).getSource().equals(source)) {
+                return populationRanges.size() + i;
+            }
+        }
+        return -1;
+    }
+
     public static class PopulationFrequencyRange {
         public static final double[] DEFAULT_THRESHOLDS = new double[]{0.001, 0.005, 0.01};
         private String study;
         private String population;
-//        private float[] thresholds; // TODO: Make this configurable
+        private double[] thresholds = DEFAULT_THRESHOLDS;
+
+        public PopulationFrequencyRange() {
+        }
 
         public PopulationFrequencyRange(String studyPopulation) {
             this.study = studyPopulation.split(":")[0];
@@ -58,6 +206,12 @@ public class SampleIndexConfiguration {
             this.population = population;
         }
 
+        public PopulationFrequencyRange(String study, String population, double[] thresholds) {
+            this.study = study;
+            this.population = population;
+            this.thresholds = thresholds;
+        }
+
         public String getStudy() {
             return study;
         }
@@ -81,7 +235,12 @@ public class SampleIndexConfiguration {
         }
 
         public double[] getThresholds() {
-            return DEFAULT_THRESHOLDS;
+            return thresholds;
+        }
+
+        public PopulationFrequencyRange setThresholds(double[] thresholds) {
+            this.thresholds = thresholds;
+            return this;
         }
 
         @Override
@@ -93,12 +252,66 @@ public class SampleIndexConfiguration {
                 return false;
             }
             PopulationFrequencyRange that = (PopulationFrequencyRange) o;
-            return Objects.equals(study, that.study) && Objects.equals(population, that.population);
+            return Objects.equals(study, that.study) && Objects.equals(population, that.population)
+                    && Arrays.equals(thresholds, that.thresholds);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(study, population, Arrays.hashCode(thresholds));
+        }
+    }
+
+    /**
+     * Range index of a functional score or conservation score, e.g. cadd_scaled, gerp, phylop.
+     * Variants without the score are stored as the lowest range.
+     */
+    public static class FunctionalScoreRange {
+        private String source;
+        private double[] thresholds;
+
+        public FunctionalScoreRange() {
+        }
+
+        public FunctionalScoreRange(String source, double[] thresholds) {
+            this.source = source;
+            this.thresholds = thresholds;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public FunctionalScoreRange setSource(String source) {
+            this.source = source;
+            return this;
+        }
+
+        public double[] getThresholds() {
+            return thresholds;
+        }
+
+        public FunctionalScoreRange setThresholds(double[] thresholds) {
+            this.thresholds = thresholds;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FunctionalScoreRange that = (FunctionalScoreRange) o;
+            return Objects.equals(source, that.source)
+                    && Arrays.equals(thresholds, that.thresholds);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(study, population);
+            return Objects.hash(source, Arrays.hashCode(thresholds));
         }
     }
 
@@ -111,11 +324,13 @@ public class SampleIndexConfiguration {
             return false;
         }
         SampleIndexConfiguration that = (SampleIndexConfiguration) o;
-        return Objects.equals(populationRanges, that.populationRanges);
+        return version == that.version
+                && Objects.equals(populationRanges, that.populationRanges)
+                && Objects.equals(functionalScoreRanges, that.functionalScoreRanges);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(populationRanges);
+        return Objects.hash(version, populationRanges, functionalScoreRanges);
     }
 }
@@ -2,10 +2,14 @@ package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
 import com.google.common.collect.Iterators;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.MultiRowRangeFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.CollectionUtils;
 import org.opencb.biodata.models.core.Region;
@@ -28,7 +32,10 @@ import org.opencb.opencga.storage.core.variant.adaptors.iterators.UnionMultiVari
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.index.IndexUtils;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.FunctionalScoreQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.PopulationFrequencyQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
@@ -38,6 +45,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.opencb.opencga.storage.hadoop.variant.adaptors.phoenix.VariantSqlQueryParser.DEFAULT_LOADED_GENOTYPES;
@@ -58,6 +69,12 @@ public class SampleIndexDBAdaptor implements VariantIterable {
     private SampleIndexQueryParser parser;
     private final SampleIndexConfiguration configuration;
     private final HBaseToSampleIndexConverter converter;
+    private final boolean batchPruning;
+    private final double batchPruningMaxRatio;
+    private final int parallelism;
+    private final int batchesPerChunk;
+    private volatile ExecutorService scanThreadPool;
+    private final boolean summaryEnabled;
 
     public SampleIndexDBAdaptor(HBaseManager hBaseManager, HBaseVariantTableNameGenerator tableNameGenerator,
                                 VariantStorageMetadataManager metadataManager) {
@@ -65,10 +82,24 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         this.tableNameGenerator = tableNameGenerator;
         this.metadataManager = metadataManager;
         family = GenomeHelper.COLUMN_FAMILY_BYTES;
-        // TODO: Read configuration from metadata manager
-        configuration = SampleIndexConfiguration.defaultConfiguration();
+        configuration = SampleIndexConfiguration.fromConfiguration(hBaseManager.getConf());
         parser = new SampleIndexQueryParser(metadataManager, configuration);
         converter = new HBaseToSampleIndexConverter(configuration);
+        batchPruning = hBaseManager.getConf().getBoolean(
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_BATCH_PRUNING.key(),
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_BATCH_PRUNING.defaultValue());
+        batchPruningMaxRatio = hBaseManager.getConf().getDouble(
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_BATCH_PRUNING_MAX_RATIO.key(),
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_BATCH_PRUNING_MAX_RATIO.defaultValue());
+        parallelism = hBaseManager.getConf().getInt(
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_PARALLELISM.key(),
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_PARALLELISM.defaultValue());
+        batchesPerChunk = hBaseManager.getConf().getInt(
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_PARALLEL_BATCHES_PER_CHUNK.key(),
+                HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_PARALLEL_BATCHES_PER_CHUNK.defaultValue());
+        summaryEnabled = hBaseManager.getConf().getBoolean(
+                HadoopVariantStorageOptions.SAMPLE_INDEX_SUMMARY_ENABLED.key(),
+                HadoopVariantStorageOptions.SAMPLE_INDEX_SUMMARY_ENABLED.defaultValue());
     }
 
     public static TaskMetadata.Status getSampleIndexStatus(SampleMetadata sampleMetadata) {
@@ -79,6 +110,14 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return sampleMetadata.setStatus(SampleIndexAnnotationLoader.SAMPLE_INDEX_STATUS, status);
     }
 
+    public static TaskMetadata.Status getSampleIndexSummaryStatus(SampleMetadata sampleMetadata) {
+        return sampleMetadata.getStatus(SampleIndexSummaryBuilder.SAMPLE_INDEX_SUMMARY_STATUS);
+    }
+
+    public static SampleMetadata setSampleIndexSummaryStatus(SampleMetadata sampleMetadata, TaskMetadata.Status status) {
+        return sampleMetadata.setStatus(SampleIndexSummaryBuilder.SAMPLE_INDEX_SUMMARY_STATUS, status);
+    }
+
     @Override
     public VariantDBIterator iterator(Query query, QueryOptions options) {
         return iterator(parser.parse(query));
@@ -105,11 +144,23 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                 return VariantDBIterator.emptyIterator();
             } else {
                 logger.info("Single sample indexes iterator");
-                SingleSampleIndexVariantDBIterator iterator = internalIterator(query.forSample(sample, gts));
+                // Paginated queries only read a few variants. Do not read ahead in parallel.
+                boolean parallel = !options.containsKey(QueryOptions.LIMIT);
+                VariantDBIterator iterator = internalIterator(query.forSample(sample, gts), null, parallel);
                 return applyLimitSkip(iterator, options);
             }
         }
 
+        Map<String, Set<Integer>> batches = null;
+        if (operation.equals(QueryOperation.AND) && batchPruning) {
+            batches = intersectBatches(query);
+            if (batches != null && batches.isEmpty()) {
+                logger.info("No common batches between the samples. Skip intersection");
+                return VariantDBIterator.emptyIterator();
+            }
+        }
+
+        boolean parallel = !options.containsKey(QueryOptions.LIMIT);
         List<VariantDBIterator> iterators = new ArrayList<>(samples.size());
         List<VariantDBIterator> negatedIterators = new ArrayList<>(samples.size());
 
@@ -119,7 +170,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
 
             if (query.isNegated(sample)) {
                 if (!gts.isEmpty()) {
-                    negatedIterators.add(internalIterator(query.forSample(sample, gts)));
+                    negatedIterators.add(internalIterator(query.forSample(sample, gts), batches, parallel));
                 }
                 // Skip if GTs to query is empty!
                 // Otherwise, it will return ALL genotypes instead of none
@@ -128,7 +179,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                     // If empty, should find none. Add empty iterator for this sample
                     iterators.add(VariantDBIterator.emptyIterator());
                 } else {
-                    iterators.add(internalIterator(query.forSample(sample, gts)));
+                    iterators.add(internalIterator(query.forSample(sample, gts), batches, parallel));
                 }
             }
         }
@@ -162,15 +213,132 @@ public class SampleIndexDBAdaptor implements VariantIterable {
     /**
      * Partially processed iterator. Internal usage only.
      *
-     * @param query SingleSampleIndexQuery
-     * @return SingleSampleIndexVariantDBIterator
+     * @param query    SingleSampleIndexQuery
+     * @param batches  Batches to read, by chromosome. If null, read all the batches.
+     * @param parallel Allow reading the sample index in parallel, if the parallelism is greater than 1.
+     * @return VariantDBIterator
      */
-    private SingleSampleIndexVariantDBIterator internalIterator(SingleSampleIndexQuery query) {
+    private VariantDBIterator internalIterator(SingleSampleIndexQuery query, Map<String, Set<Integer>> batches, boolean parallel) {
         String tableName = tableNameGenerator.getSampleIndexTableName(toStudyId(query.getStudy()));
 
+        if (parallel && parallelism > 1) {
+            return new ParallelSingleSampleIndexVariantDBIterator(hBaseManager, tableName, query, batches, this,
+                    getScanThreadPool(), parallelism, batchesPerChunk);
+        }
         try {
             return hBaseManager.act(tableName, table -> {
-                return new SingleSampleIndexVariantDBIterator(table, query, this);
+                return new SingleSampleIndexVariantDBIterator(table, query, batches, this);
+            });
+        } catch (IOException e) {
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
+    /**
+     * Thread pool shared by all the parallel sample index iterators of this adaptor.
+     * Bounded to {@link HadoopVariantStorageOptions#SAMPLE_INDEX_QUERY_PARALLELISM} threads. Idle threads are released.
+     *
+     * @return ExecutorService
+     */
+    private ExecutorService getScanThreadPool() {
+        if (scanThreadPool == null) {
+            synchronized (this) {
+                if (scanThreadPool == null) {
+                    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(), new BasicThreadFactory.Builder()
+                            .namingPattern("sample-index-scan-%s")
+                            .daemon(true)
+                            .build());
+                    threadPool.allowCoreThreadTimeOut(true);
+                    scanThreadPool = threadPool;
+                }
+            }
+        }
+        return scanThreadPool;
+    }
+
+    /**
+     * Find the batches where all the non negated samples have at least one variant with any of the queried genotypes.
+     *
+     * Only the genotype count columns are read, so the region servers return a few bytes per batch.
+     * The result is a superset of the batches containing variants of the intersection, so it can be used
+     * to restrict the scans of every sample, including the negated ones.
+     *
+     * @param query SampleIndexQuery
+     * @return Batches by chromosome, or null if there are less than two samples to intersect.
+     */
+    protected Map<String, Set<Integer>> intersectBatches(SampleIndexQuery query) {
+        List<String> samples = new ArrayList<>(query.getSamplesMap().size());
+        for (Map.Entry<String, List<String>> entry : query.getSamplesMap().entrySet()) {
+            if (!query.isNegated(entry.getKey())) {
+                if (entry.getValue().isEmpty()) {
+                    // Intersection will be empty anyway
+                    return null;
+                }
+                samples.add(entry.getKey());
+            }
+        }
+        if (samples.size() < 2) {
+            return null;
+        }
+
+        Map<String, Set<Integer>> batches = null;
+        int firstSampleNumBatches = 0;
+        for (String sample : samples) {
+            Map<String, Set<Integer>> sampleBatches = getBatches(query.forSample(sample, query.getSamplesMap().get(sample)));
+            if (batches == null) {
+                batches = sampleBatches;
+                firstSampleNumBatches = countBatches(batches);
+            } else {
+                batches.keySet().retainAll(sampleBatches.keySet());
+                for (Map.Entry<String, Set<Integer>> entry : batches.entrySet()) {
+                    entry.getValue().retainAll(sampleBatches.get(entry.getKey()));
+                }
+                batches.values().removeIf(Set::isEmpty);
+                if (sample.equals(samples.get(1)) && countBatches(batches) > firstSampleNumBatches * batchPruningMaxRatio) {
+                    // Not selective. Avoid reading the counts from the rest of samples
+                    logger.info("Skip batch pruning. Samples share " + countBatches(batches) + " out of "
+                            + firstSampleNumBatches + " batches");
+                    return null;
+                }
+            }
+            if (batches.isEmpty()) {
+                break;
+            }
+        }
+        int numBatches = countBatches(batches);
+        logger.info("Intersection of " + samples.size() + " samples restricted to " + numBatches + " batches");
+        return batches;
+    }
+
+    private static int countBatches(Map<String, Set<Integer>> batches) {
+        return batches.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private Map<String, Set<Integer>> getBatches(SingleSampleIndexQuery query) {
+        List<Region> regionsList;
+        if (CollectionUtils.isEmpty(query.getRegions())) {
+            regionsList = Collections.singletonList(null);
+        } else {
+            regionsList = VariantQueryUtils.mergeRegions(query.getRegions());
+        }
+        String tableName = tableNameGenerator.getSampleIndexTableName(toStudyId(query.getStudy()));
+
+        try {
+            return hBaseManager.act(tableName, table -> {
+                Map<String, Set<Integer>> batches = new HashMap<>();
+                for (Region region : regionsList) {
+                    Scan scan = parseCount(query, region);
+                    try (ResultScanner scanner = table.getScanner(scan)) {
+                        for (Result result : scanner) {
+                            if (converter.convertToCount(result) > 0) {
+                                batches.computeIfAbsent(SampleIndexSchema.chromosomeFromRowKey(result.getRow()), k -> new HashSet<>())
+                                        .add(SampleIndexSchema.batchStartFromRowKey(result.getRow()));
+                            }
+                        }
+                    }
+                }
+                return batches;
             });
         } catch (IOException e) {
             throw VariantQueryException.internalException(e);
@@ -234,7 +402,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return hBaseManager.act(tableName, table -> {
             Scan scan = new Scan();
             scan.setRowPrefixFilter(SampleIndexSchema.toRowKey(sample));
-            HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
+            HBaseToSampleIndexConverter converter = newConverter(study, sample);
             ResultScanner scanner = table.getScanner(scan);
             Iterator<Result> resultIterator = scanner.iterator();
             return Iterators.transform(resultIterator, converter::convert);
@@ -305,7 +473,8 @@ public class SampleIndexDBAdaptor implements VariantIterable {
     }
 
     public boolean isFastCount(SampleIndexQuery query) {
-        return query.getSamplesMap().size() == 1 && query.emptyAnnotationIndex() && query.emptyFileIndex();
+        return query.getSamplesMap().size() == 1 && query.emptyAnnotationIndex() && query.getAnnotationIndexQuery().isEmpty()
+                && query.emptyFileIndex();
     }
 
     public long count(List<Region> regions, String study, String sample, List<String> gts) {
@@ -322,6 +491,12 @@ public class SampleIndexDBAdaptor implements VariantIterable {
     }
 
     private long count(SingleSampleIndexQuery query) {
+        if (summaryEnabled && isSummaryCount(query)) {
+            Long count = countFromSummary(query);
+            if (count != null) {
+                return count;
+            }
+        }
         List<Region> regionsList;
         if (CollectionUtils.isEmpty(query.getRegions())) {
             // If no regions are defined, get a list of one null element to initialize the stream.
@@ -331,6 +506,7 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         }
 
         String tableName = tableNameGenerator.getSampleIndexTableName(toStudyId(query.getStudy()));
+        HBaseToSampleIndexConverter converter = newConverter(query);
 
         try {
             return hBaseManager.act(tableName, table -> {
@@ -339,7 +515,6 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                     // Split region in countable regions
                     List<Region> subRegions = region == null ? Collections.singletonList((Region) null) : splitRegion(region);
                     for (Region subRegion : subRegions) {
-                        HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(configuration);
                         boolean noRegionFilter = matchesWithBatch(subRegion);
                         // Don't need to parse the variant to filter
                         boolean simpleCount = !query.isMultiFileSample()
@@ -385,6 +560,226 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         }
     }
 
+    /**
+     * Check if the query can be answered from the {@link SampleIndexSummary}.
+     * Only whole chromosomes, and filters by annotation summary index and file index.
+     *
+     * @param query Single sample query
+     * @return if the summary can be used
+     */
+    protected static boolean isSummaryCount(SingleSampleIndexQuery query) {
+        if (query.isMultiFileSample()
+                || !CollectionUtils.isEmpty(query.getVariantTypes())
+                || query.hasFatherFilter()
+                || query.hasMotherFilter()
+                || query.getMendelianError()) {
+            return false;
+        }
+        SampleAnnotationIndexQuery annotationIndexQuery = query.getAnnotationIndexQuery();
+        if (annotationIndexQuery.getConsequenceTypeMask() != EMPTY_MASK
+                || annotationIndexQuery.getBiotypeMask() != EMPTY_MASK
+                || annotationIndexQuery.getClinicalMask() != EMPTY_MASK
+                || !CollectionUtils.isEmpty(annotationIndexQuery.getPopulationFrequencyQueries())
+                || !CollectionUtils.isEmpty(annotationIndexQuery.getFunctionalScoreQueries())) {
+            return false;
+        }
+        if (!CollectionUtils.isEmpty(query.getRegions())) {
+            for (Region region : query.getRegions()) {
+                if (region.getStart() > 1 || region.getEnd() != Integer.MAX_VALUE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Long countFromSummary(SingleSampleIndexQuery query) {
+        int studyId = toStudyId(query.getStudy());
+        int sampleId = toSampleId(studyId, query.getSample());
+        SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
+        if (getSampleIndexSummaryStatus(sampleMetadata) != TaskMetadata.Status.READY) {
+            return null;
+        }
+        Set<String> chromosomes = null;
+        if (!CollectionUtils.isEmpty(query.getRegions())) {
+            chromosomes = query.getRegions().stream().map(Region::getChromosome).collect(Collectors.toSet());
+        }
+        long count = 0;
+        for (SampleIndexSummary summary : summaries(studyId, sampleId, chromosomes)) {
+            for (String gt : query.getGenotypes()) {
+                SampleIndexSummary.GtSummary gtSummary = summary.getGtSummary(gt);
+                if (gtSummary == null) {
+                    continue;
+                }
+                count += gtSummary.count(query.getAnnotationIndexMask(), query.getAnnotationIndex(),
+                        query.getSampleFileIndexQuery());
+            }
+        }
+        logger.info("Count from SampleIndex summary. Sample " + query.getSample() + " : " + count);
+        return count;
+    }
+
+    /**
+     * Read the pre-aggregated counts of a sample.
+     *
+     * @param study       Study id
+     * @param sample      Sample id
+     * @param chromosomes Chromosomes to read. Null to read all of them.
+     * @return List of summaries, one per chromosome
+     */
+    public List<SampleIndexSummary> summaries(int study, int sample, Set<String> chromosomes) {
+        String tableName = tableNameGenerator.getSampleIndexSummaryTableName(study);
+        try {
+            return hBaseManager.act(tableName, table -> {
+                List<SampleIndexSummary> summaries = new ArrayList<>();
+                Scan scan = new Scan();
+                scan.setRowPrefixFilter(SampleIndexSchema.toRowKey(sample));
+                try (ResultScanner scanner = table.getScanner(scan)) {
+                    for (Result result : scanner) {
+                        if (chromosomes == null
+                                || chromosomes.contains(SampleIndexSchema.chromosomeFromSummaryRowKey(result.getRow()))) {
+                            summaries.add(SampleIndexSummary.fromResult(result));
+                        }
+                    }
+                }
+                return summaries;
+            });
+        } catch (IOException e) {
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
+    /**
+     * Read the genes with qualifying variants (LoF or missense) of a sample, without reading the variants table.
+     * Genes are indexed by SampleIndex batch, so all the genes from the batches overlapping the regions are returned.
+     *
+     * @param study   Study
+     * @param sample  Sample
+     * @param regions Regions to read. Null or empty to read the whole sample.
+     * @param gts     Genotypes to read. Null or empty to read all the loaded genotypes.
+     * @return Map from gene name to flags. See {@link SampleGeneIndexConverter}.
+     */
+    public Map<String, Byte> geneIndex(String study, String sample, List<Region> regions, List<String> gts) {
+        return geneIndex(study, Collections.singletonList(sample), regions, gts).get(sample);
+    }
+
+    /**
+     * Read the genes with qualifying variants (LoF or missense) of a list of samples, without reading the variants table.
+     * All the samples are read with one single scan.
+     *
+     * @param study   Study
+     * @param samples Samples
+     * @param regions Regions to read. Null or empty to read the whole samples.
+     * @param gts     Genotypes to read. Null or empty to read all the loaded genotypes.
+     * @return Map from sample to genes. See {@link #geneIndex(String, String, List, List)}.
+     */
+    public Map<String, Map<String, Byte>> geneIndex(String study, Collection<String> samples, List<Region> regions,
+                                                    List<String> gts) {
+        int studyId = toStudyId(study);
+        Map<Integer, Map<String, Byte>> genesBySampleId = new HashMap<>(samples.size());
+        Map<String, Map<String, Byte>> genesBySample = new LinkedHashMap<>(samples.size());
+        for (String sample : samples) {
+            Map<String, Byte> genes = genesBySampleId.computeIfAbsent(toSampleId(studyId, sample), k -> new TreeMap<>());
+            genesBySample.put(sample, genes);
+        }
+        if (genesBySample.isEmpty()) {
+            return genesBySample;
+        }
+        List<Region> regionsList = CollectionUtils.isEmpty(regions)
+                ? Collections.singletonList(null)
+                : VariantQueryUtils.mergeRegions(regions);
+        List<MultiRowRangeFilter.RowRange> ranges = new ArrayList<>(genesBySampleId.size() * regionsList.size());
+        for (Integer sampleId : genesBySampleId.keySet()) {
+            for (Region region : regionsList) {
+                ranges.add(toGeneIndexRowRange(sampleId, region));
+            }
+        }
+        List<String> genotypes = CollectionUtils.isEmpty(gts) ? getAllLoadedGenotypes(studyId) : gts;
+        String tableName = tableNameGenerator.getSampleIndexTableName(studyId);
+
+        try {
+            Scan scan = new Scan();
+            scan.setFilter(buildMultiRowRangeFilter(ranges));
+            for (String gt : genotypes) {
+                scan.addColumn(family, SampleIndexSchema.toAnnotationGeneIndexColumn(gt));
+            }
+            hBaseManager.act(tableName, table -> {
+                try (ResultScanner scanner = table.getScanner(scan)) {
+                    for (Result result : scanner) {
+                        Map<String, Byte> genes = genesBySampleId.get(SampleIndexSchema.sampleIdFromRowKey(result.getRow()));
+                        for (Cell cell : result.rawCells()) {
+                            SampleGeneIndexConverter.fromBytes(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength(),
+                                    genes);
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw VariantQueryException.internalException(e);
+        }
+        return genesBySample;
+    }
+
+    /**
+     * Find the samples with qualifying variants in a gene, without reading the variants table.
+     *
+     * @param study      Study
+     * @param samples    Samples to check
+     * @param geneRegion Region of the gene. Null to read the whole samples.
+     * @param gene       Gene name
+     * @param mask       Required flags from {@link SampleGeneIndexConverter}. Any of them must match. Use 0 to accept any.
+     * @param gts        Genotypes to read. Null or empty to read all the loaded genotypes.
+     * @return List of samples with the gene
+     */
+    public List<String> samplesWithGene(String study, List<String> samples, Region geneRegion, String gene, byte mask,
+                                        List<String> gts) {
+        List<Region> regions = geneRegion == null ? null : Collections.singletonList(geneRegion);
+        return samplesWithGenes(study, samples, regions, Collections.singletonList(gene), mask, gts).get(gene);
+    }
+
+    /**
+     * Find the samples with qualifying variants in each of the genes, without reading the variants table.
+     * All the samples are read with one single scan.
+     *
+     * @param study       Study
+     * @param samples     Samples to check
+     * @param geneRegions Regions of the genes. Null or empty to read the whole samples.
+     * @param genes       Gene names
+     * @param mask        Required flags from {@link SampleGeneIndexConverter}. Any of them must match. Use 0 to accept any.
+     * @param gts         Genotypes to read. Null or empty to read all the loaded genotypes.
+     * @return Map from gene to the list of samples with the gene
+     */
+    public Map<String, List<String>> samplesWithGenes(String study, List<String> samples, List<Region> geneRegions,
+                                                      Collection<String> genes, byte mask, List<String> gts) {
+        Map<String, Map<String, Byte>> geneIndex = geneIndex(study, samples, geneRegions, gts);
+        Map<String, List<String>> samplesWithGenes = new LinkedHashMap<>(genes.size());
+        for (String gene : genes) {
+            List<String> samplesWithGene = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Byte>> entry : geneIndex.entrySet()) {
+                Byte flags = entry.getValue().get(gene);
+                if (flags != null && (mask == 0 || IndexUtils.testIndexAny(flags, mask))) {
+                    samplesWithGene.add(entry.getKey());
+                }
+            }
+            samplesWithGenes.put(gene, samplesWithGene);
+        }
+        return samplesWithGenes;
+    }
+
+    private static MultiRowRangeFilter.RowRange toGeneIndexRowRange(int sampleId, Region region) {
+        if (region == null) {
+            return new MultiRowRangeFilter.RowRange(
+                    SampleIndexSchema.toRowKey(sampleId), true,
+                    SampleIndexSchema.toRowKey(sampleId + 1), false);
+        } else {
+            return new MultiRowRangeFilter.RowRange(
+                    SampleIndexSchema.toRowKey(sampleId, region.getChromosome(), region.getStart()), true,
+                    SampleIndexSchema.toRowKey(sampleId, region.getChromosome(),
+                            region.getEnd() + (region.getEnd() == Integer.MAX_VALUE ? 0 : SampleIndexSchema.BATCH_SIZE)), false);
+        }
+    }
+
     public SampleIndexQueryParser getSampleIndexQueryParser() {
         return parser;
     }
@@ -393,6 +788,35 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return configuration;
     }
 
+    /**
+     * Build a converter for the sample index of the sample in the query.
+     *
+     * @param query Single sample query
+     * @return Converter
+     * @see #newConverter(int, int)
+     */
+    protected HBaseToSampleIndexConverter newConverter(SingleSampleIndexQuery query) {
+        int studyId = toStudyId(query.getStudy());
+        return newConverter(studyId, toSampleId(studyId, query.getSample()));
+    }
+
+    /**
+     * Build a converter for the sample index of a sample.
+     * The range index is decoded with the number of ranges used when the sample was annotated,
+     * that might not match the current configuration.
+     *
+     * @param studyId  Study id
+     * @param sampleId Sample id
+     * @return Converter
+     */
+    protected HBaseToSampleIndexConverter newConverter(int studyId, int sampleId) {
+        SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
+        if (sampleMetadata == null) {
+            return new HBaseToSampleIndexConverter(configuration);
+        }
+        return new HBaseToSampleIndexConverter(configuration, SampleIndexAnnotationLoader.getAnnotationRangeIndexSize(sampleMetadata));
+    }
+
     protected int toStudyId(String study) {
         int studyId;
         if (StringUtils.isEmpty(study)) {
@@ -477,6 +901,62 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return parse(query, region, false, false);
     }
 
+    /**
+     * Build a scan restricted to the given batches. Rows from other batches are skipped at the region servers.
+     *
+     * @param query   SingleSampleIndexQuery
+     * @param region  Region to scan
+     * @param batches Batches to read, by chromosome. If null, read all the batches from the region.
+     * @return Scan
+     * @throws IllegalArgumentException if none of the batches overlaps with the region
+     */
+    public Scan parse(SingleSampleIndexQuery query, Region region, Map<String, Set<Integer>> batches) {
+        Scan scan = parse(query, region);
+        if (batches != null) {
+            int sampleId = toSampleId(toStudyId(query.getStudy()), query.getSample());
+            List<MultiRowRangeFilter.RowRange> ranges = new ArrayList<>();
+            for (Map.Entry<String, Set<Integer>> entry : batches.entrySet()) {
+                for (Integer batchStart : entry.getValue()) {
+                    if (overlapsBatch(region, entry.getKey(), batchStart)) {
+                        byte[] rowKey = SampleIndexSchema.toRowKey(sampleId, entry.getKey(), batchStart);
+                        ranges.add(new MultiRowRangeFilter.RowRange(rowKey, true, rowKey, true));
+                    }
+                }
+            }
+            if (ranges.isEmpty()) {
+                throw new IllegalArgumentException("No batches to read from region " + region);
+            }
+            try {
+                scan.setFilter(buildMultiRowRangeFilter(ranges));
+            } catch (IOException e) {
+                throw VariantQueryException.internalException(e);
+            }
+            logger.info("Batches = " + ranges.size());
+        }
+        return scan;
+    }
+
+    protected static boolean overlapsBatches(Region region, Map<String, Set<Integer>> batches) {
+        if (batches == null) {
+            return true;
+        }
+        for (Map.Entry<String, Set<Integer>> entry : batches.entrySet()) {
+            for (Integer batchStart : entry.getValue()) {
+                if (overlapsBatch(region, entry.getKey(), batchStart)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected static boolean overlapsBatch(Region region, String chromosome, int batchStart) {
+        return region == null
+                || region.getChromosome().equals(chromosome)
+                && batchStart + SampleIndexSchema.BATCH_SIZE > region.getStart()
+                && batchStart <= region.getEnd();
+    }
+
     public Scan parseIncludeAll(SingleSampleIndexQuery query, Region region) {
         return parse(query, region, false, false, true);
     }
@@ -532,7 +1012,8 @@ public class SampleIndexDBAdaptor implements VariantIterable {
                         && query.getAnnotationIndexQuery().getConsequenceTypeMask() != EMPTY_MASK) {
                     scan.addColumn(family, SampleIndexSchema.toAnnotationCtBtIndexColumn(gt));
                 }
-                if (!/*includeAll ||*/ query.getAnnotationIndexQuery().getPopulationFrequencyQueries().isEmpty()) {
+                if (!/*includeAll ||*/ query.getAnnotationIndexQuery().getPopulationFrequencyQueries().isEmpty()
+                        || !query.getAnnotationIndexQuery().getFunctionalScoreQueries().isEmpty()) {
                     scan.addColumn(family, SampleIndexSchema.toAnnotationPopFreqIndexColumn(gt));
                 }
                 if (includeAll || query.getAnnotationIndexQuery().getClinicalMask() != EMPTY_MASK) {
@@ -574,6 +1055,9 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         for (PopulationFrequencyQuery pf : query.getAnnotationIndexQuery().getPopulationFrequencyQueries()) {
             logger.info("PopFreq         = " + pf);
         }
+        for (FunctionalScoreQuery fs : query.getAnnotationIndexQuery().getFunctionalScoreQueries()) {
+            logger.info("FunctionalScore = " + fs);
+        }
         if (query.getSampleFileIndexQuery().hasFileIndexMask1()) {
             boolean[] validFileIndex = query.getSampleFileIndexQuery().getValidFileIndex1();
             for (int i = 0; i < validFileIndex.length; i++) {
@@ -607,6 +1091,11 @@ public class SampleIndexDBAdaptor implements VariantIterable {
         return scan;
     }
 
+    // Constructor declares IOException in some HBase versions
+    private static Filter buildMultiRowRangeFilter(List<MultiRowRangeFilter.RowRange> ranges) throws IOException {
+        return new MultiRowRangeFilter(ranges);
+    }
+
     private int toSampleId(int studyId, String sample) {
         return metadataManager.getSampleId(studyId, sample);
     }
@@ -42,11 +42,34 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
     private final SampleIndexDBAdaptor dbAdaptor;
     private final VariantFileIndexConverter variantFileIndexConverter = new VariantFileIndexConverter();;
     private final boolean excludeGenotypes;
+    private final SampleIndexSummaryBuilder summaryBuilder;
 
     public SampleIndexDBLoader(SampleIndexDBAdaptor dbAdaptor, HBaseManager hBaseManager,
                                String tableName, VariantStorageMetadataManager metadataManager,
                                int studyId, int fileId, List<Integer> sampleIds,
                                SplitData splitData, ObjectMap options) {
+        this(dbAdaptor, hBaseManager, tableName, metadataManager, studyId, fileId, sampleIds, splitData, options, null);
+    }
+
+    /**
+     * Create a SampleIndexDBLoader that also maintains the SampleIndex summary of some samples.
+     * Only valid if the SampleIndex of those samples does not contain any other data.
+     *
+     * @param dbAdaptor       SampleIndexDBAdaptor
+     * @param hBaseManager    HBaseManager
+     * @param tableName       SampleIndex table
+     * @param metadataManager Metadata manager
+     * @param studyId         Study
+     * @param fileId          File being loaded
+     * @param sampleIds       Samples from the file
+     * @param splitData       Split data method, if any
+     * @param options         Options
+     * @param summaryBuilder  Summary builder. Null to skip the summary
+     */
+    public SampleIndexDBLoader(SampleIndexDBAdaptor dbAdaptor, HBaseManager hBaseManager,
+                               String tableName, VariantStorageMetadataManager metadataManager,
+                               int studyId, int fileId, List<Integer> sampleIds,
+                               SplitData splitData, ObjectMap options, SampleIndexSummaryBuilder summaryBuilder) {
         super(hBaseManager, tableName);
         this.studyId = studyId;
         this.sampleIds = sampleIds;
@@ -85,6 +108,10 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
                 EXCLUDE_GENOTYPES.key(),
                 EXCLUDE_GENOTYPES.defaultValue());
         this.dbAdaptor = dbAdaptor;
+        if (summaryBuilder != null && rebuildIndex) {
+            throw new IllegalArgumentException("Unable to maintain the SampleIndex summary while merging with existing data");
+        }
+        this.summaryBuilder = summaryBuilder;
     }
 
     private class Chunk implements Iterable<SampleIndexEntryPutBuilder> {
@@ -218,6 +245,9 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
         try {
             // Drain buffer
             mutate(getMutations(0));
+            if (summaryBuilder != null) {
+                summaryBuilder.flush();
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -239,6 +269,9 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
                 Put put = builder.build();
                 if (!put.isEmpty()) {
                     mutations.add(put);
+                    if (summaryBuilder != null) {
+                        summaryBuilder.add(null, put);
+                    }
 
                     if (chunk.isMerging() && !builder.isEmpty()) {
                         Delete delete = new Delete(put.getRow());
@@ -265,4 +298,8 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Mutati
     public HashSet<String> getLoadedGenotypes() {
         return genotypes;
     }
+
+    public SampleIndexSummaryBuilder getSummaryBuilder() {
+        return summaryBuilder;
+    }
 }
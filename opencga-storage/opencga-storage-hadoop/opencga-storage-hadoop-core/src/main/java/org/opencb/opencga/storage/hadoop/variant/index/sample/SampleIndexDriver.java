@@ -11,7 +11,9 @@ import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.filter.QualifierFilter;
 import org.apache.hadoop.hbase.filter.ValueFilter;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.MRJobConfig;
@@ -22,12 +24,14 @@ import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
 import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
 import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
 import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.AbstractVariantsTableDriver;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHBaseQueryParser;
@@ -86,6 +90,7 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
     private TreeSet<Integer> sampleIds;
     private Map<Integer, List<Integer>> sampleIdToFileIdMap;
     private Set<Integer> multiFileSamples;
+    private Set<Integer> summarySamples;
     private String region;
     private double partialScanSize;
     private List<String> fixedAttributes;
@@ -178,13 +183,23 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
             throw new IllegalArgumentException("empty samples!");
         }
 
+        // The summary is written from scratch. Requires a full build of the main genotypes.
+        boolean summary = SampleIndexSummaryBuilder.isEnabled(getConf())
+                && StringUtils.isEmpty(region)
+                && !secondaryOnly
+                && outputTable.equals(getTableNameGenerator().getSampleIndexTableName(study));
         sampleIdToFileIdMap = new HashMap<>();
         multiFileSamples = new HashSet<>();
+        summarySamples = new TreeSet<>();
         for (Integer sampleId : sampleIds) {
             SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(study, sampleId);
             sampleIdToFileIdMap.put(sampleMetadata.getId(), sampleMetadata.getFiles());
             if (sampleMetadata.isMultiFileSample()) {
                 multiFileSamples.add(sampleId);
+            } else if (summary && SampleIndexDBAdaptor.getSampleIndexStatus(sampleMetadata) != TaskMetadata.Status.READY) {
+                // The annotation of rewritten genotypes is not kept in the summary.
+                // Annotated samples get their summary on the next sample index annotation
+                summarySamples.add(sampleId);
             }
         }
 
@@ -316,6 +331,10 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
         } else {
             job.getConfiguration().set(SAMPLES, sampleIds.stream().map(Object::toString).collect(Collectors.joining(",")));
         }
+        if (!summarySamples.isEmpty()) {
+            SampleIndexSummaryBuilder.setSummarySamples(job.getConfiguration(),
+                    getTableNameGenerator().getSampleIndexSummaryTableName(study), summarySamples);
+        }
 
         return job;
     }
@@ -327,6 +346,27 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
         ObjectMap options = new ObjectMap();
         options.putAll(getParams());
         SampleIndexSchema.createTableIfNeeded(outputTable, getHBaseManager(), options);
+
+        SampleIndexSummaryBuilder.invalidate(getMetadataManager(), study, sampleIds);
+        if (!summarySamples.isEmpty()) {
+            SampleIndexSummaryBuilder.reset(getHBaseManager(), getTableNameGenerator().getSampleIndexSummaryTableName(study),
+                    summarySamples, options);
+        }
+    }
+
+    @Override
+    protected void postExecution(Job job) throws IOException, StorageEngineException {
+        super.postExecution(job);
+
+        if (job.isSuccessful() && !summarySamples.isEmpty()) {
+            Counter invalidSamples = job.getCounters()
+                    .findCounter(COUNTER_GROUP_NAME, SampleIndexSummaryBuilder.INVALID_SAMPLES_COUNTER);
+            if (invalidSamples.getValue() > 0) {
+                LOGGER.warn("Unable to build the SampleIndex summary of " + invalidSamples.getValue() + " samples");
+            } else {
+                SampleIndexSummaryBuilder.ready(getMetadataManager(), study, summarySamples);
+            }
+        }
     }
 
     public static void main(String[] args) throws Exception {
@@ -349,6 +389,12 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
         private boolean hasGenotype;
 
         private final Map<Integer, SampleIndexEntryPutBuilder> samplesMap = new HashMap<>();
+        private HBaseManager hBaseManager;
+        private SampleIndexSummaryBuilder summaryBuilder;
+        private String sampleIndexTable;
+        private String summaryChromosome;
+        // Samples from the current batch with summary
+        private final Set<Integer> summaryBatchSamples = new HashSet<>();
 
         @Override
         protected void setup(Context context) throws IOException, InterruptedException {
@@ -356,6 +402,11 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
             hasGenotype = context.getConfiguration().getBoolean(HAS_GENOTYPE, true);
             fileIndexConverter = new VariantFileIndexConverter();
 
+            hBaseManager = new HBaseManager(context.getConfiguration());
+            summaryBuilder = SampleIndexSummaryBuilder.fromConfiguration(hBaseManager, context.getConfiguration(),
+                    context.getTaskAttemptID().getTaskID().getId());
+            sampleIndexTable = context.getConfiguration().get(TableOutputFormat.OUTPUT_TABLE);
+
             int[] sampleIds = context.getConfiguration().getInts(SAMPLES);
             if (sampleIds == null || sampleIds.length == 0) {
                 samplesToCount = new HashSet<>(SAMPLES_TO_COUNT);
@@ -411,6 +462,10 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
 
             variantRow.forEachSample(sampleColumn -> {
                 int sampleId = sampleColumn.getSampleId();
+                if (summaryBuilder != null && summaryBuilder.contains(sampleId)) {
+                    // Any SampleIndex row of this sample in this batch, even if not rewritten, goes to the summary
+                    summaryBatchSamples.add(sampleId);
+                }
                 String gt;
                 boolean validGt;
                 if (hasGenotype) {
@@ -470,17 +525,49 @@ public class SampleIndexDriver extends AbstractVariantsTableDriver {
 
         @Override
         public void flush(Context context, String chromosome, int position) throws IOException, InterruptedException {
-
+            Map<Integer, Put> puts = new HashMap<>(samplesMap.size());
             for (SampleIndexEntryPutBuilder builder : samplesMap.values()) {
                 Put put = builder.build();
 
                 if (put == null || put.isEmpty()) {
                     context.getCounter(COUNTER_GROUP_NAME, "empty_put").increment(1);
                 } else {
-                    context.write(new ImmutableBytesWritable(put.getRow()), put);
+                    puts.put(SampleIndexSchema.sampleIdFromRowKey(put.getRow()), put);
                 }
             }
             samplesMap.clear();
+
+            if (summaryBuilder != null && !summaryBatchSamples.isEmpty()) {
+                if (summaryChromosome != null && !summaryChromosome.equals(chromosome)) {
+                    summaryBuilder.flush(summaryChromosome);
+                }
+                summaryChromosome = chromosome;
+                List<Put> summaryPuts = new ArrayList<>(summaryBatchSamples.size());
+                for (Integer sampleId : summaryBatchSamples) {
+                    Put put = puts.get(sampleId);
+                    if (put == null) {
+                        put = new Put(SampleIndexSchema.toRowKey(sampleId, chromosome, position));
+                    }
+                    summaryPuts.add(put);
+                }
+                summaryBuilder.add(sampleIndexTable, summaryPuts);
+                summaryBatchSamples.clear();
+            }
+
+            for (Put put : puts.values()) {
+                context.write(new ImmutableBytesWritable(put.getRow()), put);
+            }
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            super.cleanup(context);
+            if (summaryBuilder != null) {
+                summaryBuilder.flush();
+                context.getCounter(COUNTER_GROUP_NAME, SampleIndexSummaryBuilder.INVALID_SAMPLES_COUNTER)
+                        .increment(summaryBuilder.getInvalidSamples().size());
+            }
+            hBaseManager.close();
         }
     }
 
@@ -28,6 +28,7 @@ public class SampleIndexEntry {
     private int mendelianVariantsOffset;
     private int discrepancies;
     private SampleIndexConfiguration configuration;
+    private int rangeIndexSize;
 
     public SampleIndexEntry(int sampleId, String chromosome, int batchStart, SampleIndexConfiguration configuration) {
         this.sampleId = sampleId;
@@ -35,6 +36,7 @@ public class SampleIndexEntry {
         this.batchStart = batchStart;
         this.gts = new HashMap<>(4);
         this.configuration = configuration;
+        this.rangeIndexSize = configuration.getRangeIndexSize();
     }
 
     public String getChromosome() {
@@ -114,6 +116,21 @@ public class SampleIndexEntry {
         return configuration;
     }
 
+    /**
+     * Number of ranges per variant in the range index of this entry.
+     * Might not match the current configuration if the sample was annotated with a previous configuration.
+     *
+     * @return Number of ranges
+     */
+    public int getRangeIndexSize() {
+        return rangeIndexSize;
+    }
+
+    public SampleIndexEntry setRangeIndexSize(int rangeIndexSize) {
+        this.rangeIndexSize = rangeIndexSize;
+        return this;
+    }
+
     public SampleIndexEntryIterator iterator(String gt) {
         return new SampleIndexVariantBiConverter().toVariantsIterator(this, gt);
     }
@@ -23,6 +23,7 @@ import org.opencb.opencga.storage.core.variant.query.*;
 import org.opencb.opencga.storage.hadoop.variant.index.IndexUtils;
 import org.opencb.opencga.storage.hadoop.variant.index.family.GenotypeCodec;
 import org.opencb.opencga.storage.hadoop.variant.index.query.*;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.FunctionalScoreQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleAnnotationIndexQuery.PopulationFrequencyQuery;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration.PopulationFrequencyRange;
 import org.slf4j.Logger;
@@ -397,8 +398,21 @@ public class SampleIndexQueryParser {
             allSamplesAnnotated = false;
         }
 
+        // The range index (population frequencies and functional scores) can only be used if all the samples
+        // were annotated with the current configuration, as the ranges might have changed.
+        boolean rangeIndex = true;
+        for (String sample : samplesMap.keySet()) {
+            Integer sampleId = metadataManager.getSampleId(studyId, sample);
+            SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
+            if (SampleIndexAnnotationLoader.getAnnotationVersion(sampleMetadata) != configuration.getVersion()
+                    || SampleIndexAnnotationLoader.getAnnotationRangeIndexSize(sampleMetadata) != configuration.getRangeIndexSize()) {
+                rangeIndex = false;
+                break;
+            }
+        }
+
         boolean completeIndex = allSamplesAnnotated && !partialIndex;
-        SampleAnnotationIndexQuery annotationIndexQuery = parseAnnotationIndexQuery(query, completeIndex);
+        SampleAnnotationIndexQuery annotationIndexQuery = parseAnnotationIndexQuery(query, completeIndex, rangeIndex);
         Set<VariantType> variantTypes = null;
         if (isValidParam(query, TYPE)) {
             List<String> typesStr = query.getAsStringList(VariantQueryParam.TYPE.key());
@@ -766,6 +780,19 @@ public class SampleIndexQueryParser {
      * @return SampleAnnotationIndexQuery
      */
     protected SampleAnnotationIndexQuery parseAnnotationIndexQuery(Query query, boolean completeIndex) {
+        return parseAnnotationIndexQuery(query, completeIndex, true);
+    }
+
+    /**
+     * Builds the SampleAnnotationIndexQuery given a VariantQuery.
+     *
+     * @param query Input VariantQuery. If the index is complete, covered filters could be removed from here.
+     * @param completeIndex Indicates if the index is complete for the samples in the query.
+     * @param rangeIndex Indicates if the range index of the samples in the query matches the current configuration.
+     *                   If not, population frequency and functional score filters won't use the range index.
+     * @return SampleAnnotationIndexQuery
+     */
+    protected SampleAnnotationIndexQuery parseAnnotationIndexQuery(Query query, boolean completeIndex, boolean rangeIndex) {
         byte annotationIndex = 0;
         byte biotypeMask = 0;
         short consequenceTypeMask = 0;
@@ -970,6 +997,10 @@ public class SampleIndexQueryParser {
             Set<String> studyPops = new HashSet<>();
             Set<String> popFreqLessThan001 = new HashSet<>();
             List<String> filtersNotCoveredByPopFreqQuery = new ArrayList<>(popFreqFilter.getValues().size());
+            // Without range index, no population is covered
+            List<PopulationFrequencyRange> populationRanges = rangeIndex
+                    ? configuration.getPopulationRanges()
+                    : Collections.emptyList();
 
             for (String popFreq : popFreqFilter) {
                 KeyOpValue<String, String> keyOpValue = VariantQueryUtils.parseKeyOpValue(popFreq);
@@ -985,7 +1016,7 @@ public class SampleIndexQueryParser {
                 boolean populationInSampleIndex = false;
                 boolean populationFilterFullyCovered = false;
                 int popFreqIdx = 0;
-                for (PopulationFrequencyRange populationRange : configuration.getPopulationRanges()) {
+                for (PopulationFrequencyRange populationRange : populationRanges) {
                     if (populationRange.getStudyAndPopulation().equals(studyPop)) {
                         populationInSampleIndex = true;
                         RangeQuery rangeQuery = getRangeQuery(keyOpValue.getOp(), freqFilter, populationRange.getThresholds(),
@@ -1053,6 +1084,12 @@ public class SampleIndexQueryParser {
             }
         }
 
+        List<FunctionalScoreQuery> functionalScoreQuery = new ArrayList<>();
+        if (rangeIndex) {
+            functionalScoreQuery.addAll(parseFunctionalScoreQuery(query, ANNOT_FUNCTIONAL_SCORE, completeIndex));
+            functionalScoreQuery.addAll(parseFunctionalScoreQuery(query, ANNOT_CONSERVATION, completeIndex));
+        }
+
         byte annotationIndexMask = annotationIndex;
         if (intergenic != null) {
             annotationIndexMask |= INTERGENIC_MASK;
@@ -1069,7 +1106,45 @@ public class SampleIndexQueryParser {
 
 
         return new SampleAnnotationIndexQuery(new byte[]{annotationIndexMask, annotationIndex}, consequenceTypeMask, biotypeMask,
-                clinicalMask, popFreqOp, popFreqQuery, popFreqPartial);
+                clinicalMask, popFreqOp, popFreqQuery, popFreqPartial, functionalScoreQuery);
+    }
+
+    private List<FunctionalScoreQuery> parseFunctionalScoreQuery(Query query, VariantQueryParam param, boolean completeIndex) {
+        if (!isValidParam(query, param) || configuration.getFunctionalScoreRanges().isEmpty()) {
+            return Collections.emptyList();
+        }
+        ParsedQuery<String> filter = VariantQueryUtils.splitValue(query, param);
+        if (QueryOperation.OR.equals(filter.getOperation()) && filter.getValues().size() > 1) {
+            // Only AND queries can be used to discard variants
+            return Collections.emptyList();
+        }
+        List<FunctionalScoreQuery> functionalScoreQuery = new ArrayList<>(filter.getValues().size());
+        List<String> filtersNotCovered = new ArrayList<>(filter.getValues().size());
+        for (String value : filter) {
+            KeyOpValue<String, String> keyOpValue = VariantQueryUtils.parseKeyOpValue(value);
+            int position = configuration.getFunctionalScorePosition(keyOpValue.getKey());
+            if (position < 0) {
+                filtersNotCovered.add(value);
+                continue;
+            }
+            double[] thresholds = configuration.getFunctionalScoreRanges()
+                    .get(position - configuration.getPopulationRanges().size()).getThresholds();
+            RangeQuery rangeQuery = getRangeQuery(keyOpValue.getOp(), Double.parseDouble(keyOpValue.getValue()), thresholds,
+                    -Double.MAX_VALUE, Double.MAX_VALUE);
+            functionalScoreQuery.add(new FunctionalScoreQuery(rangeQuery, position, keyOpValue.getKey()));
+            // Variants without score are stored in the first range. Only ranges excluding the first one are fully covered.
+            if (!rangeQuery.isExactQuery() || rangeQuery.getMinCodeInclusive() == 0) {
+                filtersNotCovered.add(value);
+            }
+        }
+        if (completeIndex) {
+            if (filtersNotCovered.isEmpty()) {
+                query.remove(param.key());
+            } else {
+                query.put(param.key(), String.join(QueryOperation.AND.separator(), filtersNotCovered));
+            }
+        }
+        return functionalScoreQuery;
     }
 
     private boolean simpleCombination(BiotypeConsquenceTypeFlagCombination combination) {
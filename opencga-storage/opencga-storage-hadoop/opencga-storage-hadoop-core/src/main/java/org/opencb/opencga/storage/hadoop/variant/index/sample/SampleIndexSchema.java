@@ -91,10 +91,15 @@ public final class SampleIndexSchema {
     static final byte[] ANNOTATION_POP_FREQ_PREFIX_BYTES = Bytes.toBytes(ANNOTATION_POP_FREQ_PREFIX);
     static final String ANNOTATION_CLINICAL_PREFIX = META_PREFIX + "CL_";
     static final byte[] ANNOTATION_CLINICAL_PREFIX_BYTES = Bytes.toBytes(ANNOTATION_CLINICAL_PREFIX);
+    static final String ANNOTATION_GENE_PREFIX = META_PREFIX + "GN_";
+    static final byte[] ANNOTATION_GENE_PREFIX_BYTES = Bytes.toBytes(ANNOTATION_GENE_PREFIX);
 
     static final String PENDING_VARIANT_PREFIX = META_PREFIX + "V_";
     static final byte[] PENDING_VARIANT_PREFIX_BYTES = Bytes.toBytes(PENDING_VARIANT_PREFIX);
 
+    static final String SUMMARY_PREFIX = META_PREFIX + "S_";
+    static final byte[] SUMMARY_PREFIX_BYTES = Bytes.toBytes(SUMMARY_PREFIX);
+
     private SampleIndexSchema() {
     }
 
@@ -139,6 +144,24 @@ public final class SampleIndexSchema {
         return offset;
     }
 
+    /**
+     * RowKey of the SampleIndex summary table. One row per sample and chromosome.
+     *
+     * @param sample     Sample id
+     * @param chromosome Chromosome
+     * @return RowKey
+     */
+    public static byte[] toSummaryRowKey(int sample, String chromosome) {
+        byte[] rk = new byte[SIZEOF_INT + chromosome.length()];
+        int offset = PInteger.INSTANCE.toBytes(sample, rk, 0);
+        PVarchar.INSTANCE.toBytes(chromosome, rk, offset);
+        return rk;
+    }
+
+    public static String chromosomeFromSummaryRowKey(byte[] row) {
+        return (String) PVarchar.INSTANCE.toObject(row, SIZEOF_INT, row.length - SIZEOF_INT);
+    }
+
     public static String rowKeyToString(byte[] row) {
         if (row == null || row.length == 0) {
             return null;
@@ -186,6 +209,37 @@ public final class SampleIndexSchema {
         return Bytes.toBytes(GENOTYPE_COUNT_PREFIX + genotype);
     }
 
+    /**
+     * Column of the SampleIndex summary table.
+     * Contains the number of variants with this genotype and summary key, as counted by one single writer.
+     *
+     * @param genotype Genotype
+     * @param key      Summary key. See {@link SampleIndexSummary#toKey}
+     * @param writer   Writer id
+     * @return Column name
+     */
+    public static byte[] toSummaryColumn(String genotype, int key, int writer) {
+        byte[] gt = Bytes.toBytes(genotype);
+        byte[] column = new byte[SUMMARY_PREFIX_BYTES.length + SIZEOF_INT * 2 + gt.length];
+        int offset = Bytes.putBytes(column, 0, SUMMARY_PREFIX_BYTES, 0, SUMMARY_PREFIX_BYTES.length);
+        offset = Bytes.putInt(column, offset, key);
+        offset = Bytes.putInt(column, offset, writer);
+        Bytes.putBytes(column, offset, gt, 0, gt.length);
+        return column;
+    }
+
+    public static int getSummaryKey(Cell cell) {
+        return Bytes.toInt(cell.getQualifierArray(), cell.getQualifierOffset() + SUMMARY_PREFIX_BYTES.length);
+    }
+
+    public static String getSummaryGt(Cell cell) {
+        int prefixLength = SUMMARY_PREFIX_BYTES.length + SIZEOF_INT * 2;
+        return Bytes.toString(
+                cell.getQualifierArray(),
+                cell.getQualifierOffset() + prefixLength,
+                cell.getQualifierLength() - prefixLength);
+    }
+
     public static byte[] toPendingColumn(Variant variant, String gt) {
         return Bytes.toBytes(PENDING_VARIANT_PREFIX + variant.toString() + '_' + gt);
     }
@@ -218,6 +272,10 @@ public final class SampleIndexSchema {
         return Bytes.toBytes(ANNOTATION_CLINICAL_PREFIX + genotype);
     }
 
+    public static byte[] toAnnotationGeneIndexColumn(String genotype) {
+        return Bytes.toBytes(ANNOTATION_GENE_PREFIX + genotype);
+    }
+
     public static byte[] toFileIndexColumn(String genotype) {
         return Bytes.toBytes(FILE_PREFIX + genotype);
     }
@@ -0,0 +1,192 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.commons.lang3.mutable.MutableLong;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SampleFileIndexQuery;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.opencb.opencga.storage.hadoop.variant.index.IndexUtils.*;
+
+/**
+ * Pre-aggregated counts of the SampleIndex of one sample in one chromosome.
+ *
+ * For each genotype, contains the joint histogram of the annotation summary index and the file index values.
+ * This is enough to count the variants matching any combination of annotation summary and file filters,
+ * without reading the SampleIndex.
+ *
+ * Each writer stores its own counts in separate columns. The summary is the sum of all of them.
+ */
+public class SampleIndexSummary {
+
+    private static final int FILE_INDEX_MASK = 0xFFFF;
+    private static final int HAS_FILE_INDEX = 1 << 16;
+    private static final int ANNOTATION_SHIFT = 17;
+    private static final int HAS_ANNOTATION = 1 << 25;
+
+    private final int sampleId;
+    private final String chromosome;
+    private final Map<String, GtSummary> gts;
+
+    public SampleIndexSummary(int sampleId, String chromosome) {
+        this.sampleId = sampleId;
+        this.chromosome = chromosome;
+        gts = new TreeMap<>();
+    }
+
+    public static SampleIndexSummary fromResult(Result result) {
+        byte[] row = result.getRow();
+        SampleIndexSummary summary = new SampleIndexSummary(
+                SampleIndexSchema.sampleIdFromRowKey(row),
+                SampleIndexSchema.chromosomeFromSummaryRowKey(row));
+        for (Cell cell : result.rawCells()) {
+            String gt = SampleIndexSchema.getSummaryGt(cell);
+            int key = SampleIndexSchema.getSummaryKey(cell);
+            long value = Bytes.toLong(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+            summary.gts.computeIfAbsent(gt, k -> new GtSummary()).add(key, value);
+        }
+        return summary;
+    }
+
+    public Put toPut(byte[] family, int writer) {
+        Put put = new Put(SampleIndexSchema.toSummaryRowKey(sampleId, chromosome));
+        for (Map.Entry<String, GtSummary> entry : gts.entrySet()) {
+            for (Map.Entry<Integer, MutableLong> keyCount : entry.getValue().counts.entrySet()) {
+                put.addColumn(family, SampleIndexSchema.toSummaryColumn(entry.getKey(), keyCount.getKey(), writer),
+                        Bytes.toBytes(keyCount.getValue().longValue()));
+            }
+        }
+        return put;
+    }
+
+    /**
+     * Add the variants of one genotype from a SampleIndex row. Must belong to the same sample and chromosome.
+     *
+     * @param gt              Genotype
+     * @param count           Number of variants
+     * @param fileIndex       File index column, with one value per variant. Null if missing.
+     * @param annotationIndex Annotation summary index column, with one value per variant. Null if missing.
+     */
+    public void add(String gt, int count, byte[] fileIndex, byte[] annotationIndex) {
+        GtSummary gtSummary = gts.computeIfAbsent(gt, k -> new GtSummary());
+        for (int i = 0; i < count; i++) {
+            boolean hasFileIndex = fileIndex != null;
+            short fileIndexValue = hasFileIndex ? Bytes.toShort(fileIndex, i * Short.BYTES) : 0;
+            boolean hasAnnotation = annotationIndex != null;
+            byte annotationValue = hasAnnotation ? annotationIndex[i] : 0;
+            gtSummary.add(toKey(hasAnnotation, annotationValue, hasFileIndex, fileIndexValue), 1);
+        }
+    }
+
+    /**
+     * Joint key of the annotation summary index and the file index of a variant.
+     *
+     * @param hasAnnotation   If the variant has annotation summary index
+     * @param annotationIndex Annotation summary index
+     * @param hasFileIndex    If the variant has file index
+     * @param fileIndex       File index
+     * @return Summary key
+     */
+    public static int toKey(boolean hasAnnotation, byte annotationIndex, boolean hasFileIndex, short fileIndex) {
+        int key = 0;
+        if (hasFileIndex) {
+            key |= HAS_FILE_INDEX | (fileIndex & FILE_INDEX_MASK);
+        }
+        if (hasAnnotation) {
+            key |= HAS_ANNOTATION | (Byte.toUnsignedInt(annotationIndex) << ANNOTATION_SHIFT);
+        }
+        return key;
+    }
+
+    public boolean isEmpty() {
+        return gts.isEmpty();
+    }
+
+    public int getSampleId() {
+        return sampleId;
+    }
+
+    public String getChromosome() {
+        return chromosome;
+    }
+
+    public Map<String, GtSummary> getGts() {
+        return gts;
+    }
+
+    public GtSummary getGtSummary(String gt) {
+        return gts.get(gt);
+    }
+
+    @Override
+    public String toString() {
+        return "SampleIndexSummary{"
+                + "sampleId=" + sampleId
+                + ", chromosome='" + chromosome + '\''
+                + ", gts=" + gts
+                + '}';
+    }
+
+    public static class GtSummary {
+        private long count;
+        private final Map<Integer, MutableLong> counts = new HashMap<>();
+
+        private void add(int key, long value) {
+            counts.computeIfAbsent(key, k -> new MutableLong()).add(value);
+            count += value;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Count variants matching both the annotation summary index filter and the file index filter.
+         * Same as {@link AbstractSampleIndexEntryFilter}, non annotated variants and variants without file index
+         * are not discarded by the corresponding filter.
+         * File index filters are only valid for samples with one single file.
+         *
+         * @param annotationMask  Annotation index mask
+         * @param annotationIndex Annotation index value
+         * @param fileQuery       File index query
+         * @return Number of variants
+         */
+        public long count(byte annotationMask, byte annotationIndex, SampleFileIndexQuery fileQuery) {
+            boolean annotationFilter = annotationMask != EMPTY_MASK;
+            boolean fileFilter = fileQuery != null && fileQuery.getFileIndexMask() != EMPTY_MASK;
+            if (!annotationFilter && !fileFilter) {
+                return count;
+            }
+            long c = 0;
+            for (Map.Entry<Integer, MutableLong> entry : counts.entrySet()) {
+                int key = entry.getKey();
+                if (annotationFilter && (key & HAS_ANNOTATION) != 0
+                        && !testIndex((byte) (key >>> ANNOTATION_SHIFT), annotationMask, annotationIndex)) {
+                    continue;
+                }
+                if (fileFilter && (key & HAS_FILE_INDEX) != 0) {
+                    int v = key & FILE_INDEX_MASK & fileQuery.getFileIndexMask();
+                    if ((fileQuery.hasFileIndexMask1() && !fileQuery.getValidFileIndex1()[getByte1(v)])
+                            || (fileQuery.hasFileIndexMask2() && !fileQuery.getValidFileIndex2()[getByte2(v)])) {
+                        continue;
+                    }
+                }
+                c += entry.getValue().longValue();
+            }
+            return c;
+        }
+
+        @Override
+        public String toString() {
+            return "GtSummary{"
+                    + "count=" + count
+                    + ", keys=" + counts.size()
+                    + '}';
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.MultipleColumnPrefixFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.opencb.opencga.storage.hadoop.variant.index.sample.HBaseToSampleIndexConverter.columnStartsWith;
+import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema.*;
+
+/**
+ * Maintains the {@link SampleIndexSummary} of a set of samples from the SampleIndex writers.
+ *
+ * Writers add the SampleIndex rows they write, and flush the counts of each chromosome to the summary table.
+ * Each writer stores its counts in its own columns, so writing the same counts again (e.g. from a retried task)
+ * overwrites them instead of adding them twice.
+ *
+ * The summary of a sample is only used while its status {@link #SAMPLE_INDEX_SUMMARY_STATUS} is READY.
+ * Any operation modifying the SampleIndex of a sample without maintaining its summary must {@link #invalidate} it.
+ */
+public class SampleIndexSummaryBuilder {
+
+    public static final String SAMPLE_INDEX_SUMMARY_STATUS = "sampleIndexSummary";
+    public static final String INVALID_SAMPLES_COUNTER = "summary_invalid_samples";
+
+    private static final String SUMMARY_TABLE = "SampleIndexSummaryBuilder.summaryTable";
+    private static final String SUMMARY_SAMPLES = "SampleIndexSummaryBuilder.samples";
+
+    private static final byte[][] SUMMARY_SOURCE_PREFIXES = new byte[][]{
+            GENOTYPE_COUNT_PREFIX_BYTES, FILE_PREFIX_BYTES, ANNOTATION_SUMMARY_PREFIX_BYTES};
+
+    private final HBaseManager hBaseManager;
+    private final String summaryTable;
+    private final int writer;
+    private final Set<Integer> sampleIds;
+    private final byte[] family;
+    // Chromosome -> SampleId -> Summary
+    private final Map<String, Map<Integer, SampleIndexSummary>> summaries = new HashMap<>();
+    private final Set<Integer> invalidSamples = new HashSet<>();
+    private static Logger logger = LoggerFactory.getLogger(SampleIndexSummaryBuilder.class);
+
+    /**
+     * Create a summary builder for one writer.
+     *
+     * @param hBaseManager HBaseManager
+     * @param summaryTable SampleIndex summary table
+     * @param writer       Writer id. Must be unique among all the writers of these samples since their last {@link #reset}
+     * @param sampleIds    Samples to summarize. Rows from other samples are ignored
+     */
+    public SampleIndexSummaryBuilder(HBaseManager hBaseManager, String summaryTable, int writer, Collection<Integer> sampleIds) {
+        this.hBaseManager = hBaseManager;
+        this.summaryTable = summaryTable;
+        this.writer = writer;
+        this.sampleIds = new HashSet<>(sampleIds);
+        family = GenomeHelper.COLUMN_FAMILY_BYTES;
+    }
+
+    public boolean contains(int sampleId) {
+        return sampleIds.contains(sampleId);
+    }
+
+    /**
+     * Add a SampleIndex row, as it will be after writing the put.
+     *
+     * Genotypes rewritten by the put, i.e. with a new count, only keep the file and annotation indexes from the put.
+     * Any other genotype keeps the indexes from the current content of the row.
+     *
+     * @param current Current content of the row. Null for new rows.
+     * @param put     Put to be written
+     */
+    public void add(Result current, Put put) {
+        byte[] row = put.getRow();
+        int sampleId = sampleIdFromRowKey(row);
+        if (!sampleIds.contains(sampleId) || invalidSamples.contains(sampleId)) {
+            return;
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        Map<String, byte[]> fileIndexes = new HashMap<>();
+        Map<String, byte[]> annotationIndexes = new HashMap<>();
+        if (current != null && !current.isEmpty()) {
+            for (Cell cell : current.rawCells()) {
+                read(cell, counts, fileIndexes, annotationIndexes);
+            }
+        }
+        List<Cell> cells = put.getFamilyCellMap().getOrDefault(family, Collections.emptyList());
+        for (Cell cell : cells) {
+            if (columnStartsWith(cell, GENOTYPE_COUNT_PREFIX_BYTES)) {
+                String gt = getGt(cell, GENOTYPE_COUNT_PREFIX_BYTES);
+                fileIndexes.remove(gt);
+                annotationIndexes.remove(gt);
+            }
+        }
+        for (Cell cell : cells) {
+            read(cell, counts, fileIndexes, annotationIndexes);
+        }
+
+        String chromosome = chromosomeFromRowKey(row);
+        SampleIndexSummary summary = summaries.computeIfAbsent(chromosome, k -> new HashMap<>())
+                .computeIfAbsent(sampleId, k -> new SampleIndexSummary(sampleId, chromosome));
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            String gt = entry.getKey();
+            int count = entry.getValue();
+            byte[] fileIndex = fileIndexes.get(gt);
+            byte[] annotationIndex = annotationIndexes.get(gt);
+            if ((fileIndex != null && fileIndex.length != count * VariantFileIndexConverter.BYTES)
+                    || (annotationIndex != null && annotationIndex.length != count)) {
+                logger.warn("Unable to summarize sample " + sampleId + ". Unexpected index size at row "
+                        + rowKeyToString(row) + ", gt " + gt);
+                invalidSamples.add(sampleId);
+                for (Map<Integer, SampleIndexSummary> map : summaries.values()) {
+                    map.remove(sampleId);
+                }
+                return;
+            }
+            summary.add(gt, count, fileIndex, annotationIndex);
+        }
+    }
+
+    /**
+     * Add a list of SampleIndex rows, as they will be after writing the puts.
+     * Reads the current content of the rows from the SampleIndex table.
+     *
+     * @param sampleIndexTable SampleIndex table
+     * @param puts             Puts to be written. Might be empty, to add an existing row without modifications.
+     * @throws IOException on error reading the table
+     */
+    public void add(String sampleIndexTable, List<Put> puts) throws IOException {
+        if (puts.isEmpty()) {
+            return;
+        }
+        List<Get> gets = new ArrayList<>(puts.size());
+        for (Put put : puts) {
+            Get get = new Get(put.getRow());
+            get.addFamily(family);
+            get.setFilter(new MultipleColumnPrefixFilter(SUMMARY_SOURCE_PREFIXES));
+            gets.add(get);
+        }
+        Result[] results = hBaseManager.act(sampleIndexTable, (HBaseManager.HBaseTableFunction<Result[]>) table -> table.get(gets));
+        for (int i = 0; i < puts.size(); i++) {
+            add(results[i], puts.get(i));
+        }
+    }
+
+    private static void read(Cell cell, Map<String, Integer> counts, Map<String, byte[]> fileIndexes,
+                             Map<String, byte[]> annotationIndexes) {
+        if (columnStartsWith(cell, GENOTYPE_COUNT_PREFIX_BYTES)) {
+            counts.put(getGt(cell, GENOTYPE_COUNT_PREFIX_BYTES),
+                    Bytes.toInt(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()));
+        } else if (columnStartsWith(cell, FILE_PREFIX_BYTES)) {
+            fileIndexes.put(getGt(cell, FILE_PREFIX_BYTES), CellUtil.cloneValue(cell));
+        } else if (columnStartsWith(cell, ANNOTATION_SUMMARY_PREFIX_BYTES)) {
+            annotationIndexes.put(getGt(cell, ANNOTATION_SUMMARY_PREFIX_BYTES), CellUtil.cloneValue(cell));
+        }
+    }
+
+    /**
+     * Write the counts of one chromosome, and remove them from memory.
+     * Each chromosome must be flushed only once per writer.
+     *
+     * @param chromosome Chromosome
+     * @throws IOException on error writing the table
+     */
+    public void flush(String chromosome) throws IOException {
+        Map<Integer, SampleIndexSummary> chromosomeSummaries = summaries.remove(chromosome);
+        if (chromosomeSummaries == null) {
+            return;
+        }
+        List<Put> puts = new ArrayList<>(chromosomeSummaries.size());
+        for (SampleIndexSummary summary : chromosomeSummaries.values()) {
+            if (!summary.isEmpty()) {
+                puts.add(summary.toPut(family, writer));
+            }
+        }
+        if (!puts.isEmpty()) {
+            hBaseManager.act(summaryTable, table -> {
+                table.put(puts);
+            });
+        }
+    }
+
+    /**
+     * Write the counts of all chromosomes.
+     *
+     * @throws IOException on error writing the table
+     */
+    public void flush() throws IOException {
+        for (String chromosome : new ArrayList<>(summaries.keySet())) {
+            flush(chromosome);
+        }
+    }
+
+    /**
+     * Samples with unexpected SampleIndex content. Their summary is not complete, and should not be marked as READY.
+     *
+     * @return Invalid samples
+     */
+    public Set<Integer> getInvalidSamples() {
+        return invalidSamples;
+    }
+
+    /**
+     * Configure the MapReduce writers of the SampleIndex to maintain the summary of some samples.
+     *
+     * @param conf         Job configuration
+     * @param summaryTable SampleIndex summary table
+     * @param sampleIds    Samples to summarize
+     */
+    public static void setSummarySamples(Configuration conf, String summaryTable, Collection<Integer> sampleIds) {
+        conf.set(SUMMARY_TABLE, summaryTable);
+        conf.set(SUMMARY_SAMPLES, sampleIds.stream().map(Object::toString).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * Create the summary builder of a MapReduce task, if configured with {@link #setSummarySamples}.
+     *
+     * @param hBaseManager HBaseManager
+     * @param conf         Job configuration
+     * @param writer       Writer id. Should be the task id, so retried tasks overwrite their own counts
+     * @return Summary builder, or null if there are no samples to summarize
+     */
+    public static SampleIndexSummaryBuilder fromConfiguration(HBaseManager hBaseManager, Configuration conf, int writer) {
+        int[] sampleIds = conf.getInts(SUMMARY_SAMPLES);
+        if (sampleIds == null || sampleIds.length == 0) {
+            return null;
+        }
+        List<Integer> sampleIdsList = new ArrayList<>(sampleIds.length);
+        for (int sampleId : sampleIds) {
+            sampleIdsList.add(sampleId);
+        }
+        return new SampleIndexSummaryBuilder(hBaseManager, conf.get(SUMMARY_TABLE), writer, sampleIdsList);
+    }
+
+    public static boolean isEnabled(ObjectMap options) {
+        return options.getBoolean(HadoopVariantStorageOptions.SAMPLE_INDEX_SUMMARY_ENABLED.key(),
+                HadoopVariantStorageOptions.SAMPLE_INDEX_SUMMARY_ENABLED.defaultValue());
+    }
+
+    public static boolean isEnabled(Configuration conf) {
+        return conf.getBoolean(HadoopVariantStorageOptions.SAMPLE_INDEX_SUMMARY_ENABLED.key(),
+                HadoopVariantStorageOptions.SAMPLE_INDEX_SUMMARY_ENABLED.defaultValue());
+    }
+
+    /**
+     * Remove the summary of the given samples, before writing it again from scratch.
+     * Creates the summary table if needed.
+     *
+     * @param hBaseManager HBaseManager
+     * @param summaryTable SampleIndex summary table
+     * @param sampleIds    Samples to reset
+     * @param options      Options to create the table
+     * @throws IOException on error accessing the table
+     */
+    public static void reset(HBaseManager hBaseManager, String summaryTable, Collection<Integer> sampleIds, ObjectMap options)
+            throws IOException {
+        SampleIndexSchema.createTableIfNeeded(summaryTable, hBaseManager, options);
+        hBaseManager.act(summaryTable, table -> {
+            List<Delete> deletes = new ArrayList<>();
+            for (Integer sampleId : sampleIds) {
+                Scan scan = new Scan();
+                scan.setRowPrefixFilter(SampleIndexSchema.toRowKey(sampleId));
+                scan.setFilter(new KeyOnlyFilter());
+                try (ResultScanner scanner = table.getScanner(scan)) {
+                    for (Result result : scanner) {
+                        deletes.add(new Delete(result.getRow()));
+                    }
+                }
+            }
+            if (!deletes.isEmpty()) {
+                table.delete(deletes);
+            }
+        });
+    }
+
+    public static void invalidate(VariantStorageMetadataManager metadataManager, int studyId, Collection<Integer> sampleIds)
+            throws StorageEngineException {
+        for (Integer sampleId : sampleIds) {
+            SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
+            if (SampleIndexDBAdaptor.getSampleIndexSummaryStatus(sampleMetadata) != TaskMetadata.Status.NONE) {
+                metadataManager.updateSampleMetadata(studyId, sampleId,
+                        sm -> SampleIndexDBAdaptor.setSampleIndexSummaryStatus(sm, TaskMetadata.Status.NONE));
+            }
+        }
+    }
+
+    public static void ready(VariantStorageMetadataManager metadataManager, int studyId, Collection<Integer> sampleIds)
+            throws StorageEngineException {
+        for (Integer sampleId : sampleIds) {
+            metadataManager.updateSampleMetadata(studyId, sampleId,
+                    sm -> SampleIndexDBAdaptor.setSampleIndexSummaryStatus(sm, TaskMetadata.Status.READY));
+        }
+    }
+}
@@ -151,21 +151,19 @@ public class SampleIndexVariantBiConverter {
 
     public SampleIndexEntryIterator toVariantsIterator(SampleIndexEntry entry, String gt) {
         SampleIndexEntry.SampleIndexGtEntry gtEntry = entry.getGts().get(gt);
-        SampleIndexConfiguration configuration = entry.getConfiguration();
         if (gtEntry == null || gtEntry.getVariantsLength() <= 0) {
             return EmptySampleIndexEntryIterator.emptyIterator();
         } else {
-            return new ByteSampleIndexGtEntryIterator(entry.getChromosome(), entry.getBatchStart(), gtEntry, configuration);
+            return new ByteSampleIndexGtEntryIterator(entry.getChromosome(), entry.getBatchStart(), gtEntry, entry.getRangeIndexSize());
         }
     }
 
     public SampleIndexEntryIterator toVariantsCountIterator(SampleIndexEntry entry, String gt) {
-        return new CountSampleIndexGtEntryIterator(entry.getGtEntry(gt), entry.getConfiguration());
+        return new CountSampleIndexGtEntryIterator(entry.getGtEntry(gt), entry.getRangeIndexSize());
     }
 
     private abstract static class SampleIndexGtEntryIterator implements SampleIndexEntryIterator {
         protected SampleIndexEntry.SampleIndexGtEntry gtEntry;
-        private SampleIndexConfiguration configuration;
         private BitInputStream popFreq;
         private BitInputStream ctBtIndex;
         private int nonIntergenicCount;
@@ -176,6 +174,9 @@ public class SampleIndexVariantBiConverter {
         // Reuse the annotation index entry. Avoid create a new instance for each variant.
         private final AnnotationIndexEntry annotationIndexEntry;
         private int annotationIndexEntryIdx;
+        // Reuse the arrays read from the bit streams
+        private final byte[] ctBtMatrix;
+        private byte[] popFreqIndex;
 
         SampleIndexGtEntryIterator() {
             nonIntergenicCount = 0;
@@ -185,9 +186,11 @@ public class SampleIndexVariantBiConverter {
             annotationIndexEntryIdx = -1;
             fileIndexIdx = 0;
             fileIndexCount = 0;
+            // Max number of CTs
+            ctBtMatrix = new byte[Short.SIZE];
         }
 
-        SampleIndexGtEntryIterator(SampleIndexEntry.SampleIndexGtEntry gtEntry, SampleIndexConfiguration configuration) {
+        SampleIndexGtEntryIterator(SampleIndexEntry.SampleIndexGtEntry gtEntry, int rangeIndexSize) {
             this();
             this.gtEntry = gtEntry;
             this.ctBtIndex = gtEntry.getCtBtIndex() == null
@@ -198,7 +201,8 @@ public class SampleIndexVariantBiConverter {
                     : new BitInputStream(gtEntry.getPopulationFrequencyIndex(),
                     gtEntry.getPopulationFrequencyIndexOffset(),
                     gtEntry.getPopulationFrequencyIndexLength());
-            this.configuration = configuration;
+            // Use the number of ranges the entry was written with
+            this.popFreqIndex = this.popFreq == null ? null : new byte[rangeIndexSize];
         }
 
         @Override
@@ -295,16 +299,13 @@ public class SampleIndexVariantBiConverter {
                         int numBt = Integer.bitCount(Byte.toUnsignedInt(annotationIndexEntry.getBtIndex()));
                         ctBtCombination.setNumCt(numCt);
                         ctBtCombination.setNumBt(numBt);
-                        ctBtCombination.setCtBtMatrix(ctBtIndex.readBytes(numCt, numBt));
+                        ctBtCombination.setCtBtMatrix(ctBtIndex.readBytes(ctBtMatrix, 0, numCt, numBt));
                     }
                 }
             }
 
-            byte[] popFreqIndex;
             if (popFreq != null) {
-                popFreqIndex = popFreq.readBytes(configuration.getPopulationRanges().size(), AnnotationIndexConverter.POP_FREQ_SIZE);
-            } else {
-                popFreqIndex = null;
+                popFreq.readBytes(popFreqIndex, 0, popFreqIndex.length, AnnotationIndexConverter.POP_FREQ_SIZE);
             }
             annotationIndexEntry.setPopFreqIndex(popFreqIndex);
 
@@ -452,8 +453,8 @@ public class SampleIndexVariantBiConverter {
         private int i;
         private static final Variant DUMMY_VARIANT = new Variant("1:10:A:T");
 
-        CountSampleIndexGtEntryIterator(SampleIndexEntry.SampleIndexGtEntry gtEntry, SampleIndexConfiguration configuration) {
-            super(gtEntry, configuration);
+        CountSampleIndexGtEntryIterator(SampleIndexEntry.SampleIndexGtEntry gtEntry, int rangeIndexSize) {
+            super(gtEntry, rangeIndexSize);
             count = gtEntry.getCount();
             i = 0;
         }
@@ -504,8 +505,8 @@ public class SampleIndexVariantBiConverter {
         private int alternateLength;
 
         ByteSampleIndexGtEntryIterator(String chromosome, int batchStart, SampleIndexEntry.SampleIndexGtEntry gtEntry,
-                                       SampleIndexConfiguration configuration) {
-            super(gtEntry, configuration);
+                                       int rangeIndexSize) {
+            super(gtEntry, rangeIndexSize);
             this.chromosome = chromosome;
             this.batchStart = batchStart;
             this.bytes = gtEntry.getVariants();
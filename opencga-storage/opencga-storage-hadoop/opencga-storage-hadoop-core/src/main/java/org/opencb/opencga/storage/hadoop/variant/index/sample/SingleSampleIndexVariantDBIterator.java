@@ -17,6 +17,8 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created on 03/07/18.
@@ -27,8 +29,14 @@ public class SingleSampleIndexVariantDBIterator extends VariantDBIterator {
 
     private final Iterator<Variant> iterator;
     protected int count = 0;
+    protected int numRows = 0;
 
     public SingleSampleIndexVariantDBIterator(Table table, SingleSampleIndexQuery query, SampleIndexDBAdaptor dbAdaptor) {
+        this(table, query, null, dbAdaptor);
+    }
+
+    public SingleSampleIndexVariantDBIterator(Table table, SingleSampleIndexQuery query, Map<String, Set<Integer>> batches,
+                                              SampleIndexDBAdaptor dbAdaptor) {
         List<Region> regions;
         if (CollectionUtils.isEmpty(query.getRegions())) {
             // If no regions are defined, get a list of one null element to initialize the stream.
@@ -37,11 +45,13 @@ public class SingleSampleIndexVariantDBIterator extends VariantDBIterator {
             regions = VariantQueryUtils.mergeRegions(query.getRegions());
         }
 
+        HBaseToSampleIndexConverter converter = dbAdaptor.newConverter(query);
         Iterator<Iterator<Variant>> iterators = regions.stream()
+                // Skip regions without any batch to read
+                .filter(region -> SampleIndexDBAdaptor.overlapsBatches(region, batches))
                 .map(region -> {
                     // One scan per region
-                    Scan scan = dbAdaptor.parse(query, region);
-                    HBaseToSampleIndexConverter converter = new HBaseToSampleIndexConverter(dbAdaptor.getConfiguration());
+                    Scan scan = dbAdaptor.parse(query, region, batches);
                     SampleIndexEntryFilter filter = dbAdaptor.buildSampleIndexEntryFilter(query, region);
                     try {
                         ResultScanner scanner = table.getScanner(scan);
@@ -49,6 +59,7 @@ public class SingleSampleIndexVariantDBIterator extends VariantDBIterator {
                         Iterator<Result> resultIterator = scanner.iterator();
                         Iterator<Iterator<Variant>> transform = Iterators.transform(resultIterator,
                                 result -> {
+                                    numRows++;
                                     SampleIndexEntry sampleIndexEntry = converter.convert(result);
                                     return filter.filter(sampleIndexEntry).iterator();
                                 });
@@ -65,6 +76,15 @@ public class SingleSampleIndexVariantDBIterator extends VariantDBIterator {
         return count;
     }
 
+    /**
+     * Number of sample index rows returned by the region servers so far.
+     *
+     * @return number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
     @Override
     public boolean hasNext() {
         return fetch(iterator::hasNext);
@@ -140,4 +140,25 @@ public class HBaseProjectMetadataDBAdaptor extends AbstractHBaseDBAdaptor implem
         }
     }
 
+    @Override
+    public int getCounter(Integer studyId, String idType) {
+        if (!tableExists()) {
+            return 0;
+        }
+        try {
+            return hBaseManager.act(tableName, (table) -> {
+                byte[] column = getCounterColumn(studyId, idType);
+                Result result = table.get(new Get(getProjectRowKey()).addColumn(family, column));
+                byte[] value = result == null ? null : result.getValue(family, column);
+                if (value == null || value.length == 0) {
+                    return 0;
+                } else {
+                    return (int) Bytes.toLong(value);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
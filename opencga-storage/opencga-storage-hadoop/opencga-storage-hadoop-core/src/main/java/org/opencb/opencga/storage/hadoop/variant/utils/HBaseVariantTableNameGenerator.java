@@ -17,6 +17,7 @@ public class HBaseVariantTableNameGenerator {
     private static final String META_SUFIX = "_meta";
     private static final String ARCHIVE_SUFIX = "_archive_";
     private static final String SAMPLE_SUFIX = "_variant_sample_index_";
+    private static final String SAMPLE_SUMMARY_SUFIX = "_variant_sample_index_summary_";
     private static final String ANNOTATION_SUFIX = "_annotation";
     private static final String PENDING_ANNOTATION_SUFIX = "_pending_annotation";
     private static final String PENDING_SECONDARY_INDEX_SUFIX = "_pending_secondary_index";
@@ -64,6 +65,10 @@ public class HBaseVariantTableNameGenerator {
         return getSampleIndexTableName(namespace, dbName, studyId);
     }
 
+    public String getSampleIndexSummaryTableName(int studyId) {
+        return getSampleIndexSummaryTableName(namespace, dbName, studyId);
+    }
+
     public String getAnnotationIndexTableName() {
         return annotationIndexTableName;
     }
@@ -196,6 +201,10 @@ public class HBaseVariantTableNameGenerator {
         return buildTableName(namespace, dbName, SAMPLE_SUFIX + studyId);
     }
 
+    public static String getSampleIndexSummaryTableName(String namespace, String dbName, int studyId) {
+        return buildTableName(namespace, dbName, SAMPLE_SUMMARY_SUFIX + studyId);
+    }
+
     public static String getVariantTableName(String dbName, ObjectMap options) {
         return getVariantTableName(options.getString(HadoopVariantStorageOptions.HBASE_NAMESPACE.key(), ""), dbName);
     }
@@ -0,0 +1,123 @@
+package org.opencb.opencga.storage.hadoop.variant;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.hadoop.variant.HadoopLocalLoadVariantStoragePipeline.GroupedVariantsTask;
+import org.opencb.opencga.storage.hadoop.variant.HadoopLocalLoadVariantStoragePipeline.ShardedGroupedVariantsTask;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertFalse;
+
+public class HadoopLocalLoadVariantStoragePipelineTest extends VariantStorageBaseTest implements HadoopVariantStorageTest {
+
+    public static final List<String> SAMPLES = Arrays.asList("NA19600", "NA19660", "NA19661", "NA19685");
+    private static final String GENOTYPES = "0/1,1/1,0|1,1|0,1|1";
+
+    @ClassRule
+    public static HadoopExternalResource externalResource = new HadoopExternalResource();
+
+    @After
+    public void tearDown() throws Exception {
+        VariantHbaseTestUtils.printVariants(getVariantStorageEngine().getDBAdaptor(), newOutputUri(getTestName().getMethodName()));
+    }
+
+    @Test
+    public void testShardAssignment() {
+        int chunkSize = 1000;
+        List<GroupedVariantsTask> shards = Arrays.asList(null, null, null);
+        ShardedGroupedVariantsTask task = new ShardedGroupedVariantsTask(shards, chunkSize);
+        ShardedGroupedVariantsTask otherTask = new ShardedGroupedVariantsTask(shards, chunkSize);
+
+        long slicesPerBatch = SampleIndexSchema.BATCH_SIZE / chunkSize;
+        List<Integer> assigned = new ArrayList<>();
+        for (String chromosome : Arrays.asList("1", "2")) {
+            for (long batch = 10; batch < 14; batch++) {
+                int shard = task.getShard(slice(chromosome, batch * slicesPerBatch, chunkSize));
+                // All the slices of the same sample index batch go to the same shard
+                assertEquals(shard, task.getShard(slice(chromosome, (batch + 1) * slicesPerBatch - 1, chunkSize)));
+                // Same input, same assignment
+                assertEquals(shard, otherTask.getShard(slice(chromosome, batch * slicesPerBatch, chunkSize)));
+                assigned.add(shard);
+            }
+        }
+        // Consecutive batches go to different shards
+        assertEquals(Arrays.asList(0, 1, 2, 0, 1, 2, 0, 1), assigned);
+    }
+
+    private static ImmutablePair<Long, List<Variant>> slice(String chromosome, long slice, int chunkSize) {
+        Variant variant = new Variant(chromosome, (int) (slice * chunkSize) + 1, "A", "C");
+        return new ImmutablePair<>(slice, Collections.singletonList(variant));
+    }
+
+    @Test
+    public void testMultiThreadLoad() throws Exception {
+        HadoopVariantStorageEngine engine = getVariantStorageEngine();
+        runETL(engine, smallInputUri, STUDY_NAME, new ObjectMap()
+                .append(HadoopVariantStorageOptions.HADOOP_LOAD_THREADS.key(), 1)
+                .append(VariantStorageOptions.ANNOTATE.key(), false)
+                .append(VariantStorageOptions.STATS_CALCULATE.key(), false));
+        runETL(engine, smallInputUri, STUDY_NAME_2, new ObjectMap()
+                .append(HadoopVariantStorageOptions.HADOOP_LOAD_THREADS.key(), 4)
+                .append(VariantStorageOptions.ANNOTATE.key(), false)
+                .append(VariantStorageOptions.STATS_CALCULATE.key(), false));
+
+        // Same variants and genotypes
+        List<String> expected = getVariants(STUDY_NAME);
+        List<String> actual = getVariants(STUDY_NAME_2);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+
+        // Same sample index
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = engine.getSampleIndexDBAdaptor();
+        for (String sample : SAMPLES) {
+            List<String> expectedSampleIndex = getSampleIndexVariants(sampleIndexDBAdaptor, STUDY_NAME, sample);
+            List<String> actualSampleIndex = getSampleIndexVariants(sampleIndexDBAdaptor, STUDY_NAME_2, sample);
+            assertNotEquals(0, expectedSampleIndex.size());
+            assertEquals(sample, expectedSampleIndex, actualSampleIndex);
+        }
+    }
+
+    private List<String> getVariants(String study) throws Exception {
+        Query query = new Query(VariantQueryParam.STUDY.key(), study)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), VariantQueryUtils.ALL)
+                .append(VariantQueryParam.INCLUDE_FILE.key(), VariantQueryUtils.NONE);
+        List<String> variants = new ArrayList<>();
+        for (Variant variant : variantStorageEngine.get(query, new QueryOptions(QueryOptions.SORT, true)).getResults()) {
+            StudyEntry studyEntry = variant.getStudies().get(0);
+            StringBuilder sb = new StringBuilder(variant.toString());
+            for (String sample : SAMPLES) {
+                sb.append(' ').append(sample).append(':').append(studyEntry.getSampleData(sample, "GT"));
+            }
+            variants.add(sb.toString());
+        }
+        return variants;
+    }
+
+    private List<String> getSampleIndexVariants(SampleIndexDBAdaptor sampleIndexDBAdaptor, String study, String sample) {
+        Query query = new Query(VariantQueryParam.STUDY.key(), study)
+                .append(VariantQueryParam.GENOTYPE.key(), sample + ":" + GENOTYPES);
+        List<String> variants = new ArrayList<>();
+        sampleIndexDBAdaptor.iterator(sampleIndexDBAdaptor.getSampleIndexQueryParser().parse(query))
+                .forEachRemaining(variant -> variants.add(variant.toString()));
+        return variants;
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.opencb.biodata.models.variant.avro.ConsequenceType;
 import org.opencb.biodata.models.variant.avro.PopulationFrequency;
+import org.opencb.biodata.models.variant.avro.Score;
 import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
 import org.opencb.biodata.models.variant.avro.VariantAnnotation;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
@@ -186,6 +187,51 @@ public class AnnotationIndexConverterTest {
                 converter.convert(annot(pf("STUDY", "POP_1", 0.5), pf("STUDY", "POP_4", 0.001), pf("STUDY", "POP_5", 0.5))).getPopFreqIndex());
     }
 
+    @Test
+    public void testPopFreqCustomThresholds() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration()
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("STUDY", "POP_1", new double[]{0.1, 0.2, 0.3}));
+        converter = new AnnotationIndexConverter(configuration);
+
+        assertArrayEquals(new byte[]{0b00}, converter.convert(annot(pf("STUDY", "POP_1", 0.05))).getPopFreqIndex());
+        assertArrayEquals(new byte[]{0b01}, converter.convert(annot(pf("STUDY", "POP_1", 0.15))).getPopFreqIndex());
+        assertArrayEquals(new byte[]{0b11}, converter.convert(annot(pf("STUDY", "POP_1", 0.5))).getPopFreqIndex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPopFreqInvalidThresholds() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration()
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("STUDY", "POP_1", new double[]{0.1, 0.2}));
+        new AnnotationIndexConverter(configuration);
+    }
+
+    @Test
+    public void testFunctionalScore() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration()
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("STUDY", "POP_1"))
+                .addFunctionalScoreRange(new SampleIndexConfiguration.FunctionalScoreRange("cadd_scaled", new double[]{10, 20, 30}))
+                .addFunctionalScoreRange(new SampleIndexConfiguration.FunctionalScoreRange("gerp", new double[]{-2, 0, 2}));
+        converter = new AnnotationIndexConverter(configuration);
+
+        VariantAnnotation annotation = annot(pf("STUDY", "POP_1", 0.5));
+        assertArrayEquals(new byte[]{0b11, 0, 0}, converter.convert(annotation).getPopFreqIndex());
+
+        annotation.setFunctionalScore(Collections.singletonList(new Score(25.0, "cadd_scaled", "")));
+        annotation.setConservation(Arrays.asList(new Score(1.0, "gerp", ""), new Score(0.9, "phylop", "")));
+        assertArrayEquals(new byte[]{0b11, 0b10, 0b10}, converter.convert(annotation).getPopFreqIndex());
+    }
+
+    @Test
+    public void testConfigurationJson() {
+        SampleIndexConfiguration configuration = SampleIndexConfiguration.defaultConfiguration()
+                .setVersion(2)
+                .addFunctionalScoreRange(new SampleIndexConfiguration.FunctionalScoreRange("cadd_scaled", new double[]{10, 20, 30}));
+
+        assertEquals(configuration, SampleIndexConfiguration.fromJson(configuration.toJson()));
+        assertEquals(3, SampleIndexConfiguration.fromJson(configuration.toJson()).getRangeIndexSize());
+        assertEquals(2, configuration.getFunctionalScorePosition("cadd_scaled"));
+    }
+
     public static VariantAnnotation annot() {
         VariantAnnotation variantAnnotation = new VariantAnnotation();
         variantAnnotation.setConsequenceTypes(Arrays.asList(ct("intergenic_variant")));
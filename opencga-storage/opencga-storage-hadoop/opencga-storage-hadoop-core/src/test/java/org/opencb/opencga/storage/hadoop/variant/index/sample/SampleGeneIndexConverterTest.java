@@ -0,0 +1,83 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.junit.Test;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverterTest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleGeneIndexConverter.*;
+
+public class SampleGeneIndexConverterTest {
+
+    @Test
+    public void testConvert() {
+        Map<String, Byte> genes = convert(annot(
+                ct("stop_gained", "protein_coding", "BRCA2"),
+                ct("missense_variant", "other", "BRCA2"),
+                ct("missense_variant", "other", "TP53"),
+                ct("intron_variant", "protein_coding", "OTHER")));
+
+        Map<String, Byte> expected = new TreeMap<>();
+        expected.put("BRCA2", (byte) (LOF_MASK | MISSENSE_MASK | PROTEIN_CODING_MASK));
+        expected.put("TP53", MISSENSE_MASK);
+        assertEquals(expected, genes);
+    }
+
+    @Test
+    public void testConvertEnsemblGeneId() {
+        ConsequenceType ct = ct("stop_gained", "protein_coding", "BRCA2");
+        ct.setEnsemblGeneId("ENSG00000139618");
+        ConsequenceType ctNoName = ct("missense_variant", "other", null);
+        ctNoName.setEnsemblGeneId("ENSG00000141510");
+        Map<String, Byte> genes = convert(annot(ct, ctNoName));
+
+        Map<String, Byte> expected = new TreeMap<>();
+        expected.put("BRCA2", (byte) (LOF_MASK | PROTEIN_CODING_MASK));
+        expected.put("ENSG00000139618", (byte) (LOF_MASK | PROTEIN_CODING_MASK));
+        expected.put("ENSG00000141510", MISSENSE_MASK);
+        assertEquals(expected, genes);
+    }
+
+    @Test
+    public void testConvertEmpty() {
+        assertEquals(Collections.emptyMap(), convert(null));
+        assertEquals(Collections.emptyMap(), convert(annot(ct("intron_variant", "protein_coding", "BRCA2"))));
+    }
+
+    @Test
+    public void testSerialize() {
+        Map<String, Byte> genes = new TreeMap<>();
+        genes.put("BRCA2", (byte) (LOF_MASK | PROTEIN_CODING_MASK));
+        genes.put("TP53", MISSENSE_MASK);
+        genes.put("A", LOF_MASK);
+
+        assertEquals(genes, fromBytes(toBytes(genes)));
+        assertEquals(Collections.emptyMap(), fromBytes(toBytes(Collections.emptyMap())));
+
+        // Merge several columns
+        Map<String, Byte> other = new TreeMap<>();
+        other.put("TP53", LOF_MASK);
+        byte[] bytes = toBytes(other);
+        Map<String, Byte> merged = fromBytes(bytes, 0, bytes.length, fromBytes(toBytes(genes)));
+        assertEquals((byte) (LOF_MASK | MISSENSE_MASK), merged.get("TP53").byteValue());
+        assertEquals(3, merged.size());
+    }
+
+    private static VariantAnnotation annot(ConsequenceType... cts) {
+        VariantAnnotation variantAnnotation = new VariantAnnotation();
+        variantAnnotation.setConsequenceTypes(Arrays.asList(cts));
+        return variantAnnotation;
+    }
+
+    private static ConsequenceType ct(String so, String biotype, String gene) {
+        ConsequenceType consequenceType = AnnotationIndexConverterTest.ct(so, biotype);
+        consequenceType.setGeneName(gene);
+        return consequenceType;
+    }
+}
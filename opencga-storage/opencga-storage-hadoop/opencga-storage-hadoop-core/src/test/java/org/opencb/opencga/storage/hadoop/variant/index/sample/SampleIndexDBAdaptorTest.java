@@ -1,6 +1,8 @@
 package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.MultiRowRangeFilter;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,9 +14,7 @@ import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageMetadata
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
 
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
  * Created by jacobo on 21/03/19.
@@ -71,4 +71,32 @@ public class SampleIndexDBAdaptorTest {
         Assert.assertFalse(SampleIndexDBAdaptor.endsAtBatch(split.get(1)));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testParseWithBatches() throws Exception {
+        int sampleId = 10;
+        String sampleName = "S1";
+        metadataManager.unsecureUpdateSampleMetadata(studyId, new SampleMetadata(studyId, sampleId, sampleName));
+
+        SampleIndexQuery query = new SampleIndexQuery(Collections.emptyList(), "ST",
+                Collections.singletonMap(sampleName, Collections.singletonList("0/1")), VariantQueryUtils.QueryOperation.AND);
+        Map<String, Set<Integer>> batches = new HashMap<>();
+        batches.put("1", new HashSet<>(Arrays.asList(0, 3000000)));
+        batches.put("2", new HashSet<>(Collections.singletonList(1000000)));
+
+        SampleIndexDBAdaptor dbAdaptor = new SampleIndexDBAdaptor(new HBaseManager(new Configuration()), null, metadataManager);
+        Scan scan = dbAdaptor.parse(query.forSample(sampleName), null, batches);
+        Assert.assertTrue(scan.getFilter() instanceof MultiRowRangeFilter);
+        Assert.assertEquals(3, ((MultiRowRangeFilter) scan.getFilter()).getRowRanges().size());
+
+        Region region = new Region("1", 2500000, 3500000);
+        Assert.assertTrue(SampleIndexDBAdaptor.overlapsBatches(region, batches));
+        scan = dbAdaptor.parse(query.forSample(sampleName), region, batches);
+        Assert.assertEquals(1, ((MultiRowRangeFilter) scan.getFilter()).getRowRanges().size());
+
+        Assert.assertFalse(SampleIndexDBAdaptor.overlapsBatches(new Region("1", 1000000, 2999999), batches));
+        Assert.assertFalse(SampleIndexDBAdaptor.overlapsBatches(new Region("3", 0, 2999999), batches));
+        Assert.assertTrue(SampleIndexDBAdaptor.overlapsBatches(null, batches));
+        Assert.assertTrue(SampleIndexDBAdaptor.overlapsBatches(new Region("3", 0, 2999999), null));
+    }
+
+}
@@ -104,6 +104,25 @@ public class SampleIndexEntryFilterTest {
         Assert.assertEquals(Arrays.asList("1:20:A:T", "1:40:A:T"), result);
     }
 
+    @Test
+    public void testPopFreqQueryPreviousConfiguration() {
+        // Entry annotated with the previous configuration. Current configuration has an extra functional score range.
+        SampleIndexConfiguration newConfiguration = SampleIndexConfiguration.fromJson(configuration.toJson())
+                .setVersion(configuration.getVersion() + 1)
+                .addFunctionalScoreRange(new SampleIndexConfiguration.FunctionalScoreRange("cadd_scaled", new double[]{10, 20, 30}));
+        Assert.assertNotEquals(configuration.getRangeIndexSize(), newConfiguration.getRangeIndexSize());
+
+        SingleSampleIndexQuery query = getSingleSampleIndexQuery(VariantQueryUtils.QueryOperation.AND, false,
+                buildPopulationFrequencyQuery("s2",  2, 4),
+                buildPopulationFrequencyQuery("s3",  2, 4));
+
+        SampleIndexEntry entry = getSampleIndexEntry1(newConfiguration).setRangeIndexSize(configuration.getRangeIndexSize());
+        List<String> result = new SampleIndexEntryFilter(query).filter(entry).stream().map(Variant::toString).collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("1:30:A:T", "1:40:A:T"), result);
+        Assert.assertEquals(2, new SampleIndexEntryFilter(query).filterAndCount(getSampleIndexEntry1(newConfiguration)
+                .setRangeIndexSize(configuration.getRangeIndexSize())));
+    }
+
     @Test
     public void testCtBtCombinationFilter() {
         SingleSampleIndexQuery query;
@@ -135,6 +154,10 @@ public class SampleIndexEntryFilterTest {
     }
 
     private SampleIndexEntry getSampleIndexEntry1() {
+        return getSampleIndexEntry1(configuration);
+    }
+
+    private SampleIndexEntry getSampleIndexEntry1(SampleIndexConfiguration configuration) {
         byte[] pf = new AnnotationIndexPutBuilder()                                                      // s1 s2 s3 s4 s5
                 .add(new AnnotationIndexEntry((byte) 0, false, (short) 0, (byte) 0, new byte[0], new byte[]{ 0, 0, 0, 0, 3 }, false, (byte) 0))  // 1:10:A:T
                 .add(new AnnotationIndexEntry((byte) 0, false, (short) 0, (byte) 0, new byte[0], new byte[]{ 0, 1, 2, 3, 3 }, false, (byte) 0))  // 1:20:A:T
@@ -54,7 +54,9 @@ public class SampleIndexQueryParserTest {
                 .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s1", "ALL"))
                 .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s2", "ALL"))
                 .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s3", "ALL"))
-                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s4", "ALL"));
+                .addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange("s4", "ALL"))
+                .addFunctionalScoreRange(new SampleIndexConfiguration.FunctionalScoreRange("cadd_scaled", new double[]{10, 20, 30}))
+                .addFunctionalScoreRange(new SampleIndexConfiguration.FunctionalScoreRange("gerp", new double[]{-2, 0, 2}));
         DummyVariantStorageMetadataDBAdaptorFactory.clear();
         mm = new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory());
         sampleIndexQueryParser = new SampleIndexQueryParser(mm, configuration);
@@ -1023,6 +1025,71 @@ public class SampleIndexQueryParserTest {
         assertEquals("GNOMAD_GENOMES:ALL<" + POP_FREQ_THRESHOLD_001 + OR + "OtherStudy:ALL<0.8", query.getString(ANNOT_POPULATION_ALTERNATE_FREQUENCY.key()));
     }
 
+    @Test
+    public void testCoveredQuery_functionalScore() {
+        Query query;
+        SampleAnnotationIndexQuery indexQuery;
+
+        // Fully covered. Remove from query
+        query = new Query().append(ANNOT_FUNCTIONAL_SCORE.key(), "cadd_scaled>=20");
+        indexQuery = parseAnnotationIndexQuery(query, true);
+        assertEquals(1, indexQuery.getFunctionalScoreQueries().size());
+        assertEquals(6, indexQuery.getFunctionalScoreQueries().get(0).getPosition());
+        assertEquals(2, indexQuery.getFunctionalScoreQueries().get(0).getMinCodeInclusive());
+        assertEquals(4, indexQuery.getFunctionalScoreQueries().get(0).getMaxCodeExclusive());
+        assertFalse(query.containsKey(ANNOT_FUNCTIONAL_SCORE.key()));
+
+        // Not exact. Leave in query
+        query = new Query().append(ANNOT_CONSERVATION.key(), "gerp>1");
+        indexQuery = parseAnnotationIndexQuery(query, true);
+        assertEquals(1, indexQuery.getFunctionalScoreQueries().size());
+        assertEquals(7, indexQuery.getFunctionalScoreQueries().get(0).getPosition());
+        assertEquals("gerp>1", query.getString(ANNOT_CONSERVATION.key()));
+
+        // Variants without score are in the first range. Leave in query
+        query = new Query().append(ANNOT_FUNCTIONAL_SCORE.key(), "cadd_scaled<10");
+        indexQuery = parseAnnotationIndexQuery(query, true);
+        assertEquals(1, indexQuery.getFunctionalScoreQueries().size());
+        assertEquals("cadd_scaled<10", query.getString(ANNOT_FUNCTIONAL_SCORE.key()));
+
+        // Source not in index. Leave in query
+        query = new Query().append(ANNOT_FUNCTIONAL_SCORE.key(), "cadd_scaled>=20" + AND + "cadd_raw>5");
+        indexQuery = parseAnnotationIndexQuery(query, true);
+        assertEquals(1, indexQuery.getFunctionalScoreQueries().size());
+        assertEquals("cadd_raw>5", query.getString(ANNOT_FUNCTIONAL_SCORE.key()));
+
+        // Union (OR). Do not use index
+        query = new Query().append(ANNOT_FUNCTIONAL_SCORE.key(), "cadd_scaled>=20" + OR + "cadd_raw>5");
+        indexQuery = parseAnnotationIndexQuery(query, true);
+        assertEquals(0, indexQuery.getFunctionalScoreQueries().size());
+        assertEquals("cadd_scaled>=20" + OR + "cadd_raw>5", query.getString(ANNOT_FUNCTIONAL_SCORE.key()));
+    }
+
+    @Test
+    public void testRangeIndexFromPreviousConfiguration() {
+        Query query;
+        SampleAnnotationIndexQuery indexQuery;
+
+        // Samples annotated with a different configuration. Do not use the range index, and leave in query
+        query = new Query()
+                .append(ANNOT_FUNCTIONAL_SCORE.key(), "cadd_scaled>=20")
+                .append(ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "s2:ALL>0.1");
+        indexQuery = sampleIndexQueryParser.parseAnnotationIndexQuery(query, true, false);
+        assertEquals(0, indexQuery.getFunctionalScoreQueries().size());
+        assertEquals(0, indexQuery.getPopulationFrequencyQueries().size());
+        assertEquals("cadd_scaled>=20", query.getString(ANNOT_FUNCTIONAL_SCORE.key()));
+        assertEquals("s2:ALL>0.1", query.getString(ANNOT_POPULATION_ALTERNATE_FREQUENCY.key()));
+    }
+
+    @Test
+    public void testFunctionalScoreRangeEquals() {
+        SampleIndexConfiguration.FunctionalScoreRange range = new SampleIndexConfiguration.FunctionalScoreRange("cadd_scaled", new double[]{10, 20, 30});
+        assertEquals(range, new SampleIndexConfiguration.FunctionalScoreRange("cadd_scaled", new double[]{10, 20, 30}));
+        assertNotEquals(range, new SampleIndexConfiguration.FunctionalScoreRange("cadd_scaled", new double[]{15, 20, 30}));
+        assertNotEquals(new SampleIndexConfiguration().addFunctionalScoreRange(range),
+                new SampleIndexConfiguration().addFunctionalScoreRange(new SampleIndexConfiguration.FunctionalScoreRange("cadd_scaled", new double[]{15, 20, 30})));
+    }
+
     @Test
     public void testCoveredQuery_combined() {
         Query query;
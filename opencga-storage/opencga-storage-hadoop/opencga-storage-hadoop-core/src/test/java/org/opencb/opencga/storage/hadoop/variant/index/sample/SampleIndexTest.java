@@ -3,6 +3,7 @@ package org.opencb.opencga.storage.hadoop.variant.index.sample;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang3.time.StopWatch;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.Result;
@@ -24,6 +25,7 @@ import org.opencb.opencga.core.common.JacksonUtils;
 import org.opencb.opencga.core.response.VariantQueryResult;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
@@ -31,8 +33,10 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.annotation.DefaultVariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageOptions;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
 import org.opencb.opencga.storage.hadoop.variant.VariantHbaseTestUtils;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
@@ -41,15 +45,19 @@ import org.opencb.opencga.storage.hadoop.variant.index.SampleIndexVariantAggrega
 import org.opencb.opencga.storage.hadoop.variant.index.annotation.mr.SampleIndexAnnotationLoaderDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.family.FamilyIndexDriver;
 import org.opencb.opencga.storage.hadoop.variant.index.query.SampleIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.query.SingleSampleIndexQuery;
 
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.*;
 import static org.junit.Assert.*;
 import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.THREE_PRIME_UTR_VARIANT;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantMatchers.lt;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantMatchers.lte;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantMatchers.numResults;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
@@ -423,6 +431,180 @@ public class SampleIndexTest extends VariantStorageBaseTest implements HadoopVar
         assertNotEquals("sample_index_table", result.getSource());
     }
 
+    @Test
+    public void testBatchPruning() throws Exception {
+        Configuration conf = new Configuration(dbAdaptor.getHBaseManager().getConf());
+        conf.setBoolean(HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_BATCH_PRUNING.key(), true);
+        conf.setDouble(HadoopVariantStorageOptions.SAMPLE_INDEX_QUERY_BATCH_PRUNING_MAX_RATIO.key(), 1);
+        HBaseManager hBaseManager = new HBaseManager(conf, dbAdaptor.getHBaseManager().getConnection());
+        SampleIndexDBAdaptor prunedDBAdaptor = new SampleIndexDBAdaptor(hBaseManager, dbAdaptor.getTableNameGenerator(), metadataManager);
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = ((HadoopVariantStorageEngine) variantStorageEngine).getSampleIndexDBAdaptor();
+
+        int numRows = 0;
+        int numRowsPruned = 0;
+        for (String study : studies) {
+            String tableName = dbAdaptor.getTableNameGenerator().getSampleIndexTableName(metadataManager.getStudyId(study));
+            List<String> samples = sampleNames.get(study);
+            for (String gts : Arrays.asList("1|1,1/1", "0|1,1|0,0/1")) {
+                Query query = new Query(VariantQueryParam.STUDY.key(), study)
+                        .append(GENOTYPE.key(), samples.get(0) + ":" + gts + ";" + samples.get(1) + ":" + gts);
+
+                // Same result with and without pruning
+                List<String> expected = sampleIndexDBAdaptor.iterator(sampleIndexDBAdaptor.getSampleIndexQueryParser()
+                        .parse(new Query(query))).toDataResult().getResults().stream().map(Variant::toString).collect(toList());
+                List<String> actual = prunedDBAdaptor.iterator(prunedDBAdaptor.getSampleIndexQueryParser()
+                        .parse(new Query(query))).toDataResult().getResults().stream().map(Variant::toString).collect(toList());
+                assertEquals(query.toJson(), expected, actual);
+
+                // Count the rows read for each sample
+                SampleIndexQuery sampleIndexQuery = prunedDBAdaptor.getSampleIndexQueryParser().parse(new Query(query));
+                Map<String, Set<Integer>> batches = prunedDBAdaptor.intersectBatches(sampleIndexQuery);
+                assertNotNull(batches);
+                for (String sample : sampleIndexQuery.getSamplesMap().keySet()) {
+                    SingleSampleIndexQuery singleSampleQuery = sampleIndexQuery.forSample(sample);
+                    try (SingleSampleIndexVariantDBIterator iterator = hBaseManager.act(tableName,
+                            table -> new SingleSampleIndexVariantDBIterator(table, singleSampleQuery, null, prunedDBAdaptor));
+                         SingleSampleIndexVariantDBIterator prunedIterator = hBaseManager.act(tableName,
+                                 table -> new SingleSampleIndexVariantDBIterator(table, singleSampleQuery, batches, prunedDBAdaptor))) {
+                        iterator.forEachRemaining(v -> { });
+                        prunedIterator.forEachRemaining(v -> { });
+                        numRows += iterator.getNumRows();
+                        numRowsPruned += prunedIterator.getNumRows();
+                    }
+                }
+            }
+        }
+        System.out.println("numRows = " + numRows);
+        System.out.println("numRowsPruned = " + numRowsPruned);
+        assertThat(numRowsPruned, lt(numRows));
+    }
+
+    @Test
+    public void testParallelIterator() throws Exception {
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = ((HadoopVariantStorageEngine) variantStorageEngine).getSampleIndexDBAdaptor();
+        HBaseManager hBaseManager = dbAdaptor.getHBaseManager();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Query> queries = Arrays.asList(
+                new Query(),
+                new Query(REGION.key(), "1").append(ANNOT_BIOTYPE.key(), "protein_coding"),
+                new Query(REGION.key(), Arrays.asList(new Region("22", 36591300, 46000000), new Region("1", 1000, 16400000)))
+        );
+        try {
+            for (String study : studies) {
+                String tableName = dbAdaptor.getTableNameGenerator().getSampleIndexTableName(metadataManager.getStudyId(study));
+                for (String sample : sampleNames.get(study)) {
+                    for (Query baseQuery : queries) {
+                        Query query = new Query(baseQuery)
+                                .append(VariantQueryParam.STUDY.key(), study)
+                                .append(GENOTYPE.key(), sample + ":1|0,0|1,1|1,0/1,1/1");
+                        SingleSampleIndexQuery singleSampleQuery = sampleIndexDBAdaptor.getSampleIndexQueryParser()
+                                .parse(new Query(query)).forSample(sample);
+
+                        List<String> expected;
+                        try (SingleSampleIndexVariantDBIterator iterator = hBaseManager.act(tableName,
+                                table -> new SingleSampleIndexVariantDBIterator(table, singleSampleQuery, null, sampleIndexDBAdaptor))) {
+                            expected = Lists.newArrayList(iterator).stream().map(Variant::toString).collect(toList());
+                        }
+                        // Small chunks, to ensure that the region is split in multiple chunks
+                        for (int batchesPerChunk : Arrays.asList(1, 3, 1000)) {
+                            List<String> actual;
+                            try (ParallelSingleSampleIndexVariantDBIterator iterator = new ParallelSingleSampleIndexVariantDBIterator(
+                                    hBaseManager, tableName, singleSampleQuery, null, sampleIndexDBAdaptor, executor, 4, batchesPerChunk)) {
+                                actual = Lists.newArrayList(iterator).stream().map(Variant::toString).collect(toList());
+                            }
+                            assertEquals(query.toJson() + " batchesPerChunk=" + batchesPerChunk, expected, actual);
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testGeneIndex() throws Exception {
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = ((HadoopVariantStorageEngine) variantStorageEngine).getSampleIndexDBAdaptor();
+        for (String study : Arrays.asList(STUDY_NAME, STUDY_NAME_3)) {
+            int studyId = metadataManager.getStudyId(study);
+            for (String sample : sampleNames.get(study)) {
+                SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, metadataManager.getSampleId(studyId, sample));
+                assertTrue(SampleIndexAnnotationLoader.hasGeneIndex(sampleMetadata));
+
+                Map<String, Byte> expected = new TreeMap<>();
+                Map<String, Byte> expectedChr22 = new TreeMap<>();
+                Region region = new Region("22", 36591300, 46000000);
+                for (Variant variant : dbAdaptor.get(new Query(VariantQueryParam.STUDY.key(), study)
+                        .append(VariantQueryParam.SAMPLE.key(), sample)
+                        .append(VariantQueryParam.INCLUDE_SAMPLE.key(), sample), null).getResults()) {
+                    String gt = variant.getStudies().get(0).getSampleData(0).get(0);
+                    if (SampleIndexSchema.isAnnotatedGenotype(gt)) {
+                        Map<String, Byte> genes = SampleGeneIndexConverter.convert(variant.getAnnotation());
+                        SampleGeneIndexConverter.merge(expected, genes);
+                        if (region.contains(variant.getChromosome(), variant.getStart())) {
+                            SampleGeneIndexConverter.merge(expectedChr22, genes);
+                        }
+                    }
+                }
+
+                Map<String, Byte> actual = sampleIndexDBAdaptor.geneIndex(study, sample, null, null);
+                assertFalse(sample, expected.isEmpty());
+                assertEquals(sample, expected, actual);
+
+                // Regions are read by batch, so more genes than expected might be returned
+                Map<String, Byte> actualChr22 = sampleIndexDBAdaptor.geneIndex(study, sample, Collections.singletonList(region), null);
+                for (Map.Entry<String, Byte> entry : expectedChr22.entrySet()) {
+                    Byte flags = actualChr22.get(entry.getKey());
+                    assertNotNull(entry.getKey(), flags);
+                    assertEquals(entry.getKey(), entry.getValue().byteValue(), flags & entry.getValue());
+                }
+                assertTrue(actual.keySet().containsAll(actualChr22.keySet()));
+            }
+        }
+    }
+
+    @Test
+    public void testSamplesWithGene() throws Exception {
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = ((HadoopVariantStorageEngine) variantStorageEngine).getSampleIndexDBAdaptor();
+        for (String study : Arrays.asList(STUDY_NAME, STUDY_NAME_3)) {
+            List<String> samples = sampleNames.get(study);
+            Map<String, Map<String, Byte>> geneIndex = new LinkedHashMap<>();
+            for (String sample : samples) {
+                geneIndex.put(sample, sampleIndexDBAdaptor.geneIndex(study, sample, null, null));
+            }
+            Set<String> genes = new TreeSet<>();
+            geneIndex.values().forEach(g -> genes.addAll(g.keySet()));
+            assertFalse(genes.isEmpty());
+            assertEquals(geneIndex, sampleIndexDBAdaptor.geneIndex(study, samples, null, null));
+
+            for (byte mask : new byte[]{0, SampleGeneIndexConverter.LOF_MASK, SampleGeneIndexConverter.MISSENSE_MASK}) {
+                Map<String, List<String>> samplesWithGenes = sampleIndexDBAdaptor.samplesWithGenes(study, samples, null, genes, mask, null);
+                for (String gene : genes) {
+                    List<String> expected = new ArrayList<>();
+                    for (Map.Entry<String, Map<String, Byte>> entry : geneIndex.entrySet()) {
+                        Byte flags = entry.getValue().get(gene);
+                        if (flags != null && (mask == 0 || (flags & mask) != 0)) {
+                            expected.add(entry.getKey());
+                        }
+                    }
+                    assertEquals(gene, expected, samplesWithGenes.get(gene));
+                }
+            }
+
+            // Read only the region of the gene, from the first to the last variant with qualifying consequence types
+            String gene = genes.iterator().next();
+            List<Variant> variants = dbAdaptor.get(new Query(VariantQueryParam.STUDY.key(), study)
+                    .append(VariantQueryParam.GENE.key(), gene)
+                    .append(VariantQueryParam.ANNOT_CONSEQUENCE_TYPE.key(), "lof,missense_variant"), null).getResults();
+            assertFalse(gene, variants.isEmpty());
+            Region geneRegion = new Region(variants.get(0).getChromosome(),
+                    variants.stream().mapToInt(Variant::getStart).min().getAsInt(),
+                    variants.stream().mapToInt(Variant::getEnd).max().getAsInt());
+            assertEquals(sampleIndexDBAdaptor.samplesWithGene(study, samples, null, gene, (byte) 0, null),
+                    sampleIndexDBAdaptor.samplesWithGene(study, samples, geneRegion, gene, (byte) 0, null));
+        }
+    }
+
     @Test
     public void testCount() throws StorageEngineException {
         List<Query> queries = Arrays.asList(
@@ -466,6 +648,42 @@ public class SampleIndexTest extends VariantStorageBaseTest implements HadoopVar
         }
     }
 
+    @Test
+    public void testCountFromSummary() throws Exception {
+        List<Query> queries = Arrays.asList(
+                new Query(),
+                new Query(REGION.key(), "22"),
+                new Query(FILTER.key(), "PASS"),
+                new Query(QUAL.key(), ">=30").append(FILTER.key(), "PASS"),
+                new Query(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant,stop_gained"),
+                new Query(ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "1kG_phase3:ALL<0.001"),
+                new Query(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant,stop_gained").append(FILTER.key(), "PASS")
+        );
+        // Summaries are written by the sample index writers while loading and annotating
+        SampleIndexDBAdaptor sampleIndexDBAdaptor = ((HadoopVariantStorageEngine) variantStorageEngine).getSampleIndexDBAdaptor();
+
+        for (String study : studies) {
+            int studyId = metadataManager.getStudyId(study);
+            for (String sampleName : sampleNames.get(study)) {
+                SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, metadataManager.getSampleId(studyId, sampleName));
+                if (sampleMetadata.isMultiFileSample()) {
+                    continue;
+                }
+                assertEquals(TaskMetadata.Status.READY, SampleIndexDBAdaptor.getSampleIndexSummaryStatus(sampleMetadata));
+                assertFalse(sampleIndexDBAdaptor.summaries(studyId, sampleMetadata.getId(), null).isEmpty());
+                for (Query baseQuery : queries) {
+                    Query query = new Query(baseQuery)
+                            .append(VariantQueryParam.STUDY.key(), study)
+                            .append(GENOTYPE.key(), sampleName + ":1|0,0|1,1|1");
+                    long count = sampleIndexDBAdaptor.count(sampleIndexDBAdaptor.getSampleIndexQueryParser().parse(new Query(query)));
+                    long expectedCount = sampleIndexDBAdaptor.iterator(sampleIndexDBAdaptor.getSampleIndexQueryParser()
+                            .parse(new Query(query))).toDataResult().getNumResults();
+                    assertEquals(query.toJson(), expectedCount, count);
+                }
+            }
+        }
+    }
+
     @Test
     public void testAggregation() throws Exception {
         SampleIndexVariantAggregationExecutor executor = new SampleIndexVariantAggregationExecutor(metadataManager, ((HadoopVariantStorageEngine) variantStorageEngine).getSampleIndexDBAdaptor());
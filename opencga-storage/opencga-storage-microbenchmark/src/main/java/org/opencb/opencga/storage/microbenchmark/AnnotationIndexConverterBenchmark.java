@@ -0,0 +1,59 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.annotation.AnnotationIndexEntry;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConfiguration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build the annotation index entries with the {@link AnnotationIndexConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotationIndexConverterBenchmark {
+
+    private static final List<String> POPULATIONS = Arrays.asList(
+            "1kG_phase3:ALL", "GNOMAD_GENOMES:ALL", "GNOMAD_EXOMES:ALL", "1kG_phase3:AFR", "1kG_phase3:EUR", "ESP6500:EA");
+
+    @Param({"1000"})
+    protected int numVariants;
+
+    private AnnotationIndexConverter converter;
+    private List<VariantAnnotation> annotations;
+
+    @Setup
+    public void setup() {
+        SampleIndexConfiguration configuration = new SampleIndexConfiguration();
+        for (String population : POPULATIONS) {
+            configuration.addPopulationRange(new SampleIndexConfiguration.PopulationFrequencyRange(population));
+        }
+        converter = new AnnotationIndexConverter(configuration);
+
+        Random random = SyntheticData.random();
+        annotations = new ArrayList<>(numVariants);
+        for (int i = 0; i < numVariants; i++) {
+            annotations.add(SyntheticData.annotation(random, POPULATIONS));
+        }
+    }
+
+    @Benchmark
+    public void convert(Blackhole blackhole) {
+        for (VariantAnnotation annotation : annotations) {
+            AnnotationIndexEntry entry = converter.convert(annotation);
+            blackhole.consume(entry);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.opencga.storage.core.io.bit.BitInputStream;
+import org.opencb.opencga.storage.core.io.bit.BitOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the {@link BitInputStream} and {@link BitOutputStream} with the former byte at a time implementation.
+ *
+ * The streams are used by the sample index to store the per variant annotation and file indexes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BitStreamBenchmark {
+
+    @Param({"2", "4", "7"})
+    protected int bitLength;
+
+    @Param({"1000"})
+    protected int numValues;
+
+    private int[] values;
+    private byte[] encoded;
+    private byte[] decoded;
+    private BitInputStream inputStream;
+    private BitOutputStream outputStream;
+
+    @Setup
+    public void setup() {
+        Random random = SyntheticData.random();
+        values = new int[numValues];
+        BitOutputStream os = new BitOutputStream();
+        for (int i = 0; i < numValues; i++) {
+            values[i] = random.nextInt(1 << bitLength);
+            os.write(values[i], bitLength);
+        }
+        encoded = os.toByteArray();
+        decoded = new byte[numValues];
+        inputStream = new BitInputStream();
+        outputStream = new BitOutputStream(encoded.length);
+    }
+
+    @Benchmark
+    public byte[] write() {
+        BitOutputStream os = new BitOutputStream(encoded.length);
+        for (int value : values) {
+            os.write(value, bitLength);
+        }
+        return os.toByteArray();
+    }
+
+    @Benchmark
+    public int writeReuse() {
+        outputStream.reset();
+        for (int value : values) {
+            outputStream.write(value, bitLength);
+        }
+        return outputStream.size();
+    }
+
+    @Benchmark
+    public byte[] writeLegacy() {
+        LegacyBitOutputStream os = new LegacyBitOutputStream(encoded.length);
+        for (int value : values) {
+            os.write(value, bitLength);
+        }
+        return os.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] read() {
+        return new BitInputStream(encoded).readBytes(numValues, bitLength);
+    }
+
+    @Benchmark
+    public byte[] readReuse() {
+        return inputStream.reset(encoded, 0, encoded.length).readBytes(decoded, 0, numValues, bitLength);
+    }
+
+    @Benchmark
+    public byte[] readLegacy() {
+        return new LegacyBitInputStream(encoded, 0, encoded.length).readBytes(numValues, bitLength);
+    }
+
+}
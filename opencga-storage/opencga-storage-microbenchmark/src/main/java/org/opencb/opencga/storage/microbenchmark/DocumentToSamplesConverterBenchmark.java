@@ -0,0 +1,76 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.bson.Document;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.variant.query.projection.VariantQueryProjection;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageOptions;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Convert the samples of one file from and to the MongoDB document model with the {@link DocumentToSamplesConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentToSamplesConverterBenchmark {
+
+    @Param({"100", "1000"})
+    protected int numSamples;
+
+    private DocumentToStudyVariantEntryConverter converter;
+    private Variant variant;
+    private StudyEntry studyEntry;
+    private Document document;
+
+    @Setup
+    public void setup() throws Exception {
+        VariantStorageMetadataManager metadataManager = SyntheticData.metadataManager("S", 1, numSamples);
+        int studyId = metadataManager.getStudyId("S");
+        metadataManager.updateStudyMetadata(studyId, s -> {
+            s.getAttributes().put(MongoDBVariantStorageOptions.DEFAULT_GENOTYPE.key(), "0/0");
+            return s;
+        });
+        StudyMetadata studyMetadata = metadataManager.getStudyMetadata(studyId);
+        int fileId = metadataManager.getFileId(studyId, "F0.vcf");
+        List<Integer> sampleIds = new ArrayList<>(metadataManager.getFileMetadata(studyId, fileId).getSamples());
+
+        VariantQueryProjection projection = new VariantQueryProjection(studyMetadata, sampleIds, Collections.singletonList(fileId));
+        converter = new DocumentToStudyVariantEntryConverter(true, studyId, fileId,
+                new DocumentToSamplesConverter(metadataManager, projection));
+
+        variant = new Variant("1:1000:A:C");
+        List<String> samples = SyntheticData.samples(numSamples);
+        SyntheticData.addStudy(SyntheticData.random(), Collections.singletonList(variant), String.valueOf(studyId), samples);
+        studyEntry = variant.getStudies().get(0);
+        studyEntry.setSamplesPosition(metadataManager.getSamplesPosition(studyMetadata, null));
+        FileEntry fileEntry = new FileEntry(String.valueOf(fileId), null, new HashMap<>());
+        fileEntry.getData().put("QUAL", "50.0");
+        fileEntry.getData().put("FILTER", "PASS");
+        studyEntry.setFiles(Collections.singletonList(fileEntry));
+
+        document = converter.convertToStorageType(variant, studyEntry);
+    }
+
+    @Benchmark
+    public Document convertToStorageType() {
+        return converter.convertToStorageType(variant, studyEntry);
+    }
+
+    @Benchmark
+    public StudyEntry convertToDataModelType() {
+        return converter.convertToDataModelType(document);
+    }
+
+}
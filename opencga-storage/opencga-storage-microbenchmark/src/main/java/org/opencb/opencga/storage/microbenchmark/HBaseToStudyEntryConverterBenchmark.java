@@ -0,0 +1,72 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.hadoop.variant.converters.HBaseVariantConverterConfiguration;
+import org.opencb.opencga.storage.hadoop.variant.converters.study.HBaseToStudyEntryConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build the {@link StudyEntry} of a variant from the sample columns read from HBase with the {@link HBaseToStudyEntryConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HBaseToStudyEntryConverterBenchmark {
+
+    @Param({"10", "100"})
+    protected int numFiles;
+
+    @Param({"10"})
+    protected int samplesPerFile;
+
+    /**
+     * Fraction of the samples with a value in the variants table. Other samples are filled with the missing or default genotype.
+     */
+    @Param({"0.1", "1"})
+    protected double density;
+
+    private HBaseToStudyEntryConverter converter;
+    private Variant variant;
+    private int studyId;
+    private List<Pair<Integer, List<String>>> sampleData;
+
+    @Setup
+    public void setup() throws Exception {
+        VariantStorageMetadataManager metadataManager = SyntheticData.metadataManager("S", numFiles, samplesPerFile);
+        studyId = metadataManager.getStudyId("S");
+        metadataManager.updateStudyMetadata(studyId, s -> {
+            s.getAttributes().put(VariantStorageOptions.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC);
+            return s;
+        });
+
+        converter = new HBaseToStudyEntryConverter(metadataManager, null)
+                .configure(HBaseVariantConverterConfiguration.builder().build());
+
+        Random random = SyntheticData.random();
+        variant = new Variant("1:1000:A:C");
+        sampleData = new ArrayList<>();
+        int numSamples = numFiles * samplesPerFile;
+        for (int sampleId = 1; sampleId <= numSamples; sampleId++) {
+            if (random.nextDouble() < density) {
+                sampleData.add(Pair.of(sampleId, Arrays.asList(SyntheticData.genotype(random), "PASS")));
+            }
+        }
+    }
+
+    @Benchmark
+    public StudyEntry convert() {
+        return converter.convert(sampleData, Collections.emptyList(), variant, studyId);
+    }
+
+}
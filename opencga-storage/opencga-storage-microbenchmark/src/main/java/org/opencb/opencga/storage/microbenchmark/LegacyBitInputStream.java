@@ -0,0 +1,60 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.opencga.storage.core.io.bit.BitInputStream;
+
+/**
+ * Byte at a time implementation of the {@link BitInputStream}, used as baseline in the {@link BitStreamBenchmark}.
+ */
+class LegacyBitInputStream {
+
+    private final byte[] value;
+    private int remainingBits;
+    private int idx;
+    private int bitIdx;
+
+    LegacyBitInputStream(byte[] value, int offset, int length) {
+        this.value = value;
+        remainingBits = length * Byte.SIZE;
+        idx = offset;
+        bitIdx = 0;
+    }
+
+    public byte readByte(int length) {
+        if (length > Byte.SIZE) {
+            throw new IllegalArgumentException();
+        }
+        remainingBits -= length;
+        if (remainingBits < 0) {
+            throw new IllegalArgumentException();
+        }
+        int r; // Use int to avoid intermediate castings
+        if (length > (Byte.SIZE - bitIdx)) {
+            r = ((value[idx] >>> bitIdx) & mask(Byte.SIZE - bitIdx));
+            idx++;
+            length -= Byte.SIZE - bitIdx;
+            r |= (value[idx] & mask(length)) << (Byte.SIZE - bitIdx);
+            bitIdx = length;
+        } else {
+            r = ((value[idx] >>> bitIdx) & mask(length));
+            bitIdx += length;
+            if (bitIdx == Byte.SIZE) {
+                bitIdx = 0;
+                idx++;
+            }
+        }
+        return (byte) r;
+    }
+
+    public byte[] readBytes(int numValues, int valueBitLength) {
+        byte[] bytes = new byte[numValues];
+        for (int i = 0; i < numValues; i++) {
+            bytes[i] = readByte(valueBitLength);
+        }
+        return bytes;
+    }
+
+    private static int mask(int i) {
+        return (1 << i) - 1;
+    }
+
+}
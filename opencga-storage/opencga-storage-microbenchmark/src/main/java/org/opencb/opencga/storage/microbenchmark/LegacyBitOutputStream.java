@@ -0,0 +1,46 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.opencga.storage.core.io.bit.BitOutputStream;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Byte at a time implementation of the {@link BitOutputStream}, used as baseline in the {@link BitStreamBenchmark}.
+ */
+class LegacyBitOutputStream {
+
+    private final ByteArrayOutputStream os;
+    private int buffer = 0; // only one byte buffer. Use int to avoid casts.
+    private byte bufferCapacity = Byte.SIZE;
+
+    LegacyBitOutputStream(int size) {
+        os = new ByteArrayOutputStream(size);
+    }
+
+    public void write(int value, int bitsLength) {
+        int offset = 0;
+        while (bufferCapacity <= bitsLength - offset) {
+            // Complete buffer
+            buffer |= (value >>> offset & mask(bufferCapacity)) << (Byte.SIZE - bufferCapacity);
+            os.write(buffer);
+            buffer = 0;
+            offset += bufferCapacity;
+            bufferCapacity = Byte.SIZE;
+        }
+        if (bitsLength > offset) {
+            buffer |= ((value >>> offset) & mask(bitsLength - offset)) << (Byte.SIZE - bufferCapacity);
+            bufferCapacity -= bitsLength - offset;
+        }
+    }
+
+    public byte[] toByteArray() {
+        if (bufferCapacity != Byte.SIZE) {
+            os.write(buffer);
+        }
+        return os.toByteArray();
+    }
+
+    private static int mask(int i) {
+        return (1 << i) - 1;
+    }
+}
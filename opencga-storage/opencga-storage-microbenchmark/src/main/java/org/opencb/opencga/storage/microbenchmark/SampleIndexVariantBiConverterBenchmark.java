@@ -0,0 +1,50 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexSchema;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexVariantBiConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode the variants of one sample index batch with the {@link SampleIndexVariantBiConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SampleIndexVariantBiConverterBenchmark {
+
+    private static final String CHROMOSOME = "1";
+    private static final int BATCH_START = 10 * SampleIndexSchema.BATCH_SIZE;
+
+    @Param({"100", "10000"})
+    protected int numVariants;
+
+    private SampleIndexVariantBiConverter converter;
+    private List<Variant> variants;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        converter = new SampleIndexVariantBiConverter();
+        int maxDistance = Math.max(1, SampleIndexSchema.BATCH_SIZE / numVariants - 1);
+        variants = SyntheticData.variants(SyntheticData.random(), CHROMOSOME, BATCH_START, numVariants, maxDistance);
+        bytes = converter.toBytes(variants);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return converter.toBytes(variants);
+    }
+
+    @Benchmark
+    public List<Variant> toVariants() {
+        return converter.toVariants(CHROMOSOME, BATCH_START, bytes, 0, bytes.length);
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.variant.search.solr.SolrQueryParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translate variant queries into solr queries with {@link SolrQueryParser#parse}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolrQueryParserBenchmark {
+
+    @Param({"region", "genotype", "annotation", "full"})
+    protected String query;
+
+    @Param({"100"})
+    protected int numFiles;
+
+    @Param({"10"})
+    protected int samplesPerFile;
+
+    private SolrQueryParser parser;
+    private Query variantQuery;
+    private QueryOptions options;
+
+    @Setup
+    public void setup() throws Exception {
+        VariantStorageMetadataManager metadataManager = SyntheticData.metadataManager(VariantQueryParserBenchmark.STUDY_NAME,
+                numFiles, samplesPerFile);
+        parser = new SolrQueryParser(metadataManager);
+        variantQuery = VariantQueryParserBenchmark.buildQuery(query);
+        options = new QueryOptions(QueryOptions.LIMIT, 100);
+    }
+
+    @Benchmark
+    public SolrQuery parse() {
+        return parser.parse(variantQuery, options);
+    }
+
+}
@@ -0,0 +1,176 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.*;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageMetadataDBAdaptorFactory;
+
+import java.util.*;
+
+/**
+ * Random, but reproducible, data for the microbenchmarks.
+ */
+public final class SyntheticData {
+
+    public static final String[] GENOTYPES = {"0/0", "0/1", "1/1", "0/0", "0/0", "./.", "0|1", "1|0"};
+    public static final String[] CONSEQUENCE_TYPES = {
+            "missense_variant", "synonymous_variant", "stop_gained", "intron_variant", "upstream_gene_variant",
+            "downstream_gene_variant", "3_prime_UTR_variant", "5_prime_UTR_variant", "splice_region_variant",
+            "non_coding_transcript_exon_variant", "frameshift_variant", "intergenic_variant",
+    };
+    public static final String[] BIOTYPES = {"protein_coding", "lincRNA", "miRNA", "processed_transcript", "nonsense_mediated_decay"};
+    public static final String[] BASES = {"A", "C", "G", "T"};
+
+    private static final long SEED = 42;
+
+    private SyntheticData() {
+    }
+
+    public static Random random() {
+        return new Random(SEED);
+    }
+
+    /**
+     * Sorted list of variants from one chromosome, without studies.
+     *
+     * @param random      Random generator
+     * @param chromosome  Chromosome
+     * @param start       Start of the first variant
+     * @param numVariants Number of variants to generate
+     * @param maxDistance Max distance between two consecutive variants
+     * @return list of variants
+     */
+    public static List<Variant> variants(Random random, String chromosome, int start, int numVariants, int maxDistance) {
+        List<Variant> variants = new ArrayList<>(numVariants);
+        int position = start;
+        for (int i = 0; i < numVariants; i++) {
+            position += 1 + random.nextInt(maxDistance);
+            String reference = BASES[random.nextInt(BASES.length)];
+            String alternate;
+            switch (random.nextInt(10)) {
+                case 0:
+                    // Insertion
+                    alternate = reference + BASES[random.nextInt(BASES.length)] + BASES[random.nextInt(BASES.length)];
+                    break;
+                case 1:
+                    // Deletion
+                    alternate = "";
+                    break;
+                default:
+                    // Any base but the reference
+                    int referenceIdx = Arrays.asList(BASES).indexOf(reference);
+                    alternate = BASES[(referenceIdx + 1 + random.nextInt(BASES.length - 1)) % BASES.length];
+                    break;
+            }
+            variants.add(new Variant(chromosome, position, reference, alternate));
+        }
+        return variants;
+    }
+
+    /**
+     * Add a study with random genotypes to each variant.
+     *
+     * @param random   Random generator
+     * @param variants Variants
+     * @param studyId  Study
+     * @param samples  Samples of the study
+     * @return same list of variants
+     */
+    public static List<Variant> addStudy(Random random, List<Variant> variants, String studyId, List<String> samples) {
+        Map<String, Integer> samplesPosition = new LinkedHashMap<>();
+        for (String sample : samples) {
+            samplesPosition.put(sample, samplesPosition.size());
+        }
+        for (Variant variant : variants) {
+            StudyEntry studyEntry = new StudyEntry(studyId, Collections.emptyList(), Collections.singletonList("GT"));
+            studyEntry.setSamplesPosition(samplesPosition);
+            for (String sample : samples) {
+                studyEntry.addSampleData(sample, Collections.singletonList(genotype(random)));
+            }
+            variant.addStudyEntry(studyEntry);
+        }
+        return variants;
+    }
+
+    /**
+     * Create an in memory metadata manager with one study and some indexed files.
+     * Sample names are "S0", "S1", ... , and file names are "F0.vcf", "F1.vcf", ...
+     *
+     * @param study          Study name
+     * @param numFiles       Number of files
+     * @param samplesPerFile Number of samples per file
+     * @return metadata manager
+     * @throws StorageEngineException on error
+     */
+    public static VariantStorageMetadataManager metadataManager(String study, int numFiles, int samplesPerFile)
+            throws StorageEngineException {
+        DummyVariantStorageMetadataDBAdaptorFactory.clear();
+        VariantStorageMetadataManager metadataManager =
+                new VariantStorageMetadataManager(new DummyVariantStorageMetadataDBAdaptorFactory());
+        int studyId = metadataManager.createStudy(study).getId();
+        List<String> samples = samples(numFiles * samplesPerFile);
+        List<Integer> fileIds = new ArrayList<>(numFiles);
+        for (int i = 0; i < numFiles; i++) {
+            fileIds.add(metadataManager.registerFile(studyId, "F" + i + ".vcf",
+                    samples.subList(i * samplesPerFile, (i + 1) * samplesPerFile)));
+        }
+        metadataManager.addIndexedFiles(studyId, fileIds);
+        return metadataManager;
+    }
+
+    public static List<String> samples(int numSamples) {
+        List<String> samples = new ArrayList<>(numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            samples.add("S" + i);
+        }
+        return samples;
+    }
+
+    public static String genotype(Random random) {
+        return GENOTYPES[random.nextInt(GENOTYPES.length)];
+    }
+
+    /**
+     * Variant annotation with random consequence types and population frequencies.
+     *
+     * @param random      Random generator
+     * @param populations Populations, as STUDY:POPULATION
+     * @return Variant annotation
+     */
+    public static VariantAnnotation annotation(Random random, List<String> populations) {
+        VariantAnnotation annotation = new VariantAnnotation();
+        int numTranscripts = 1 + random.nextInt(8);
+        List<ConsequenceType> consequenceTypes = new ArrayList<>(numTranscripts);
+        for (int i = 0; i < numTranscripts; i++) {
+            ConsequenceType ct = new ConsequenceType();
+            ct.setGeneName("GENE" + random.nextInt(1000));
+            ct.setEnsemblGeneId("ENSG" + random.nextInt(1000));
+            ct.setEnsemblTranscriptId("ENST" + random.nextInt(10000));
+            ct.setBiotype(BIOTYPES[random.nextInt(BIOTYPES.length)]);
+            List<SequenceOntologyTerm> terms = new ArrayList<>(2);
+            for (int j = 0; j < 1 + random.nextInt(2); j++) {
+                String so = CONSEQUENCE_TYPES[random.nextInt(CONSEQUENCE_TYPES.length)];
+                terms.add(new SequenceOntologyTerm(so, so));
+            }
+            ct.setSequenceOntologyTerms(terms);
+            consequenceTypes.add(ct);
+        }
+        annotation.setConsequenceTypes(consequenceTypes);
+
+        List<PopulationFrequency> frequencies = new ArrayList<>(populations.size());
+        for (String studyPopulation : populations) {
+            String[] split = studyPopulation.split(":");
+            PopulationFrequency pf = new PopulationFrequency();
+            pf.setStudy(split[0]);
+            pf.setPopulation(split[1]);
+            float af = (float) Math.pow(random.nextDouble(), 4);
+            pf.setAltAlleleFreq(af);
+            pf.setRefAlleleFreq(1 - af);
+            frequencies.add(pf);
+        }
+        annotation.setPopulationFrequencies(frequencies);
+        return annotation;
+    }
+}
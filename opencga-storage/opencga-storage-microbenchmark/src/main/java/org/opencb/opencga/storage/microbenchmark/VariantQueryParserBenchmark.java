@@ -0,0 +1,84 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.variant.query.ParsedVariantQuery;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+
+/**
+ * Parse and preprocess variant queries with {@link VariantQueryParser#parseQuery}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantQueryParserBenchmark {
+
+    public static final String STUDY_NAME = "S";
+
+    @Param({"region", "genotype", "annotation", "full"})
+    protected String query;
+
+    @Param({"100"})
+    protected int numFiles;
+
+    @Param({"10"})
+    protected int samplesPerFile;
+
+    private VariantQueryParser parser;
+    private Query variantQuery;
+    private QueryOptions options;
+
+    @Setup
+    public void setup() throws Exception {
+        VariantStorageMetadataManager metadataManager = SyntheticData.metadataManager(STUDY_NAME, numFiles, samplesPerFile);
+        parser = new VariantQueryParser(null, metadataManager);
+        variantQuery = buildQuery(query);
+        options = new QueryOptions(QueryOptions.EXCLUDE, "annotation");
+    }
+
+    static Query buildQuery(String name) {
+        Query query = new Query(STUDY.key(), STUDY_NAME);
+        switch (name) {
+            case "region":
+                query.append(REGION.key(), "1:1000-200000,2:5000000-6000000,X");
+                break;
+            case "genotype":
+                query.append(GENOTYPE.key(), "S0:0/1,1/1;S11:0/1;S25:0/0");
+                break;
+            case "annotation":
+                query.append(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant,stop_gained,stop_lost")
+                        .append(ANNOT_BIOTYPE.key(), "protein_coding")
+                        .append(ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "1kG_phase3:ALL<0.01;GNOMAD_GENOMES:ALL<0.01");
+                break;
+            case "full":
+                query.append(REGION.key(), "1:1000-200000,2:5000000-6000000")
+                        .append(GENOTYPE.key(), "S0:0/1,1/1;S11:0/1;S25:0/0")
+                        .append(FILE.key(), "F0.vcf")
+                        .append(FILTER.key(), "PASS")
+                        .append(QUAL.key(), ">30")
+                        .append(INCLUDE_SAMPLE.key(), "S0,S11,S25")
+                        .append(ANNOT_CONSEQUENCE_TYPE.key(), "missense_variant,stop_gained,stop_lost")
+                        .append(ANNOT_BIOTYPE.key(), "protein_coding")
+                        .append(ANNOT_POPULATION_ALTERNATE_FREQUENCY.key(), "1kG_phase3:ALL<0.01;GNOMAD_GENOMES:ALL<0.01");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown query " + name);
+        }
+        return query;
+    }
+
+    @Benchmark
+    public ParsedVariantQuery parseQuery() {
+        return parser.parseQuery(variantQuery, options);
+    }
+
+}
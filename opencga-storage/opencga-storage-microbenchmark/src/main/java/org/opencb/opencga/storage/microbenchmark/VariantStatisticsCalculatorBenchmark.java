@@ -0,0 +1,60 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.tools.variant.stats.VariantStatsWrapper;
+import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsCalculator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compute the stats of a batch of variants with {@link VariantStatisticsCalculator#calculateBatch}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantStatisticsCalculatorBenchmark {
+
+    private static final String STUDY_ID = "S";
+
+    @Param({"100"})
+    protected int numVariants;
+
+    @Param({"10", "1000"})
+    protected int numSamples;
+
+    @Param({"1", "5"})
+    protected int numCohorts;
+
+    private List<Variant> variants;
+    private Map<String, Set<String>> cohorts;
+
+    @Setup
+    public void setup() {
+        Random random = SyntheticData.random();
+        List<String> samples = SyntheticData.samples(numSamples);
+        variants = SyntheticData.addStudy(random, SyntheticData.variants(random, "1", 1000, numVariants, 1000), STUDY_ID, samples);
+
+        cohorts = new LinkedHashMap<>();
+        cohorts.put("ALL", new LinkedHashSet<>(samples));
+        for (int i = 1; i < numCohorts; i++) {
+            Set<String> cohort = new LinkedHashSet<>();
+            for (String sample : samples) {
+                if (random.nextInt(numCohorts) == 0) {
+                    cohort.add(sample);
+                }
+            }
+            cohorts.put("C" + i, cohort);
+        }
+    }
+
+    @Benchmark
+    public List<VariantStatsWrapper> calculateBatch() {
+        return new VariantStatisticsCalculator().calculateBatch(variants, STUDY_ID, cohorts);
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.opencb.opencga.storage.microbenchmark;
+
+import com.google.common.collect.ListMultimap;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+import org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToAvroBinaryConverter;
+import org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageConverterTask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load a batch of variants into the stage collection format with the {@link MongoDBVariantStageConverterTask},
+ * and read them back as the merge does, for each {@link VariantToAvroBinaryConverter.Compression}.
+ * Throughput is reported in variants per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantToAvroBinaryConverterBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"none", "deflate", "lz4", "zstd"})
+    protected String compression;
+
+    @Param({"10", "100"})
+    protected int numSamples;
+
+    private VariantToAvroBinaryConverter converter;
+    private MongoDBVariantStageConverterTask task;
+    private List<Variant> variants;
+    private List<Binary> binaries;
+
+    @Setup
+    public void setup() {
+        converter = new VariantToAvroBinaryConverter(VariantToAvroBinaryConverter.Compression.from(compression));
+        task = new MongoDBVariantStageConverterTask(null, converter);
+
+        variants = SyntheticData.variants(SyntheticData.random(), "1", 1000, BATCH_SIZE, 100);
+        SyntheticData.addStudy(SyntheticData.random(), variants, "1", SyntheticData.samples(numSamples));
+        for (Variant variant : variants) {
+            StudyEntry studyEntry = variant.getStudies().get(0);
+            FileEntry fileEntry = new FileEntry("1", null, new HashMap<>());
+            fileEntry.getData().put("QUAL", "50.0");
+            fileEntry.getData().put("FILTER", "PASS");
+            studyEntry.setFiles(Collections.singletonList(fileEntry));
+        }
+
+        binaries = new ArrayList<>(task.convert(variants).values());
+    }
+
+    @TearDown
+    public void tearDown() {
+        converter.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public ListMultimap<Document, Binary> load() {
+        return task.convert(variants);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<Variant> read() {
+        List<Variant> read = new ArrayList<>(binaries.size());
+        for (Binary binary : binaries) {
+            read.add(converter.convertToDataModelType(binary));
+        }
+        return read;
+    }
+
+}
@@ -103,6 +103,22 @@ public class MongoDBProjectMetadataDBAdaptor implements ProjectMetadataAdaptor {
         }
     }
 
+    @Override
+    public int getCounter(Integer studyId, String idType) {
+        // Ignore study configuration, as in generateId. Per study counters must include the study in the idType
+        String field = COUNTERS_FIELD + '.' + idType;
+        DataResult<Document> result = collection.find(QUERY, new Document(field, true), new QueryOptions());
+        if (result.first() == null) {
+            return 0;
+        }
+        Document counters = result.first().get(COUNTERS_FIELD, Document.class);
+        if (counters == null || counters.getInteger(idType) == null) {
+            return 0;
+        } else {
+            return counters.getInteger(idType);
+        }
+    }
+
     protected void ensureProjectMetadataExists() throws StorageEngineException {
         try (Lock lock = lockProject(100, 1000)) {
             if (getProjectMetadata().first() == null) {
@@ -46,6 +46,7 @@ import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManag
 import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
 import org.opencb.opencga.storage.core.variant.io.VariantImporter;
 import org.opencb.opencga.storage.core.variant.query.executors.VariantQueryExecutor;
+import org.opencb.opencga.storage.core.variant.search.SearchIndexVariantQueryExecutor;
 import org.opencb.opencga.storage.core.variant.score.VariantScoreFormatDescriptor;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchLoadResult;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
@@ -55,7 +56,9 @@ import org.opencb.opencga.storage.mongodb.auth.MongoCredentials;
 import org.opencb.opencga.storage.mongodb.metadata.MongoDBVariantStorageMetadataDBAdaptorFactory;
 import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
 import org.opencb.opencga.storage.mongodb.variant.load.MongoVariantImporter;
+import org.opencb.opencga.storage.mongodb.variant.index.sample.SampleIndexMongoDBBuilder;
 import org.opencb.opencga.storage.mongodb.variant.query.RegionVariantQueryExecutor;
+import org.opencb.opencga.storage.mongodb.variant.query.SampleIndexMongoDBQueryExecutor;
 import org.opencb.opencga.storage.mongodb.variant.stats.MongoDBVariantStatisticsManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -200,7 +203,12 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         Thread hook = scm.buildShutdownHook(REMOVE_OPERATION_NAME, studyId, task.getId());
         try {
             Runtime.getRuntime().addShutdownHook(hook);
+            Set<Integer> sampleIds = new LinkedHashSet<>();
+            for (Integer fileId : fileIds) {
+                sampleIds.addAll(scm.getSampleIdsFromFileId(studyId, fileId));
+            }
             getDBAdaptor().removeFiles(study, files, task.getTimestamp(), new QueryOptions(options));
+            new SampleIndexMongoDBBuilder(getDBAdaptor()).remove(studyId, sampleIds);
             postRemoveFiles(study, fileIds, task.getId(), false);
         } catch (Exception e) {
             postRemoveFiles(study, fileIds, task.getId(), true);
@@ -210,6 +218,31 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         }
     }
 
+    @Override
+    public void sampleIndex(String study, List<String> samples, ObjectMap options) throws StorageEngineException {
+        int studyId = getMetadataManager().getStudyId(study);
+        List<Integer> sampleIds;
+        if (samples.size() == 1 && samples.get(0).equals(ALL)) {
+            sampleIds = getMetadataManager().getIndexedSamples(studyId);
+        } else {
+            sampleIds = getMetadataManager().getSampleIds(studyId, samples);
+        }
+        new SampleIndexMongoDBBuilder(getDBAdaptor()).build(studyId, sampleIds);
+    }
+
+    /**
+     * The annotation index is built alongside the genotypes, so the SampleIndex is fully rebuilt.
+     *
+     * @param study   Study
+     * @param samples List of samples. Use "all" to index all samples.
+     * @param options Other options
+     * @throws StorageEngineException in an error occurs
+     */
+    @Override
+    public void sampleIndexAnnotate(String study, List<String> samples, ObjectMap options) throws StorageEngineException {
+        sampleIndex(study, samples, options);
+    }
+
     @Override
     public void removeStudy(String studyName) throws StorageEngineException {
         VariantStorageMetadataManager metadataManager = getMetadataManager();
@@ -454,6 +487,16 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         executors.add(new RegionVariantQueryExecutor(getDBAdaptor(), getStorageEngineId(), getOptions()));
         // Then, add the default executors
         executors.addAll(super.initVariantQueryExecutors());
+        // Genotype queries that can be answered with the SampleIndex go after the compound heterozygous and the
+        // samples search executors, but before the generic search index executor.
+        int idx = executors.size() - 1;
+        for (int i = 0; i < executors.size(); i++) {
+            if (executors.get(i) instanceof SearchIndexVariantQueryExecutor) {
+                idx = i;
+                break;
+            }
+        }
+        executors.add(idx, new SampleIndexMongoDBQueryExecutor(getDBAdaptor(), getStorageEngineId(), getOptions()));
 
         return executors;
     }
@@ -499,7 +542,7 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
             MongoDataStore db = mongoDataStoreManager.get(
                     getMongoCredentials().getMongoDbName(),
                     getMongoCredentials().getMongoDBConfiguration());
-            metadataManager = new VariantStorageMetadataManager(new MongoDBVariantStorageMetadataDBAdaptorFactory(db, options));
+            metadataManager = new VariantStorageMetadataManager(new MongoDBVariantStorageMetadataDBAdaptorFactory(db, options), options);
             return metadataManager;
         }
     }
@@ -17,6 +17,7 @@ public enum MongoDBVariantStorageOptions implements ConfigurationOption {
     COLLECTION_STAGE("storage.mongodb.collection.stage", "stage"),
     COLLECTION_ANNOTATION("storage.mongodb.collection.annotation", "annot"),
     COLLECTION_TRASH("storage.mongodb.collection.trash", "trash"),
+    COLLECTION_SAMPLE_INDEX("storage.mongodb.collection.sampleIndex", "sample_index"),
 
     ALREADY_LOADED_VARIANTS("storage.mongodb.alreadyLoadedVariants", 0),
 
@@ -26,6 +27,7 @@ public enum MongoDBVariantStorageOptions implements ConfigurationOption {
     STAGE_RESUME("storage.mongodb.stage.resume", false),
     STAGE_PARALLEL_WRITE("storage.mongodb.stage.parallelWrite", false),
     STAGE_CLEAN_WHILE_LOAD("storage.mongodb.stage.clean.while.load", true),
+    STAGE_COMPRESSION("storage.mongodb.stage.compression", "deflate"), // Compression of the stage binaries. [none, deflate, lz4, zstd]
 
     DIRECT_LOAD("storage.mongodb.directLoad", false),
     DIRECT_LOAD_PARALLEL_WRITE("storage.mongodb.directLoad.parallelWrite", false),
@@ -36,6 +38,9 @@ public enum MongoDBVariantStorageOptions implements ConfigurationOption {
     MERGE_IGNORE_OVERLAPPING_VARIANTS("storage.mongodb.merge.ignoreOverlappingVariants", false),   //Do not look for overlapping variants
     MERGE_PARALLEL_WRITE("storage.mongodb.merge.parallelWrite", false),
     MERGE_BATCH_SIZE("storage.mongodb.merge.batchSize", 10),          //Number of files to merge directly from first to second collection
+    MERGE_PARTITIONS("storage.mongodb.merge.partitions", 1),          //Number of chromosomes to merge concurrently
+
+    SAMPLE_INDEX_ENABLED("storage.mongodb.sampleIndex.enabled", false), // Build the sample index after loading, and use it to query
 
 
     EXTRA_GENOTYPE_FIELDS_COMPRESS("extra-fields.compress", true),    //Compress with gzip other sample information
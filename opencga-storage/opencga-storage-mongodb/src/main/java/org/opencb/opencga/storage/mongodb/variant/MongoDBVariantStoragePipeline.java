@@ -50,7 +50,10 @@ import org.opencb.opencga.storage.core.variant.dedup.AbstractDuplicatedVariantsR
 import org.opencb.opencga.storage.core.variant.dedup.DuplicatedVariantsResolverFactory;
 import org.opencb.opencga.storage.core.variant.transform.RemapVariantIdsTask;
 import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
+import org.opencb.opencga.storage.mongodb.variant.converters.VariantStringIdConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToAvroBinaryConverter;
 import org.opencb.opencga.storage.mongodb.variant.exceptions.MongoVariantStorageEngineException;
+import org.opencb.opencga.storage.mongodb.variant.index.sample.SampleIndexMongoDBBuilder;
 import org.opencb.opencga.storage.mongodb.variant.load.MongoDBVariantWriteResult;
 import org.opencb.opencga.storage.mongodb.variant.load.direct.MongoDBVariantDirectLoader;
 import org.opencb.opencga.storage.mongodb.variant.load.direct.MongoDBVariantStageAndFileReader;
@@ -67,6 +70,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
@@ -93,6 +99,9 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
             VariantType.TRANSLOCATION
 //            VariantType.BREAKEND
     ));
+    // Study attribute with the partitions already merged by a merge task. Used to resume the task.
+    private static final String MERGE_PARTITIONS_CHECKPOINT = "mongodb.merge.mergedPartitions";
+    private static final String OTHER_CHROMOSOMES_PARTITION = "*";
 
     private final VariantMongoDBAdaptor dbAdaptor;
     private final ObjectMap loadStats = new ObjectMap();
@@ -412,7 +421,10 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
 
             //Runner
             ProgressLogger progressLogger = new ProgressLogger("Write variants in STAGE collection:", numRecords, 200);
-            MongoDBVariantStageConverterTask converterTask = new MongoDBVariantStageConverterTask(progressLogger);
+            VariantToAvroBinaryConverter.Compression compression = VariantToAvroBinaryConverter.Compression.from(
+                    options.getString(STAGE_COMPRESSION.key(), STAGE_COMPRESSION.defaultValue()));
+            VariantToAvroBinaryConverter variantConverter = new VariantToAvroBinaryConverter(compression);
+            MongoDBVariantStageConverterTask converterTask = new MongoDBVariantStageConverterTask(progressLogger, variantConverter);
             MongoDBVariantStageLoader stageLoader =
                     new MongoDBVariantStageLoader(stageCollection, studyMetadata.getId(), fileId,
                             isResumeStage(options));
@@ -448,6 +460,7 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                 stageSuccess(fileMetadata);
             } finally {
                 Runtime.getRuntime().removeShutdownHook(hook);
+                variantConverter.close();
             }
 
             long skippedVariants = converterTask.getSkippedVariants();
@@ -655,16 +668,85 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                                                         StudyMetadata studyMetadata)
             throws StorageEngineException {
         MongoDBCollection stageCollection = dbAdaptor.getStageCollection(studyMetadata.getId());
-        MongoDBVariantStageReader reader = new MongoDBVariantStageReader(stageCollection, studyMetadata.getId());
-        MergeMode mergeMode = MergeMode.from(studyMetadata.getAttributes());
-        if (mergeMode.equals(MergeMode.BASIC)) {
-            // Read only files to load when MergeMode is BASIC
-            reader.setFileIds(fileIds);
+        MongoDBVariantStageReader reader = newStageReader(stageCollection, studyMetadata, fileIds, null);
+        ProgressLogger progressLogger = new ProgressLogger("Write variants in VARIANTS collection:", reader::countNumVariants, 200);
+        progressLogger.setApproximateTotalCount(reader.countAproxNumVariants());
+
+        int numPartitions = options.getInt(MERGE_PARTITIONS.key(), MERGE_PARTITIONS.defaultValue());
+        List<String> chromosomes = numPartitions > 1 ? getMergeChromosomes(fileIds, studyMetadata) : Collections.emptyList();
+        if (chromosomes.isEmpty()) {
+            logger.info("Merging files " + fileIds);
+            return mergePartition(fileIds, batchSize, loadThreads, studyMetadata, reader, progressLogger);
+        }
+
+        // One independent pipeline per chromosome, plus one more for any chromosome not in the list.
+        // Overlapping variants are always in the same chromosome, so partitions can be merged concurrently.
+        Map<String, MongoDBVariantStageReader> partitions = new LinkedHashMap<>();
+        for (String chromosome : chromosomes) {
+            partitions.put(chromosome, newStageReader(stageCollection, studyMetadata, fileIds, Collections.singletonList(chromosome)));
+        }
+        partitions.put(OTHER_CHROMOSOMES_PARTITION,
+                newStageReader(stageCollection, studyMetadata, fileIds, null).setExcludedChromosomes(chromosomes));
+
+        // Partitions already merged by a previous execution of this task
+        String checkpointKey = MERGE_PARTITIONS_CHECKPOINT + '.' + currentTask.getId();
+        Set<String> mergedPartitions = new HashSet<>(getMetadataManager().getStudyMetadata(studyMetadata.getId())
+                .getAttributes().getAsStringList(checkpointKey));
+
+        int partitionThreads = Math.max(1, loadThreads / numPartitions);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numPartitions, partitions.size()));
+        List<Future<MongoDBVariantWriteResult>> futures = new ArrayList<>(partitions.size());
+        logger.info("Merging files " + fileIds + " in " + partitions.size() + " partitions, " + numPartitions + " at a time");
+        for (Map.Entry<String, MongoDBVariantStageReader> entry : partitions.entrySet()) {
+            String partition = entry.getKey();
+            if (mergedPartitions.contains(partition)) {
+                logger.info("Skip partition '" + partition + "'. Already merged");
+                continue;
+            }
+            futures.add(executor.submit(() -> {
+                logger.info("Merging partition '" + partition + '\'');
+                MongoDBVariantWriteResult result = mergePartition(fileIds, batchSize, partitionThreads, studyMetadata,
+                        entry.getValue(), progressLogger);
+                getMetadataManager().updateStudyMetadata(studyMetadata.getId(), sm -> {
+                    List<String> merged = new ArrayList<>(sm.getAttributes().getAsStringList(checkpointKey));
+                    merged.add(partition);
+                    sm.getAttributes().put(checkpointKey, merged);
+                    return sm;
+                });
+                logger.info("Partition '" + partition + "' merged");
+                return result;
+            }));
         }
+        executor.shutdown();
+
+        MongoDBVariantWriteResult writeResult = new MongoDBVariantWriteResult();
+        try {
+            for (Future<MongoDBVariantWriteResult> future : futures) {
+                writeResult.merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new StorageEngineException("Interrupted while merging files " + fileIds, e);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            logger.info("Write result: {}", writeResult);
+            throw new StorageEngineException("Error while merging files " + fileIds, e.getCause());
+        }
+
+        getMetadataManager().updateStudyMetadata(studyMetadata.getId(), sm -> {
+            sm.getAttributes().remove(checkpointKey);
+            return sm;
+        });
+        return writeResult;
+    }
+
+    private MongoDBVariantWriteResult mergePartition(List<Integer> fileIds, int batchSize, int loadThreads, StudyMetadata studyMetadata,
+                                                     MongoDBVariantStageReader reader, ProgressLogger progressLogger)
+            throws StorageEngineException {
+        MongoDBCollection stageCollection = dbAdaptor.getStageCollection(studyMetadata.getId());
         boolean resume = isResumeMerge(options);
         boolean cleanWhileLoading = options.getBoolean(STAGE_CLEAN_WHILE_LOAD.key(), STAGE_CLEAN_WHILE_LOAD.defaultValue());
-        ProgressLogger progressLogger = new ProgressLogger("Write variants in VARIANTS collection:", reader::countNumVariants, 200);
-        progressLogger.setApproximateTotalCount(reader.countAproxNumVariants());
 
         boolean ignoreOverlapping = studyMetadata.getAttributes().getBoolean(MERGE_IGNORE_OVERLAPPING_VARIANTS.key(),
                 MERGE_IGNORE_OVERLAPPING_VARIANTS.defaultValue());
@@ -692,7 +774,6 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         }
 
         try {
-            logger.info("Merging files " + fileIds);
             ptrMerge.run();
         } catch (ExecutionException e) {
             logger.info("Write result: {}", variantLoader.getResult());
@@ -701,16 +782,67 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
         return variantLoader.getResult();
     }
 
+    private MongoDBVariantStageReader newStageReader(MongoDBCollection stageCollection, StudyMetadata studyMetadata,
+                                                     List<Integer> fileIds, Collection<String> chromosomes) {
+        MongoDBVariantStageReader reader = new MongoDBVariantStageReader(stageCollection, studyMetadata.getId(), chromosomes);
+        MergeMode mergeMode = MergeMode.from(studyMetadata.getAttributes());
+        if (mergeMode.equals(MergeMode.BASIC)) {
+            // Read only files to load when MergeMode is BASIC
+            reader.setFileIds(fileIds);
+        }
+        return reader;
+    }
+
+    /**
+     * Get the chromosomes to merge, from the stats of the files that can be found in the stage collection.
+     * Files without stats are ignored, as any other chromosome is merged in an extra partition.
+     *
+     * @param fileIds       Files to merge
+     * @param studyMetadata Study metadata
+     * @return List of chromosomes
+     * @throws StorageEngineException if there is an error reading the file metadata
+     */
+    private List<String> getMergeChromosomes(List<Integer> fileIds, StudyMetadata studyMetadata) throws StorageEngineException {
+        Set<Integer> stageFiles = new LinkedHashSet<>(fileIds);
+        if (MergeMode.from(studyMetadata.getAttributes()).equals(MergeMode.ADVANCED)) {
+            stageFiles.addAll(getMetadataManager().getIndexedFiles(studyMetadata.getId()));
+        }
+        // Chromosomes with the same representation in the stage collection must go to the same partition
+        Map<String, String> chromosomes = new LinkedHashMap<>();
+        for (Integer fileId : stageFiles) {
+            VariantFileMetadata fileMetadata = getMetadataManager().getVariantFileMetadata(studyMetadata.getId(), fileId, null).first();
+            if (fileMetadata == null || fileMetadata.getStats() == null || fileMetadata.getStats().getChromosomeCount() == null) {
+                continue;
+            }
+            for (String chromosome : fileMetadata.getStats().getChromosomeCount().keySet()) {
+                chromosomes.putIfAbsent(VariantStringIdConverter.convertChromosome(chromosome), chromosome);
+            }
+        }
+        return new ArrayList<>(chromosomes.values());
+    }
+
     @Override
     public URI postLoad(URI input, URI output) throws StorageEngineException {
 
         if (options.getBoolean(MERGE.key()) || options.getBoolean(DIRECT_LOAD.key(), DIRECT_LOAD.defaultValue())) {
-            return postLoad(input, output, fileIds);
+            URI uri = postLoad(input, output, fileIds);
+            if (options.getBoolean(SAMPLE_INDEX_ENABLED.key(), SAMPLE_INDEX_ENABLED.defaultValue())) {
+                buildSampleIndex();
+            }
+            return uri;
         } else {
             return input;
         }
     }
 
+    private void buildSampleIndex() throws StorageEngineException {
+        Set<Integer> sampleIds = new LinkedHashSet<>();
+        for (Integer fileId : fileIds) {
+            sampleIds.addAll(getMetadataManager().getSampleIdsFromFileId(getStudyId(), fileId));
+        }
+        new SampleIndexMongoDBBuilder(dbAdaptor).build(getStudyId(), new ArrayList<>(sampleIds));
+    }
+
     @Override
     protected void securePostLoad(List<Integer> fileIds, StudyMetadata studyMetadata) throws StorageEngineException {
         super.securePostLoad(fileIds, studyMetadata);
@@ -147,6 +147,14 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         }
     }
 
+    public MongoDBCollection getSampleIndexCollection(int studyId) {
+        return db.getCollection(getSampleIndexCollectionName(studyId));
+    }
+
+    private String getSampleIndexCollectionName(int studyId) {
+        return configuration.getString(COLLECTION_SAMPLE_INDEX.key(), COLLECTION_SAMPLE_INDEX.defaultValue()) + "_study_" + studyId;
+    }
+
     public MongoDBCollection getStudiesCollection() {
         return db.getCollection(configuration.getString(COLLECTION_STUDIES.key(), COLLECTION_STUDIES.defaultValue()));
     }
@@ -364,6 +372,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             logger.info("Remove study from stage collection - step 2/2");
             removeEmptyVariantsFromStage(studyId);
         }
+
+        db.dropCollection(getSampleIndexCollectionName(studyId));
         return result;
     }
 
@@ -16,43 +16,131 @@
 
 package org.opencb.opencga.storage.mongodb.variant.converters.stage;
 
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificDatumWriter;
-import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.lang3.StringUtils;
 import org.bson.types.Binary;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.VariantAvro;
 import org.opencb.commons.datastore.core.ComplexTypeConverter;
 import org.opencb.commons.utils.CompressionUtils;
 
-import java.io.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
+ * Converts variants to compressed avro binaries for the stage collection.
+ *
+ * Binaries start with a header: {@link #FORMAT_MARKER}, the {@link Compression} id and the length of the uncompressed avro.
+ * Binaries without header are zlib streams written by previous versions, which are still readable.
+ *
+ * Encoders, decoders, buffers and compressors are reused within each thread.
+ * Close the converter to release the native memory of the compressors once it is no longer used.
+ *
  * Created on 27/06/16.
  *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
-public class VariantToAvroBinaryConverter implements ComplexTypeConverter<Variant, Binary> {
+public class VariantToAvroBinaryConverter implements ComplexTypeConverter<Variant, Binary>, AutoCloseable {
+
+    /**
+     * First byte of the binaries with header. Zlib streams never start with this byte.
+     */
+    public static final byte FORMAT_MARKER = 0;
+    private static final int HEADER_SIZE = 6;
+    private static final int ZSTD_LEVEL = 1;
+
+    public enum Compression {
+        NONE((byte) 0),
+        DEFLATE((byte) 1),
+        LZ4((byte) 2),
+        ZSTD((byte) 3);
+
+        private final byte id;
+
+        Compression(byte id) {
+            this.id = id;
+        }
+
+        public byte getId() {
+            return id;
+        }
+
+        public static Compression from(String compression) {
+            if (StringUtils.isEmpty(compression)) {
+                return DEFLATE;
+            }
+            try {
+                return valueOf(compression.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown stage binary compression '" + compression + "'. "
+                        + "Expected one of " + Arrays.toString(values()).toLowerCase(), e);
+            }
+        }
+
+        public static Compression from(byte id) {
+            for (Compression compression : values()) {
+                if (compression.id == id) {
+                    return compression;
+                }
+            }
+            throw new IllegalArgumentException("Unknown stage binary compression " + id);
+        }
+    }
+
+    private final SpecificDatumWriter<VariantAvro> writer = new SpecificDatumWriter<>(VariantAvro.getClassSchema());
+    private final SpecificDatumReader<VariantAvro> reader = new SpecificDatumReader<>(VariantAvro.getClassSchema());
+    private final Compression compression;
+    private final ThreadLocal<Codec> codecs = new ThreadLocal<>();
+    private final List<Codec> openCodecs = new CopyOnWriteArrayList<>();
 
-    private SpecificDatumWriter<VariantAvro> writer = new SpecificDatumWriter<>(VariantAvro.getClassSchema());
-    private SpecificDatumReader<VariantAvro> reader = new SpecificDatumReader<>(VariantAvro.getClassSchema());
+    public VariantToAvroBinaryConverter() {
+        this(Compression.DEFLATE);
+    }
+
+    public VariantToAvroBinaryConverter(Compression compression) {
+        this.compression = compression;
+    }
 
     @Override
     public Variant convertToDataModelType(Binary object) {
-        BinaryDecoder decoder = null;
+        byte[] data = object.getData();
+        Codec codec = getCodec();
         try {
-            byte[] data = object.getData();
-            data = CompressionUtils.decompress(data);
-            InputStream is = new ByteArrayInputStream(data);
-//                is = new GZIPInputStream(is);
-            decoder = DecoderFactory.get().directBinaryDecoder(is, decoder);
-
-            return new Variant(reader.read(null, decoder));
+            if (data.length >= HEADER_SIZE && data[0] == FORMAT_MARKER) {
+                int length = readInt(data, 2);
+                switch (Compression.from(data[1])) {
+                    case NONE:
+                        return read(codec, data, HEADER_SIZE, length);
+                    case DEFLATE:
+                        return read(codec, codec.inflate(data, HEADER_SIZE, data.length - HEADER_SIZE, length), 0, length);
+                    case LZ4:
+                        return read(codec, codec.lz4Decompress(data, HEADER_SIZE, data.length - HEADER_SIZE, length), 0, length);
+                    case ZSTD:
+                        return read(codec, codec.zstdDecompress(data, HEADER_SIZE, data.length - HEADER_SIZE, length), 0, length);
+                    default:
+                        throw new IllegalArgumentException("Unknown stage binary compression " + data[1]);
+                }
+            } else {
+                // Legacy binary, without header
+                data = CompressionUtils.decompress(data);
+                return read(codec, data, 0, data.length);
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         } catch (DataFormatException e) {
@@ -60,25 +148,203 @@ public class VariantToAvroBinaryConverter implements ComplexTypeConverter<Varian
         }
     }
 
+    private Variant read(Codec codec, byte[] data, int offset, int length) throws IOException {
+        codec.decoder = DecoderFactory.get().binaryDecoder(data, offset, length, codec.decoder);
+        return new Variant(reader.read(null, codec.decoder));
+    }
 
     @Override
     public Binary convertToStorageType(Variant variant) {
-        BinaryEncoder encoder = null;
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-//            byteArrayOutputStream.reset();
-        OutputStream outputStream = byteArrayOutputStream;
+        Codec codec = getCodec();
         try {
-//                outputStream = new GZIPOutputStream(outputStream);
-            encoder = EncoderFactory.get().directBinaryEncoder(outputStream, encoder);
-            writer.write(variant.getImpl(), encoder);
-            encoder.flush();
-            outputStream.flush();
-            outputStream.close();
-            byte[] data = byteArrayOutputStream.toByteArray();
-            data = CompressionUtils.compress(data);
+            codec.avro.reset();
+            codec.encoder = EncoderFactory.get().directBinaryEncoder(codec.avro, codec.encoder);
+            writer.write(variant.getImpl(), codec.encoder);
+            codec.encoder.flush();
+            int length = codec.avro.size();
+
+            byte[] data;
+            switch (compression) {
+                case NONE:
+                    data = new byte[HEADER_SIZE + length];
+                    System.arraycopy(codec.avro.getBuffer(), 0, data, HEADER_SIZE, length);
+                    break;
+                case DEFLATE:
+                    data = codec.deflate(codec.avro.getBuffer(), length, HEADER_SIZE);
+                    break;
+                case LZ4:
+                    data = codec.lz4Compress(codec.avro.getBuffer(), length, HEADER_SIZE);
+                    break;
+                case ZSTD:
+                    data = codec.zstdCompress(codec.avro.getBuffer(), length, HEADER_SIZE);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown stage binary compression " + compression);
+            }
+            data[0] = FORMAT_MARKER;
+            data[1] = compression.getId();
+            writeInt(data, 2, length);
             return new Binary(data);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
+
+    private Codec getCodec() {
+        Codec codec = codecs.get();
+        if (codec == null || codec.ended) {
+            codec = new Codec();
+            codecs.set(codec);
+            openCodecs.add(codec);
+        }
+        return codec;
+    }
+
+    /**
+     * Release the compressors of all the threads. Must not be called while other threads are still using the converter.
+     * The converter can be used again after closing it, creating new compressors.
+     */
+    @Override
+    public void close() {
+        for (Codec codec : openCodecs) {
+            codec.end();
+        }
+        openCodecs.clear();
+        codecs.remove();
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24
+                | (data[offset + 1] & 0xFF) << 16
+                | (data[offset + 2] & 0xFF) << 8
+                | (data[offset + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    private static final class AvroBuffer extends ByteArrayOutputStream {
+        AvroBuffer() {
+            super(1024);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+    private static final class Codec {
+        private final AvroBuffer avro = new AvroBuffer();
+        private Deflater deflater;
+        private Inflater inflater;
+        private LZ4Compressor lz4Compressor;
+        private LZ4SafeDecompressor lz4Decompressor;
+        private byte[] buffer = new byte[1024];
+        private BinaryEncoder encoder;
+        private BinaryDecoder decoder;
+        private volatile boolean ended;
+
+        // Compress the input, leaving the first bytes free for the header.
+        byte[] deflate(byte[] input, int length, int offset) {
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+            }
+            deflater.reset();
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+            int size = offset;
+            while (!deflater.finished()) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                size += deflater.deflate(buffer, size, buffer.length - size);
+            }
+            return Arrays.copyOf(buffer, size);
+        }
+
+        // Decompress the input into the shared buffer. Only valid until the next call.
+        byte[] inflate(byte[] input, int offset, int length, int uncompressedLength) throws DataFormatException {
+            ensureBuffer(uncompressedLength);
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            inflater.reset();
+            inflater.setInput(input, offset, length);
+            int size = 0;
+            while (size < uncompressedLength) {
+                int read = inflater.inflate(buffer, size, uncompressedLength - size);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new DataFormatException("Truncated stage binary. Expected " + uncompressedLength + " bytes, read " + size);
+                }
+                size += read;
+            }
+            return buffer;
+        }
+
+        // Compress the input, leaving the first bytes free for the header.
+        byte[] lz4Compress(byte[] input, int length, int offset) {
+            if (lz4Compressor == null) {
+                lz4Compressor = LZ4Factory.fastestInstance().fastCompressor();
+            }
+            ensureBuffer(offset + lz4Compressor.maxCompressedLength(length));
+            int size = lz4Compressor.compress(input, 0, length, buffer, offset, buffer.length - offset);
+            return Arrays.copyOf(buffer, offset + size);
+        }
+
+        // Decompress the input into the shared buffer. Only valid until the next call.
+        byte[] lz4Decompress(byte[] input, int offset, int length, int uncompressedLength) throws DataFormatException {
+            if (lz4Decompressor == null) {
+                lz4Decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+            }
+            ensureBuffer(uncompressedLength);
+            int size = lz4Decompressor.decompress(input, offset, length, buffer, 0, uncompressedLength);
+            if (size != uncompressedLength) {
+                throw new DataFormatException("Truncated stage binary. Expected " + uncompressedLength + " bytes, read " + size);
+            }
+            return buffer;
+        }
+
+        // Compress the input, leaving the first bytes free for the header.
+        byte[] zstdCompress(byte[] input, int length, int offset) {
+            ensureBuffer(offset + (int) Zstd.compressBound(length));
+            long size = Zstd.compressByteArray(buffer, offset, buffer.length - offset, input, 0, length, ZSTD_LEVEL);
+            if (Zstd.isError(size)) {
+                throw new IllegalStateException("Error compressing stage binary: " + Zstd.getErrorName(size));
+            }
+            return Arrays.copyOf(buffer, offset + (int) size);
+        }
+
+        // Decompress the input into the shared buffer. Only valid until the next call.
+        byte[] zstdDecompress(byte[] input, int offset, int length, int uncompressedLength) throws DataFormatException {
+            ensureBuffer(uncompressedLength);
+            long size = Zstd.decompressByteArray(buffer, 0, uncompressedLength, input, offset, length);
+            if (Zstd.isError(size)) {
+                throw new DataFormatException("Error decompressing stage binary: " + Zstd.getErrorName(size));
+            } else if (size != uncompressedLength) {
+                throw new DataFormatException("Truncated stage binary. Expected " + uncompressedLength + " bytes, read " + size);
+            }
+            return buffer;
+        }
+
+        private void ensureBuffer(int size) {
+            if (buffer.length < size) {
+                buffer = new byte[size];
+            }
+        }
+
+        // Release the native memory of the zlib streams. LZ4 and Zstd do not keep native state between calls.
+        void end() {
+            ended = true;
+            if (deflater != null) {
+                deflater.end();
+            }
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
 }
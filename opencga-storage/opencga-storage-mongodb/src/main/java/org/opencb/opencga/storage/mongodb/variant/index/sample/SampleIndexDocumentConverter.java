@@ -0,0 +1,258 @@
+package org.opencb.opencga.storage.mongodb.variant.index.sample;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.avro.ConsequenceType;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+import org.opencb.biodata.models.variant.avro.SequenceOntologyTerm;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.opencga.storage.core.io.bit.BitInputStream;
+import org.opencb.opencga.storage.core.io.bit.BitOutputStream;
+import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.mongodb.variant.converters.VariantStringIdConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.MISSENSE_VARIANT;
+
+/**
+ * Converts the documents of the MongoDB SampleIndex.
+ *
+ * There is one document per sample, chromosome and batch of {@link #BATCH_SIZE} bases:
+ * <code>
+ *   {
+ *     _id: "{chromosome}:{batchStart}_{sample}",
+ *     sid: {sample}, chr: {chromosome}, start: {batchStart},
+ *     gts: [ { gt: "0/1", c: {count}, v: [ {variants} ], fi: {fileIndex}, ai: {annotationIndex} } ]
+ *   }
+ * </code>
+ * The chromosome and batch start of the _id are padded as in the variants collection (see {@link VariantStringIdConverter}),
+ * so sorting by _id returns the batches in the same order as the variants.
+ * Variants of each genotype are sorted by position. The file index and the annotation index are bit-packed with
+ * {@link BitOutputStream}, using {@link #FILE_INDEX_BITS} and {@link #ANNOTATION_INDEX_BITS} bits per variant,
+ * in the same order as the variants.
+ */
+public final class SampleIndexDocumentConverter {
+
+    public static final int BATCH_SIZE = 1_000_000;
+    public static final String PASS = "PASS";
+
+    public static final String SAMPLE_FIELD = "sid";
+    public static final String CHROMOSOME_FIELD = "chr";
+    public static final String START_FIELD = "start";
+    public static final String GENOTYPES_FIELD = "gts";
+    public static final String GENOTYPE_FIELD = "gt";
+    public static final String COUNT_FIELD = "c";
+    public static final String VARIANTS_FIELD = "v";
+    public static final String FILE_INDEX_FIELD = "fi";
+    public static final String ANNOTATION_INDEX_FIELD = "ai";
+
+    // File index: FILTER=PASS + QUAL range
+    public static final int FILE_INDEX_BITS = 3;
+    public static final int FILE_PASS_MASK = 1;
+    public static final int FILE_QUAL_SHIFT = 1;
+    public static final double[] QUAL_THRESHOLDS = new double[]{10, 20, 30};
+
+    // Annotation index: annotated + LoF + missense
+    public static final int ANNOTATION_INDEX_BITS = 3;
+    public static final int ANNOTATED_MASK = 1;
+    public static final int LOF_MASK = 1 << 1;
+    public static final int MISSENSE_MASK = 1 << 2;
+
+    private SampleIndexDocumentConverter() {
+    }
+
+    public static int getBatchStart(int position) {
+        return position / BATCH_SIZE * BATCH_SIZE;
+    }
+
+    public static String buildId(int sampleId, String chromosome, int batchStart) {
+        return VariantStringIdConverter.buildId(chromosome, batchStart) + "_" + sampleId;
+    }
+
+    /**
+     * Check if a genotype is stored in the index. Only genotypes with at least one alternate allele are indexed.
+     * Reference, missing (e.g. "./.", "./0") and unknown genotypes are not indexed.
+     *
+     * @param gt Genotype
+     * @return   If the genotype is indexed
+     */
+    public static boolean isIndexedGenotype(String gt) {
+        if (StringUtils.isEmpty(gt) || gt.contains("?") || gt.equals(GenotypeClass.NA_GT_VALUE)) {
+            return false;
+        }
+        for (int i = 0; i < gt.length(); i++) {
+            char c = gt.charAt(i);
+            if (c >= '1' && c <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static int getFileIndex(FileEntry fileEntry) {
+        if (fileEntry == null || fileEntry.getData() == null) {
+            return 0;
+        }
+        int code = 0;
+        if (PASS.equals(fileEntry.getData().get(StudyEntry.FILTER))) {
+            code |= FILE_PASS_MASK;
+        }
+        String qualStr = fileEntry.getData().get(StudyEntry.QUAL);
+        if (StringUtils.isNotEmpty(qualStr) && !qualStr.equals(".")) {
+            double qual = Double.parseDouble(qualStr);
+            int qualCode = 0;
+            while (qualCode < QUAL_THRESHOLDS.length && qual >= QUAL_THRESHOLDS[qualCode]) {
+                qualCode++;
+            }
+            code |= qualCode << FILE_QUAL_SHIFT;
+        }
+        return code;
+    }
+
+    public static int getAnnotationIndex(VariantAnnotation annotation) {
+        if (annotation == null || annotation.getConsequenceTypes() == null) {
+            return 0;
+        }
+        int code = ANNOTATED_MASK;
+        for (ConsequenceType ct : annotation.getConsequenceTypes()) {
+            if (ct.getSequenceOntologyTerms() == null) {
+                continue;
+            }
+            for (SequenceOntologyTerm term : ct.getSequenceOntologyTerms()) {
+                if (VariantQueryUtils.LOF_SET.contains(term.getName())) {
+                    code |= LOF_MASK;
+                } else if (MISSENSE_VARIANT.equals(term.getName())) {
+                    code |= MISSENSE_MASK;
+                }
+            }
+        }
+        return code;
+    }
+
+    public static List<GenotypeEntry> getGenotypes(Document document) {
+        List<Document> gts = document.get(GENOTYPES_FIELD, List.class);
+        List<GenotypeEntry> entries = new ArrayList<>(gts.size());
+        for (Document gt : gts) {
+            entries.add(new GenotypeEntry(gt));
+        }
+        return entries;
+    }
+
+    /**
+     * Accumulates the variants of one sample in one batch.
+     */
+    public static class Builder {
+        private final int sampleId;
+        private final String chromosome;
+        private final int batchStart;
+        private final Map<String, GenotypeBuilder> genotypes = new TreeMap<>();
+
+        public Builder(int sampleId, String chromosome, int batchStart) {
+            this.sampleId = sampleId;
+            this.chromosome = chromosome;
+            this.batchStart = batchStart;
+        }
+
+        public Builder add(String gt, String variant, int fileIndex, int annotationIndex) {
+            GenotypeBuilder builder = genotypes.computeIfAbsent(gt, k -> new GenotypeBuilder());
+            builder.variants.add(variant);
+            builder.fileIndex.write(fileIndex, FILE_INDEX_BITS);
+            builder.annotationIndex.write(annotationIndex, ANNOTATION_INDEX_BITS);
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return genotypes.isEmpty();
+        }
+
+        public String getId() {
+            return buildId(sampleId, chromosome, batchStart);
+        }
+
+        public Document toDocument() {
+            List<Document> gts = new ArrayList<>(genotypes.size());
+            for (Map.Entry<String, GenotypeBuilder> entry : genotypes.entrySet()) {
+                GenotypeBuilder builder = entry.getValue();
+                gts.add(new Document(GENOTYPE_FIELD, entry.getKey())
+                        .append(COUNT_FIELD, builder.variants.size())
+                        .append(VARIANTS_FIELD, builder.variants)
+                        .append(FILE_INDEX_FIELD, builder.fileIndex.toByteArray())
+                        .append(ANNOTATION_INDEX_FIELD, builder.annotationIndex.toByteArray()));
+            }
+            return new Document("_id", getId())
+                    .append(SAMPLE_FIELD, sampleId)
+                    .append(CHROMOSOME_FIELD, chromosome)
+                    .append(START_FIELD, batchStart)
+                    .append(GENOTYPES_FIELD, gts);
+        }
+    }
+
+    private static class GenotypeBuilder {
+        private final List<String> variants = new ArrayList<>();
+        private final BitOutputStream fileIndex = new BitOutputStream();
+        private final BitOutputStream annotationIndex = new BitOutputStream();
+    }
+
+    /**
+     * Variants of one genotype in a SampleIndex document.
+     */
+    public static class GenotypeEntry {
+        private final String gt;
+        private final int count;
+        private final List<String> variants;
+        private final byte[] fileIndex;
+        private final byte[] annotationIndex;
+
+        GenotypeEntry(Document document) {
+            gt = document.getString(GENOTYPE_FIELD);
+            count = document.getInteger(COUNT_FIELD);
+            variants = document.get(VARIANTS_FIELD, List.class);
+            fileIndex = getBytes(document.get(FILE_INDEX_FIELD));
+            annotationIndex = getBytes(document.get(ANNOTATION_INDEX_FIELD));
+        }
+
+        private static byte[] getBytes(Object o) {
+            if (o instanceof Binary) {
+                return ((Binary) o).getData();
+            } else {
+                return (byte[]) o;
+            }
+        }
+
+        public String getGt() {
+            return gt;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public List<String> getVariants() {
+            return variants;
+        }
+
+        public int[] getFileIndex() {
+            return decode(fileIndex, FILE_INDEX_BITS);
+        }
+
+        public int[] getAnnotationIndex() {
+            return decode(annotationIndex, ANNOTATION_INDEX_BITS);
+        }
+
+        private int[] decode(byte[] bytes, int bits) {
+            int[] codes = new int[count];
+            BitInputStream is = new BitInputStream(bytes);
+            for (int i = 0; i < count; i++) {
+                codes[i] = is.readInt(bits);
+            }
+            return codes;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.opencb.opencga.storage.mongodb.variant.index.sample;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.mongodb.MongoDBIterator;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+import org.opencb.opencga.storage.core.metadata.models.StudyMetadata;
+import org.opencb.opencga.storage.core.utils.iterators.CloseableIterator;
+import org.opencb.opencga.storage.core.variant.query.ParsedQuery;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryParser;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.QueryOperation;
+import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static org.opencb.cellbase.core.variant.annotation.VariantAnnotationUtils.MISSENSE_VARIANT;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.isNegated;
+import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.isValidParam;
+import static org.opencb.opencga.storage.mongodb.variant.index.sample.SampleIndexDocumentConverter.*;
+
+/**
+ * Reads the MongoDB SampleIndex.
+ *
+ * Documents are read sorted by chromosome and batch, in the same order as the variants collection.
+ * All the documents of the same batch are combined to produce the variants of that batch,
+ * so only one batch is kept in memory.
+ */
+public class SampleIndexMongoDBAdaptor {
+
+    private static final Comparator<Variant> VARIANT_COMPARATOR = Comparator.comparing(Variant::getStart)
+            .thenComparing(Variant::toString);
+
+    private final VariantMongoDBAdaptor dbAdaptor;
+    private final VariantStorageMetadataManager metadataManager;
+    private final Logger logger = LoggerFactory.getLogger(SampleIndexMongoDBAdaptor.class);
+
+    public SampleIndexMongoDBAdaptor(VariantMongoDBAdaptor dbAdaptor) {
+        this.dbAdaptor = dbAdaptor;
+        this.metadataManager = dbAdaptor.getMetadataManager();
+    }
+
+    /**
+     * Build a SampleIndexMongoDBQuery from a variant query. The query must be already preprocessed.
+     *
+     * Only the filters by GENOTYPE, REGION and CONSEQUENCE_TYPE are used. Returns null if the query can not be answered
+     * with the SampleIndex, e.g. negated or reference genotypes, or samples without the SampleIndex.
+     *
+     * @param query Variant query
+     * @return SampleIndexMongoDBQuery or null
+     */
+    public SampleIndexMongoDBQuery parse(Query query) {
+        if (!isValidParam(query, GENOTYPE)) {
+            return null;
+        }
+        StudyMetadata defaultStudy = VariantQueryParser.getDefaultStudy(query, metadataManager);
+        if (defaultStudy == null) {
+            return null;
+        }
+        int studyId = defaultStudy.getId();
+
+        Map<Object, List<String>> gtMap = new LinkedHashMap<>();
+        QueryOperation operation = VariantQueryUtils.parseGenotypeFilter(query.getString(GENOTYPE.key()), gtMap);
+        Map<Integer, List<String>> samplesGenotypes = new LinkedHashMap<>();
+        boolean useAnnotationIndex = true;
+        int currentAnnotationId = SampleIndexMongoDBBuilder.getCurrentAnnotationId(metadataManager);
+        for (Map.Entry<Object, List<String>> entry : gtMap.entrySet()) {
+            Integer sampleId = metadataManager.getSampleId(studyId, entry.getKey());
+            if (sampleId == null) {
+                return null;
+            }
+            SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
+            if (!sampleMetadata.isReady(SampleIndexMongoDBBuilder.SAMPLE_INDEX_STATUS)) {
+                return null;
+            }
+            if (sampleMetadata.getAttributes().getInt(SampleIndexMongoDBBuilder.SAMPLE_INDEX_ANNOTATION_ID, -1) != currentAnnotationId) {
+                // Annotation index is outdated. Do not use it to discard variants
+                useAnnotationIndex = false;
+            }
+            for (String gt : entry.getValue()) {
+                if (isNegated(gt) || !isIndexedGenotype(gt)) {
+                    return null;
+                }
+            }
+            samplesGenotypes.put(sampleId, entry.getValue());
+        }
+
+        List<Region> regions = isValidParam(query, REGION)
+                ? Region.parseRegions(query.getString(REGION.key()), true)
+                : Collections.emptyList();
+
+        int annotationMask = 0;
+        if (isValidParam(query, ANNOT_CONSEQUENCE_TYPE)) {
+            annotationMask = parseAnnotationMask(query);
+            if (annotationMask < 0) {
+                return null;
+            }
+            if (!useAnnotationIndex) {
+                annotationMask = 0;
+            }
+        }
+
+        return new SampleIndexMongoDBQuery(studyId, samplesGenotypes, operation, regions, annotationMask);
+    }
+
+    /**
+     * Get the mask over the annotation index for the CONSEQUENCE_TYPE filter.
+     *
+     * @param query Variant query
+     * @return Annotation mask, or -1 if the consequence types are not covered by the annotation index
+     */
+    public static int parseAnnotationMask(Query query) {
+        ParsedQuery<String> cts = VariantQueryUtils.splitValue(query, ANNOT_CONSEQUENCE_TYPE);
+        if (cts.getOperation() == QueryOperation.AND) {
+            return -1;
+        }
+        int mask = 0;
+        for (String ct : VariantQueryUtils.parseConsequenceTypes(cts.getValues())) {
+            if (VariantQueryUtils.LOF_SET.contains(ct)) {
+                mask |= LOF_MASK;
+            } else if (MISSENSE_VARIANT.equals(ct)) {
+                mask |= MISSENSE_MASK;
+            } else {
+                return -1;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Iterate over the ids of the variants matching the query, sorted by chromosome and position.
+     *
+     * @param query SampleIndexMongoDBQuery
+     * @return Iterator of variant ids
+     */
+    public CloseableIterator<String> iterator(SampleIndexMongoDBQuery query) {
+        return new SampleIndexIterator(query, nativeIterator(query));
+    }
+
+    public long count(SampleIndexMongoDBQuery query) {
+        long count = 0;
+        try (SampleIndexIterator iterator = new SampleIndexIterator(query, nativeIterator(query))) {
+            while (iterator.nextBatch()) {
+                count += iterator.batch.size();
+            }
+        }
+        return count;
+    }
+
+    private MongoDBIterator<Document> nativeIterator(SampleIndexMongoDBQuery query) {
+        List<Bson> filters = new ArrayList<>();
+        filters.add(Filters.in(SAMPLE_FIELD, query.getSamplesGenotypes().keySet()));
+        if (!query.getRegions().isEmpty()) {
+            List<Bson> regionFilters = new ArrayList<>(query.getRegions().size());
+            for (Region region : query.getRegions()) {
+                regionFilters.add(Filters.and(
+                        Filters.eq(CHROMOSOME_FIELD, region.getChromosome()),
+                        Filters.gte(START_FIELD, getBatchStart(region.getStart())),
+                        Filters.lte(START_FIELD, region.getEnd())));
+            }
+            filters.add(Filters.or(regionFilters));
+        }
+        Bson mongoQuery = Filters.and(filters);
+        logger.debug("SampleIndex query: {}", query);
+        // Sort by _id to get the chromosomes in the same order as the variants collection
+        QueryOptions options = new QueryOptions(QueryOptions.SORT, Sorts.ascending("_id"));
+        return dbAdaptor.getSampleIndexCollection(query.getStudyId()).nativeQuery().find(mongoQuery, null, options);
+    }
+
+    private static boolean overlaps(List<Region> regions, Variant variant) {
+        if (regions.isEmpty()) {
+            return true;
+        }
+        for (Region region : regions) {
+            if (region.overlaps(variant.getChromosome(), variant.getStart(), variant.getEnd())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class SampleIndexIterator extends CloseableIterator<String> {
+        private final SampleIndexMongoDBQuery query;
+        private final MongoDBIterator<Document> cursor;
+        private Document nextDocument;
+        private List<String> batch = Collections.emptyList();
+        private Iterator<String> batchIterator = Collections.emptyIterator();
+
+        SampleIndexIterator(SampleIndexMongoDBQuery query, MongoDBIterator<Document> cursor) {
+            this.query = query;
+            this.cursor = cursor;
+            nextDocument = cursor.hasNext() ? cursor.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!batchIterator.hasNext()) {
+                if (!nextBatch()) {
+                    return false;
+                }
+                batchIterator = batch.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batchIterator.next();
+        }
+
+        /**
+         * Read all the documents from the next batch, and combine them.
+         *
+         * @return false if there are no more batches
+         */
+        private boolean nextBatch() {
+            if (nextDocument == null) {
+                return false;
+            }
+            String chromosome = nextDocument.getString(CHROMOSOME_FIELD);
+            int start = nextDocument.getInteger(START_FIELD);
+            List<Document> documents = new ArrayList<>(query.getSamplesGenotypes().size());
+            while (nextDocument != null
+                    && nextDocument.getString(CHROMOSOME_FIELD).equals(chromosome)
+                    && nextDocument.getInteger(START_FIELD) == start) {
+                documents.add(nextDocument);
+                nextDocument = cursor.hasNext() ? cursor.next() : null;
+            }
+            batch = combine(documents);
+            return true;
+        }
+
+        private List<String> combine(List<Document> documents) {
+            boolean and = query.getOperation() == QueryOperation.AND;
+            if (and && documents.size() < query.getSamplesGenotypes().size()) {
+                // Some sample does not have variants in this batch
+                return Collections.emptyList();
+            }
+            Map<String, Variant> variants = null;
+            for (Document document : documents) {
+                List<String> gts = query.getSamplesGenotypes().get(document.getInteger(SAMPLE_FIELD));
+                Map<String, Variant> sampleVariants = new HashMap<>();
+                for (GenotypeEntry entry : getGenotypes(document)) {
+                    if (gts.contains(entry.getGt())) {
+                        addVariants(entry, sampleVariants);
+                    }
+                }
+                if (variants == null) {
+                    variants = sampleVariants;
+                } else if (and) {
+                    variants.keySet().retainAll(sampleVariants.keySet());
+                } else {
+                    variants.putAll(sampleVariants);
+                }
+                if (and && variants.isEmpty()) {
+                    break;
+                }
+            }
+            if (variants == null || variants.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<Variant> sorted = new ArrayList<>(variants.values());
+            sorted.sort(VARIANT_COMPARATOR);
+            List<String> ids = new ArrayList<>(sorted.size());
+            for (Variant variant : sorted) {
+                ids.add(variant.toString());
+            }
+            return ids;
+        }
+
+        private void addVariants(GenotypeEntry entry, Map<String, Variant> sampleVariants) {
+            int annotationMask = query.getAnnotationMask();
+            int[] annotationIndex = annotationMask == 0 ? null : entry.getAnnotationIndex();
+            List<String> entryVariants = entry.getVariants();
+            for (int i = 0; i < entryVariants.size(); i++) {
+                if (annotationIndex != null
+                        && (annotationIndex[i] & ANNOTATED_MASK) != 0
+                        && (annotationIndex[i] & annotationMask) == 0) {
+                    continue;
+                }
+                String id = entryVariants.get(i);
+                if (!sampleVariants.containsKey(id)) {
+                    Variant variant = new Variant(id);
+                    if (overlaps(query.getRegions(), variant)) {
+                        sampleVariants.put(id, variant);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.opencb.opencga.storage.mongodb.variant.index.sample;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.ProjectMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static org.opencb.opencga.storage.mongodb.variant.index.sample.SampleIndexDocumentConverter.*;
+
+/**
+ * Builds the MongoDB SampleIndex of a set of samples, reading the variants collection.
+ *
+ * The variants are read sorted, so only the current batch of each sample is kept in memory.
+ * Existing documents of the samples are replaced.
+ */
+public class SampleIndexMongoDBBuilder {
+
+    public static final String SAMPLE_INDEX_STATUS = "mongodb_sample_index";
+    // Variant annotation used to build the annotation index. See ProjectMetadata.VariantAnnotationMetadata#getId
+    public static final String SAMPLE_INDEX_ANNOTATION_ID = "mongodb_sample_index.annotationId";
+    private static final QueryOptions UPSERT_AND_REPLACE = new QueryOptions(MongoDBCollection.UPSERT, true)
+            .append(MongoDBCollection.REPLACE, true);
+
+    private final VariantMongoDBAdaptor dbAdaptor;
+    private final VariantStorageMetadataManager metadataManager;
+    private final Logger logger = LoggerFactory.getLogger(SampleIndexMongoDBBuilder.class);
+
+    public SampleIndexMongoDBBuilder(VariantMongoDBAdaptor dbAdaptor) {
+        this.dbAdaptor = dbAdaptor;
+        this.metadataManager = dbAdaptor.getMetadataManager();
+    }
+
+    public static void createIndexes(MongoDBCollection collection) {
+        collection.createIndex(new Document(SAMPLE_FIELD, 1)
+                .append(CHROMOSOME_FIELD, 1)
+                .append(START_FIELD, 1), new ObjectMap(MongoDBCollection.BACKGROUND, true));
+    }
+
+    /**
+     * Build the SampleIndex for the given samples.
+     *
+     * @param studyId   Study
+     * @param sampleIds Samples to index
+     * @throws StorageEngineException if there is an error updating the metadata
+     */
+    public void build(int studyId, List<Integer> sampleIds) throws StorageEngineException {
+        if (sampleIds.isEmpty()) {
+            return;
+        }
+        MongoDBCollection collection = dbAdaptor.getSampleIndexCollection(studyId);
+        createIndexes(collection);
+
+        // Do not use the index of these samples until it is built
+        for (Integer sampleId : sampleIds) {
+            metadataManager.updateSampleMetadata(studyId, sampleId,
+                    sampleMetadata -> sampleMetadata.setStatus(SAMPLE_INDEX_STATUS, TaskMetadata.Status.RUNNING));
+        }
+        collection.remove(Filters.in(SAMPLE_FIELD, sampleIds), new QueryOptions(MongoDBCollection.MULTI, true));
+
+        Map<Integer, String> sampleNames = new LinkedHashMap<>();
+        Map<Integer, List<String>> sampleFiles = new HashMap<>();
+        Set<String> files = new LinkedHashSet<>();
+        for (Integer sampleId : sampleIds) {
+            sampleNames.put(sampleId, metadataManager.getSampleName(studyId, sampleId));
+            List<String> fileNames = new ArrayList<>();
+            for (Integer fileId : metadataManager.getFileIdsFromSampleId(studyId, sampleId)) {
+                if (metadataManager.isFileIndexed(studyId, fileId)) {
+                    fileNames.add(metadataManager.getFileName(studyId, fileId));
+                }
+            }
+            sampleFiles.put(sampleId, fileNames);
+            files.addAll(fileNames);
+        }
+        if (files.isEmpty()) {
+            logger.info("No indexed files for samples {}. Skip sample index", sampleNames.values());
+            markReady(studyId, sampleIds);
+            return;
+        }
+
+        logger.info("Build SampleIndex for {} samples", sampleIds.size());
+        Query query = new Query(VariantQueryParam.STUDY.key(), studyId)
+                .append(VariantQueryParam.FILE.key(), String.join(",", files))
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), new ArrayList<>(sampleNames.values()))
+                .append(VariantQueryParam.INCLUDE_FILE.key(), new ArrayList<>(files));
+        QueryOptions options = new QueryOptions(QueryOptions.SORT, true)
+                .append(QueryOptions.EXCLUDE, VariantField.STUDIES_STATS.fieldName());
+
+        Map<Integer, Builder> builders = new HashMap<>();
+        String chromosome = null;
+        int batchStart = -1;
+        int numDocuments = 0;
+        try (VariantDBIterator iterator = dbAdaptor.iterator(query, options)) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                int variantBatchStart = getBatchStart(variant.getStart());
+                if (!variant.getChromosome().equals(chromosome) || variantBatchStart != batchStart) {
+                    numDocuments += write(collection, builders);
+                    chromosome = variant.getChromosome();
+                    batchStart = variantBatchStart;
+                    for (Integer sampleId : sampleIds) {
+                        builders.put(sampleId, new Builder(sampleId, chromosome, batchStart));
+                    }
+                }
+                StudyEntry studyEntry = variant.getStudies().get(0);
+                int annotationIndex = getAnnotationIndex(variant.getAnnotation());
+                String variantStr = variant.toString();
+                for (Map.Entry<Integer, String> entry : sampleNames.entrySet()) {
+                    String gt = studyEntry.getSampleData(entry.getValue(), "GT");
+                    if (isIndexedGenotype(gt)) {
+                        int fileIndex = getFileIndex(getFileEntry(studyEntry, sampleFiles.get(entry.getKey())));
+                        builders.get(entry.getKey()).add(gt, variantStr, fileIndex, annotationIndex);
+                    }
+                }
+            }
+            numDocuments += write(collection, builders);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new StorageEngineException("Error building sample index", e);
+        }
+        logger.info("SampleIndex built with {} documents", numDocuments);
+
+        markReady(studyId, sampleIds);
+    }
+
+    /**
+     * Remove the SampleIndex of the given samples.
+     *
+     * @param studyId   Study
+     * @param sampleIds Samples to remove
+     * @throws StorageEngineException if there is an error updating the metadata
+     */
+    public void remove(int studyId, Collection<Integer> sampleIds) throws StorageEngineException {
+        for (Integer sampleId : sampleIds) {
+            metadataManager.updateSampleMetadata(studyId, sampleId,
+                    sampleMetadata -> sampleMetadata.setStatus(SAMPLE_INDEX_STATUS, TaskMetadata.Status.NONE));
+        }
+        dbAdaptor.getSampleIndexCollection(studyId)
+                .remove(Filters.in(SAMPLE_FIELD, sampleIds), new QueryOptions(MongoDBCollection.MULTI, true));
+    }
+
+    private void markReady(int studyId, List<Integer> sampleIds) throws StorageEngineException {
+        int annotationId = getCurrentAnnotationId(metadataManager);
+        for (Integer sampleId : sampleIds) {
+            metadataManager.updateSampleMetadata(studyId, sampleId, sampleMetadata -> {
+                sampleMetadata.getAttributes().put(SAMPLE_INDEX_ANNOTATION_ID, annotationId);
+                return sampleMetadata.setStatus(SAMPLE_INDEX_STATUS, TaskMetadata.Status.READY);
+            });
+        }
+    }
+
+    /**
+     * Id of the current variant annotation, or -1 if the variants were never annotated.
+     *
+     * @param metadataManager Metadata manager
+     * @return Current annotation id
+     */
+    public static int getCurrentAnnotationId(VariantStorageMetadataManager metadataManager) {
+        ProjectMetadata.VariantAnnotationMetadata current = metadataManager.getProjectMetadata().getAnnotation().getCurrent();
+        return current == null ? -1 : current.getId();
+    }
+
+    private static FileEntry getFileEntry(StudyEntry studyEntry, List<String> files) {
+        for (String file : files) {
+            FileEntry fileEntry = studyEntry.getFile(file);
+            if (fileEntry != null) {
+                return fileEntry;
+            }
+        }
+        return null;
+    }
+
+    private int write(MongoDBCollection collection, Map<Integer, Builder> builders) {
+        List<Bson> queries = new ArrayList<>(builders.size());
+        List<Document> documents = new ArrayList<>(builders.size());
+        for (Builder builder : builders.values()) {
+            if (!builder.isEmpty()) {
+                queries.add(Filters.eq("_id", builder.getId()));
+                documents.add(builder.toDocument());
+            }
+        }
+        builders.clear();
+        if (!queries.isEmpty()) {
+            collection.update(queries, documents, UPSERT_AND_REPLACE);
+        }
+        return queries.size();
+    }
+}
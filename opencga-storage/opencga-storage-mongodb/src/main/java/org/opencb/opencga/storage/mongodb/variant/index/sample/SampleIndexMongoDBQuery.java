@@ -0,0 +1,69 @@
+package org.opencb.opencga.storage.mongodb.variant.index.sample;
+
+import org.opencb.biodata.models.core.Region;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.QueryOperation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query over the MongoDB SampleIndex.
+ */
+public class SampleIndexMongoDBQuery {
+
+    private final int studyId;
+    private final Map<Integer, List<String>> samplesGenotypes;
+    private final QueryOperation operation;
+    private final List<Region> regions;
+    private final int annotationMask;
+
+    /**
+     * Create a new SampleIndexMongoDBQuery.
+     *
+     * @param studyId          Study
+     * @param samplesGenotypes Genotypes to return for each sample
+     * @param operation        Operation between samples
+     * @param regions          Regions to filter. Empty to not filter by region
+     * @param annotationMask   Mask over the annotation index. Annotated variants not matching any of the bits are discarded.
+     *                         Use 0 to skip this filter.
+     */
+    public SampleIndexMongoDBQuery(int studyId, Map<Integer, List<String>> samplesGenotypes, QueryOperation operation,
+                                   List<Region> regions, int annotationMask) {
+        this.studyId = studyId;
+        this.samplesGenotypes = samplesGenotypes;
+        this.operation = operation == null ? QueryOperation.AND : operation;
+        this.regions = regions;
+        this.annotationMask = annotationMask;
+    }
+
+    public int getStudyId() {
+        return studyId;
+    }
+
+    public Map<Integer, List<String>> getSamplesGenotypes() {
+        return samplesGenotypes;
+    }
+
+    public QueryOperation getOperation() {
+        return operation;
+    }
+
+    public List<Region> getRegions() {
+        return regions;
+    }
+
+    public int getAnnotationMask() {
+        return annotationMask;
+    }
+
+    @Override
+    public String toString() {
+        return "SampleIndexMongoDBQuery{"
+                + "studyId=" + studyId
+                + ", samplesGenotypes=" + samplesGenotypes
+                + ", operation=" + operation
+                + ", regions=" + regions
+                + ", annotationMask=" + annotationMask
+                + '}';
+    }
+}
@@ -51,6 +51,7 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
     private final int studyId;
     private Collection<Integer> fileIds;
     private final Collection<String> chromosomes;
+    private Collection<String> excludedChromosomes = Collections.emptyList();
     private MongoPersistentCursor iterator;
     private Document next = null;   // Pending variant
 
@@ -73,6 +74,17 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
         return this;
     }
 
+    /**
+     * Skip the variants from these chromosomes. Used to read all the variants not covered by other readers.
+     *
+     * @param excludedChromosomes Chromosomes to skip
+     * @return this
+     */
+    public MongoDBVariantStageReader setExcludedChromosomes(Collection<String> excludedChromosomes) {
+        this.excludedChromosomes = excludedChromosomes == null ? Collections.emptyList() : excludedChromosomes;
+        return this;
+    }
+
     public long countNumVariants() {
         return stageCollection.nativeQuery().count(getQuery());
     }
@@ -120,12 +132,19 @@ public class MongoDBVariantStageReader implements DataReader<Document> {
         } else {
             studyFilter = eq(STUDY_FILE_FIELD, String.valueOf(studyId));
         }
-        Bson bson;
-        if (chrFilters.isEmpty()) {
-            bson = studyFilter;
-        } else {
-            bson = and(studyFilter, or(chrFilters)); // Be in any of these chromosomes
+        ArrayList<Bson> excludedChrFilters = new ArrayList<>(excludedChromosomes.size());
+        for (String chromosome : excludedChromosomes) {
+            addChromosomeFilter(excludedChrFilters, chromosome);
+        }
+        List<Bson> filters = new ArrayList<>(3);
+        filters.add(studyFilter);
+        if (!chrFilters.isEmpty()) {
+            filters.add(or(chrFilters)); // Be in any of these chromosomes
+        }
+        if (!excludedChrFilters.isEmpty()) {
+            filters.add(nor(excludedChrFilters)); // Not in any of these chromosomes
         }
+        Bson bson = filters.size() == 1 ? studyFilter : and(filters);
         logger.debug("stage filter: " +  bson.toBsonDocument(Document.class, com.mongodb.MongoClient.getDefaultCodecRegistry()));
         return bson;
     }
@@ -46,6 +46,7 @@ import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesCo
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToAvroBinaryConverter;
 import org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageLoader;
 import org.opencb.opencga.storage.mongodb.variant.search.MongoDBVariantSearchIndexUtils;
 import org.slf4j.Logger;
@@ -61,7 +62,6 @@ import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVa
 import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.ID_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.SECONDARY_ALTERNATES_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageLoader.STAGE_TO_VARIANT_CONVERTER;
-import static org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageLoader.VARIANT_CONVERTER_DEFAULT;
 
 /**
  * Created on 07/04/16.
@@ -237,6 +237,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
      **/
     private boolean checkOverlappings;
     private final DocumentToVariantConverter variantConverter;
+    private final VariantToAvroBinaryConverter stageVariantConverter = new VariantToAvroBinaryConverter();
     private final DocumentToStudyVariantEntryConverter studyConverter;
     private final StudyMetadata studyMetadata;
     private final boolean excludeGenotypes;
@@ -286,6 +287,11 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
         checkOverlappings = !ignoreOverlapping && (fileIds.size() > 1 || !indexedFiles.isEmpty());
     }
 
+    @Override
+    public void post() {
+        stageVariantConverter.close();
+    }
+
     @Override
     public List<MongoDBOperations> apply(List<Document> batch) {
         try {
@@ -969,7 +975,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
 
     private Variant getFileVariantFromStage(Object o) {
         if (o instanceof Binary) {
-            return VARIANT_CONVERTER_DEFAULT.convertToDataModelType((Binary) o);
+            return stageVariantConverter.convertToDataModelType((Binary) o);
         } else if (o instanceof Variant) {
 //            Variant original = (Variant) o;
 //            Variant copy = new Variant(VariantAvro.newBuilder(original.getImpl()).build());
@@ -0,0 +1,129 @@
+package org.opencb.opencga.storage.mongodb.variant.query;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.DataResult;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.core.response.VariantQueryResult;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.query.executors.VariantQueryExecutor;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageOptions;
+import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
+import org.opencb.opencga.storage.mongodb.variant.index.sample.SampleIndexMongoDBAdaptor;
+import org.opencb.opencga.storage.mongodb.variant.index.sample.SampleIndexMongoDBQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.addSamplesMetadataIfRequested;
+
+/**
+ * Executor for queries by GENOTYPE (and optionally STUDY, REGION and CONSEQUENCE_TYPE) using the MongoDB SampleIndex.
+ *
+ * The SampleIndex returns the ids of the variants matching the genotypes, which are fetched by id from the variants collection.
+ * Counts are resolved with the SampleIndex only, unless there is a filter by consequence type.
+ */
+public class SampleIndexMongoDBQueryExecutor extends VariantQueryExecutor {
+
+    public static final String SAMPLE_INDEX_SOURCE = "sample_index";
+    private static final Set<VariantQueryParam> SUPPORTED_PARAMS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            STUDY, GENOTYPE, REGION, ANNOT_CONSEQUENCE_TYPE)));
+
+    private final VariantMongoDBAdaptor dbAdaptor;
+    private final SampleIndexMongoDBAdaptor sampleIndexDBAdaptor;
+    private final Logger logger = LoggerFactory.getLogger(SampleIndexMongoDBQueryExecutor.class);
+
+    public SampleIndexMongoDBQueryExecutor(VariantMongoDBAdaptor dbAdaptor, String storageEngineId, ObjectMap options) {
+        super(dbAdaptor.getMetadataManager(), storageEngineId, options);
+        this.dbAdaptor = dbAdaptor;
+        this.sampleIndexDBAdaptor = new SampleIndexMongoDBAdaptor(dbAdaptor);
+    }
+
+    @Override
+    public boolean canUseThisExecutor(Query query, QueryOptions options) {
+        if (!getOptions().getBoolean(MongoDBVariantStorageOptions.SAMPLE_INDEX_ENABLED.key(),
+                MongoDBVariantStorageOptions.SAMPLE_INDEX_ENABLED.defaultValue())) {
+            return false;
+        }
+        if (VariantStorageEngine.UseSearchIndex.from(options).equals(VariantStorageEngine.UseSearchIndex.YES)) {
+            // Query search index is mandatory. Can not use this executor.
+            return false;
+        }
+        Set<VariantQueryParam> queryParams = VariantQueryUtils.validParams(query, true);
+        if (!queryParams.contains(GENOTYPE) || !SUPPORTED_PARAMS.containsAll(queryParams)) {
+            return false;
+        }
+        return sampleIndexDBAdaptor.parse(query) != null;
+    }
+
+    @Override
+    public DataResult<Long> count(Query query) {
+        StopWatch stopWatch = StopWatch.createStarted();
+        long count = count(query, sampleIndexDBAdaptor.parse(query));
+        return new DataResult<>((int) stopWatch.getTime(TimeUnit.MILLISECONDS), Collections.emptyList(), 1,
+                Collections.singletonList(count), 1);
+    }
+
+    private long count(Query query, SampleIndexMongoDBQuery sampleIndexQuery) {
+        if (!VariantQueryUtils.isValidParam(query, ANNOT_CONSEQUENCE_TYPE)) {
+            return sampleIndexDBAdaptor.count(sampleIndexQuery);
+        }
+        // The annotation index only discards some variants. Count the variants returned by the variants collection.
+        long count = 0;
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, VariantField.ID.fieldName());
+        try (VariantDBIterator iterator = dbAdaptor.iterator(sampleIndexDBAdaptor.iterator(sampleIndexQuery),
+                getVariantsQuery(query), options, getBatchSize(options))) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        } catch (Exception e) {
+            throw VariantQueryException.internalException(e);
+        }
+        return count;
+    }
+
+    @Override
+    protected Object getOrIterator(Query query, QueryOptions options, boolean iterator) {
+        SampleIndexMongoDBQuery sampleIndexQuery = sampleIndexDBAdaptor.parse(query);
+        logger.info("MongoDB SampleIndex query: {}", sampleIndexQuery);
+        Query variantsQuery = getVariantsQuery(query);
+        int batchSize = getBatchSize(options);
+
+        if (iterator) {
+            return dbAdaptor.iterator(sampleIndexDBAdaptor.iterator(sampleIndexQuery), variantsQuery, options, batchSize);
+        } else {
+            QueryOptions iteratorOptions = new QueryOptions(options);
+            iteratorOptions.remove(QueryOptions.COUNT);
+            VariantQueryResult<Variant> result = addSamplesMetadataIfRequested(
+                    dbAdaptor.iterator(sampleIndexDBAdaptor.iterator(sampleIndexQuery), variantsQuery, iteratorOptions, batchSize)
+                            .toDataResult(), query, options, getMetadataManager());
+            if (options.getBoolean(QueryOptions.COUNT, false)) {
+                result.setNumMatches(count(query, sampleIndexQuery));
+            }
+            result.setSource(getStorageEngineId() + " + " + SAMPLE_INDEX_SOURCE);
+            return result;
+        }
+    }
+
+    private static Query getVariantsQuery(Query query) {
+        // Regions are already applied by the SampleIndex. Combined with the variant ids would be used as an OR.
+        Query variantsQuery = new Query(query);
+        variantsQuery.remove(REGION.key());
+        return variantsQuery;
+    }
+
+    private static int getBatchSize(QueryOptions options) {
+        return options.getInt("multiIteratorBatchSize", 200);
+    }
+}
@@ -965,6 +965,13 @@ public class MongoVariantStorageEngineTest extends VariantStorageEngineTest impl
 //        checkPlatinumDatabase(d -> ((List) d.get(FILES_FIELD)).size(), Collections.singleton(GenotypeClass.UNKNOWN_GENOTYPE));
 //    }
 
+    @Test
+    public void multiIndexPlatinumMergePartitions() throws Exception {
+        super.multiIndexPlatinum(new ObjectMap(VariantStorageOptions.EXTRA_FORMAT_FIELDS.key(), "DP,AD,PL")
+                .append(MongoDBVariantStorageOptions.MERGE_PARTITIONS.key(), 4));
+        checkPlatinumDatabase(d -> ((List) d.get(FILES_FIELD)).size(), Collections.singleton("0/0"));
+    }
+
     @Test
     public void multiIndexPlatinumMergeSimple() throws Exception {
         super.multiIndexPlatinum(new ObjectMap(VariantStorageOptions.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC));
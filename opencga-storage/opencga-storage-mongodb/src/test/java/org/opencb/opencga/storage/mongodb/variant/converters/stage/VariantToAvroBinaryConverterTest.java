@@ -0,0 +1,129 @@
+package org.opencb.opencga.storage.mongodb.variant.converters.stage;
+
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.bson.types.Binary;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAvro;
+import org.opencb.commons.utils.CompressionUtils;
+import org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToAvroBinaryConverter.Compression;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class VariantToAvroBinaryConverterTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void testConvert() {
+        for (Compression compression : Compression.values()) {
+            VariantToAvroBinaryConverter converter = new VariantToAvroBinaryConverter(compression);
+            for (Variant variant : createVariants(100)) {
+                Binary binary = converter.convertToStorageType(variant);
+                assertEquals(VariantToAvroBinaryConverter.FORMAT_MARKER, binary.getData()[0]);
+                assertEquals(compression.getId(), binary.getData()[1]);
+                assertEquals(variant.toJson(), converter.convertToDataModelType(binary).toJson());
+            }
+        }
+    }
+
+    @Test
+    public void testReadLegacyBinary() throws Exception {
+        VariantToAvroBinaryConverter converter = new VariantToAvroBinaryConverter();
+        SpecificDatumWriter<VariantAvro> writer = new SpecificDatumWriter<>(VariantAvro.getClassSchema());
+        for (Variant variant : createVariants(100)) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+            writer.write(variant.getImpl(), encoder);
+            encoder.flush();
+            Binary legacy = new Binary(CompressionUtils.compress(os.toByteArray()));
+
+            assertEquals(variant.toJson(), converter.convertToDataModelType(legacy).toJson());
+        }
+    }
+
+    @Test
+    public void testCrossThreads() throws Exception {
+        VariantToAvroBinaryConverter converter = new VariantToAvroBinaryConverter();
+        List<Variant> variants = createVariants(1000);
+        List<Binary> binaries = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            binaries.add(converter.convertToStorageType(variant));
+        }
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < variants.size(); i++) {
+                    assertEquals(variants.get(i).toJson(), converter.convertToDataModelType(binaries.get(i)).toJson());
+                }
+            });
+            thread.setUncaughtExceptionHandler((th, e) -> {
+                synchronized (errors) {
+                    errors.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(errors.toString(), 0, errors.size());
+    }
+
+    @Test
+    public void testCompressionFromString() {
+        assertEquals(Compression.DEFLATE, Compression.from(""));
+        assertEquals(Compression.LZ4, Compression.from("lz4"));
+        assertEquals(Compression.ZSTD, Compression.from("ZSTD"));
+
+        thrown.expect(IllegalArgumentException.class);
+        thrown.expectMessage("Unknown stage binary compression 'snappy'");
+        Compression.from("snappy");
+    }
+
+    @Test
+    public void testConvertAfterClose() {
+        for (Compression compression : Compression.values()) {
+            VariantToAvroBinaryConverter converter = new VariantToAvroBinaryConverter(compression);
+            Variant variant = createVariants(1).get(0);
+            Binary binary = converter.convertToStorageType(variant);
+            converter.close();
+            // Compressors are created again if the converter is reused
+            assertEquals(variant.toJson(), converter.convertToDataModelType(binary).toJson());
+            converter.close();
+        }
+    }
+
+    private static List<Variant> createVariants(int numVariants) {
+        List<Variant> variants = new ArrayList<>(numVariants);
+        for (int i = 0; i < numVariants; i++) {
+            Map<String, String> fileData = new HashMap<>();
+            fileData.put("QUAL", String.valueOf(i % 100));
+            fileData.put("FILTER", i % 10 == 0 ? "LowQual" : "PASS");
+            fileData.put("DP", String.valueOf(i % 50));
+            variants.add(Variant.newBuilder("1", 1000 + i * 10, 1000 + i * 10, "A", i % 2 == 0 ? "C" : "T")
+                    .setStudyId("1")
+                    .setFileId("1")
+                    .setFileData(fileData)
+                    .setSampleDataKeys("GT", "DP")
+                    .addSample("S1", "0/1", String.valueOf(i % 30))
+                    .addSample("S2", "0/0", String.valueOf(i % 20))
+                    .addSample("S3", "1/1", String.valueOf(i % 40))
+                    .build());
+        }
+        return variants;
+    }
+}
@@ -0,0 +1,105 @@
+package org.opencb.opencga.storage.mongodb.variant.index.sample;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.mongodb.variant.index.sample.SampleIndexDocumentConverter.*;
+
+public class SampleIndexDocumentConverterTest {
+
+    @Test
+    public void testConvert() {
+        Builder builder = new Builder(5, "1", getBatchStart(1_500_000));
+        assertTrue(builder.isEmpty());
+        builder.add("0/1", "1:1500000:A:C", FILE_PASS_MASK, ANNOTATED_MASK);
+        builder.add("1/1", "1:1500010:A:T", 3 << FILE_QUAL_SHIFT, ANNOTATED_MASK | LOF_MASK);
+        builder.add("0/1", "1:1500020:G:C", FILE_PASS_MASK | 2 << FILE_QUAL_SHIFT, 0);
+        builder.add("0/1", "1:1999999:T:C", 0, ANNOTATED_MASK | MISSENSE_MASK);
+        assertFalse(builder.isEmpty());
+        assertEquals(buildId(5, "1", 1_000_000), builder.getId());
+
+        Document document = builder.toDocument();
+        assertEquals(5, document.getInteger(SAMPLE_FIELD).intValue());
+        assertEquals("1", document.getString(CHROMOSOME_FIELD));
+        assertEquals(1_000_000, document.getInteger(START_FIELD).intValue());
+
+        Map<String, GenotypeEntry> gts = new HashMap<>();
+        for (GenotypeEntry entry : getGenotypes(document)) {
+            gts.put(entry.getGt(), entry);
+        }
+        assertEquals(new HashSet<>(Arrays.asList("0/1", "1/1")), gts.keySet());
+
+        GenotypeEntry het = gts.get("0/1");
+        assertEquals(3, het.getCount());
+        assertEquals(Arrays.asList("1:1500000:A:C", "1:1500020:G:C", "1:1999999:T:C"), het.getVariants());
+        assertArrayEquals(new int[]{FILE_PASS_MASK, FILE_PASS_MASK | 2 << FILE_QUAL_SHIFT, 0}, het.getFileIndex());
+        assertArrayEquals(new int[]{ANNOTATED_MASK, 0, ANNOTATED_MASK | MISSENSE_MASK}, het.getAnnotationIndex());
+
+        GenotypeEntry homAlt = gts.get("1/1");
+        assertEquals(1, homAlt.getCount());
+        assertEquals(Collections.singletonList("1:1500010:A:T"), homAlt.getVariants());
+        assertArrayEquals(new int[]{3 << FILE_QUAL_SHIFT}, homAlt.getFileIndex());
+        assertArrayEquals(new int[]{ANNOTATED_MASK | LOF_MASK}, homAlt.getAnnotationIndex());
+    }
+
+    @Test
+    public void testIdOrder() {
+        // Same chromosome order as the variants collection
+        List<String> expected = Arrays.asList(
+                buildId(1, "1", 0),
+                buildId(1, "1", 2_000_000),
+                buildId(1, "2", 1_000_000),
+                buildId(1, "10", 0),
+                buildId(1, "X", 0));
+        List<String> ids = new ArrayList<>(expected);
+        Collections.shuffle(ids);
+        Collections.sort(ids);
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    public void testIsIndexedGenotype() {
+        assertTrue(isIndexedGenotype("0/1"));
+        assertTrue(isIndexedGenotype("1|0"));
+        assertTrue(isIndexedGenotype("1/1"));
+        assertTrue(isIndexedGenotype("1"));
+        assertTrue(isIndexedGenotype("./1"));
+        assertTrue(isIndexedGenotype("0/2"));
+
+        assertFalse(isIndexedGenotype(null));
+        assertFalse(isIndexedGenotype(""));
+        assertFalse(isIndexedGenotype("0/0"));
+        assertFalse(isIndexedGenotype("0|0"));
+        assertFalse(isIndexedGenotype("0"));
+        assertFalse(isIndexedGenotype("NA"));
+        assertFalse(isIndexedGenotype("./."));
+        assertFalse(isIndexedGenotype(".|."));
+        assertFalse(isIndexedGenotype("./0"));
+        assertFalse(isIndexedGenotype("."));
+    }
+
+    @Test
+    public void testFileIndex() {
+        assertEquals(0, getFileIndex(null));
+        assertEquals(FILE_PASS_MASK, getFileIndex(fileEntry("PASS", null)));
+        assertEquals(FILE_PASS_MASK, getFileIndex(fileEntry("PASS", ".")));
+        assertEquals(0, getFileIndex(fileEntry("LowQual", "5")));
+        assertEquals(1 << FILE_QUAL_SHIFT, getFileIndex(fileEntry("LowQual", "10")));
+        assertEquals(FILE_PASS_MASK | 2 << FILE_QUAL_SHIFT, getFileIndex(fileEntry("PASS", "25.5")));
+        assertEquals(FILE_PASS_MASK | 3 << FILE_QUAL_SHIFT, getFileIndex(fileEntry("PASS", "300")));
+    }
+
+    private static FileEntry fileEntry(String filter, String qual) {
+        Map<String, String> data = new HashMap<>();
+        data.put(StudyEntry.FILTER, filter);
+        if (qual != null) {
+            data.put(StudyEntry.QUAL, qual);
+        }
+        return new FileEntry("file.vcf", null, data);
+    }
+}
@@ -0,0 +1,230 @@
+package org.opencb.opencga.storage.mongodb.variant.index.sample;
+
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.mongodb.MongoDBIterator;
+import org.opencb.opencga.storage.core.metadata.VariantStorageMetadataManager;
+import org.opencb.opencga.storage.core.metadata.models.SampleMetadata;
+import org.opencb.opencga.storage.core.metadata.models.TaskMetadata;
+import org.opencb.opencga.storage.core.utils.iterators.CloseableIterator;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageOptions;
+import org.opencb.opencga.storage.core.variant.annotation.annotators.CellBaseRestVariantAnnotator;
+import org.opencb.opencga.storage.core.variant.query.VariantQueryUtils;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageOptions;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
+import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
+import org.opencb.opencga.storage.mongodb.variant.query.SampleIndexMongoDBQueryExecutor;
+
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.AND;
+import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.IS;
+import static org.opencb.opencga.storage.core.variant.query.VariantQueryUtils.OR;
+import static org.opencb.opencga.storage.mongodb.variant.index.sample.SampleIndexDocumentConverter.*;
+
+public class SampleIndexMongoDBTest extends VariantStorageBaseTest implements MongoDBVariantStorageTest {
+
+    private static final List<String> SAMPLES = Arrays.asList("NA19600", "NA19660", "NA19661", "NA19685");
+    private static boolean loaded = false;
+
+    private MongoDBVariantStorageEngine engine;
+    private VariantMongoDBAdaptor dbAdaptor;
+    private VariantStorageMetadataManager metadataManager;
+    private int studyId;
+
+    @Before
+    public void before() throws Exception {
+        engine = getVariantStorageEngine();
+        dbAdaptor = engine.getDBAdaptor();
+        metadataManager = engine.getMetadataManager();
+        if (!loaded) {
+            clearDB(DB_NAME);
+            ObjectMap params = new ObjectMap()
+                    .append(VariantStorageOptions.STUDY.key(), STUDY_NAME)
+                    .append(VariantStorageOptions.ANNOTATE.key(), true)
+                    .append(VariantStorageOptions.ANNOTATOR_CLASS.key(), CellBaseRestVariantAnnotator.class.getName())
+                    .append(VariantStorageOptions.STATS_CALCULATE.key(), false)
+                    .append(MongoDBVariantStorageOptions.SAMPLE_INDEX_ENABLED.key(), true);
+            runETL(engine, smallInputUri, outputUri, params, true, true, true);
+            // The index is built before the annotation. Rebuild it to include the annotation index
+            engine.sampleIndexAnnotate(STUDY_NAME, Collections.singletonList(VariantQueryUtils.ALL), new ObjectMap());
+            loaded = true;
+        }
+        studyId = metadataManager.getStudyId(STUDY_NAME);
+    }
+
+    @After
+    public void after() throws IOException {
+        closeConnections();
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        int currentAnnotationId = SampleIndexMongoDBBuilder.getCurrentAnnotationId(metadataManager);
+        assertNotEquals(-1, currentAnnotationId);
+        for (String sample : SAMPLES) {
+            int sampleId = metadataManager.getSampleId(studyId, sample);
+            SampleMetadata sampleMetadata = metadataManager.getSampleMetadata(studyId, sampleId);
+            assertEquals(TaskMetadata.Status.READY, sampleMetadata.getStatus(SampleIndexMongoDBBuilder.SAMPLE_INDEX_STATUS));
+            assertEquals(currentAnnotationId, sampleMetadata.getAttributes().getInt(SampleIndexMongoDBBuilder.SAMPLE_INDEX_ANNOTATION_ID));
+
+            Map<String, List<String>> expected = new TreeMap<>();
+            for (Variant variant : dbAdaptor.get(new Query(STUDY.key(), STUDY_NAME)
+                    .append(INCLUDE_SAMPLE.key(), sample), new QueryOptions(QueryOptions.SORT, true)).getResults()) {
+                String gt = variant.getStudies().get(0).getSampleData(sample, "GT");
+                if (isIndexedGenotype(gt)) {
+                    expected.computeIfAbsent(gt, k -> new ArrayList<>()).add(variant.toString());
+                }
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(sample, expected, readSampleIndex(sampleId));
+        }
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        SampleIndexMongoDBBuilder builder = new SampleIndexMongoDBBuilder(dbAdaptor);
+        int sampleId = metadataManager.getSampleId(studyId, SAMPLES.get(0));
+        Map<String, List<String>> expected = readSampleIndex(sampleId);
+
+        builder.remove(studyId, Collections.singletonList(sampleId));
+        assertEquals(TaskMetadata.Status.NONE, metadataManager.getSampleMetadata(studyId, sampleId)
+                .getStatus(SampleIndexMongoDBBuilder.SAMPLE_INDEX_STATUS));
+        assertTrue(readSampleIndex(sampleId).isEmpty());
+        // Not used to query while not ready
+        assertNull(new SampleIndexMongoDBAdaptor(dbAdaptor).parse(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), SAMPLES.get(0) + IS + "0|1")));
+
+        builder.build(studyId, Collections.singletonList(sampleId));
+        assertEquals(expected, readSampleIndex(sampleId));
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        SampleIndexMongoDBAdaptor sampleIndexDBAdaptor = new SampleIndexMongoDBAdaptor(dbAdaptor);
+        for (Query query : getQueries()) {
+            query = engine.preProcessQuery(query, new QueryOptions());
+            SampleIndexMongoDBQuery sampleIndexQuery = sampleIndexDBAdaptor.parse(query);
+            assertNotNull(query.toJson(), sampleIndexQuery);
+
+            List<String> expected = getExpected(query);
+            List<String> actual = new ArrayList<>();
+            try (CloseableIterator<String> iterator = sampleIndexDBAdaptor.iterator(sampleIndexQuery)) {
+                iterator.forEachRemaining(actual::add);
+            }
+            if (sampleIndexQuery.getAnnotationMask() == 0) {
+                assertEquals(query.toJson(), expected, actual);
+                assertEquals(query.toJson(), expected.size(), sampleIndexDBAdaptor.count(sampleIndexQuery));
+            } else {
+                // The annotation index only discards some variants
+                assertTrue(query.toJson(), actual.containsAll(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        SampleIndexMongoDBAdaptor sampleIndexDBAdaptor = new SampleIndexMongoDBAdaptor(dbAdaptor);
+        assertNull(sampleIndexDBAdaptor.parse(new Query(STUDY.key(), STUDY_NAME)));
+        assertNull(sampleIndexDBAdaptor.parse(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), "NA19600" + IS + "0|0")));
+        assertNull(sampleIndexDBAdaptor.parse(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), "NA19600" + IS + "./.")));
+        assertNull(sampleIndexDBAdaptor.parse(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), "NA19600" + IS + "!0|1")));
+        assertNull(sampleIndexDBAdaptor.parse(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), "NA19600" + IS + "0|1")
+                .append(ANNOT_CONSEQUENCE_TYPE.key(), "intron_variant")));
+
+        SampleIndexMongoDBQuery query = sampleIndexDBAdaptor.parse(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), "NA19600" + IS + "0|1,1|1")
+                .append(ANNOT_CONSEQUENCE_TYPE.key(), "lof,missense_variant"));
+        assertNotNull(query);
+        assertEquals(LOF_MASK | MISSENSE_MASK, query.getAnnotationMask());
+        assertEquals(Collections.singletonList(metadataManager.getSampleId(studyId, "NA19600")),
+                new ArrayList<>(query.getSamplesGenotypes().keySet()));
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        SampleIndexMongoDBQueryExecutor disabled = new SampleIndexMongoDBQueryExecutor(dbAdaptor, engine.getStorageEngineId(),
+                new ObjectMap());
+        SampleIndexMongoDBQueryExecutor executor = new SampleIndexMongoDBQueryExecutor(dbAdaptor, engine.getStorageEngineId(),
+                new ObjectMap(MongoDBVariantStorageOptions.SAMPLE_INDEX_ENABLED.key(), true));
+        QueryOptions options = new QueryOptions(QueryOptions.SORT, true);
+
+        for (Query query : getQueries()) {
+            query = engine.preProcessQuery(query, options);
+            assertFalse(query.toJson(), disabled.canUseThisExecutor(query, options));
+            assertTrue(query.toJson(), executor.canUseThisExecutor(query, options));
+
+            List<String> expected = getExpected(query);
+            List<String> actual = new ArrayList<>();
+            for (Variant variant : executor.get(new Query(query), options).getResults()) {
+                actual.add(variant.toString());
+            }
+            assertEquals(query.toJson(), expected, actual);
+            assertEquals(query.toJson(), expected.size(), executor.count(new Query(query)).first().longValue());
+        }
+
+        // Unsupported filters
+        Query query = engine.preProcessQuery(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), "NA19600" + IS + "0|1")
+                .append(FILTER.key(), "PASS"), options);
+        assertFalse(executor.canUseThisExecutor(query, options));
+    }
+
+    private List<Query> getQueries() {
+        List<Query> queries = new ArrayList<>();
+        for (String sample : SAMPLES) {
+            queries.add(new Query(STUDY.key(), STUDY_NAME)
+                    .append(GENOTYPE.key(), sample + IS + "0|1,1|0,1|1"));
+            queries.add(new Query(STUDY.key(), STUDY_NAME)
+                    .append(GENOTYPE.key(), sample + IS + "1|1")
+                    .append(REGION.key(), "22:16000000-17000000,22:20000000-30000000"));
+            queries.add(new Query(STUDY.key(), STUDY_NAME)
+                    .append(GENOTYPE.key(), sample + IS + "0|1,1|0,1|1")
+                    .append(ANNOT_CONSEQUENCE_TYPE.key(), "lof,missense_variant"));
+        }
+        queries.add(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), SAMPLES.get(0) + IS + "0|1,1|0" + AND + SAMPLES.get(1) + IS + "1|1"));
+        queries.add(new Query(STUDY.key(), STUDY_NAME)
+                .append(GENOTYPE.key(), SAMPLES.get(0) + IS + "0|1" + OR + SAMPLES.get(1) + IS + "1|1"));
+        return queries;
+    }
+
+    private List<String> getExpected(Query query) {
+        List<String> expected = new ArrayList<>();
+        for (Variant variant : dbAdaptor.get(new Query(query), new QueryOptions(QueryOptions.SORT, true)).getResults()) {
+            expected.add(variant.toString());
+        }
+        return expected;
+    }
+
+    private Map<String, List<String>> readSampleIndex(int sampleId) {
+        Map<String, List<String>> sampleIndex = new TreeMap<>();
+        MongoDBIterator<Document> iterator = dbAdaptor.getSampleIndexCollection(studyId).nativeQuery()
+                .find(new Document(SAMPLE_FIELD, sampleId), null, new QueryOptions(QueryOptions.SORT, new Document("_id", 1)));
+        try {
+            while (iterator.hasNext()) {
+                for (GenotypeEntry entry : getGenotypes(iterator.next())) {
+                    sampleIndex.computeIfAbsent(entry.getGt(), k -> new ArrayList<>()).addAll(entry.getVariants());
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return sampleIndex;
+    }
+}